@@ -166,6 +166,20 @@ public class CompilerEnvirons {
         this.generateObserverCount = generateObserverCount;
     }
 
+    /** @return true iff the interpreter will be given register icode */
+    public boolean isGenerateRegisterIcode() {
+        return generateRegisterIcode;
+    }
+
+    /**
+     * Turn on or off generation of register icode, where instructions read their operands from
+     * local variable slots and constants instead of the operand stack. Functions compiled this way
+     * always run in the interpreter.
+     */
+    public void setGenerateRegisterIcode(boolean generateRegisterIcode) {
+        this.generateRegisterIcode = generateRegisterIcode;
+    }
+
     public boolean isRecordingComments() {
         return recordingComments;
     }
@@ -255,6 +269,7 @@ public class CompilerEnvirons {
     public boolean strictMode;
     public boolean warningAsError;
     public boolean generateObserverCount;
+    public boolean generateRegisterIcode;
     private boolean recordingComments;
     private boolean recordingLocalJsDocComments;
     private boolean recoverFromErrors;
@@ -24,6 +24,15 @@ public interface RegExpProxy {
 
     public Object compileRegExp(RuntimeContext cx, String source, String flags);
 
+    /**
+     * Return the source and the flags a regular expression returned by {@link
+     * #compileRegExp(RuntimeContext, String, String)} was compiled from, so that it can be
+     * compiled again later.
+     *
+     * @return an array holding the source and the flags
+     */
+    public String[] getRegExpSourceAndFlags(Object compiled);
+
     public Scriptable wrapRegExp(RuntimeContext cx, Scriptable scope, Object compiled);
 
     public Object action(
@@ -0,0 +1,93 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.redukti.cer.runtime.Function;
+
+/** Dense NativeArray operations. */
+public class ArrayBenchmark extends ScriptBenchmark {
+
+    private static final String SOURCE =
+            "function push(n) {\n"
+                    + "  var a = [];\n"
+                    + "  for (var i = 0; i < n; i++) { a.push(i); }\n"
+                    + "  return a.length;\n"
+                    + "}\n"
+                    + "var ints = [];\n"
+                    + "for (var i = 0; i < 10000; i++) { ints[i] = (i * 7919) % 10007; }\n"
+                    + "var doubles = ints.map(function(v) { return v / 3; });\n"
+                    + "function indexed(a) {\n"
+                    + "  var s = 0;\n"
+                    + "  for (var i = 0; i < a.length; i++) { s += a[i]; }\n"
+                    + "  return s;\n"
+                    + "}\n"
+                    + "function store(n) {\n"
+                    + "  var a = new Array(n);\n"
+                    + "  for (var i = 0; i < n; i++) { a[i] = i * 0.5; }\n"
+                    + "  for (var i = 1; i < n; i++) { a[i] += a[i - 1]; }\n"
+                    + "  return a[n - 1];\n"
+                    + "}\n"
+                    + "function functional(a) {\n"
+                    + "  return a.map(function(v) { return v * 2; })\n"
+                    + "      .filter(function(v) { return (v & 3) == 0; })\n"
+                    + "      .reduce(function(s, v) { return s + v; }, 0);\n"
+                    + "}\n"
+                    + "function sort(a) {\n"
+                    + "  return a.slice(0, 2000).sort(function(x, y) { return x - y; })[1000];\n"
+                    + "}\n";
+
+    private Function push;
+    private Function indexed;
+    private Function store;
+    private Function functional;
+    private Function sort;
+    private Object ints;
+    private Object doubles;
+
+    @Override
+    protected void setUp() {
+        evaluate(SOURCE, "array.js");
+        push = function("push");
+        indexed = function("indexed");
+        store = function("store");
+        functional = function("functional");
+        sort = function("sort");
+        ints = scope.get("ints", scope);
+        doubles = scope.get("doubles", scope);
+    }
+
+    @Benchmark
+    public Object push() {
+        return call(push, 10000);
+    }
+
+    @Benchmark
+    public Object indexedInts() {
+        return call(indexed, ints);
+    }
+
+    @Benchmark
+    public Object indexedDoubles() {
+        return call(indexed, doubles);
+    }
+
+    @Benchmark
+    public Object store() {
+        return call(store, 10000);
+    }
+
+    @Benchmark
+    public Object functional() {
+        return call(functional, ints);
+    }
+
+    @Benchmark
+    public Object sort() {
+        return call(sort, ints);
+    }
+}
@@ -0,0 +1,43 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.redukti.cer.runtime.Function;
+
+/**
+ * Whole programs in the style of the V8 benchmark suite, so results can be compared across
+ * commits: Richards (an operating system task scheduler), DeltaBlue (a one-way constraint
+ * solver) and Crypto (RSA encryption with multi-precision integer arithmetic). Each script
+ * defines a function run() that performs one iteration and throws if the result is wrong.
+ *
+ * <p>The scripts are rewrites, not the sources of the V8 suite, so their scores can not be
+ * compared with published results of that suite or of other engines.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ClassicBenchmark extends ScriptBenchmark {
+
+    @Param({"richards", "deltablue", "crypto"})
+    public String workload;
+
+    private Function run;
+
+    @Override
+    protected void setUp() throws IOException {
+        evaluateResource(workload + ".js");
+        run = function("run");
+    }
+
+    @Benchmark
+    public Object run() {
+        return call(run);
+    }
+}
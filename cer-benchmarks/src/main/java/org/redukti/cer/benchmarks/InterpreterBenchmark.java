@@ -0,0 +1,93 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+import org.redukti.cer.runtime.Function;
+
+/**
+ * The dispatch loop: arithmetic, calls and closures. Interpreted runs are done with both stack and
+ * register icode.
+ */
+public class InterpreterBenchmark extends ScriptBenchmark {
+
+    @Param({"false", "true"})
+    public boolean registerIcode;
+
+    private static final String SOURCE =
+            "function arithmetic(n) {\n"
+                    + "  var s = 0;\n"
+                    + "  for (var i = 0; i < n; i++) { s = (s + i * 3 - (i >> 1)) % 1000003; }\n"
+                    + "  return s;\n"
+                    + "}\n"
+                    + "function add(a, b) { return a + b; }\n"
+                    + "function calls(n) {\n"
+                    + "  var s = 0;\n"
+                    + "  for (var i = 0; i < n; i++) { s = add(s, i); }\n"
+                    + "  return s;\n"
+                    + "}\n"
+                    + "function fib(n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }\n"
+                    + "function makeCounter(start) {\n"
+                    + "  var c = start;\n"
+                    + "  return function() { return ++c; };\n"
+                    + "}\n"
+                    + "function closures(n) {\n"
+                    + "  var s = 0;\n"
+                    + "  for (var i = 0; i < n; i++) { var f = makeCounter(i); s += f() + f(); }\n"
+                    + "  return s;\n"
+                    + "}\n";
+
+    private Function arithmetic;
+    private Function calls;
+    private Function fib;
+    private Function closures;
+
+    @Override
+    protected ContextFactory createContextFactory() {
+        return new ContextFactory() {
+            @Override
+            protected boolean hasFeature(Context cx, int featureIndex) {
+                if (featureIndex == Context.FEATURE_REGISTER_ICODE) {
+                    return registerIcode;
+                }
+                return super.hasFeature(cx, featureIndex);
+            }
+        };
+    }
+
+    @Override
+    protected void setUp() {
+        evaluate(SOURCE, "interpreter.js");
+        arithmetic = function("arithmetic");
+        calls = function("calls");
+        fib = function("fib");
+        closures = function("closures");
+    }
+
+    @Benchmark
+    public Object arithmetic() {
+        return call(arithmetic, 10000);
+    }
+
+    @Benchmark
+    public Object calls() {
+        return call(calls, 10000);
+    }
+
+    @Benchmark
+    public Object recursion() {
+        return call(fib, 20);
+    }
+
+    @Benchmark
+    public Object closures() {
+        return call(closures, 10000);
+    }
+}
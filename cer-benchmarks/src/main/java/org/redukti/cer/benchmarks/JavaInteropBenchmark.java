@@ -0,0 +1,86 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.Function;
+import org.redukti.cer.runtime.ScriptableObject;
+
+/** Calls from scripts into Java objects through NativeJavaObject and NativeJavaMethod. */
+public class JavaInteropBenchmark extends ScriptBenchmark {
+
+    /** Target of the calls, with overloads to exercise method selection. */
+    public static class Target {
+        private long total;
+
+        public void add(int value) {
+            total += value;
+        }
+
+        public void add(double value) {
+            total += (long) value;
+        }
+
+        public void add(String value) {
+            total += value.length();
+        }
+
+        public long getTotal() {
+            return total;
+        }
+    }
+
+    private static final String SOURCE =
+            "function simple(t, n) {\n"
+                    + "  for (var i = 0; i < n; i++) { t.add(i); }\n"
+                    + "  return t.getTotal();\n"
+                    + "}\n"
+                    + "function overloads(t, n) {\n"
+                    + "  for (var i = 0; i < n; i++) {\n"
+                    + "    t.add(i); t.add(i + 0.5); t.add('x' + i);\n"
+                    + "  }\n"
+                    + "  return t.total;\n"
+                    + "}\n"
+                    + "function builder(sb, n) {\n"
+                    + "  sb.setLength(0);\n"
+                    + "  for (var i = 0; i < n; i++) { sb.append(i).append(',').append(true); }\n"
+                    + "  return sb.length();\n"
+                    + "}\n";
+
+    private Function simple;
+    private Function overloads;
+    private Function builder;
+    private Object target;
+    private Object stringBuilder;
+
+    @Override
+    protected void setUp() {
+        evaluate(SOURCE, "interop.js");
+        simple = function("simple");
+        overloads = function("overloads");
+        builder = function("builder");
+        target = Context.javaToJS(new Target(), scope);
+        stringBuilder = Context.javaToJS(new StringBuilder(), scope);
+        ScriptableObject.putProperty(scope, "target", target);
+    }
+
+    @Benchmark
+    public Object simple() {
+        return call(simple, target, 1000);
+    }
+
+    @Benchmark
+    public Object overloads() {
+        return call(overloads, target, 1000);
+    }
+
+    @Benchmark
+    public Object stringBuilder() {
+        return call(builder, stringBuilder, 1000);
+    }
+}
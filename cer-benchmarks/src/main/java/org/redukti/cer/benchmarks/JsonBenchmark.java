@@ -0,0 +1,76 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.redukti.cer.runtime.Function;
+import org.redukti.cer.runtime.json.JsonParser;
+
+/** JSON.parse and JSON.stringify of a document with nested objects, arrays and strings. */
+public class JsonBenchmark extends ScriptBenchmark {
+
+    private static final String SOURCE =
+            "var doc = { users: [] };\n"
+                    + "for (var i = 0; i < 200; i++) {\n"
+                    + "  doc.users.push({ id: i, name: 'user \"' + i + '\"',\n"
+                    + "      active: (i & 1) == 0, score: i * 1.25, tags: ['a', 'b\\n', 'c' + i],\n"
+                    + "      address: { zip: 10000 + i, city: 'Z\\u00fcrich' } });\n"
+                    + "}\n"
+                    + "var text = JSON.stringify(doc);\n"
+                    + "function parse(t) { return JSON.parse(t).users.length; }\n"
+                    + "function stringify(d) { return JSON.stringify(d).length; }\n"
+                    + "function stringifyIndented(d) {\n"
+                    + "  return JSON.stringify(d, null, 2).length;\n"
+                    + "}\n"
+                    + "function parseReviver(t) {\n"
+                    + "  return JSON.parse(t, function(k, v) { return k == 'score' ? v | 0 : v; })"
+                    + ".users.length;\n"
+                    + "}\n";
+
+    private Function parse;
+    private Function stringify;
+    private Function stringifyIndented;
+    private Function parseReviver;
+    private Object doc;
+    private String text;
+
+    @Override
+    protected void setUp() {
+        evaluate(SOURCE, "json.js");
+        parse = function("parse");
+        stringify = function("stringify");
+        stringifyIndented = function("stringifyIndented");
+        parseReviver = function("parseReviver");
+        doc = scope.get("doc", scope);
+        text = scope.get("text", scope).toString();
+    }
+
+    @Benchmark
+    public Object parse() {
+        return call(parse, text);
+    }
+
+    @Benchmark
+    public Object parseReviver() {
+        return call(parseReviver, text);
+    }
+
+    @Benchmark
+    public Object parseFromJava() throws JsonParser.ParseException {
+        return new JsonParser(cx, scope).parseValue(text);
+    }
+
+    @Benchmark
+    public Object stringify() {
+        return call(stringify, doc);
+    }
+
+    @Benchmark
+    public Object stringifyIndented() {
+        return call(stringifyIndented, doc);
+    }
+}
@@ -0,0 +1,90 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.redukti.cer.runtime.Function;
+import org.redukti.cer.runtime.ScriptableObject;
+
+/** Named property get and set on NativeObject, from scripts and from Java. */
+public class PropertyBenchmark extends ScriptBenchmark {
+
+    private static final String SOURCE =
+            "function Point(x, y) { this.x = x; this.y = y; }\n"
+                    + "Point.prototype.norm1 = function() {\n"
+                    + "  return Math.abs(this.x) + Math.abs(this.y);\n"
+                    + "};\n"
+                    + "function getSet(n) {\n"
+                    + "  var o = { x: 1, y: 2, z: 3 };\n"
+                    + "  for (var i = 0; i < n; i++) { o.x = o.y + o.z; o.y = o.x - i; o.z = i; }\n"
+                    + "  return o.x;\n"
+                    + "}\n"
+                    + "function construct(n) {\n"
+                    + "  var s = 0;\n"
+                    + "  for (var i = 0; i < n; i++) { s += new Point(i, -i).norm1(); }\n"
+                    + "  return s;\n"
+                    + "}\n"
+                    + "function polymorphic(n) {\n"
+                    + "  var shapes = [{ a: 1, v: 1 }, { b: 2, v: 2 }, { c: 3, v: 3 },"
+                    + " { d: 4, v: 4 }];\n"
+                    + "  var s = 0;\n"
+                    + "  for (var i = 0; i < n; i++) { s += shapes[i & 3].v; }\n"
+                    + "  return s;\n"
+                    + "}\n"
+                    + "function addDelete(n) {\n"
+                    + "  var o = {};\n"
+                    + "  for (var i = 0; i < n; i++) {\n"
+                    + "    o['k' + (i & 15)] = i;\n"
+                    + "    delete o['k' + ((i + 8) & 15)];\n"
+                    + "  }\n"
+                    + "  return Object.keys(o).length;\n"
+                    + "}\n"
+                    + "var shared = { alpha: 1, beta: 2, gamma: 3 };\n";
+
+    private Function getSet;
+    private Function construct;
+    private Function polymorphic;
+    private Function addDelete;
+    private ScriptableObject shared;
+
+    @Override
+    protected void setUp() {
+        evaluate(SOURCE, "property.js");
+        getSet = function("getSet");
+        construct = function("construct");
+        polymorphic = function("polymorphic");
+        addDelete = function("addDelete");
+        shared = (ScriptableObject) ScriptableObject.getProperty(scope, "shared");
+    }
+
+    @Benchmark
+    public Object getSet() {
+        return call(getSet, 10000);
+    }
+
+    @Benchmark
+    public Object construct() {
+        return call(construct, 1000);
+    }
+
+    @Benchmark
+    public Object polymorphic() {
+        return call(polymorphic, 10000);
+    }
+
+    @Benchmark
+    public Object addDelete() {
+        return call(addDelete, 1000);
+    }
+
+    @Benchmark
+    public Object javaGetPut() {
+        Object beta = ScriptableObject.getProperty(shared, "beta");
+        ScriptableObject.putProperty(shared, "alpha", beta);
+        return ScriptableObject.getProperty(shared, "gamma");
+    }
+}
@@ -0,0 +1,88 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.redukti.cer.runtime.Function;
+
+/** NativeRegExp matching through exec, test, replace and split. */
+public class RegExpBenchmark extends ScriptBenchmark {
+
+    private static final String SOURCE =
+            "var lines = [];\n"
+                    + "for (var i = 0; i < 200; i++) {\n"
+                    + "  lines.push('2024-0' + (1 + i % 9) + '-1' + (i % 10) + ' INFO [worker-' + i"
+                    + " + '] GET /api/v1/items/' + (i * 37) + '?q=abc&page=' + (i % 7)"
+                    + " + ' 200 ' + (i * 13 % 997) + 'ms user' + i + '@example.com');\n"
+                    + "}\n"
+                    + "var log = lines.join('\\n');\n"
+                    + "function exec(text) {\n"
+                    + "  var re ="
+                    + " /(\\d{4})-(\\d\\d)-(\\d\\d) (\\w+) \\[([^\\]]+)\\] (GET|POST) (\\S+)/g;\n"
+                    + "  var m, c = 0;\n"
+                    + "  while ((m = re.exec(text)) != null) { c += m[7].length; }\n"
+                    + "  return c;\n"
+                    + "}\n"
+                    + "function test(a) {\n"
+                    + "  var c = 0;\n"
+                    + "  for (var i = 0; i < a.length; i++) {\n"
+                    + "    if (/[\\w.]+@example\\.(com|org)$/.test(a[i])) { c++; }\n"
+                    + "  }\n"
+                    + "  return c;\n"
+                    + "}\n"
+                    + "function replace(text) { return text.replace(/\\d+ms/g, 'Nms').length; }\n"
+                    + "function replaceFunction(text) {\n"
+                    + "  return text.replace(/items\\/(\\d+)/g, function(m, id) {"
+                    + " return 'items/' + (id * 2); }).length;\n"
+                    + "}\n"
+                    + "function split(text) { return text.split(/\\s+|[?&=]/).length; }\n";
+
+    private Function exec;
+    private Function test;
+    private Function replace;
+    private Function replaceFunction;
+    private Function split;
+    private Object log;
+    private Object lines;
+
+    @Override
+    protected void setUp() {
+        evaluate(SOURCE, "regexp.js");
+        exec = function("exec");
+        test = function("test");
+        replace = function("replace");
+        replaceFunction = function("replaceFunction");
+        split = function("split");
+        log = scope.get("log", scope);
+        lines = scope.get("lines", scope);
+    }
+
+    @Benchmark
+    public Object exec() {
+        return call(exec, log);
+    }
+
+    @Benchmark
+    public Object test() {
+        return call(test, lines);
+    }
+
+    @Benchmark
+    public Object replace() {
+        return call(replace, log);
+    }
+
+    @Benchmark
+    public Object replaceFunction() {
+        return call(replaceFunction, log);
+    }
+
+    @Benchmark
+    public Object split() {
+        return call(split, log);
+    }
+}
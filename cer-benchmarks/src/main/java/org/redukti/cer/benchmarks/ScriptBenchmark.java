@@ -0,0 +1,105 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+import org.redukti.cer.runtime.Function;
+import org.redukti.cer.runtime.ScriptableObject;
+
+/**
+ * Base of the benchmarks that run scripts. Each benchmark thread enters its own Context with a
+ * fresh scope, and every benchmark runs once interpreted and once with the optimizer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class ScriptBenchmark {
+
+    @Param({"-1", "0"})
+    public int optimizationLevel;
+
+    protected Context cx;
+    protected ScriptableObject scope;
+
+    @Setup(Level.Trial)
+    public void enterContext() throws IOException {
+        cx = createContextFactory().enterContext();
+        cx.setLanguageVersion(Context.VERSION_ES6);
+        cx.setOptimizationLevel(optimizationLevel);
+        scope = cx.initStandardObjects();
+        setUp();
+    }
+
+    @TearDown(Level.Trial)
+    public void exitContext() {
+        cx.close();
+    }
+
+    protected ContextFactory createContextFactory() {
+        return new ContextFactory();
+    }
+
+    /** Called once the Context is entered, to load the scripts of the benchmark. */
+    protected abstract void setUp() throws IOException;
+
+    protected Object evaluate(String source, String sourceName) {
+        return cx.evaluateString(scope, source, sourceName, 1, null);
+    }
+
+    /** Evaluate a script found next to this class. */
+    protected Object evaluateResource(String name) throws IOException {
+        return evaluate(readResource(name), name);
+    }
+
+    protected Function function(String name) {
+        Object f = ScriptableObject.getProperty(scope, name);
+        if (!(f instanceof Function)) {
+            throw new IllegalStateException(name + " is not a function");
+        }
+        return (Function) f;
+    }
+
+    protected Object call(Function f, Object... args) {
+        return f.call(cx, scope, scope, args);
+    }
+
+    private static String readResource(String name) throws IOException {
+        try (InputStream in = ScriptBenchmark.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Missing resource " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
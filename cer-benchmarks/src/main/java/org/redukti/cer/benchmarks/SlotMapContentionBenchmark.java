@@ -0,0 +1,154 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+import org.redukti.cer.runtime.ScriptableObject;
+
+/**
+ * Property access on an object shared by several threads: readers look up existing properties
+ * while a writer updates them and adds and removes others. Compares the locking slot map of
+ * {@link Context#FEATURE_THREAD_SAFE_OBJECTS}, the baseline, with the lock-free reads of {@link
+ * Context#FEATURE_CONCURRENT_OBJECTS}.
+ *
+ * <p>The benchmark thread measures one reader or the writer, and the other readers and the writer
+ * run in background threads for the whole trial, so the number of readers can be a parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SlotMapContentionBenchmark {
+
+    private static final String[] NAMES = new String[16];
+
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            NAMES[i] = "p" + i;
+        }
+    }
+
+    @Param({"threadSafe", "concurrent"})
+    public String slotMap;
+
+    /** The number of reader threads, "max" for one per processor. */
+    @Param({"1", "2", "4", "max"})
+    public String readers;
+
+    private ScriptableObject shared;
+    private int index;
+
+    private volatile boolean running;
+    private final List<Thread> background = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void createObject(BenchmarkParams params) {
+        final int feature =
+                "concurrent".equals(slotMap)
+                        ? Context.FEATURE_CONCURRENT_OBJECTS
+                        : Context.FEATURE_THREAD_SAFE_OBJECTS;
+        ContextFactory factory =
+                new ContextFactory() {
+                    @Override
+                    protected boolean hasFeature(Context cx, int featureIndex) {
+                        if (featureIndex == feature) {
+                            return true;
+                        }
+                        return super.hasFeature(cx, featureIndex);
+                    }
+                };
+        try (Context cx = factory.enterContext()) {
+            shared = (ScriptableObject) cx.newObject(cx.initStandardObjects());
+            for (int i = 0; i < NAMES.length; i++) {
+                shared.put(NAMES[i], shared, Integer.valueOf(i));
+            }
+        }
+
+        int readerCount =
+                "max".equals(readers)
+                        ? Runtime.getRuntime().availableProcessors()
+                        : Integer.parseInt(readers);
+        boolean measuresWrites = params.getBenchmark().endsWith(".write");
+        running = true;
+        for (int i = measuresWrites ? 0 : 1; i < readerCount; i++) {
+            startBackground(this::runReader);
+        }
+        if (!measuresWrites) {
+            startBackground(this::runWriter);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopThreads() throws InterruptedException {
+        running = false;
+        for (Thread thread : background) {
+            thread.join();
+        }
+        background.clear();
+    }
+
+    private void startBackground(Runnable loop) {
+        Thread thread = new Thread(loop, "SlotMapContentionBenchmark-" + background.size());
+        thread.setDaemon(true);
+        background.add(thread);
+        thread.start();
+    }
+
+    private void runReader() {
+        int i = 0;
+        while (running) {
+            shared.get(NAMES[i++ & (NAMES.length - 1)], shared);
+        }
+    }
+
+    private void runWriter() {
+        int i = 0;
+        while (running) {
+            writeNext(i++);
+        }
+    }
+
+    private String writeNext(int i) {
+        String name = NAMES[i & (NAMES.length - 1)];
+        shared.put(name, shared, Integer.valueOf(i));
+        if ((i & 15) == 0) {
+            shared.put("extra", shared, name);
+            shared.delete("extra");
+        }
+        return name;
+    }
+
+    @Benchmark
+    public Object read() {
+        return shared.get(NAMES[index++ & (NAMES.length - 1)], shared);
+    }
+
+    @Benchmark
+    public Object write() {
+        return writeNext(index++);
+    }
+}
@@ -0,0 +1,109 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.redukti.cer.runtime.Function;
+
+/** String concatenation, which builds ConsStrings, and the operations that read them. */
+public class StringBenchmark extends ScriptBenchmark {
+
+    private static final String SOURCE =
+            "function append(n) {\n"
+                    + "  var s = '';\n"
+                    + "  for (var i = 0; i < n; i++) { s += 'item' + i + ','; }\n"
+                    + "  return s.length;\n"
+                    + "}\n"
+                    + "function appendAndRead(n) {\n"
+                    + "  var s = '', c = 0;\n"
+                    + "  for (var i = 0; i < n; i++) {\n"
+                    + "    s += String.fromCharCode(97 + i % 26);\n"
+                    + "    if ((i & 63) == 0) { c += s.charCodeAt(s.length >> 1); }\n"
+                    + "  }\n"
+                    + "  return c;\n"
+                    + "}\n"
+                    + "function render(n) {\n"
+                    + "  var out = '', c = 0;\n"
+                    + "  for (var i = 0; i < n; i++) {\n"
+                    + "    out += '<tr><td>' + i + '</td><td>' + (i * 3) + '</td></tr>\\n';\n"
+                    + "    if (out.slice(-6) != '</tr>\\n') { c++; }\n"
+                    + "  }\n"
+                    + "  return JSON.stringify(out).length + c;\n"
+                    + "}\n"
+                    + "function prepend(n) {\n"
+                    + "  var s = '';\n"
+                    + "  for (var i = 0; i < n; i++) { s = i + ':' + s; }\n"
+                    + "  return s.indexOf('500:');\n"
+                    + "}\n"
+                    + "function join(n) {\n"
+                    + "  var parts = [];\n"
+                    + "  for (var i = 0; i < n; i++) { parts.push('item' + i); }\n"
+                    + "  return parts.join(',').length;\n"
+                    + "}\n"
+                    + "function methods(n) {\n"
+                    + "  var s = 'The quick brown fox jumps over the lazy dog', c = 0;\n"
+                    + "  for (var i = 0; i < n; i++) {\n"
+                    + "    c += s.toUpperCase().split(' ').length + s.substring(4, 9).length"
+                    + " + s.lastIndexOf('o');\n"
+                    + "  }\n"
+                    + "  return c;\n"
+                    + "}\n";
+
+    private Function append;
+    private Function appendAndRead;
+    private Function render;
+    private Function prepend;
+    private Function join;
+    private Function methods;
+
+    @Override
+    protected void setUp() {
+        evaluate(SOURCE, "string.js");
+        append = function("append");
+        appendAndRead = function("appendAndRead");
+        render = function("render");
+        prepend = function("prepend");
+        join = function("join");
+        methods = function("methods");
+    }
+
+    @Benchmark
+    public Object append() {
+        return call(append, 2000);
+    }
+
+    /** A string long enough that the tree of appends is many times deeper than a balanced one. */
+    @Benchmark
+    public Object appendLong() {
+        return call(append, 50000);
+    }
+
+    @Benchmark
+    public Object appendAndRead() {
+        return call(appendAndRead, 2000);
+    }
+
+    @Benchmark
+    public Object render() {
+        return call(render, 2000);
+    }
+
+    @Benchmark
+    public Object prepend() {
+        return call(prepend, 1000);
+    }
+
+    @Benchmark
+    public Object join() {
+        return call(join, 2000);
+    }
+
+    @Benchmark
+    public Object methods() {
+        return call(methods, 1000);
+    }
+}
@@ -0,0 +1,193 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+// RSA encryption and decryption with a 512 bit key, in the spirit of the
+// Crypto workload of the V8 benchmark suite but not derived from its
+// source, which uses Tom Wu's jsbn library. Big integers are arrays of
+// 15 bit digits, least significant first, so that every intermediate
+// product fits into a 32 bit integer; modular exponentiation uses
+// Montgomery multiplication.
+
+var DIGIT_BITS = 15;
+var DIGIT_MASK = (1 << DIGIT_BITS) - 1;
+
+var MODULUS = "b16520be91d9b2c6503502f4827ba663c19cabda2eb457a0103add4b29966191"
+        + "00f274e12557691c40ec4a8760bfd893359fd54e729c39017990be1ff991726f";
+var PUBLIC_EXPONENT = "10001";
+var PRIVATE_EXPONENT = "967a8b793cada7ba1405b3f907caae0d870a48b92ecf2a598c0af2f73452ed75"
+        + "32dd8f35e68adde289c1db70feb092d686d3086a5112443d96dafa73f030c0e1";
+
+var MESSAGE = "The quick brown fox jumped over the extremely lazy frog!";
+
+function fromHex(hex) {
+    var digits = [];
+    var acc = 0, bits = 0;
+    for (var i = hex.length - 1; i >= 0; i--) {
+        acc |= parseInt(hex.charAt(i), 16) << bits;
+        bits += 4;
+        if (bits >= DIGIT_BITS) {
+            digits.push(acc & DIGIT_MASK);
+            acc >>>= DIGIT_BITS;
+            bits -= DIGIT_BITS;
+        }
+    }
+    if (bits > 0) digits.push(acc);
+    return trim(digits);
+}
+
+function toHex(a) {
+    var hex = "";
+    var acc = 0, bits = 0;
+    for (var i = 0; i < a.length; i++) {
+        acc |= a[i] << bits;
+        bits += DIGIT_BITS;
+        while (bits >= 4) {
+            hex = (acc & 15).toString(16) + hex;
+            acc >>>= 4;
+            bits -= 4;
+        }
+    }
+    if (bits > 0) hex = acc.toString(16) + hex;
+    return hex.replace(/^0+(?=.)/, "");
+}
+
+function trim(a) {
+    while (a.length > 1 && a[a.length - 1] == 0) a.pop();
+    return a;
+}
+
+function pad(a, length) {
+    var r = a.slice(0);
+    while (r.length < length) r.push(0);
+    return r;
+}
+
+// Compare a and m, where a may have one more digit than m.
+function compare(a, m) {
+    for (var i = a.length - 1; i >= m.length; i--) {
+        if (a[i] != 0) return 1;
+    }
+    for (var i = m.length - 1; i >= 0; i--) {
+        if (a[i] != m[i]) return a[i] > m[i] ? 1 : -1;
+    }
+    return 0;
+}
+
+function subtract(a, m) {
+    var borrow = 0;
+    for (var i = 0; i < a.length; i++) {
+        var d = a[i] - (i < m.length ? m[i] : 0) - borrow;
+        borrow = d < 0 ? 1 : 0;
+        a[i] = d & DIGIT_MASK;
+    }
+}
+
+function Montgomery(m) {
+    this.m = m;
+    this.k = m.length;
+    // -m^-1 mod 2^15 by Newton iteration, each step doubles the correct bits
+    var y = 1;
+    for (var i = 0; i < 4; i++) {
+        y = (y * ((2 - ((m[0] * y) & DIGIT_MASK)) & DIGIT_MASK)) & DIGIT_MASK;
+    }
+    this.mInv = (DIGIT_MASK + 1 - y) & DIGIT_MASK;
+    // R^2 mod m by doubling 1, where R = 2^(15 k)
+    var r = pad([1], this.k + 1);
+    for (var i = 0; i < 2 * DIGIT_BITS * this.k; i++) {
+        var carry = 0;
+        for (var j = 0; j < r.length; j++) {
+            var d = (r[j] << 1) | carry;
+            r[j] = d & DIGIT_MASK;
+            carry = d >>> DIGIT_BITS;
+        }
+        if (compare(r, m) >= 0) subtract(r, m);
+    }
+    this.r2 = r.slice(0, this.k);
+}
+
+// a * b / R mod m for a, b < m with k digits each
+Montgomery.prototype.multiply = function(a, b) {
+    var k = this.k, m = this.m, mInv = this.mInv;
+    var t = new Array(k + 2);
+    for (var i = 0; i < k + 2; i++) t[i] = 0;
+    for (var i = 0; i < k; i++) {
+        var ai = a[i], c = 0, s;
+        for (var j = 0; j < k; j++) {
+            s = t[j] + ai * b[j] + c;
+            t[j] = s & DIGIT_MASK;
+            c = s >>> DIGIT_BITS;
+        }
+        s = t[k] + c;
+        t[k] = s & DIGIT_MASK;
+        t[k + 1] = s >>> DIGIT_BITS;
+
+        var u = (t[0] * mInv) & DIGIT_MASK;
+        s = t[0] + u * m[0];
+        c = s >>> DIGIT_BITS;
+        for (var j = 1; j < k; j++) {
+            s = t[j] + u * m[j] + c;
+            t[j - 1] = s & DIGIT_MASK;
+            c = s >>> DIGIT_BITS;
+        }
+        s = t[k] + c;
+        t[k - 1] = s & DIGIT_MASK;
+        t[k] = t[k + 1] + (s >>> DIGIT_BITS);
+        t[k + 1] = 0;
+    }
+    t.length = k + 1;
+    if (compare(t, m) >= 0) subtract(t, m);
+    t.length = k;
+    return t;
+};
+
+// base^exponent mod m, with exponent as a hex string
+Montgomery.prototype.modPow = function(base, exponent) {
+    var b = this.multiply(pad(base, this.k), this.r2);
+    var x = this.multiply(pad([1], this.k), this.r2);
+    for (var i = 0; i < exponent.length; i++) {
+        var nibble = parseInt(exponent.charAt(i), 16);
+        for (var bit = 3; bit >= 0; bit--) {
+            x = this.multiply(x, x);
+            if ((nibble >> bit) & 1) x = this.multiply(x, b);
+        }
+    }
+    return trim(this.multiply(x, pad([1], this.k)));
+};
+
+function textToHex(text) {
+    var hex = "";
+    for (var i = 0; i < text.length; i++) {
+        var c = text.charCodeAt(i).toString(16);
+        hex += c.length < 2 ? "0" + c : c;
+    }
+    return hex;
+}
+
+function hexToText(hex) {
+    if (hex.length & 1) hex = "0" + hex;
+    var text = "";
+    for (var i = 0; i < hex.length; i += 2) {
+        text += String.fromCharCode(parseInt(hex.substring(i, i + 2), 16));
+    }
+    return text;
+}
+
+var rsa = new Montgomery(fromHex(MODULUS));
+
+function encrypt(text) {
+    return toHex(rsa.modPow(fromHex(textToHex(text)), PUBLIC_EXPONENT));
+}
+
+function decrypt(hex) {
+    return hexToText(toHex(rsa.modPow(fromHex(hex), PRIVATE_EXPONENT)));
+}
+
+function run() {
+    var encrypted = encrypt(MESSAGE);
+    var decrypted = decrypt(encrypted);
+    if (decrypted != MESSAGE) {
+        throw new Error("Crypto operation failed");
+    }
+    return encrypted.length;
+}
@@ -8,6 +8,7 @@ package org.redukti.cer.ir;
 
 import java.math.BigInteger;
 import java.util.List;
+import java.util.Set;
 
 import org.redukti.cer.RuntimeContext;
 import org.redukti.cer.Versions;
@@ -57,6 +58,9 @@ public class CodeGenerator extends Icode {
 
     private int exceptionTableTop;
 
+    // numericVars[i] is true if every assignment to the local variable i stores a number
+    private boolean[] numericVars;
+
     // ECF_ or Expression Context Flags constants: for now only TAIL
     private static final int ECF_TAIL = 1 << 0;
 
@@ -114,6 +118,14 @@ public class CodeGenerator extends Icode {
 
         itsData.itsFunctionType = theFunction.getFunctionType();
         itsData.itsNeedsActivation = theFunction.requiresActivation();
+        Set<String> closureVars = theFunction.getClosureVars();
+        if (closureVars != null) {
+            String[] names = theFunction.getParamAndVarNames();
+            itsData.argIsCaptured = new boolean[names.length];
+            for (int i = 0; i != names.length; i++) {
+                itsData.argIsCaptured[i] = closureVars.contains(names[i]);
+            }
+        }
         if (theFunction.getFunctionName() != null) {
             itsData.itsName = theFunction.getName();
         }
@@ -133,6 +145,14 @@ public class CodeGenerator extends Icode {
         generateICodeFromTree(theFunction.getLastChild());
     }
 
+    /**
+     * Return true if the variables of the function live in its call frame. A function with an
+     * activation object may still keep the variables that its closures do not refer to there.
+     */
+    private boolean hasFrameVars() {
+        return !itsData.itsNeedsActivation || itsData.argIsCaptured != null;
+    }
+
     private void generateICodeFromTree(Node tree) {
         generateNestedFunctions();
 
@@ -140,6 +160,10 @@ public class CodeGenerator extends Icode {
 
         generateTemplateLiterals();
 
+        if (itsInFunctionFlag && !itsData.itsNeedsActivation) {
+            numericVars = inferNumericVars(tree);
+        }
+
         visitStatement(tree, 0);
         fixLabelGotos();
         // add RETURN_RESULT only to scripts as function always ends with RETURN
@@ -191,6 +215,8 @@ public class CodeGenerator extends Icode {
             itsData.itsExceptionTable = tmp;
         }
 
+        new IcodeOptimizer(itsData).optimize();
+
         itsData.itsMaxVars = scriptOrFn.getParamAndVarCount();
         // itsMaxFrameArray: interpret method needs this amount for its
         // stack and sDbl arrays
@@ -436,6 +462,12 @@ public class CodeGenerator extends Icode {
             case Token.EXPR_VOID:
             case Token.EXPR_RESULT:
                 updateLineNumber(node);
+                if (type == Token.EXPR_VOID
+                        && child.getType() == Token.SETVAR
+                        && compilerEnv.isGenerateRegisterIcode()) {
+                    visitRegisterSetVar(child);
+                    break;
+                }
                 visitExpression(child, 0);
                 addIcode((type == Token.EXPR_VOID) ? Icode_POP : Icode_POP_RESULT);
                 stackChange(-1);
@@ -703,6 +735,10 @@ public class CodeGenerator extends Icode {
 
             case Token.GETPROP:
             case Token.GETPROPNOWARN:
+                if (type == Token.GETPROP && compilerEnv.isGenerateRegisterIcode()) {
+                    visitRegisterGetProp(child);
+                    break;
+                }
                 visitExpression(child, 0);
                 child = child.getNext();
                 addStringOp(type, child.getString());
@@ -745,10 +781,17 @@ public class CodeGenerator extends Icode {
             case Token.LT:
             case Token.GE:
             case Token.GT:
+                if (compilerEnv.isGenerateRegisterIcode() && visitRegisterBinary(node, child)) {
+                    break;
+                }
                 visitExpression(child, 0);
                 child = child.getNext();
                 visitExpression(child, 0);
-                addToken(type);
+                if (isNumericOperation(node)) {
+                    addIcode(numericOp(type));
+                } else {
+                    addToken(type);
+                }
                 stackChange(-1);
                 break;
 
@@ -788,7 +831,7 @@ public class CodeGenerator extends Icode {
                         stackChange(-1);
                     }
                     visitExpression(child, 0);
-                    addStringOp(Token.SETPROP, property);
+                    addRegisterStringOp(Icode_SETPROP_STR, Token.SETPROP, property);
                     stackChange(-1);
                 }
                 break;
@@ -856,7 +899,7 @@ public class CodeGenerator extends Icode {
                     int index = -1;
                     // use typeofname if an activation frame exists
                     // since the vars all exist there instead of in jregs
-                    if (itsInFunctionFlag && !itsData.itsNeedsActivation)
+                    if (itsInFunctionFlag && hasFrameVars())
                         index = scriptOrFn.getIndexForNameNode(node);
                     if (index == -1) {
                         addStringOp(Icode_TYPEOFNAME, node.getString());
@@ -872,7 +915,18 @@ public class CodeGenerator extends Icode {
             case Token.BINDNAME:
             case Token.NAME:
             case Token.STRING:
-                addStringOp(type, node.getString());
+                if (type == Token.NAME
+                        && itsInFunctionFlag
+                        && !itsData.itsNeedsActivation
+                        && ((FunctionNode) scriptOrFn).usesArguments()
+                        && "arguments".equals(node.getString())) {
+                    itsData.itsUsesArguments = true;
+                    addIcode(Icode_ARGUMENTS);
+                } else if (type == Token.NAME) {
+                    addRegisterStringOp(Icode_NAME_STR, type, node.getString());
+                } else {
+                    addStringOp(type, node.getString());
+                }
                 stackChange(1);
                 break;
 
@@ -912,7 +966,7 @@ public class CodeGenerator extends Icode {
 
             case Token.GETVAR:
                 {
-                    if (itsData.itsNeedsActivation) Kit.codeBug();
+                    if (!hasFrameVars()) Kit.codeBug();
                     int index = scriptOrFn.getIndexForNameNode(node);
                     addVarOp(Token.GETVAR, index);
                     stackChange(1);
@@ -921,7 +975,7 @@ public class CodeGenerator extends Icode {
 
             case Token.SETVAR:
                 {
-                    if (itsData.itsNeedsActivation) Kit.codeBug();
+                    if (!hasFrameVars()) Kit.codeBug();
                     int index = scriptOrFn.getIndexForNameNode(child);
                     child = child.getNext();
                     visitExpression(child, 0);
@@ -931,7 +985,7 @@ public class CodeGenerator extends Icode {
 
             case Token.SETCONSTVAR:
                 {
-                    if (itsData.itsNeedsActivation) Kit.codeBug();
+                    if (!hasFrameVars()) Kit.codeBug();
                     int index = scriptOrFn.getIndexForNameNode(child);
                     child = child.getNext();
                     visitExpression(child, 0);
@@ -1099,13 +1153,219 @@ public class CodeGenerator extends Icode {
         }
     }
 
+    /**
+     * Find the local variables that only ever get numbers assigned. Parameters can hold anything
+     * and are never included. Variables start out as numeric and lose that status when an
+     * assignment stores a value not known to be a number, until nothing changes any more.
+     */
+    private boolean[] inferNumericVars(Node tree) {
+        int count = scriptOrFn.getParamAndVarCount();
+        boolean[] numeric = new boolean[count];
+        for (int i = scriptOrFn.getParamCount(); i < count; i++) {
+            numeric[i] = true;
+        }
+        while (removeNonNumericVars(tree, numeric)) {}
+        return numeric;
+    }
+
+    /** @return true if a variable stopped being numeric */
+    private boolean removeNonNumericVars(Node node, boolean[] numeric) {
+        boolean changed = false;
+        for (Node child = node.getFirstChild(); child != null; child = child.getNext()) {
+            if (child.getType() != Token.FUNCTION) {
+                changed |= removeNonNumericVars(child, numeric);
+            }
+        }
+        int type = node.getType();
+        if (type == Token.SETVAR || type == Token.SETCONSTVAR) {
+            Node name = node.getFirstChild();
+            int index = scriptOrFn.getIndexForNameNode(name);
+            if (index >= 0 && numeric[index] && !isNumeric(name.getNext(), numeric)) {
+                numeric[index] = false;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return true if node always evaluates to a number, or throws. Operations that mix a number
+     *     with a BigInt throw, so one numeric operand is enough for most of them.
+     */
+    private boolean isNumeric(Node node, boolean[] numeric) {
+        switch (node.getType()) {
+            case Token.NUMBER:
+            case Token.POS:
+            case Token.URSH:
+                return true;
+            case Token.GETVAR:
+                {
+                    if (numeric == null) {
+                        return false;
+                    }
+                    int index = scriptOrFn.getIndexForNameNode(node);
+                    return index >= 0 && numeric[index];
+                }
+            case Token.NEG:
+            case Token.BITNOT:
+            case Token.INC:
+            case Token.DEC:
+                return isNumeric(node.getFirstChild(), numeric);
+            case Token.SETVAR:
+                return isNumeric(node.getFirstChild().getNext(), numeric);
+            case Token.SUB:
+            case Token.MUL:
+            case Token.DIV:
+            case Token.MOD:
+            case Token.EXP:
+            case Token.BITAND:
+            case Token.BITOR:
+            case Token.BITXOR:
+            case Token.LSH:
+            case Token.RSH:
+                return isNumeric(node.getFirstChild(), numeric)
+                        || isNumeric(node.getLastChild(), numeric);
+            case Token.ADD:
+                return isNumeric(node.getFirstChild(), numeric)
+                        && isNumeric(node.getLastChild(), numeric);
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the binary operation node should use its numeric icode. Only ADD needs
+     *     both operands to be numbers, as the others convert their operands to numbers anyway.
+     *     The numeric icodes check their operands, so this only has to be a good guess.
+     */
+    private boolean isNumericOperation(Node node) {
+        int type = node.getType();
+        if (numericOp(type) == type) {
+            return false;
+        }
+        Node left = node.getFirstChild();
+        Node right = node.getLastChild();
+        if (type == Token.ADD) {
+            return isNumeric(left, numericVars) && isNumeric(right, numericVars);
+        }
+        return isNumeric(left, numericVars) || isNumeric(right, numericVars);
+    }
+
+    /**
+     * @return the index of the local variable node reads if it can be given to register icode as
+     *     a one byte operand, or -1
+     */
+    private int registerOperand(Node node) {
+        if (node.getType() != Token.GETVAR) {
+            return -1;
+        }
+        int index = scriptOrFn.getIndexForNameNode(node);
+        return index <= 0xFF ? index : -1;
+    }
+
+    /** @return true if node is a number that register icode can take as a short operand */
+    private static boolean isShortConstant(Node node) {
+        if (node.getType() != Token.NUMBER) {
+            return false;
+        }
+        double num = node.getDouble();
+        short snum = (short) num;
+        return snum == num && (snum != 0 || 1.0 / num > 0.0);
+    }
+
+    /** Assign to a local variable and drop the result, without leaving it on the stack. */
+    private void visitRegisterSetVar(Node node) {
+        Node child = node.getFirstChild();
+        int index = scriptOrFn.getIndexForNameNode(child);
+        if (index > 0xFF) {
+            visitExpression(node, 0);
+            addIcode(Icode_POP);
+            stackChange(-1);
+            return;
+        }
+        child = child.getNext();
+        int srcIndex = registerOperand(child);
+        if (srcIndex >= 0) {
+            addIcode(Icode_MOVE_VAR);
+            addUint8(index);
+            addUint8(srcIndex);
+            // With an activation the interpreter copies the value through the stack
+            stackChange(1);
+            stackChange(-1);
+            return;
+        }
+        visitExpression(child, 0);
+        addIcode(Icode_SETVAR_POP);
+        addUint8(index);
+        stackChange(-1);
+    }
+
+    private void visitRegisterGetProp(Node child) {
+        String property = child.getNext().getString();
+        int index = getStringIndex(property);
+        int varIndex = registerOperand(child);
+        if (varIndex >= 0 && index <= 0xFFFF) {
+            addIcode(Icode_GETPROP_VAR);
+            addUint8(varIndex);
+            addUint16(index);
+            stackChange(1);
+            return;
+        }
+        visitExpression(child, 0);
+        addRegisterStringOp(Icode_GETPROP_STR, Token.GETPROP, property);
+    }
+
+    /**
+     * Generate a binary operation or element get whose left operand is a local variable and whose
+     * right operand is a local variable or, for operations other than GETELEM, a short number as a
+     * single register instruction.
+     *
+     * @return false if the operands do not allow it, nothing was generated then
+     */
+    private boolean visitRegisterBinary(Node node, Node child) {
+        int type = node.getType();
+        if (type == Token.EXP || type == Token.IN || type == Token.INSTANCEOF) {
+            return false;
+        }
+        int lIndex = registerOperand(child);
+        if (lIndex < 0) {
+            return false;
+        }
+        Node right = child.getNext();
+        int rIndex = registerOperand(right);
+        if (type == Token.GETELEM) {
+            if (rIndex < 0) {
+                return false;
+            }
+            addIcode(Icode_GETELEM_VAR_VAR);
+            addUint8(lIndex);
+            addUint8(rIndex);
+        } else if (rIndex >= 0) {
+            addIcode(Icode_BINOP_VAR_VAR);
+            addToken(type);
+            addUint8(lIndex);
+            addUint8(rIndex);
+        } else if (isShortConstant(right)) {
+            addIcode(Icode_BINOP_VAR_CONST);
+            addToken(type);
+            addUint8(lIndex);
+            // write short as uin16 bit pattern
+            addUint16((int) right.getDouble() & 0xFFFF);
+        } else {
+            return false;
+        }
+        // With an activation or non-number operands the interpreter pushes both of them
+        stackChange(2);
+        stackChange(-1);
+        return true;
+    }
+
     private void visitIncDec(Node node, Node child) {
         int incrDecrMask = node.getExistingIntProp(Node.INCRDECR_PROP);
         int childType = child.getType();
         switch (childType) {
             case Token.GETVAR:
                 {
-                    if (itsData.itsNeedsActivation) Kit.codeBug();
+                    if (!hasFrameVars()) Kit.codeBug();
                     int i = scriptOrFn.getIndexForNameNode(child);
                     addVarOp(Icode_VAR_INC_DEC, i);
                     addUint8(incrDecrMask);
@@ -1445,12 +1705,31 @@ public class CodeGenerator extends Icode {
         }
     }
 
-    private void addStringPrefix(String str) {
+    /**
+     * Add op with the index of str as its operand when generating register icode and the index
+     * fits, otherwise a string register load followed by the stack based plainOp.
+     */
+    private void addRegisterStringOp(int op, int plainOp, String str) {
+        int index = getStringIndex(str);
+        if (compilerEnv.isGenerateRegisterIcode() && index <= 0xFFFF) {
+            addIcode(op);
+            addUint16(index);
+        } else {
+            addStringOp(plainOp, str);
+        }
+    }
+
+    private int getStringIndex(String str) {
         int index = strings.get(str, -1);
         if (index == -1) {
             index = strings.size();
             strings.put(str, index);
         }
+        return index;
+    }
+
+    private void addStringPrefix(String str) {
+        int index = getStringIndex(str);
         if (index < 4) {
             addIcode(Icode_REG_STR_C0 - index);
         } else if (index <= 0xFF) {
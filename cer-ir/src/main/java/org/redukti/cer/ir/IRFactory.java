@@ -15,6 +15,7 @@ import org.redukti.cer.parser.Node;
 import org.redukti.cer.parser.Parser;
 import org.redukti.cer.parser.Token;
 import org.redukti.cer.parser.ast.*;
+import org.redukti.cer.runtime.support.DoubleConversion;
 import org.redukti.cer.utils.Kit;
 import org.redukti.cer.utils.StringUtils;
 
@@ -592,6 +593,7 @@ public final class IRFactory extends Parser {
 
             int syntheticType = fn.getFunctionType();
             Node pn = initFunction(fn, index, body, syntheticType);
+            checkArgumentsActivation(fn, body);
             if (mexpr != null) {
                 pn = createAssignment(Token.ASSIGN, mexpr, pn);
                 if (syntheticType != FunctionNode.FUNCTION_EXPRESSION) {
@@ -1489,6 +1491,57 @@ public final class IRFactory extends Parser {
         return new Node(Token.CATCH, varName, catchCond, stmts, lineno);
     }
 
+    /**
+     * Give a function that refers to its arguments object an activation if the arguments object
+     * can not be created on demand: the arguments may be mapped to the parameters, or the name
+     * arguments is declared, caught, assigned or used other than by reading it.
+     */
+    private void checkArgumentsActivation(FunctionNode fnNode, Node body) {
+        if (!fnNode.usesArguments() || fnNode.requiresActivation()) {
+            return;
+        }
+        boolean mapped = fnNode.getParamCount() != 0 && !inUseStrictDirective;
+        if (mapped || fnNode.getSymbol("arguments") != null || !readsArgumentsOnly(body)) {
+            fnNode.setRequiresActivation();
+        }
+    }
+
+    private static boolean readsArgumentsOnly(Node node) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNext()) {
+            switch (child.getType()) {
+                case Token.NAME:
+                    if (isArgumentsName(child) && child == node.getFirstChild()) {
+                        int type = node.getType();
+                        if (type == Token.CALL
+                                || type == Token.NEW
+                                || type == Token.INC
+                                || type == Token.DEC
+                                || type == Token.CATCH) {
+                            return false;
+                        }
+                    }
+                    break;
+                case Token.BINDNAME:
+                case Token.TYPEOFNAME:
+                    if (isArgumentsName(child)) {
+                        return false;
+                    }
+                    break;
+            }
+            if (child instanceof Scope && ((Scope) child).getSymbol("arguments") != null) {
+                return false;
+            }
+            if (!readsArgumentsOnly(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isArgumentsName(Node node) {
+        return "arguments".equals(node.getString());
+    }
+
     private static Node initFunction(
             FunctionNode fnNode, int functionIndex, Node statements, int functionType) {
         fnNode.setFunctionType(functionType);
@@ -1497,7 +1550,7 @@ public final class IRFactory extends Parser {
         int functionCount = fnNode.getFunctionCount();
         if (functionCount != 0) {
             // Functions containing other functions require activation objects
-            fnNode.setRequiresActivation();
+            fnNode.setRequiresClosureActivation();
         }
 
         if (functionType == FunctionNode.FUNCTION_EXPRESSION) {
@@ -2113,6 +2166,29 @@ public final class IRFactory extends Parser {
         return new Node(Token.GET_REF, ref);
     }
 
+    private static double foldNumbers(int nodeType, double ld, double rd) {
+        if (nodeType == Token.MOD) {
+            return ld % rd;
+        }
+        int l = DoubleConversion.doubleToInt32(ld);
+        int r = DoubleConversion.doubleToInt32(rd);
+        switch (nodeType) {
+            case Token.BITAND:
+                return l & r;
+            case Token.BITOR:
+                return l | r;
+            case Token.BITXOR:
+                return l ^ r;
+            case Token.LSH:
+                return l << r;
+            case Token.RSH:
+                return l >> r;
+            case Token.URSH:
+                return (l & 0xffffffffL) >>> (r & 0x1F);
+        }
+        throw Kit.codeBug();
+    }
+
     private static Node createBinary(int nodeType, Node left, Node right) {
         switch (nodeType) {
             case Token.ADD:
@@ -2205,6 +2281,20 @@ public final class IRFactory extends Parser {
                 }
                 break;
 
+            case Token.MOD:
+            case Token.BITAND:
+            case Token.BITOR:
+            case Token.BITXOR:
+            case Token.LSH:
+            case Token.RSH:
+            case Token.URSH:
+                // both constants, as in (1 << 15) - 1
+                if (left.type == Token.NUMBER && right.type == Token.NUMBER) {
+                    left.setDouble(foldNumbers(nodeType, left.getDouble(), right.getDouble()));
+                    return left;
+                }
+                break;
+
             case Token.AND:
                 {
                     // Since x && y gives x, not false, when Boolean(x) is false,
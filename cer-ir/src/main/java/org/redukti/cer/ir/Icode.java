@@ -7,6 +7,7 @@
 package org.redukti.cer.ir;
 
 import org.redukti.cer.parser.Token;
+import org.redukti.cer.utils.Kit;
 
 /** Additional interpreter-specific codes */
 public abstract class Icode {
@@ -146,8 +147,65 @@ public abstract class Icode {
             // Call to GetTemplateLiteralCallSite
             Icode_TEMPLATE_LITERAL_CALLSITE = -74,
 
+            // Versions of ADD, SUB, MUL, DIV, MOD, LT, LE, GT and GE emitted when the
+            // operands are expected to be numbers: both operands are then tested for
+            // DOUBLE_MARK and the generic operation is only used when that fails
+            Icode_ADD_NUM = -75,
+            Icode_SUB_NUM = -76,
+            Icode_MUL_NUM = -77,
+            Icode_DIV_NUM = -78,
+            Icode_MOD_NUM = -79,
+            Icode_LT_NUM = -80,
+            Icode_LE_NUM = -81,
+            Icode_GT_NUM = -82,
+            Icode_GE_NUM = -83,
+
+            // Same for BITAND, BITOR, BITXOR, LSH and RSH, computed on ints
+            Icode_BITAND_INT = -84,
+            Icode_BITOR_INT = -85,
+            Icode_BITXOR_INT = -86,
+            Icode_LSH_INT = -87,
+            Icode_RSH_INT = -88,
+
+            // Superinstructions written over the first opcode of a common sequence by
+            // IcodeOptimizer. The rest of the sequence stays in place, so the span of a
+            // superinstruction is the span of the opcode it replaces and code walking the
+            // icode sees the original sequence. The interpreter runs the whole sequence at
+            // once, or only the replaced opcode when its fast path does not apply.
+
+            // LT_NUM, LE_NUM, GT_NUM or GE_NUM followed by IFEQ or IFNE
+            Icode_LT_NUM_IF = -89,
+            Icode_LE_NUM_IF = -90,
+            Icode_GT_NUM_IF = -91,
+            Icode_GE_NUM_IF = -92,
+
+            // GETVAR1 or THIS followed by a one byte string register load and GETPROP
+            Icode_GETVAR1_GETPROP = -93,
+            Icode_THIS_GETPROP = -94,
+
+            // GETVAR1, ONE or SHORTNUMBER, ADD or SUB, SETVAR1 of the same variable and POP
+            Icode_VAR_ADD_CONST = -95,
+
+            // VAR_INC_DEC followed by POP
+            Icode_VAR_INC_DEC_POP = -96,
+
+            // Register icode: operands are local variable slots, constants and string indexes
+            // given inline, the result is pushed on the stack
+            Icode_GETPROP_VAR = -97,
+            Icode_GETPROP_STR = -98,
+            Icode_SETPROP_STR = -99,
+            Icode_NAME_STR = -100,
+            Icode_BINOP_VAR_VAR = -101,
+            Icode_BINOP_VAR_CONST = -102,
+            Icode_MOVE_VAR = -103,
+            Icode_SETVAR_POP = -104,
+            Icode_GETELEM_VAR_VAR = -105,
+
+            // Arguments object of a function without activation, created on first use
+            Icode_ARGUMENTS = -106,
+
             // Last icode
-            MIN_ICODE = -74;
+            MIN_ICODE = -106;
 
     protected static String bytecodeName(int bytecode) {
         if (!validBytecode(bytecode)) {
@@ -311,12 +369,302 @@ public abstract class Icode {
                 return "LOAD_BIGINT4";
             case Icode_TEMPLATE_LITERAL_CALLSITE:
                 return "TEMPLATE_LITERAL_CALLSITE";
+            case Icode_ADD_NUM:
+                return "ADD_NUM";
+            case Icode_SUB_NUM:
+                return "SUB_NUM";
+            case Icode_MUL_NUM:
+                return "MUL_NUM";
+            case Icode_DIV_NUM:
+                return "DIV_NUM";
+            case Icode_MOD_NUM:
+                return "MOD_NUM";
+            case Icode_LT_NUM:
+                return "LT_NUM";
+            case Icode_LE_NUM:
+                return "LE_NUM";
+            case Icode_GT_NUM:
+                return "GT_NUM";
+            case Icode_GE_NUM:
+                return "GE_NUM";
+            case Icode_BITAND_INT:
+                return "BITAND_INT";
+            case Icode_BITOR_INT:
+                return "BITOR_INT";
+            case Icode_BITXOR_INT:
+                return "BITXOR_INT";
+            case Icode_LSH_INT:
+                return "LSH_INT";
+            case Icode_RSH_INT:
+                return "RSH_INT";
+            case Icode_LT_NUM_IF:
+                return "LT_NUM_IF";
+            case Icode_LE_NUM_IF:
+                return "LE_NUM_IF";
+            case Icode_GT_NUM_IF:
+                return "GT_NUM_IF";
+            case Icode_GE_NUM_IF:
+                return "GE_NUM_IF";
+            case Icode_GETVAR1_GETPROP:
+                return "GETVAR1_GETPROP";
+            case Icode_THIS_GETPROP:
+                return "THIS_GETPROP";
+            case Icode_VAR_ADD_CONST:
+                return "VAR_ADD_CONST";
+            case Icode_VAR_INC_DEC_POP:
+                return "VAR_INC_DEC_POP";
+            case Icode_GETPROP_VAR:
+                return "GETPROP_VAR";
+            case Icode_GETPROP_STR:
+                return "GETPROP_STR";
+            case Icode_SETPROP_STR:
+                return "SETPROP_STR";
+            case Icode_NAME_STR:
+                return "NAME_STR";
+            case Icode_BINOP_VAR_VAR:
+                return "BINOP_VAR_VAR";
+            case Icode_BINOP_VAR_CONST:
+                return "BINOP_VAR_CONST";
+            case Icode_MOVE_VAR:
+                return "MOVE_VAR";
+            case Icode_SETVAR_POP:
+                return "SETVAR_POP";
+            case Icode_GETELEM_VAR_VAR:
+                return "GETELEM_VAR_VAR";
+            case Icode_ARGUMENTS:
+                return "ARGUMENTS";
         }
 
         // icode without name
         throw new IllegalStateException(String.valueOf(bytecode));
     }
 
+    /**
+     * @return the length of the instruction starting with bytecode, including its operands. The
+     *     span of a superinstruction covers only the opcode it replaced.
+     */
+    protected static int bytecodeSpan(int bytecode) {
+        switch (bytecode) {
+            case Token.THROW:
+            case Token.YIELD:
+            case Icode_YIELD_STAR:
+            case Icode_GENERATOR:
+            case Icode_GENERATOR_END:
+            case Icode_GENERATOR_RETURN:
+                // source line
+                return 1 + 2;
+
+            case Icode_GOSUB:
+            case Token.GOTO:
+            case Token.IFEQ:
+            case Token.IFNE:
+            case Icode_IFEQ_POP:
+            case Icode_LEAVEDQ:
+                // target pc offset
+                return 1 + 2;
+
+            case Icode_CALLSPECIAL:
+                // call type
+                // is new
+                // line number
+                return 1 + 1 + 1 + 2;
+
+            case Token.CATCH_SCOPE:
+                // scope flag
+                return 1 + 1;
+
+            case Icode_VAR_INC_DEC:
+            case Icode_VAR_INC_DEC_POP:
+            case Icode_NAME_INC_DEC:
+            case Icode_PROP_INC_DEC:
+            case Icode_ELEM_INC_DEC:
+            case Icode_REF_INC_DEC:
+                // type of ++/--
+                return 1 + 1;
+
+            case Icode_SHORTNUMBER:
+                // short number
+                return 1 + 2;
+
+            case Icode_INTNUMBER:
+                // int number
+                return 1 + 4;
+
+            case Icode_REG_IND1:
+                // ubyte index
+                return 1 + 1;
+
+            case Icode_REG_IND2:
+                // ushort index
+                return 1 + 2;
+
+            case Icode_REG_IND4:
+                // int index
+                return 1 + 4;
+
+            case Icode_REG_STR1:
+                // ubyte string index
+                return 1 + 1;
+
+            case Icode_REG_STR2:
+                // ushort string index
+                return 1 + 2;
+
+            case Icode_REG_STR4:
+                // int string index
+                return 1 + 4;
+
+            case Icode_GETVAR1:
+            case Icode_SETVAR1:
+            case Icode_SETCONSTVAR1:
+            case Icode_GETVAR1_GETPROP:
+            case Icode_VAR_ADD_CONST:
+                // byte var index
+                return 1 + 1;
+
+            case Icode_LINE:
+                // line number
+                return 1 + 2;
+
+            case Icode_SETVAR_POP:
+                // ubyte var index
+                return 1 + 1;
+
+            case Icode_GETPROP_STR:
+            case Icode_SETPROP_STR:
+            case Icode_NAME_STR:
+                // ushort string index
+                return 1 + 2;
+
+            case Icode_MOVE_VAR:
+            case Icode_GETELEM_VAR_VAR:
+                // two ubyte var indexes
+                return 1 + 1 + 1;
+
+            case Icode_GETPROP_VAR:
+                // ubyte var index
+                // ushort string index
+                return 1 + 1 + 2;
+
+            case Icode_BINOP_VAR_VAR:
+                // operation token
+                // two ubyte var indexes
+                return 1 + 1 + 1 + 1;
+
+            case Icode_BINOP_VAR_CONST:
+                // operation token
+                // ubyte var index
+                // short number
+                return 1 + 1 + 1 + 2;
+        }
+        if (!validBytecode(bytecode)) throw Kit.codeBug();
+        return 1;
+    }
+
+    /**
+     * Map a superinstruction back to the opcode it was written over.
+     *
+     * @return the replaced opcode, or bytecode itself if it is not a superinstruction
+     */
+    protected static int unfusedOp(int bytecode) {
+        switch (bytecode) {
+            case Icode_LT_NUM_IF:
+                return Icode_LT_NUM;
+            case Icode_LE_NUM_IF:
+                return Icode_LE_NUM;
+            case Icode_GT_NUM_IF:
+                return Icode_GT_NUM;
+            case Icode_GE_NUM_IF:
+                return Icode_GE_NUM;
+            case Icode_GETVAR1_GETPROP:
+            case Icode_VAR_ADD_CONST:
+                return Icode_GETVAR1;
+            case Icode_THIS_GETPROP:
+                return Token.THIS;
+            case Icode_VAR_INC_DEC_POP:
+                return Icode_VAR_INC_DEC;
+        }
+        return bytecode;
+    }
+
+    /**
+     * Map a numeric icode back to the token of the operation it specializes.
+     *
+     * @return the generic token, or bytecode itself if it is not a numeric icode
+     */
+    protected static int genericOp(int bytecode) {
+        switch (bytecode) {
+            case Icode_ADD_NUM:
+                return Token.ADD;
+            case Icode_SUB_NUM:
+                return Token.SUB;
+            case Icode_MUL_NUM:
+                return Token.MUL;
+            case Icode_DIV_NUM:
+                return Token.DIV;
+            case Icode_MOD_NUM:
+                return Token.MOD;
+            case Icode_LT_NUM:
+                return Token.LT;
+            case Icode_LE_NUM:
+                return Token.LE;
+            case Icode_GT_NUM:
+                return Token.GT;
+            case Icode_GE_NUM:
+                return Token.GE;
+            case Icode_BITAND_INT:
+                return Token.BITAND;
+            case Icode_BITOR_INT:
+                return Token.BITOR;
+            case Icode_BITXOR_INT:
+                return Token.BITXOR;
+            case Icode_LSH_INT:
+                return Token.LSH;
+            case Icode_RSH_INT:
+                return Token.RSH;
+        }
+        return bytecode;
+    }
+
+    /**
+     * Map the token of an arithmetic, comparison or bitwise operation to its numeric icode.
+     *
+     * @return the numeric icode, or token itself if the operation has none
+     */
+    static int numericOp(int token) {
+        switch (token) {
+            case Token.ADD:
+                return Icode_ADD_NUM;
+            case Token.SUB:
+                return Icode_SUB_NUM;
+            case Token.MUL:
+                return Icode_MUL_NUM;
+            case Token.DIV:
+                return Icode_DIV_NUM;
+            case Token.MOD:
+                return Icode_MOD_NUM;
+            case Token.LT:
+                return Icode_LT_NUM;
+            case Token.LE:
+                return Icode_LE_NUM;
+            case Token.GT:
+                return Icode_GT_NUM;
+            case Token.GE:
+                return Icode_GE_NUM;
+            case Token.BITAND:
+                return Icode_BITAND_INT;
+            case Token.BITOR:
+                return Icode_BITOR_INT;
+            case Token.BITXOR:
+                return Icode_BITXOR_INT;
+            case Token.LSH:
+                return Icode_LSH_INT;
+            case Token.RSH:
+                return Icode_RSH_INT;
+        }
+        return token;
+    }
+
     static boolean validIcode(int icode) {
         return MIN_ICODE <= icode && icode <= 0;
     }
@@ -0,0 +1,194 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.ir;
+
+import org.redukti.cer.parser.Token;
+
+/**
+ * Peephole pass over the icode of a finished script or function. Common instruction sequences
+ * get their first opcode replaced by a superinstruction that the interpreter runs with a single
+ * dispatch.
+ *
+ * <p>Only opcodes are rewritten, so the length and layout of the icode do not change and jump
+ * offsets, exception tables, line numbers and inline cache slots stay valid. A sequence is only
+ * fused when no instruction after its first one can be entered other than by falling through.
+ */
+final class IcodeOptimizer extends Icode {
+
+    private final InterpreterData idata;
+    private final byte[] iCode;
+
+    // isEntry[pc] is true if the instruction at pc can be reached by a jump, a return from a
+    // finally block, an exception handler or the resumption of a generator
+    private boolean[] isEntry;
+
+    IcodeOptimizer(InterpreterData idata) {
+        this.idata = idata;
+        this.iCode = idata.itsICode;
+    }
+
+    void optimize() {
+        findEntries();
+        for (int pc = 0; pc < iCode.length; ) {
+            pc += fuse(pc);
+        }
+    }
+
+    private void findEntries() {
+        int length = iCode.length;
+        isEntry = new boolean[length + 1];
+        for (int pc = 0; pc < length; ) {
+            int op = iCode[pc];
+            int span = bytecodeSpan(op);
+            switch (op) {
+                case Icode_GOSUB:
+                    // Icode_RETSUB returns to the next instruction
+                    isEntry[pc + span] = true;
+                    // fallthrough
+                case Token.GOTO:
+                case Token.IFEQ:
+                case Token.IFNE:
+                case Icode_IFEQ_POP:
+                case Icode_LEAVEDQ:
+                    isEntry[jumpTarget(pc)] = true;
+                    break;
+                case Icode_GENERATOR:
+                case Token.YIELD:
+                case Icode_YIELD_STAR:
+                    isEntry[pc + span] = true;
+                    break;
+            }
+            pc += span;
+        }
+        int[] table = idata.itsExceptionTable;
+        if (table != null) {
+            for (int i = 0; i < table.length; i += InterpreterConstants.EXCEPTION_SLOT_SIZE) {
+                isEntry[table[i + InterpreterConstants.EXCEPTION_TRY_START_SLOT]] = true;
+                isEntry[table[i + InterpreterConstants.EXCEPTION_TRY_END_SLOT]] = true;
+                isEntry[table[i + InterpreterConstants.EXCEPTION_HANDLER_SLOT]] = true;
+            }
+        }
+    }
+
+    private int jumpTarget(int pc) {
+        int offset = (iCode[pc + 1] << 8) | (iCode[pc + 2] & 0xFF);
+        if (offset != 0) {
+            return pc + offset;
+        }
+        return idata.longJumps.getExistingInt(pc + 1);
+    }
+
+    /**
+     * Try to fuse the sequence starting at pc.
+     *
+     * @return the number of bytes to move on by
+     */
+    private int fuse(int pc) {
+        int op = iCode[pc];
+        int span = bytecodeSpan(op);
+        switch (op) {
+            case Icode_LT_NUM:
+            case Icode_LE_NUM:
+            case Icode_GT_NUM:
+            case Icode_GE_NUM:
+                {
+                    int next = opAt(pc + span);
+                    if (next == Token.IFEQ || next == Token.IFNE) {
+                        iCode[pc] = (byte) (Icode_LT_NUM_IF - (Icode_LT_NUM - op));
+                        return span + bytecodeSpan(next);
+                    }
+                    break;
+                }
+            case Icode_GETVAR1:
+                {
+                    int length = propertyGetLength(pc + span);
+                    if (length > 0) {
+                        iCode[pc] = Icode_GETVAR1_GETPROP;
+                        return span + length;
+                    }
+                    length = addConstLength(pc, iCode[pc + 1]);
+                    if (length > 0) {
+                        iCode[pc] = Icode_VAR_ADD_CONST;
+                        return length;
+                    }
+                    break;
+                }
+            case Token.THIS:
+                {
+                    int length = propertyGetLength(pc + span);
+                    if (length > 0) {
+                        iCode[pc] = Icode_THIS_GETPROP;
+                        return span + length;
+                    }
+                    break;
+                }
+            case Icode_VAR_INC_DEC:
+                if (opAt(pc + span) == Icode_POP) {
+                    iCode[pc] = Icode_VAR_INC_DEC_POP;
+                    return span + 1;
+                }
+                break;
+        }
+        return span;
+    }
+
+    /**
+     * @return the opcode of the instruction at pc if it can only be reached from the instruction
+     *     before it, or a value that is no opcode otherwise
+     */
+    private int opAt(int pc) {
+        if (pc >= iCode.length || isEntry[pc]) {
+            return Integer.MIN_VALUE;
+        }
+        return iCode[pc];
+    }
+
+    /** @return the length of a one byte string register load and GETPROP at pc, or 0 */
+    private int propertyGetLength(int pc) {
+        int op = opAt(pc);
+        int span;
+        if (op == Icode_REG_STR_C0
+                || op == Icode_REG_STR_C1
+                || op == Icode_REG_STR_C2
+                || op == Icode_REG_STR_C3
+                || op == Icode_REG_STR1) {
+            span = bytecodeSpan(op);
+        } else {
+            return 0;
+        }
+        if (opAt(pc + span) != Token.GETPROP) {
+            return 0;
+        }
+        return span + 1;
+    }
+
+    /**
+     * @return the length of GETVAR1 index, ONE or SHORTNUMBER, ADD or SUB, SETVAR1 index, POP
+     *     at pc, or 0
+     */
+    private int addConstLength(int pc, int index) {
+        int end = pc + bytecodeSpan(Icode_GETVAR1);
+        int op = opAt(end);
+        if (op != Icode_ONE && op != Icode_SHORTNUMBER) {
+            return 0;
+        }
+        end += bytecodeSpan(op);
+        op = genericOp(opAt(end));
+        if (op != Token.ADD && op != Token.SUB) {
+            return 0;
+        }
+        end += 1;
+        if (opAt(end) != Icode_SETVAR1 || iCode[end + 1] != index) {
+            return 0;
+        }
+        end += bytecodeSpan(Icode_SETVAR1);
+        if (opAt(end) != Icode_POP) {
+            return 0;
+        }
+        return end + 1 - pc;
+    }
+}
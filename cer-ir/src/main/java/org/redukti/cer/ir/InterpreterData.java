@@ -48,6 +48,8 @@ public final class InterpreterData implements Serializable, DebuggableScript {
     public String itsName;
     public String itsSourceFile;
     public boolean itsNeedsActivation;
+    // true if the function creates its arguments object on demand, without an activation
+    public boolean itsUsesArguments;
     public int itsFunctionType;
 
     public String[] itsStringTable;
@@ -69,6 +71,10 @@ public final class InterpreterData implements Serializable, DebuggableScript {
     // see comments in NativeFuncion for definition of argNames and argCount
     public String[] argNames;
     public boolean[] argIsConst;
+    // For a function that only has an activation for its closures, argIsCaptured[i] is true if
+    // the closures can refer to variable i, which then lives in the activation instead of the
+    // frame; null for other functions
+    public boolean[] argIsCaptured;
     public int argCount;
 
     int itsMaxCalleeArgs;
@@ -101,6 +107,32 @@ public final class InterpreterData implements Serializable, DebuggableScript {
     /** true if the function has been declared like "!function() {}". */
     public boolean declaredAsFunctionExpression;
 
+    /**
+     * JVM bytecode generated for this body by the optimizer, or null while the body only runs in
+     * the interpreter. The runtime types are not visible from here, so the value is kept opaque.
+     */
+    public transient volatile Object itsCompiledCode;
+
+    /**
+     * Compiler to hand this body to once it gets hot, or null if the body is not eligible for
+     * compilation or has already been handed over.
+     */
+    public transient volatile Object itsTierUpCompiler;
+
+    /** Number of interpreted invocations, counted while itsTierUpCompiler is set. */
+    public transient volatile int itsInvocationCount;
+
+    /** Number of interpreted backward jumps, counted while itsTierUpCompiler is set. */
+    public transient volatile int itsBackEdgeCount;
+
+    /**
+     * Inline caches of the named property accesses and name lookups, indexed by the pc of the
+     * accessing instruction. Allocated by the interpreter on first use and published through
+     * this volatile field. The caches stored in it may be read by other threads without
+     * synchronization, which they tolerate.
+     */
+    public transient volatile Object[] itsPropertyCaches;
+
     @Override
     public boolean isTopLevel() {
         return topLevel;
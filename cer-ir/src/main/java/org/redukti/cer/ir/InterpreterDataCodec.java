@@ -0,0 +1,459 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.ir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import org.redukti.cer.RuntimeContext;
+import org.redukti.cer.utils.RegExpProxy;
+import org.redukti.cer.utils.UintMap;
+
+/**
+ * Writes compiled {@link InterpreterData} in a compact binary format and reads it back, so that
+ * compiled scripts can be stored outside of the JVM without Java serialization.
+ *
+ * <p>The format starts with a magic number and {@link #FORMAT_VERSION}, followed by the script
+ * and its nested functions. Data read back is only valid for the same format version; the
+ * version must be incremented whenever the format or the meaning of the icode changes. Regular
+ * expression literals are stored as source and flags and compiled again when read.
+ */
+public final class InterpreterDataCodec {
+
+    private static final int MAGIC = 0x43455243; // "CERC"
+
+    /** Version of the format and of the icode it contains. */
+    public static final int FORMAT_VERSION = 5;
+
+    private static final byte LITERAL_IDS = 0;
+    private static final byte SKIP_INDEXES = 1;
+    private static final byte KEY_STRING = 0;
+    private static final byte KEY_INDEX = 1;
+
+    private InterpreterDataCodec() {}
+
+    /**
+     * Write a compiled script or function, which must not have been executed yet.
+     *
+     * @param rep used to take apart the regular expression literals
+     */
+    public static void encode(InterpreterData idata, RegExpProxy rep, DataOutputStream out)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeString(out, idata.encodedSource);
+        writeData(out, idata, rep);
+    }
+
+    /**
+     * Read a compiled script or function written by {@link #encode}.
+     *
+     * @param cx used to compile the regular expression literals
+     * @return the compiled code, or null if the data was written by another format version
+     * @throws IllegalArgumentException if the data is corrupt
+     */
+    public static InterpreterData decode(ByteBuffer in, RuntimeContext cx) {
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            String encodedSource = readString(in);
+            InterpreterData idata = readData(in, null, encodedSource, cx);
+            if (in.hasRemaining()) {
+                throw new IllegalArgumentException("Trailing data");
+            }
+            return idata;
+        } catch (BufferUnderflowException | ClassCastException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Corrupt compiled code", e);
+        }
+    }
+
+    private static void writeData(DataOutputStream out, InterpreterData idata, RegExpProxy rep)
+            throws IOException {
+        writeString(out, idata.itsName);
+        writeString(out, idata.itsSourceFile);
+        out.writeInt(idata.itsFunctionType);
+        out.writeInt(idata.languageVersion);
+        out.writeByte(
+                (idata.itsNeedsActivation ? 1 : 0)
+                        | (idata.isStrict ? 2 : 0)
+                        | (idata.topLevel ? 4 : 0)
+                        | (idata.isES6Generator ? 8 : 0)
+                        | (idata.evalScriptFlag ? 16 : 0)
+                        | (idata.declaredAsVar ? 32 : 0)
+                        | (idata.declaredAsFunctionExpression ? 64 : 0)
+                        | (idata.itsUsesArguments ? 128 : 0));
+
+        writeStrings(out, idata.itsStringTable);
+        if (idata.itsDoubleTable == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(idata.itsDoubleTable.length);
+            for (double d : idata.itsDoubleTable) {
+                out.writeDouble(d);
+            }
+        }
+        if (idata.itsBigIntTable == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(idata.itsBigIntTable.length);
+            for (BigInteger b : idata.itsBigIntTable) {
+                writeBytes(out, b == null ? null : b.toByteArray());
+            }
+        }
+        if (idata.itsRegExpLiterals == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(idata.itsRegExpLiterals.length);
+            for (Object re : idata.itsRegExpLiterals) {
+                String[] sourceAndFlags = rep.getRegExpSourceAndFlags(re);
+                writeString(out, sourceAndFlags[0]);
+                writeString(out, sourceAndFlags[1]);
+            }
+        }
+        if (idata.itsTemplateLiterals == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(idata.itsTemplateLiterals.length);
+            for (Object strings : idata.itsTemplateLiterals) {
+                writeStrings(out, (String[]) strings);
+            }
+        }
+
+        writeBytes(out, idata.itsICode);
+        writeInts(out, idata.itsExceptionTable);
+        out.writeInt(idata.itsMaxVars);
+        out.writeInt(idata.itsMaxLocals);
+        out.writeInt(idata.itsMaxStack);
+        out.writeInt(idata.itsMaxFrameArray);
+        out.writeInt(idata.itsMaxCalleeArgs);
+        out.writeInt(idata.firstLinePC);
+
+        writeStrings(out, idata.argNames);
+        writeBooleans(out, idata.argIsConst);
+        writeBooleans(out, idata.argIsCaptured);
+        out.writeInt(idata.argCount);
+        out.writeInt(idata.encodedSourceStart);
+        out.writeInt(idata.encodedSourceEnd);
+
+        if (idata.literalIds == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(idata.literalIds.length);
+            for (Object ids : idata.literalIds) {
+                if (ids instanceof int[]) {
+                    out.writeByte(SKIP_INDEXES);
+                    writeInts(out, (int[]) ids);
+                } else {
+                    Object[] keys = (Object[]) ids;
+                    out.writeByte(LITERAL_IDS);
+                    out.writeInt(keys.length);
+                    for (Object key : keys) {
+                        if (key instanceof Integer) {
+                            out.writeByte(KEY_INDEX);
+                            out.writeInt(((Integer) key).intValue());
+                        } else {
+                            out.writeByte(KEY_STRING);
+                            writeString(out, (String) key);
+                        }
+                    }
+                }
+            }
+        }
+        if (idata.longJumps == null) {
+            out.writeInt(-1);
+        } else {
+            int[] keys = idata.longJumps.getKeys();
+            out.writeInt(keys.length);
+            for (int key : keys) {
+                out.writeInt(key);
+                out.writeInt(idata.longJumps.getExistingInt(key));
+            }
+        }
+
+        if (idata.itsNestedFunctions == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(idata.itsNestedFunctions.length);
+            for (InterpreterData nested : idata.itsNestedFunctions) {
+                writeData(out, nested, rep);
+            }
+        }
+    }
+
+    private static InterpreterData readData(
+            ByteBuffer in, InterpreterData parent, String encodedSource, RuntimeContext cx) {
+        String name = readString(in);
+        String sourceFile = readString(in);
+        int functionType = in.getInt();
+        int languageVersion = in.getInt();
+        int bits = in.get();
+
+        InterpreterData idata;
+        if (parent == null) {
+            idata =
+                    new InterpreterData(
+                            languageVersion, sourceFile, encodedSource, (bits & 2) != 0);
+        } else {
+            idata = new InterpreterData(parent);
+            idata.itsSourceFile = sourceFile;
+            idata.languageVersion = languageVersion;
+            idata.isStrict = (bits & 2) != 0;
+        }
+        idata.itsName = name;
+        idata.itsFunctionType = functionType;
+        idata.itsNeedsActivation = (bits & 1) != 0;
+        idata.topLevel = (bits & 4) != 0;
+        idata.isES6Generator = (bits & 8) != 0;
+        idata.evalScriptFlag = (bits & 16) != 0;
+        idata.declaredAsVar = (bits & 32) != 0;
+        idata.declaredAsFunctionExpression = (bits & 64) != 0;
+        idata.itsUsesArguments = (bits & 128) != 0;
+
+        idata.itsStringTable = readStrings(in);
+        int count = readCount(in, 8);
+        if (count >= 0) {
+            double[] doubles = new double[count];
+            for (int i = 0; i != count; i++) {
+                doubles[i] = in.getDouble();
+            }
+            idata.itsDoubleTable = doubles;
+        } else {
+            idata.itsDoubleTable = null;
+        }
+        count = readCount(in, 4);
+        if (count >= 0) {
+            BigInteger[] bigInts = new BigInteger[count];
+            for (int i = 0; i != count; i++) {
+                byte[] bytes = readBytes(in);
+                bigInts[i] = bytes == null ? null : new BigInteger(bytes);
+            }
+            idata.itsBigIntTable = bigInts;
+        } else {
+            idata.itsBigIntTable = null;
+        }
+        count = readCount(in, 8);
+        if (count >= 0) {
+            RegExpProxy rep = cx.getRegExpProxy();
+            Object[] regExps = new Object[count];
+            for (int i = 0; i != count; i++) {
+                String source = readString(in);
+                String flags = readString(in);
+                regExps[i] = rep.compileRegExp(cx, source, flags);
+            }
+            idata.itsRegExpLiterals = regExps;
+        }
+        count = readCount(in, 4);
+        if (count >= 0) {
+            Object[] templates = new Object[count];
+            for (int i = 0; i != count; i++) {
+                templates[i] = readStrings(in);
+            }
+            idata.itsTemplateLiterals = templates;
+        }
+
+        idata.itsICode = readBytes(in);
+        idata.itsExceptionTable = readInts(in);
+        idata.itsMaxVars = in.getInt();
+        idata.itsMaxLocals = in.getInt();
+        idata.itsMaxStack = in.getInt();
+        idata.itsMaxFrameArray = in.getInt();
+        idata.itsMaxCalleeArgs = in.getInt();
+        idata.firstLinePC = in.getInt();
+
+        idata.argNames = readStrings(in);
+        idata.argIsConst = readBooleans(in);
+        idata.argIsCaptured = readBooleans(in);
+        idata.argCount = in.getInt();
+        idata.encodedSourceStart = in.getInt();
+        idata.encodedSourceEnd = in.getInt();
+
+        count = readCount(in, 1);
+        if (count >= 0) {
+            Object[] literalIds = new Object[count];
+            for (int i = 0; i != count; i++) {
+                if (in.get() == SKIP_INDEXES) {
+                    literalIds[i] = readInts(in);
+                } else {
+                    Object[] keys = new Object[readCount(in, 1)];
+                    for (int j = 0; j != keys.length; j++) {
+                        if (in.get() == KEY_INDEX) {
+                            keys[j] = Integer.valueOf(in.getInt());
+                        } else {
+                            keys[j] = readString(in);
+                        }
+                    }
+                    literalIds[i] = keys;
+                }
+            }
+            idata.literalIds = literalIds;
+        }
+        count = readCount(in, 8);
+        if (count >= 0) {
+            UintMap longJumps = new UintMap();
+            for (int i = 0; i != count; i++) {
+                int key = in.getInt();
+                longJumps.put(key, in.getInt());
+            }
+            idata.longJumps = longJumps;
+        }
+
+        count = readCount(in, 1);
+        if (count >= 0) {
+            InterpreterData[] nested = new InterpreterData[count];
+            for (int i = 0; i != count; i++) {
+                nested[i] = readData(in, idata, encodedSource, cx);
+            }
+            idata.itsNestedFunctions = nested;
+        }
+        return idata;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        int length = s.length();
+        out.writeInt(length);
+        boolean latin1 = true;
+        for (int i = 0; i != length; i++) {
+            if (s.charAt(i) > 0xFF) {
+                latin1 = false;
+                break;
+            }
+        }
+        out.writeBoolean(latin1);
+        for (int i = 0; i != length; i++) {
+            if (latin1) {
+                out.writeByte(s.charAt(i));
+            } else {
+                out.writeChar(s.charAt(i));
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readCount(in, 1);
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        if (in.get() != 0) {
+            for (int i = 0; i != length; i++) {
+                chars[i] = (char) (in.get() & 0xFF);
+            }
+        } else {
+            in.asCharBuffer().get(chars);
+            in.position(in.position() + 2 * length);
+        }
+        return new String(chars);
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        if (strings == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(strings.length);
+        for (String s : strings) {
+            writeString(out, s);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer in) {
+        int count = readCount(in, 4);
+        if (count < 0) {
+            return null;
+        }
+        String[] strings = new String[count];
+        for (int i = 0; i != count; i++) {
+            strings[i] = readString(in);
+        }
+        return strings;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        int length = readCount(in, 1);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static void writeBooleans(DataOutputStream out, boolean[] booleans)
+            throws IOException {
+        if (booleans == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(booleans.length);
+        for (boolean b : booleans) {
+            out.writeBoolean(b);
+        }
+    }
+
+    private static boolean[] readBooleans(ByteBuffer in) {
+        int length = readCount(in, 1);
+        if (length < 0) {
+            return null;
+        }
+        boolean[] booleans = new boolean[length];
+        for (int i = 0; i != length; i++) {
+            booleans[i] = in.get() != 0;
+        }
+        return booleans;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] ints) throws IOException {
+        if (ints == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(ints.length);
+        for (int i : ints) {
+            out.writeInt(i);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer in) {
+        int length = readCount(in, 4);
+        if (length < 0) {
+            return null;
+        }
+        int[] ints = new int[length];
+        in.asIntBuffer().get(ints);
+        in.position(in.position() + 4 * length);
+        return ints;
+    }
+
+    /**
+     * Read the length of an array, or a negative number for null. A length that the remaining
+     * data cannot hold, with elements of at least elementSize bytes, is taken as corrupt data
+     * before the array is allocated.
+     */
+    private static int readCount(ByteBuffer in, int elementSize) {
+        int count = in.getInt();
+        if (count > in.remaining() / elementSize) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+}
@@ -7,7 +7,9 @@
 package org.redukti.cer.ir;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.redukti.cer.CompilerEnvirons;
 import org.redukti.cer.Versions;
@@ -61,6 +63,12 @@ public class NodeTransformer {
         boolean createScopeObjects =
                 tree.getType() != Token.FUNCTION || ((FunctionNode) tree).requiresActivation();
         tree.flattenSymbolTable(!createScopeObjects);
+        if (tree.getType() == Token.FUNCTION) {
+            FunctionNode fn = (FunctionNode) tree;
+            if (fn.requiresActivation() && !fn.requiresFullActivation() && !fn.isGenerator()) {
+                fn.setClosureVars(findClosureVars(fn));
+            }
+        }
 
         // uncomment to print tree before transformation
         if (Token.printTrees) System.out.println(tree.toStringTree(tree));
@@ -311,8 +319,10 @@ public class NodeTransformer {
 
                 case Token.TYPEOFNAME:
                     {
-                        Scope defining = scope.getDefiningScope(node.getString());
-                        if (defining != null) {
+                        String name = node.getString();
+                        Scope defining = scope.getDefiningScope(name);
+                        if (defining != null
+                                && (!createScopeObjects || isFrameVar(tree, defining, name))) {
                             node.setScope(defining);
                         }
                     }
@@ -358,7 +368,7 @@ public class NodeTransformer {
                 case Token.DELPROP:
                     {
                         // Turn name to var for faster access if possible
-                        if (createScopeObjects) {
+                        if (createScopeObjects && !hasFrameVars(tree)) {
                             break;
                         }
                         Node nameSource;
@@ -378,7 +388,8 @@ public class NodeTransformer {
                         }
                         String name = nameSource.getString();
                         Scope defining = scope.getDefiningScope(name);
-                        if (defining != null) {
+                        if (defining != null
+                                && (!createScopeObjects || isFrameVar(tree, defining, name))) {
                             nameSource.setScope(defining);
                             if (type == Token.NAME) {
                                 node.setType(Token.GETVAR);
@@ -409,6 +420,117 @@ public class NodeTransformer {
         }
     }
 
+    /**
+     * Return true if tree is a function that keeps some of its variables in the call frame even
+     * though it has an activation object.
+     */
+    private static boolean hasFrameVars(ScriptNode tree) {
+        return tree.getType() == Token.FUNCTION && ((FunctionNode) tree).getClosureVars() != null;
+    }
+
+    /**
+     * Return true if the variable name that defining declares is a variable of the call frame of
+     * tree, which has an activation object.
+     */
+    private static boolean isFrameVar(ScriptNode tree, Scope defining, String name) {
+        return defining == tree
+                && hasFrameVars(tree)
+                && !((FunctionNode) tree).getClosureVars().contains(name);
+    }
+
+    /**
+     * Find the variables of fn that the functions nested in it can refer to. These have to live
+     * in the activation object of fn, where the closures look them up by name.
+     *
+     * @return the names of the variables, or null if a nested function calls eval and so can
+     *     refer to any variable
+     */
+    private static Set<String> findClosureVars(FunctionNode fn) {
+        Set<String> freeNames = new HashSet<String>();
+        for (int i = 0; i != fn.getFunctionCount(); ++i) {
+            Set<String> nestedNames = findFreeNames(fn.getFunctionNode(i));
+            if (nestedNames == null) {
+                return null;
+            }
+            freeNames.addAll(nestedNames);
+        }
+        Set<String> closureVars = new HashSet<String>();
+        String[] varNames = fn.getParamAndVarNames();
+        for (int i = 0; i != varNames.length; ++i) {
+            // Function statements and a variable named arguments get their initial values in
+            // the activation object
+            String name = varNames[i];
+            if (freeNames.contains(name)
+                    || fn.getSymbol(name).getDeclType() == Token.FUNCTION
+                    || "arguments".equals(name)) {
+                closureVars.add(name);
+            }
+        }
+        if (fn.usesArguments() || freeNames.contains("arguments")) {
+            // The arguments object maps its elements to the parameters in the activation object
+            for (int i = 0; i != fn.getParamCount(); ++i) {
+                closureVars.add(varNames[i]);
+            }
+        }
+        return closureVars;
+    }
+
+    /**
+     * Find the names that fn and the functions nested in it refer to without declaring them.
+     *
+     * @return the names, or null if one of the functions calls eval
+     */
+    private static Set<String> findFreeNames(FunctionNode fn) {
+        Set<String> names = new HashSet<String>();
+        boolean ownArguments = fn.getFunctionType() != FunctionNode.ARROW_FUNCTION;
+        if (!addFreeNames(fn, fn, ownArguments, names)) {
+            return null;
+        }
+        for (int i = 0; i != fn.getFunctionCount(); ++i) {
+            Set<String> nestedNames = findFreeNames(fn.getFunctionNode(i));
+            if (nestedNames == null) {
+                return null;
+            }
+            for (String name : nestedNames) {
+                if (fn.getSymbol(name) == null && !(ownArguments && "arguments".equals(name))) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    private static boolean addFreeNames(
+            Node node, Scope scope, boolean ownArguments, Set<String> names) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNext()) {
+            switch (child.getType()) {
+                case Token.NAME:
+                case Token.BINDNAME:
+                case Token.TYPEOFNAME:
+                    {
+                        String name = child.getString();
+                        if (scope.getDefiningScope(name) == null
+                                && !(ownArguments && "arguments".equals(name))) {
+                            names.add(name);
+                        }
+                        break;
+                    }
+                case Token.CALL:
+                case Token.NEW:
+                    if (child.getIntProp(Node.SPECIALCALL_PROP, Node.NON_SPECIALCALL)
+                            != Node.NON_SPECIALCALL) {
+                        return false;
+                    }
+                    break;
+            }
+            Scope childScope = child instanceof Scope ? (Scope) child : scope;
+            if (!addFreeNames(child, childScope, ownArguments, names)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     protected void visitNew(Node node, ScriptNode tree) {}
 
     protected void visitCall(Node node, ScriptNode tree) {}
@@ -3720,7 +3720,8 @@ public class Parser {
                 // An arrow function not generate arguments. So it not need activation.
                 ((FunctionNode) currentScriptOrFn).getFunctionType()
                         != FunctionNode.ARROW_FUNCTION) {
-            activation = true;
+            // Whether this needs an activation is decided once the whole function is known
+            ((FunctionNode) currentScriptOrFn).setUsesArguments();
         } else if (compilerEnv.getActivationNames() != null
                 && compilerEnv.getActivationNames().contains(name)) {
             activation = true;
@@ -11,6 +11,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.redukti.cer.parser.Node;
 import org.redukti.cer.parser.Token;
 
@@ -85,6 +86,9 @@ public class FunctionNode extends ScriptNode {
     // codegen variables
     private int functionType;
     private boolean needsActivation;
+    private boolean needsFullActivation;
+    private Set<String> closureVars;
+    private boolean usesArguments;
     private boolean isGenerator;
     private boolean isES6Generator;
     private List<Node> generatorResumePoints;
@@ -266,6 +270,47 @@ public class FunctionNode extends ScriptNode {
 
     public void setRequiresActivation() {
         needsActivation = true;
+        needsFullActivation = true;
+    }
+
+    /** Record that this function needs an activation object for the closures it contains. */
+    public void setRequiresClosureActivation() {
+        needsActivation = true;
+    }
+
+    /**
+     * Return true if this function needs an activation object for a reason other than the
+     * closures it contains, such as eval or with. All its variables then have to live in the
+     * activation object.
+     */
+    public boolean requiresFullActivation() {
+        return needsFullActivation;
+    }
+
+    /**
+     * Return the names of the variables of this function that its closures can refer to, or null
+     * if all its variables live in the activation object. Only these are put in the activation
+     * object, the other variables stay in the call frame.
+     */
+    public Set<String> getClosureVars() {
+        return closureVars;
+    }
+
+    public void setClosureVars(Set<String> closureVars) {
+        this.closureVars = closureVars;
+    }
+
+    /**
+     * Return true if this function refers to its arguments object. Unless something else requires
+     * an activation object, the interpreter then creates the arguments object when it is first
+     * used.
+     */
+    public boolean usesArguments() {
+        return usesArguments;
+    }
+
+    public void setUsesArguments() {
+        usesArguments = true;
     }
 
     public boolean isGenerator() {
@@ -25,16 +25,22 @@ final class Arguments extends IdScriptableObject {
     private static final String FTAG = "Arguments";
 
     public Arguments(NativeCall activation) {
+        this(activation.function, activation.getParentScope(), activation.originalArgs);
         this.activation = activation;
+    }
 
-        Scriptable parent = activation.getParentScope();
+    /**
+     * Create the arguments object of a call without an activation object. Its elements are not
+     * mapped to the parameters of the function.
+     */
+    Arguments(NativeFunction f, Scriptable parent, Object[] args) {
         setParentScope(parent);
         setPrototype(ScriptableObject.getObjectPrototype(parent));
 
-        args = activation.originalArgs;
+        this.originalArgs = args;
+        this.args = args;
         lengthObj = Integer.valueOf(args.length);
 
-        NativeFunction f = activation.function;
         calleeObj = f;
 
         int version = f.getLanguageVersion();
@@ -74,7 +80,7 @@ final class Arguments extends IdScriptableObject {
             putIntoActivation(index, value);
         }
         synchronized (this) {
-            if (args == activation.originalArgs) {
+            if (args == originalArgs) {
                 args = args.clone();
             }
             args[index] = value;
@@ -84,7 +90,7 @@ final class Arguments extends IdScriptableObject {
     private void removeArg(int index) {
         synchronized (this) {
             if (args[index] != NOT_FOUND) {
-                if (args == activation.originalArgs) {
+                if (args == originalArgs) {
                     args = args.clone();
                 }
                 args[index] = NOT_FOUND;
@@ -94,6 +100,28 @@ final class Arguments extends IdScriptableObject {
 
     // end helpers
 
+    /**
+     * Get the elements for Function.prototype.apply without looking each of them up.
+     *
+     * @return a copy of the elements, or null if they are mapped to an activation or the object
+     *     was changed in a way that needs the generic lookup
+     */
+    Object[] getApplyArguments() {
+        if (activation != null) {
+            return null;
+        }
+        Object[] elements = args;
+        if (!(lengthObj instanceof Integer) || (Integer) lengthObj != elements.length) {
+            return null;
+        }
+        for (Object element : elements) {
+            if (element == NOT_FOUND) {
+                return null;
+            }
+        }
+        return elements.clone();
+    }
+
     @Override
     public boolean has(int index, Scriptable start) {
         if (arg(index) != NOT_FOUND) {
@@ -115,6 +143,9 @@ final class Arguments extends IdScriptableObject {
     }
 
     private boolean sharedWithActivation(int index) {
+        if (activation == null) {
+            return false;
+        }
         Context cx = Context.getContext();
         if (cx.isStrictMode()) {
             return false;
@@ -122,6 +153,10 @@ final class Arguments extends IdScriptableObject {
         NativeFunction f = activation.function;
         int definedCount = f.getParamCount();
         if (index < definedCount) {
+            if (activation.captured != null && !activation.captured[index]) {
+                // The parameter lives in the call frame
+                return false;
+            }
             // Check if argument is not hidden by later argument with the same
             // name as hidden arguments are not shared with activation
             if (index < definedCount - 1) {
@@ -237,7 +272,7 @@ final class Arguments extends IdScriptableObject {
                     Object value = callerObj;
                     if (value == UniqueTag.NULL_VALUE) {
                         value = null;
-                    } else if (value == null) {
+                    } else if (value == null && activation != null) {
                         NativeCall caller = activation.parentActivationCall;
                         if (caller != null) {
                             value = caller.get("arguments", caller);
@@ -282,7 +317,7 @@ final class Arguments extends IdScriptableObject {
     }
 
     @Override
-    Object[] getIds(boolean getNonEnumerable, boolean getSymbols) {
+    protected Object[] getIds(boolean getNonEnumerable, boolean getSymbols) {
         Object[] ids = super.getIds(getNonEnumerable, getSymbols);
         if (args.length != 0) {
             boolean[] present = new boolean[args.length];
@@ -448,9 +483,12 @@ final class Arguments extends IdScriptableObject {
     private int calleeAttr = DONTENUM;
     private int lengthAttr = DONTENUM;
 
+    // null if the arguments are not mapped to an activation
     private NativeCall activation;
 
-    // Initially args holds activation.getOriginalArgs(), but any modification
+    private Object[] originalArgs;
+
+    // Initially args holds originalArgs, but any modification
     // of its elements triggers creation of a copy. If its element holds NOT_FOUND,
     // it indicates deleted index, in which case super class is queried.
     private Object[] args;
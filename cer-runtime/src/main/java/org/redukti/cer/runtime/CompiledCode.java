@@ -0,0 +1,33 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime;
+
+import org.redukti.cer.Scriptable;
+
+/**
+ * JVM bytecode generated for the body of a single script or function.
+ *
+ * <p>Instances are produced by the optimizer and attached to the corresponding {@link
+ * org.redukti.cer.ir.InterpreterData}. The interpreter runs them in place of its own dispatch loop
+ * once the activation scope has been set up, so generated code only ever sees functions that do
+ * not need an activation object.
+ */
+public interface CompiledCode {
+    /**
+     * Execute the body.
+     *
+     * @param cx the current Context for this thread
+     * @param fn the function or script object being executed
+     * @param scope the scope of the body: the parent scope of a function or the caller scope of a
+     *     script
+     * @param thisObj the JavaScript <code>this</code> object
+     * @param args the array of arguments
+     * @return the completion value of the body
+     */
+    public Object execute(
+            Context cx, NativeFunction fn, Scriptable scope, Scriptable thisObj, Object[] args);
+}
@@ -0,0 +1,162 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class implements the SlotMap interface so that it can be read by any number of threads
+ * without locking while one thread at a time modifies it. Lookups go to a ConcurrentHashMap, and
+ * the definition order of the slots is kept in a copy-on-write array that is published together
+ * with its length, so a reader always sees a consistent prefix of it.
+ *
+ * <p>Modifications are not synchronized against each other; {@link ConcurrentSlotMapContainer}
+ * serializes them.
+ */
+class ConcurrentSlotMap implements SlotMap {
+
+    // initial slot array size
+    private static final int INITIAL_SLOT_SIZE = 8;
+
+    private final ConcurrentHashMap<Object, Slot> map = new ConcurrentHashMap<>();
+
+    /**
+     * The slots in definition order. Appending writes past the end of the array and then publishes
+     * a new Order sharing it, so elements below count are never changed once published.
+     */
+    private static final class Order {
+        final Slot[] slots;
+        final int count;
+
+        Order(Slot[] slots, int count) {
+            this.slots = slots;
+            this.count = count;
+        }
+    }
+
+    private volatile Order order = new Order(new Slot[0], 0);
+
+    private static final class Iter implements Iterator<Slot> {
+        private final Order order;
+        private int next;
+
+        Iter(Order order) {
+            this.order = order;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < order.count;
+        }
+
+        @Override
+        public Slot next() {
+            if (next >= order.count) {
+                throw new NoSuchElementException();
+            }
+            return order.slots[next++];
+        }
+    }
+
+    @Override
+    public int size() {
+        return order.count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return order.count == 0;
+    }
+
+    @Override
+    public Iterator<Slot> iterator() {
+        return new Iter(order);
+    }
+
+    @Override
+    public Slot query(Object key, int index) {
+        return map.get(makeKey(key, index));
+    }
+
+    @Override
+    public Slot modify(Object key, int index, int attributes) {
+        Slot slot = map.get(makeKey(key, index));
+        if (slot != null) {
+            return slot;
+        }
+        Slot newSlot = new Slot(key, key != null ? key.hashCode() : index, attributes);
+        add(newSlot);
+        return newSlot;
+    }
+
+    @Override
+    public void replace(Slot oldSlot, Slot newSlot) {
+        Order current = order;
+        Slot[] slots = current.slots.clone();
+        for (int i = 0; i != current.count; i++) {
+            if (slots[i] == oldSlot) {
+                slots[i] = newSlot;
+                break;
+            }
+        }
+        order = new Order(slots, current.count);
+        map.put(makeKey(oldSlot), newSlot);
+    }
+
+    @Override
+    public void add(Slot newSlot) {
+        Order current = order;
+        Slot[] slots = current.slots;
+        int count = current.count;
+        if (count == slots.length) {
+            Slot[] newSlots = new Slot[count == 0 ? INITIAL_SLOT_SIZE : count * 2];
+            System.arraycopy(slots, 0, newSlots, 0, count);
+            slots = newSlots;
+        }
+        slots[count] = newSlot;
+        // Make the slot visible in definition order before it can be found
+        order = new Order(slots, count + 1);
+        map.put(makeKey(newSlot), newSlot);
+    }
+
+    @Override
+    public void remove(Object key, int index) {
+        Object name = makeKey(key, index);
+        Slot slot = map.get(name);
+        if (slot != null) {
+            // non-configurable
+            if ((slot.getAttributes() & ScriptableObject.PERMANENT) != 0) {
+                Context cx = Context.getContext();
+                if (cx.isStrictMode()) {
+                    throw ScriptRuntime.typeErrorById(
+                            "msg.delete.property.with.configurable.false", key);
+                }
+                return;
+            }
+            map.remove(name);
+            Order current = order;
+            Slot[] slots = new Slot[current.slots.length];
+            int count = 0;
+            for (int i = 0; i != current.count; i++) {
+                if (current.slots[i] != slot) {
+                    slots[count++] = current.slots[i];
+                }
+            }
+            order = new Order(slots, count);
+        }
+    }
+
+    private static Object makeKey(Object name, int index) {
+        return name == null ? Integer.valueOf(index) : name;
+    }
+
+    private static Object makeKey(Slot slot) {
+        return slot.name == null ? Integer.valueOf(slot.indexOrHash) : slot.name;
+    }
+}
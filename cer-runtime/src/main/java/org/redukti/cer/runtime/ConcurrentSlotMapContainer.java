@@ -0,0 +1,135 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime;
+
+import java.util.Iterator;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * This class extends the SlotMapContainer so that lookups never lock. It is used instead of
+ * ThreadSafeSlotMapContainer when {@link Context#FEATURE_CONCURRENT_OBJECTS} is set, for objects
+ * such as a shared top level scope that many threads read while properties are occasionally added
+ * to them.
+ *
+ * <p>The slots live in a {@link ConcurrentSlotMap}, which readers access directly. Modifications
+ * of the map are serialized by a write lock, and iterating takes a read lock so that the size seen
+ * during iteration matches the slots returned. Looking up an existing slot through {@link #modify}
+ * does not lock either, so assigning to existing properties is lock-free as well.
+ */
+class ConcurrentSlotMapContainer extends SlotMapContainer {
+
+    private final StampedLock lock = new StampedLock();
+
+    ConcurrentSlotMapContainer() {
+        super(new ConcurrentSlotMap());
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public int dirtySize() {
+        assert (lock.isReadLocked());
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public Slot modify(Object key, int index, int attributes) {
+        Slot slot = map.query(key, index);
+        if (slot != null) {
+            return slot;
+        }
+        final long stamp = lock.writeLock();
+        try {
+            int size = map.size();
+            slot = map.modify(key, index, attributes);
+            if (map.size() != size) {
+                structureVersion++;
+            }
+            return slot;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void replace(Slot oldSlot, Slot newSlot) {
+        final long stamp = lock.writeLock();
+        try {
+            structureVersion++;
+            slotRemoved(oldSlot.name);
+            map.replace(oldSlot, newSlot);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Slot query(Object key, int index) {
+        return map.query(key, index);
+    }
+
+    @Override
+    public void add(Slot newSlot) {
+        final long stamp = lock.writeLock();
+        try {
+            structureVersion++;
+            map.add(newSlot);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void remove(Object key, int index) {
+        final long stamp = lock.writeLock();
+        try {
+            structureVersion++;
+            slotRemoved(key);
+            map.remove(key, index);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Take out a read lock on the slot map. The caller MUST call this method before using the
+     * iterator, and MUST NOT call this method otherwise.
+     */
+    @Override
+    public long readLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * Unlock the lock taken out by readLock.
+     *
+     * @param stamp the value returned by readLock.
+     */
+    @Override
+    public void unlockRead(long stamp) {
+        lock.unlockRead(stamp);
+    }
+
+    @Override
+    public Iterator<Slot> iterator() {
+        assert (lock.isReadLocked());
+        return map.iterator();
+    }
+
+    @Override
+    protected void checkMapSize() {
+        // The concurrent map is used at any size
+    }
+}
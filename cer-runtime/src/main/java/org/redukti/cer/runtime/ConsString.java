@@ -8,6 +8,7 @@ package org.redukti.cer.runtime;
 
 import java.io.Serializable;
 import java.util.ArrayDeque;
+import java.util.function.Consumer;
 
 /**
  * This class represents a string composed of two components, each of which may be a <code>
@@ -15,8 +16,19 @@ import java.util.ArrayDeque;
  *
  * <p>This string representation is optimized for concatenation using the "+" operator. Instead of
  * immediately copying both components to a new character array, ConsString keeps references to the
- * original components and only converts them to a String if either toString() is called or a
- * certain depth level is reached.
+ * original components and only converts them to a String when toString() is called.
+ *
+ * <p>The components form a rope, a binary tree with the strings at its leaves. Concatenation only
+ * makes a node, so that appending in a loop stays constant time, and strings of up to {@link
+ * #SHORT_LENGTH} chars are copied together instead. While the tree is no deeper than {@link
+ * #MAX_DEPTH}, charAt() and subSequence() go down it without flattening it, and subSequence()
+ * shares the nodes that lie wholly inside the range. A deeper tree, such as the one left by a loop
+ * of appends, is flattened by the first of them, which costs no more than walking it.
+ *
+ * <p>Flattening does not lock: the String is built from the tree, which does not change, and then
+ * published in place of the components. Two threads that flatten at the same time build equal
+ * strings, and either can be kept. The components are read with {@link #isPair}, which tells
+ * whether they are still the two parts of this or the left one is already the flat string.
  *
  * <p>Note that instances of this class are only immutable if both parts are immutable, i.e. either
  * Strings or ConsStrings that are ultimately composed of Strings.
@@ -27,15 +39,35 @@ public class ConsString implements CharSequence, Serializable {
 
     private static final long serialVersionUID = -8432806714471372570L;
 
-    private CharSequence left, right;
+    /** Strings up to this length are copied together rather than joined by a node. */
+    private static final int SHORT_LENGTH = 256;
+
+    /** Trees up to this depth are read in place, deeper ones are flattened first. */
+    private static final int MAX_DEPTH = 64;
+
+    // left holds the flat string once right is null
+    private CharSequence left;
+    private volatile CharSequence right;
     private final int length;
-    private boolean isFlat;
+    private final int depth;
 
     public ConsString(CharSequence str1, CharSequence str2) {
-        left = str1;
-        right = str2;
-        length = left.length() + right.length();
-        isFlat = false;
+        CharSequence l = part(str1);
+        CharSequence r = part(str2);
+        length = l.length() + r.length();
+        if (length <= SHORT_LENGTH) {
+            // Copied at once, this is a leaf of the ropes it goes into
+            char[] chars = new char[length];
+            getChars(l, 0, l.length(), chars, 0);
+            getChars(r, 0, r.length(), chars, l.length());
+            left = new String(chars);
+            right = null;
+            depth = 0;
+            return;
+        }
+        left = l;
+        right = r;
+        depth = Math.max(depth(l), depth(r)) + 1;
     }
 
     // Replace with string representation when serializing
@@ -45,41 +77,38 @@ public class ConsString implements CharSequence, Serializable {
 
     @Override
     public String toString() {
-        return isFlat ? (String) left : flatten();
+        return right == null ? (String) left : flatten();
     }
 
-    private synchronized String flatten() {
-        if (!isFlat) {
-            final char[] chars = new char[length];
-            int charPos = length;
-
-            ArrayDeque<CharSequence> stack = new ArrayDeque<CharSequence>();
-            stack.addFirst(left);
-
-            CharSequence next = right;
-            do {
-                if (next instanceof ConsString) {
-                    ConsString casted = (ConsString) next;
-                    if (casted.isFlat) {
-                        next = casted.left;
-                    } else {
-                        stack.addFirst(casted.left);
-                        next = casted.right;
-                        continue;
-                    }
+    private String flatten() {
+        char[] chars = new char[length];
+        int charPos = length;
+        // Filled from the end, the stack holds the left parts, few in a tree built by appends
+        ArrayDeque<CharSequence> stack = new ArrayDeque<>();
+        CharSequence cs = this;
+        for (; ; ) {
+            while (cs instanceof ConsString) {
+                ConsString node = (ConsString) cs;
+                CharSequence r = node.right;
+                CharSequence l = node.left;
+                if (!node.isPair(l, r)) {
+                    cs = l;
+                    break;
                 }
-
-                final String str = (String) next;
-                charPos -= str.length();
-                str.getChars(0, str.length(), chars, charPos);
-                next = stack.isEmpty() ? null : stack.removeFirst();
-            } while (next != null);
-
-            left = new String(chars);
-            right = "";
-            isFlat = true;
+                stack.push(l);
+                cs = r;
+            }
+            charPos -= cs.length();
+            getChars(cs, 0, cs.length(), chars, charPos);
+            if (stack.isEmpty()) {
+                break;
+            }
+            cs = stack.pop();
         }
-        return (String) left;
+        String flat = new String(chars);
+        left = flat;
+        right = null;
+        return flat;
     }
 
     @Override
@@ -89,13 +118,165 @@ public class ConsString implements CharSequence, Serializable {
 
     @Override
     public char charAt(int index) {
-        String str = isFlat ? (String) left : flatten();
-        return str.charAt(index);
+        if (index < 0 || index >= length) {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+        CharSequence cs = depth > MAX_DEPTH ? toString() : this;
+        while (cs instanceof ConsString) {
+            ConsString node = (ConsString) cs;
+            CharSequence r = node.right;
+            CharSequence l = node.left;
+            if (!node.isPair(l, r)) {
+                return l.charAt(index);
+            }
+            int leftLength = l.length();
+            if (index < leftLength) {
+                cs = l;
+            } else {
+                cs = r;
+                index -= leftLength;
+            }
+        }
+        return cs.charAt(index);
     }
 
     @Override
     public CharSequence subSequence(int start, int end) {
-        String str = isFlat ? (String) left : flatten();
-        return str.substring(start, end);
+        if (start < 0 || end > length || start > end) {
+            throw new StringIndexOutOfBoundsException(
+                    "begin " + start + ", end " + end + ", length " + length);
+        }
+        if (right == null || depth > MAX_DEPTH) {
+            return toString().substring(start, end);
+        }
+        if (end - start <= SHORT_LENGTH) {
+            char[] chars = new char[end - start];
+            getChars(this, start, end, chars, 0);
+            return new String(chars);
+        }
+        return slice(this, start, end);
+    }
+
+    /**
+     * Call action with each of the strings this is made of, in order, without flattening it. This
+     * is for the consumers that go through the chars one by one.
+     */
+    void forEachPart(Consumer<CharSequence> action) {
+        forEachPart(this, action);
+    }
+
+    private static void forEachPart(CharSequence cs, Consumer<CharSequence> action) {
+        // The right parts still to visit, as many as the tree is deep
+        ArrayDeque<CharSequence> stack = new ArrayDeque<>();
+        for (; ; ) {
+            while (cs instanceof ConsString) {
+                ConsString node = (ConsString) cs;
+                CharSequence r = node.right;
+                CharSequence l = node.left;
+                if (!node.isPair(l, r)) {
+                    cs = l;
+                    break;
+                }
+                stack.push(r);
+                cs = l;
+            }
+            if (cs.length() > 0) {
+                action.accept(cs);
+            }
+            if (stack.isEmpty()) {
+                return;
+            }
+            cs = stack.pop();
+        }
+    }
+
+    /**
+     * Whether l and r, read from left and from right in that order, are the two parts of this. If
+     * they are not, another thread has flattened this and l is the flat string.
+     */
+    private boolean isPair(CharSequence l, CharSequence r) {
+        return r != null && l.length() + r.length() == length;
+    }
+
+    /**
+     * Copy the chars from start to end of cs into dst from dstBegin. This recurses once for every
+     * level, so cs is either a leaf or no deeper than {@link #MAX_DEPTH}.
+     */
+    private static void getChars(CharSequence cs, int start, int end, char[] dst, int dstBegin) {
+        while (cs instanceof ConsString) {
+            ConsString node = (ConsString) cs;
+            CharSequence r = node.right;
+            CharSequence l = node.left;
+            if (!node.isPair(l, r)) {
+                cs = l;
+                break;
+            }
+            int leftLength = l.length();
+            if (end <= leftLength) {
+                cs = l;
+            } else {
+                if (start < leftLength) {
+                    getChars(l, start, leftLength, dst, dstBegin);
+                    dstBegin += leftLength - start;
+                    start = leftLength;
+                }
+                cs = r;
+                start -= leftLength;
+                end -= leftLength;
+            }
+        }
+        if (cs instanceof String) {
+            ((String) cs).getChars(start, end, dst, dstBegin);
+        } else {
+            for (int i = start; i < end; i++) {
+                dst[dstBegin++] = cs.charAt(i);
+            }
+        }
+    }
+
+    /**
+     * The chars from start to end of cs, sharing the nodes that lie wholly inside them. The result
+     * is no deeper than cs.
+     */
+    private static CharSequence slice(CharSequence cs, int start, int end) {
+        if (start == 0 && end == cs.length()) {
+            return cs;
+        }
+        if (!(cs instanceof ConsString)) {
+            return cs.subSequence(start, end);
+        }
+        ConsString node = (ConsString) cs;
+        CharSequence r = node.right;
+        CharSequence l = node.left;
+        if (!node.isPair(l, r)) {
+            return l.subSequence(start, end);
+        }
+        int leftLength = l.length();
+        if (end <= leftLength) {
+            return slice(l, start, end);
+        }
+        if (start >= leftLength) {
+            return slice(r, start - leftLength, end - leftLength);
+        }
+        return new ConsString(slice(l, start, leftLength), slice(r, 0, end - leftLength));
+    }
+
+    /** cs, or the flat string if cs is a ConsString that has been flattened. */
+    private static CharSequence part(CharSequence cs) {
+        if (cs instanceof ConsString) {
+            ConsString node = (ConsString) cs;
+            if (node.right == null) {
+                return node.left;
+            }
+        }
+        return cs;
+    }
+
+    private static int depth(CharSequence cs) {
+        if (cs instanceof ConsString) {
+            ConsString node = (ConsString) cs;
+            return node.right == null ? 0 : node.depth;
+        }
+        return 0;
     }
 }
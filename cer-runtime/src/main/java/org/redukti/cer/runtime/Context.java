@@ -20,6 +20,7 @@ import org.redukti.cer.exception.RhinoException;
 import org.redukti.cer.ir.Decompiler;
 import org.redukti.cer.ir.IRFactory;
 import org.redukti.cer.ir.InterpreterConstants;
+import org.redukti.cer.ir.InterpreterData;
 import org.redukti.cer.parser.DefaultErrorReporter;
 import org.redukti.cer.parser.ErrorReporter;
 import org.redukti.cer.parser.Parser;
@@ -309,6 +310,41 @@ public class Context implements RuntimeContext, Closeable, Versions {
      */
     public static final int FEATURE_ENABLE_JAVA_MAP_ACCESS = 21;
 
+    /**
+     * If set, then objects created while the feature is on store their properties in a map that
+     * any number of threads can read without locking, for instance a top level scope shared by all
+     * request threads. Adding and removing properties still serializes on a per-object lock, but
+     * reading and assigning to existing properties does not. This takes precedence over {@link
+     * #FEATURE_THREAD_SAFE_OBJECTS}. The default is false.
+     */
+    public static final int FEATURE_CONCURRENT_OBJECTS = 22;
+
+    /**
+     * If set, the interpreter compiles scripts and functions to icode whose instructions read
+     * their operands directly from local variable slots and constants instead of pushing them on
+     * the operand stack first. Bodies in this format always stay in the interpreter. The default is
+     * false.
+     */
+    public static final int FEATURE_REGISTER_ICODE = 23;
+
+    /**
+     * If set, a regular expression match that backtracks more than a few times per character of
+     * the input and instruction of the pattern is finished by a matcher that takes time linear in
+     * the length of the input, with the same result. This protects against patterns like <code>
+     * (a|aa)*b</code> that take exponential time to fail. Patterns with backreferences or
+     * lookahead always backtrack. The default is true.
+     */
+    public static final int FEATURE_LINEAR_REGEXP = 24;
+
+    /**
+     * If set, every regular expression is matched by the linear time matcher of {@link
+     * #FEATURE_LINEAR_REGEXP}, and compiling or matching a pattern that it cannot match throws a
+     * SyntaxError. Matching checks again since the pattern may have been compiled before the
+     * feature was set, for example in a cached script. This takes precedence over {@link
+     * #FEATURE_LINEAR_REGEXP}. The default is false.
+     */
+    public static final int FEATURE_LINEAR_REGEXP_ONLY = 25;
+
     public static final String languageVersionProperty = "language version";
     public static final String errorReporterProperty = "error reporter";
 
@@ -973,6 +1009,28 @@ public class Context implements RuntimeContext, Closeable, Versions {
         return initStandardObjects(null, false);
     }
 
+    /**
+     * Create a new top level scope backed by the standard objects shared across this Context's
+     * {@link ContextFactory}.
+     *
+     * <p>The standard objects are initialized and sealed once per factory and language version,
+     * see {@link ContextFactory#getSharedStandardScope(int)}. The returned scope has the one for
+     * the language version of this Context as its prototype and no parent, so variables and
+     * functions defined by scripts, as well as assignments to the standard globals, stay in the new
+     * scope while the standard objects are shared. Since they are sealed, the standard objects and
+     * their prototypes can not be modified.
+     *
+     * <p>This is much cheaper than {@link #initStandardObjects()} and is intended for giving each
+     * request or task its own global scope.
+     *
+     * @return the new scope
+     */
+    public final ScriptableObject initSharedStandardObjects() {
+        ScriptableObject scope = new NativeObject();
+        scope.setPrototype(getFactory().getSharedStandardScope(version));
+        return scope;
+    }
+
     /**
      * Initialize the standard objects, leaving out those that offer access directly to Java
      * classes. This sets up "scope" to have access to all the standard JavaScript classes, but does
@@ -1265,6 +1323,8 @@ public class Context implements RuntimeContext, Closeable, Versions {
 
         // Observer code generation in compiled code :
         env.generateObserverCount = generateObserverCount;
+
+        env.generateRegisterIcode = hasFeature(Context.FEATURE_REGISTER_ICODE);
     }
 
     /**
@@ -2409,6 +2469,31 @@ public class Context implements RuntimeContext, Closeable, Versions {
             compilationErrorReporter = compilerEnv.getErrorReporter();
         }
 
+        // Code compiled for a security domain is not shared: the cached code carries the state
+        // its callers build up, such as the code it tiers up to and its property caches
+        ScriptCache scriptCache =
+                debugger == null && securityDomain == null ? factory.getScriptCache() : null;
+        ScriptCache.Key cacheKey = null;
+        if (scriptCache != null) {
+            cacheKey =
+                    new ScriptCache.Key(
+                            sourceString,
+                            sourceName,
+                            lineno,
+                            compilerEnv,
+                            isStrictMode(),
+                            returnFunction,
+                            compiler != null,
+                            hasFeature(FEATURE_LINEAR_REGEXP_ONLY));
+            InterpreterData cached = scriptCache.get(cacheKey);
+            if (cached != null) {
+                if (returnFunction) {
+                    return InterpretedFunction.createFunction(this, scope, cached, securityDomain);
+                }
+                return InterpretedFunction.createScript(cached, securityDomain);
+            }
+        }
+
         ScriptNode tree =
                 parse(
                         sourceString,
@@ -2460,6 +2545,9 @@ public class Context implements RuntimeContext, Closeable, Versions {
             result = compiler.createScriptObject(bytecode, securityDomain);
         }
 
+        if (cacheKey != null && bytecode instanceof InterpreterData) {
+            scriptCache.put(cacheKey, (InterpreterData) bytecode);
+        }
         return result;
     }
 
@@ -2504,6 +2592,19 @@ public class Context implements RuntimeContext, Closeable, Versions {
         }
     }
 
+    /**
+     * Prepare code that a {@link ScriptCache} loaded for key, which was not compiled in this JVM,
+     * to run as if this Context had just compiled it.
+     */
+    void prepareLoaded(ScriptCache.Key key, InterpreterData idata) {
+        if (key.getOptimizationLevel() >= 0 && codegenClass != null && !key.isInterpreted()) {
+            Evaluator compiler = (Evaluator) Kit.newInstanceOrNull(codegenClass);
+            if (compiler != null) {
+                compiler.prepareLoaded(idata);
+            }
+        }
+    }
+
     private static Class<?> codegenClass =
             Kit.classOrNull("org.redukti.cer.runtime.optimizer.Codegen");
     private static Class<?> interpreterClass =
@@ -2527,7 +2628,7 @@ public class Context implements RuntimeContext, Closeable, Versions {
     static String getSourcePositionFromStack(int[] linep) {
         Context cx = getCurrentContext();
         if (cx == null) return null;
-        if (cx.lastInterpreterFrame != null) {
+        if (cx.lastInterpreterFrame != null && cx.compiledCodeDepth == 0) {
             Evaluator evaluator = createInterpreter();
             if (evaluator != null) return evaluator.getSourcePositionFromStack(cx, linep);
         }
@@ -2537,6 +2638,13 @@ public class Context implements RuntimeContext, Closeable, Versions {
          */
         StackTraceElement[] stackTrace = new Throwable().getStackTrace();
         for (StackTraceElement st : stackTrace) {
+            if (cx.lastInterpreterFrame != null
+                    && "interpretLoop".equals(st.getMethodName())
+                    && Interpreter.class.getName().equals(st.getClassName())) {
+                // The innermost script frame is run by the interpreter
+                Evaluator evaluator = createInterpreter();
+                if (evaluator != null) return evaluator.getSourcePositionFromStack(cx, linep);
+            }
             String file = st.getFileName();
             if (!(file == null || file.endsWith(".java"))) {
                 int line = st.getLineNumber();
@@ -2677,6 +2785,12 @@ public class Context implements RuntimeContext, Closeable, Versions {
     // interpreter invocations
     ObjArray previousInterpreterInvocations;
 
+    // For the interpreter to keep the stack arrays of exited frames for reuse
+    Object interpreterFramePool;
+
+    // Number of active calls into code generated by the optimizer
+    int compiledCodeDepth;
+
     // For instruction counting (interpreter only)
     int instructionCount;
     int instructionThreshold;
@@ -13,6 +13,9 @@ import org.redukti.cer.utils.Kit;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Factory class that Rhino runtime uses to create new {@link Context} instances. A <code>
@@ -117,6 +120,18 @@ public class ContextFactory {
     private volatile Object listeners;
     private boolean disabledListening;
     private ClassLoader applicationClassLoader;
+    private int tierUpThreshold = DEFAULT_TIER_UP_THRESHOLD;
+
+    private final ConcurrentHashMap<Integer, ScriptableObject> sharedStandardScopes =
+            new ConcurrentHashMap<>();
+
+    private ScriptCache scriptCache;
+
+    /**
+     * Default number of interpreted invocations and loop iterations after which a function is
+     * compiled to JVM bytecode.
+     */
+    public static final int DEFAULT_TIER_UP_THRESHOLD = 1000;
 
     /** Listener of {@link Context} creation and release events. */
     public interface Listener {
@@ -290,6 +305,18 @@ public class ContextFactory {
 
             case Context.FEATURE_ENABLE_JAVA_MAP_ACCESS:
                 return false;
+
+            case Context.FEATURE_CONCURRENT_OBJECTS:
+                return false;
+
+            case Context.FEATURE_REGISTER_ICODE:
+                return false;
+
+            case Context.FEATURE_LINEAR_REGEXP:
+                return true;
+
+            case Context.FEATURE_LINEAR_REGEXP_ONLY:
+                return false;
         }
         // It is a bug to call the method with unknown featureIndex
         throw new IllegalArgumentException(String.valueOf(featureIndex));
@@ -390,6 +417,121 @@ public class ContextFactory {
      */
     protected void observeInstructionCount(Context cx, int instructionCount) {}
 
+    /**
+     * Get the number of interpreted invocations and loop back-edges after which a function is
+     * handed to the optimizer. Only applies to scripts compiled with optimization level 0 or
+     * higher.
+     *
+     * @return the threshold; 0 means that functions are compiled eagerly together with the script
+     *     and a negative value that they are never compiled
+     * @see #setTierUpThreshold(int)
+     */
+    public final int getTierUpThreshold() {
+        return tierUpThreshold;
+    }
+
+    /**
+     * Set the tier-up threshold.
+     *
+     * @see #getTierUpThreshold()
+     */
+    public final void setTierUpThreshold(int threshold) {
+        checkNotSealed();
+        this.tierUpThreshold = threshold;
+    }
+
+    /**
+     * Run a compilation task for a function that became hot. The default implementation queues the
+     * task on a shared daemon thread so the calling script keeps running in the interpreter until
+     * the compiled code is installed. Override to use a different executor or to compile
+     * synchronously.
+     */
+    protected void compileInBackground(Runnable task) {
+        BackgroundCompilerHolder.EXECUTOR.execute(task);
+    }
+
+    private static final class BackgroundCompilerHolder {
+        static final Executor EXECUTOR =
+                Executors.newSingleThreadExecutor(
+                        r -> {
+                            Thread t = new Thread(r, "cer-background-compiler");
+                            t.setDaemon(true);
+                            t.setPriority(Thread.NORM_PRIORITY - 1);
+                            return t;
+                        });
+    }
+
+    /**
+     * Get the cache of compiled scripts used by Contexts of this factory.
+     *
+     * @return the cache or null if compiled scripts are not cached, which is the default
+     * @see #setScriptCache(ScriptCache)
+     */
+    public final ScriptCache getScriptCache() {
+        return scriptCache;
+    }
+
+    /**
+     * Set the cache of compiled scripts, for instance a {@link LruScriptCache}. Compiling the same
+     * source with the same settings again then reuses the compiled code.
+     *
+     * @param cache the cache or null to disable caching
+     */
+    public final void setScriptCache(ScriptCache cache) {
+        checkNotSealed();
+        this.scriptCache = cache;
+    }
+
+    /**
+     * Get the sealed scope with the standard objects of a language version that is shared by all
+     * scopes returned from {@link Context#initSharedStandardObjects()} for this factory in
+     * Contexts with that version. It is built on first use by {@link
+     * #createSharedStandardScope(Context)}, and afterwards only read, so it may be used from any
+     * number of threads.
+     *
+     * @param languageVersion the language version, which decides the set of standard objects
+     */
+    public final ScriptableObject getSharedStandardScope(int languageVersion) {
+        Context.checkLanguageVersion(languageVersion);
+        ScriptableObject scope = sharedStandardScopes.get(languageVersion);
+        if (scope == null) {
+            synchronized (this) {
+                scope = sharedStandardScopes.get(languageVersion);
+                if (scope == null) {
+                    scope = call(cx -> createSharedStandardScope(cx, languageVersion));
+                    sharedStandardScopes.put(languageVersion, scope);
+                }
+            }
+        }
+        return scope;
+    }
+
+    private ScriptableObject createSharedStandardScope(Context cx, int languageVersion) {
+        int savedVersion = cx.getLanguageVersion();
+        if (savedVersion == languageVersion) {
+            return createSharedStandardScope(cx);
+        }
+        cx.setLanguageVersion(languageVersion);
+        try {
+            return createSharedStandardScope(cx);
+        } finally {
+            cx.setLanguageVersion(savedVersion);
+        }
+    }
+
+    /**
+     * Build a scope returned by {@link #getSharedStandardScope(int)}. The default implementation
+     * initializes sealed standard objects with the language version of the given Context, which
+     * is the version the scope is built for, and then seals the scope itself, which also runs all
+     * lazily loaded constructors. Override to choose a different set of standard objects or to
+     * add shared host objects.
+     */
+    protected ScriptableObject createSharedStandardScope(Context cx) {
+        ScriptableObject scope = cx.initStandardObjects(null, true);
+        scope.sealObject();
+        return scope;
+    }
+
     protected void onContextCreated(Context cx) {
         Object listeners = this.listeners;
         for (int i = 0; ; ++i) {
@@ -0,0 +1,261 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import org.redukti.cer.ir.InterpreterData;
+import org.redukti.cer.ir.InterpreterDataCodec;
+
+/**
+ * A {@link ScriptCache} that stores compiled scripts as files in a directory, so that they
+ * survive restarts of the JVM and can be shared by several processes. A {@link LruScriptCache}
+ * in front of the directory keeps the recently used scripts loaded.
+ *
+ * <p>Each entry is a file named after the digest of its {@link ScriptCache.Key}. It starts with
+ * the key itself, which is compared with the requested key when the file is read, followed by a
+ * CRC-32 checksum and the compiled code in the format of {@link InterpreterDataCodec}. Files are
+ * read through a memory mapping and written to a temporary file that is then moved into place, so
+ * a reader never sees a partially written entry. Files that are corrupt or were written by another
+ * version of the format are deleted when found and counted as evictions.
+ *
+ * <p>Code loaded from the directory is compiled by the optimizer, at once or when it gets hot, the
+ * same way as code compiled without the cache.
+ */
+public class DiskScriptCache implements ScriptCache {
+
+    private static final String SUFFIX = ".cerc";
+
+    private static final int DEFAULT_MEMORY_SIZE = 64;
+
+    private final Path directory;
+    private final LruScriptCache memory;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param directory the directory to keep the compiled scripts in, created if it does not
+     *     exist
+     */
+    public DiskScriptCache(Path directory) throws IOException {
+        this(directory, DEFAULT_MEMORY_SIZE);
+    }
+
+    /**
+     * @param directory the directory to keep the compiled scripts in, created if it does not
+     *     exist
+     * @param memorySize the number of compiled scripts to also keep in memory
+     */
+    public DiskScriptCache(Path directory, int memorySize) throws IOException {
+        this.memory = new LruScriptCache(memorySize);
+        this.directory = Files.createDirectories(directory);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public InterpreterData get(Key key) {
+        InterpreterData idata = memory.get(key);
+        if (idata == null) {
+            idata = load(key);
+            if (idata != null) {
+                memory.put(key, idata);
+            }
+        }
+        if (idata != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return idata;
+    }
+
+    private InterpreterData load(Key key) {
+        Context cx = Context.getCurrentContext();
+        if (cx == null) {
+            return null;
+        }
+        byte[] header = encodeKey(key);
+        Path file = fileFor(header);
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            return null;
+        }
+        InterpreterData idata = null;
+        try {
+            if (buffer.remaining() >= 4 && buffer.getInt() == header.length) {
+                byte[] stored = new byte[header.length];
+                if (buffer.remaining() >= stored.length) {
+                    buffer.get(stored);
+                    if (Arrays.equals(stored, header)
+                            && buffer.remaining() >= 8
+                            && buffer.getLong() == checksum(buffer.slice())) {
+                        idata = InterpreterDataCodec.decode(buffer, cx);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Truncated or damaged data shows as any kind of exception while decoding
+            idata = null;
+        }
+        if (idata == null) {
+            discard(file);
+            return null;
+        }
+        cx.prepareLoaded(key, idata);
+        return idata;
+    }
+
+    @Override
+    public void put(Key key, InterpreterData idata) {
+        memory.put(key, idata);
+        Context cx = Context.getCurrentContext();
+        if (cx == null) {
+            return;
+        }
+        byte[] header = encodeKey(key);
+        Path file = fileFor(header);
+        Path temp = null;
+        try {
+            ByteArrayOutputStream code = new ByteArrayOutputStream(4096);
+            DataOutputStream codeOut = new DataOutputStream(code);
+            InterpreterDataCodec.encode(idata, cx.getRegExpProxy(), codeOut);
+            codeOut.flush();
+            byte[] codeBytes = code.toByteArray();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(codeBytes.length + 128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(header.length);
+            out.write(header);
+            out.writeLong(checksum(ByteBuffer.wrap(codeBytes)));
+            out.write(codeBytes);
+            out.flush();
+
+            temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            Files.write(temp, bytes.toByteArray());
+            try {
+                Files.move(
+                        temp,
+                        file,
+                        StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+        } catch (IOException e) {
+            // The cache is only an optimization, the script is compiled again next time
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private void discard(Path file) {
+        try {
+            if (Files.deleteIfExists(file)) {
+                evictionCount.incrementAndGet();
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static long checksum(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private Path fileFor(byte[] header) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(header);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+        for (byte b : digest) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16));
+            name.append(Character.forDigit(b & 0xF, 16));
+        }
+        name.append(SUFFIX);
+        return directory.resolve(name.toString());
+    }
+
+    private static byte[] encodeKey(Key key) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.write(key.getSourceDigest());
+            writeString(out, key.getSourceName());
+            out.writeInt(key.getLineno());
+            out.writeInt(key.getLanguageVersion());
+            out.writeInt(key.getOptimizationLevel());
+            out.writeInt(key.getFlags());
+            if (key.getActivationNames() == null) {
+                out.writeInt(-1);
+            } else {
+                TreeSet<String> names = new TreeSet<>(key.getActivationNames());
+                out.writeInt(names.size());
+                for (String name : names) {
+                    writeString(out, name);
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+}
@@ -32,6 +32,15 @@ public interface Evaluator {
             String encodedSource,
             boolean returnFunction);
 
+    /**
+     * Prepare code that was not compiled by this evaluator but loaded by a {@link ScriptCache},
+     * for instance from a file, so that it runs as if compile had returned it. The default does
+     * nothing.
+     *
+     * @param bytecode the loaded code, used like an object returned by compile
+     */
+    public default void prepareLoaded(Object bytecode) {}
+
     /**
      * Create a function object.
      *
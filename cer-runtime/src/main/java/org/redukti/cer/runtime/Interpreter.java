@@ -14,6 +14,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import org.redukti.cer.CompilerEnvirons;
 import org.redukti.cer.Scriptable;
 import org.redukti.cer.debug.DebugFrame;
@@ -28,6 +30,7 @@ import org.redukti.cer.parser.Node;
 import org.redukti.cer.parser.Token;
 import org.redukti.cer.parser.ast.FunctionNode;
 import org.redukti.cer.parser.ast.ScriptNode;
+import org.redukti.cer.runtime.typedarrays.NativeTypedArrayView;
 import org.redukti.cer.utils.Kit;
 import org.redukti.cer.utils.ObjArray;
 import org.redukti.cer.utils.UintMap;
@@ -61,9 +64,12 @@ public final class Interpreter extends Icode implements Evaluator {
         /*final*/ int frameIndex;
         // If true indicates read-only frame that is a part of continuation
         boolean frozen;
+        // If true the frame or its stack arrays may be used after the frame exits, so
+        // neither is reused for other calls
+        boolean escaped;
 
-        final InterpretedFunction fnOrScript;
-        final InterpreterData idata;
+        /*final*/ InterpretedFunction fnOrScript;
+        /*final*/ InterpreterData idata;
 
         // Stack structure
         // stack[0 <= i < localShift]: arguments and local variables
@@ -76,14 +82,16 @@ public final class Interpreter extends Icode implements Evaluator {
         /*final*/ double[] sDbl;
 
         final CallFrame varSource; // defaults to this unless continuation frame
-        final int localShift;
-        final int emptyStackTop;
+        /*final*/ int localShift;
+        /*final*/ int emptyStackTop;
 
         final DebugFrame debuggerFrame;
         final boolean useActivation;
+        // true if the variables live in the activation object rather than in the frame
+        final boolean varsInActivation;
         boolean isContinuationsTopFrame;
 
-        final Scriptable thisObj;
+        /*final*/ Scriptable thisObj;
 
         // The values that change during interpretation
 
@@ -98,6 +106,14 @@ public final class Interpreter extends Icode implements Evaluator {
         int savedCallOp;
         Object throwable;
 
+        // For a function with idata.itsUsesArguments, the arguments object once created, and
+        // until then where the arguments are: a slice of the caller's stack or an array
+        Scriptable argumentsObj;
+        Object[] argsSource;
+        double[] argsDblSource;
+        int argsShift;
+        int argsCount;
+
         CallFrame(
                 Context cx,
                 Scriptable thisObj,
@@ -107,6 +123,9 @@ public final class Interpreter extends Icode implements Evaluator {
 
             debuggerFrame = cx.debugger != null ? cx.debugger.getFrame(cx, idata) : null;
             useActivation = debuggerFrame != null || idata.itsNeedsActivation;
+            varsInActivation =
+                    debuggerFrame != null
+                            || (idata.itsNeedsActivation && idata.argIsCaptured == null);
 
             emptyStackTop = idata.itsMaxVars + idata.itsMaxLocals - 1;
             this.fnOrScript = fnOrScript;
@@ -149,15 +168,16 @@ public final class Interpreter extends Icode implements Evaluator {
                 scope = fnOrScript.getParentScope();
 
                 if (useActivation) {
-                    if (idata.itsFunctionType == FunctionNode.ARROW_FUNCTION) {
-                        scope =
-                                ScriptRuntime.createArrowFunctionActivation(
-                                        fnOrScript, scope, args, idata.isStrict);
-                    } else {
-                        scope =
-                                ScriptRuntime.createFunctionActivation(
-                                        fnOrScript, scope, args, idata.isStrict);
-                    }
+                    // Unless the debugger needs all variables in the activation, a function
+                    // that only has one for its closures only puts their variables there
+                    scope =
+                            new NativeCall(
+                                    fnOrScript,
+                                    scope,
+                                    args,
+                                    idata.itsFunctionType == FunctionNode.ARROW_FUNCTION,
+                                    idata.isStrict,
+                                    varsInActivation ? null : idata.argIsCaptured);
                 }
             } else {
                 scope = callerScope;
@@ -165,6 +185,14 @@ public final class Interpreter extends Icode implements Evaluator {
                         fnOrScript, thisObj, cx, scope, fnOrScript.idata.evalScriptFlag);
             }
 
+            if (idata.itsUsesArguments && !useActivation) {
+                // The caller leaves its stack alone until this call returns
+                argsSource = args;
+                argsDblSource = argsDbl;
+                argsShift = argShift;
+                argsCount = argCount;
+            }
+
             if (idata.itsNestedFunctions != null) {
                 if (idata.itsFunctionType != 0 && !idata.itsNeedsActivation) Kit.codeBug();
                 for (int i = 0; i < idata.itsNestedFunctions.length; i++) {
@@ -181,9 +209,7 @@ public final class Interpreter extends Icode implements Evaluator {
 
             // Initialize args, vars, locals and stack
 
-            stack = new Object[maxFrameArray];
-            stackAttributes = new int[maxFrameArray];
-            sDbl = new double[maxFrameArray];
+            framePool(cx).allocate(this, maxFrameArray);
 
             int varCount = idata.getParamAndVarCount();
             for (int i = 0; i < varCount; i++) {
@@ -205,6 +231,79 @@ public final class Interpreter extends Icode implements Evaluator {
             }
         }
 
+        /**
+         * Turn this frame into the frame of a tail call to fnOrScript, taking the arguments from
+         * its own stack. The frame keeps its place in the frame chain, so tail calls run in
+         * constant space. Only valid if {@link #canReuseForTailCall} allowed it.
+         */
+        void reuseForTailCall(
+                Context cx,
+                Scriptable thisObj,
+                InterpretedFunction fnOrScript,
+                int argShift,
+                int argCount) {
+            final InterpreterData calleeData = fnOrScript.idata;
+            final int used = idata.itsMaxFrameArray;
+            final int maxFrameArray = calleeData.itsMaxFrameArray;
+            Object[] oldStack = stack;
+            int[] oldStackAttributes = stackAttributes;
+            double[] oldSDbl = sDbl;
+            if (oldStack.length < maxFrameArray) {
+                framePool(cx).allocate(this, maxFrameArray);
+            }
+
+            int definedArgs = calleeData.argCount;
+            if (definedArgs > argCount) {
+                definedArgs = argCount;
+            }
+            // The arguments are above the locals, so copying them down is safe in place
+            System.arraycopy(oldStack, argShift, stack, 0, definedArgs);
+            System.arraycopy(oldSDbl, argShift, sDbl, 0, definedArgs);
+            argumentsObj = null;
+            argsSource = null;
+            argsDblSource = null;
+            if (stack == oldStack) {
+                Arrays.fill(stack, definedArgs, used, null);
+                Arrays.fill(stackAttributes, 0, used, 0);
+            } else {
+                framePool(cx).release(oldStack, oldStackAttributes, oldSDbl, used);
+            }
+            for (int i = definedArgs; i != calleeData.itsMaxVars; ++i) {
+                stack[i] = Undefined.instance;
+            }
+            int varCount = calleeData.getParamAndVarCount();
+            for (int i = 0; i < varCount; i++) {
+                if (calleeData.getParamOrVarConst(i)) stackAttributes[i] = ScriptableObject.CONST;
+            }
+
+            this.fnOrScript = fnOrScript;
+            this.idata = calleeData;
+            this.thisObj = thisObj;
+            localShift = calleeData.itsMaxVars;
+            emptyStackTop = calleeData.itsMaxVars + calleeData.itsMaxLocals - 1;
+            scope = fnOrScript.getParentScope();
+
+            result = Undefined.instance;
+            resultDbl = 0.0;
+            pc = 0;
+            pcPrevBranch = 0;
+            pcSourceLineStart = calleeData.firstLinePC;
+            savedStackTop = emptyStackTop;
+            savedCallOp = 0;
+        }
+
+        /**
+         * Copy the arguments that are still read from the caller's stack, before the caller
+         * releases it.
+         */
+        void detachArguments() {
+            if (argsDblSource != null) {
+                argsSource = getArgsArray(argsSource, argsDblSource, argsShift, argsCount);
+                argsDblSource = null;
+                argsShift = 0;
+            }
+        }
+
         CallFrame cloneFrozen() {
             if (!frozen) Kit.codeBug();
 
@@ -223,6 +322,10 @@ public final class Interpreter extends Icode implements Evaluator {
             copy.sDbl = sDbl.clone();
 
             copy.frozen = false;
+            // The copy keeps using the variables of varSource, and continuations and
+            // generators keep the copy itself
+            copy.escaped = true;
+            varSource.escaped = true;
             return copy;
         }
 
@@ -325,6 +428,134 @@ public final class Interpreter extends Icode implements Evaluator {
         return i1 == i2 || Objects.equals(getEncodedSource(i1), getEncodedSource(i2));
     }
 
+    /**
+     * Stack arrays of exited frames, kept per Context for reuse by the next calls. Arrays are
+     * allocated in power of two sizes and cleared when they are returned, so a frame gets the same
+     * zeroed arrays it would get from a fresh allocation. Frames that escape, that is frames that
+     * are frozen for continuations or generators, that a copy shares variables with or that an
+     * exception keeps for its script stack, keep their arrays.
+     */
+    private static final class FramePool {
+        private static final int MIN_SIZE_SHIFT = 3;
+        private static final int MAX_SIZE_SHIFT = 12;
+        private static final int BUCKETS = MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1;
+        private static final int MAX_POOLED = 64;
+
+        private final Object[][][] stackArrays = new Object[BUCKETS][][];
+        private final int[][][] attributeArrays = new int[BUCKETS][][];
+        private final double[][][] dblArrays = new double[BUCKETS][][];
+        private final int[] counts = new int[BUCKETS];
+
+        void allocate(CallFrame frame, int size) {
+            int bucket = bucketFor(size);
+            if (bucket < 0) {
+                frame.stack = new Object[size];
+                frame.stackAttributes = new int[size];
+                frame.sDbl = new double[size];
+                return;
+            }
+            int count = counts[bucket];
+            if (count == 0) {
+                int length = 1 << (bucket + MIN_SIZE_SHIFT);
+                frame.stack = new Object[length];
+                frame.stackAttributes = new int[length];
+                frame.sDbl = new double[length];
+                return;
+            }
+            counts[bucket] = --count;
+            frame.stack = stackArrays[bucket][count];
+            frame.stackAttributes = attributeArrays[bucket][count];
+            frame.sDbl = dblArrays[bucket][count];
+            stackArrays[bucket][count] = null;
+            attributeArrays[bucket][count] = null;
+            dblArrays[bucket][count] = null;
+        }
+
+        void release(Object[] stack, int[] stackAttributes, double[] sDbl, int used) {
+            int length = stack.length;
+            int bucket = bucketFor(length);
+            if (bucket < 0 || length != 1 << (bucket + MIN_SIZE_SHIFT)) {
+                return;
+            }
+            int count = counts[bucket];
+            if (count == MAX_POOLED) {
+                return;
+            }
+            if (count == 0 && stackArrays[bucket] == null) {
+                stackArrays[bucket] = new Object[MAX_POOLED][];
+                attributeArrays[bucket] = new int[MAX_POOLED][];
+                dblArrays[bucket] = new double[MAX_POOLED][];
+            }
+            Arrays.fill(stack, 0, used, null);
+            Arrays.fill(stackAttributes, 0, used, 0);
+            stackArrays[bucket][count] = stack;
+            attributeArrays[bucket][count] = stackAttributes;
+            dblArrays[bucket][count] = sDbl;
+            counts[bucket] = count + 1;
+        }
+
+        private static int bucketFor(int size) {
+            if (size <= 1 << MIN_SIZE_SHIFT) {
+                return 0;
+            }
+            int bucket = 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_SHIFT;
+            return bucket < BUCKETS ? bucket : -1;
+        }
+    }
+
+    private static FramePool framePool(Context cx) {
+        FramePool pool = (FramePool) cx.interpreterFramePool;
+        if (pool == null) {
+            pool = new FramePool();
+            cx.interpreterFramePool = pool;
+        }
+        return pool;
+    }
+
+    /** Return the stack arrays of an exited frame to the pool unless the frame escaped. */
+    private static void releaseFrame(Context cx, CallFrame frame) {
+        if (!frame.frozen && !frame.escaped && frame.stack != null) {
+            framePool(cx)
+                    .release(
+                            frame.stack,
+                            frame.stackAttributes,
+                            frame.sDbl,
+                            frame.idata.itsMaxFrameArray);
+            frame.stack = null;
+            frame.stackAttributes = null;
+            frame.sDbl = null;
+        }
+    }
+
+    /**
+     * Check if a tail call from frame to fn can reuse frame. Frames with an activation or a
+     * debugger have to be exited, escaped frames may still be used by others, and the top frame
+     * of a continuation call has to keep its function.
+     */
+    private static boolean canReuseForTailCall(
+            Context cx, CallFrame frame, InterpretedFunction fn) {
+        return !frame.useActivation
+                && !frame.frozen
+                && !frame.escaped
+                && !frame.isContinuationsTopFrame
+                && cx.debugger == null
+                && fn.idata.itsFunctionType != 0
+                && !fn.idata.itsNeedsActivation
+                && !fn.idata.itsUsesArguments;
+    }
+
+    /**
+     * Check if a caller may pass the same arguments array to repeated calls of fn. Without an
+     * activation, an arguments object or a debugger, the arguments are only copied into the
+     * frame, so nothing keeps a reference to the array after the call.
+     */
+    static boolean canShareArgs(Context cx, InterpretedFunction fn) {
+        return cx.debugger == null
+                && fn.idata.itsFunctionType != 0
+                && !fn.idata.itsNeedsActivation
+                && !fn.idata.itsUsesArguments;
+    }
+
     private static final class ContinuationJump implements Serializable {
         private static final long serialVersionUID = 7687739156004308247L;
 
@@ -533,6 +764,7 @@ public final class Interpreter extends Icode implements Evaluator {
                         break;
                     }
                 case Icode_VAR_INC_DEC:
+                case Icode_VAR_INC_DEC_POP:
                 case Icode_NAME_INC_DEC:
                 case Icode_PROP_INC_DEC:
                 case Icode_ELEM_INC_DEC:
@@ -687,10 +919,59 @@ public final class Interpreter extends Icode implements Evaluator {
                 case Icode_GETVAR1:
                 case Icode_SETVAR1:
                 case Icode_SETCONSTVAR1:
+                case Icode_GETVAR1_GETPROP:
+                case Icode_VAR_ADD_CONST:
                     indexReg = iCode[pc];
                     out.println(tname + " " + indexReg);
                     ++pc;
                     break;
+                case Icode_SETVAR_POP:
+                    out.println(tname + " " + (0xFF & iCode[pc]));
+                    ++pc;
+                    break;
+                case Icode_GETPROP_STR:
+                case Icode_SETPROP_STR:
+                case Icode_NAME_STR:
+                    {
+                        String str = strings[getIndex(iCode, pc)];
+                        out.println(tname + " \"" + str + '"');
+                        pc += 2;
+                        break;
+                    }
+                case Icode_GETPROP_VAR:
+                    {
+                        String str = strings[getIndex(iCode, pc + 1)];
+                        out.println(tname + " " + (0xFF & iCode[pc]) + " \"" + str + '"');
+                        pc += 3;
+                        break;
+                    }
+                case Icode_MOVE_VAR:
+                case Icode_GETELEM_VAR_VAR:
+                    out.println(tname + " " + (0xFF & iCode[pc]) + " " + (0xFF & iCode[pc + 1]));
+                    pc += 2;
+                    break;
+                case Icode_BINOP_VAR_VAR:
+                    out.println(
+                            tname
+                                    + " "
+                                    + Icode.bytecodeName(iCode[pc])
+                                    + " "
+                                    + (0xFF & iCode[pc + 1])
+                                    + " "
+                                    + (0xFF & iCode[pc + 2]));
+                    pc += 3;
+                    break;
+                case Icode_BINOP_VAR_CONST:
+                    out.println(
+                            tname
+                                    + " "
+                                    + Icode.bytecodeName(iCode[pc])
+                                    + " "
+                                    + (0xFF & iCode[pc + 1])
+                                    + " "
+                                    + getShort(iCode, pc + 2));
+                    pc += 4;
+                    break;
                     // TODO: Icode_REG_STR_C0-3 is not dump. I made this the same it.
                 case Icode_REG_BIGINT_C0:
                 case Icode_REG_BIGINT_C1:
@@ -749,90 +1030,6 @@ public final class Interpreter extends Icode implements Evaluator {
         out.flush();
     }
 
-    private static int bytecodeSpan(int bytecode) {
-        switch (bytecode) {
-            case Token.THROW:
-            case Token.YIELD:
-            case Icode_YIELD_STAR:
-            case Icode_GENERATOR:
-            case Icode_GENERATOR_END:
-            case Icode_GENERATOR_RETURN:
-                // source line
-                return 1 + 2;
-
-            case Icode_GOSUB:
-            case Token.GOTO:
-            case Token.IFEQ:
-            case Token.IFNE:
-            case Icode_IFEQ_POP:
-            case Icode_LEAVEDQ:
-                // target pc offset
-                return 1 + 2;
-
-            case Icode_CALLSPECIAL:
-                // call type
-                // is new
-                // line number
-                return 1 + 1 + 1 + 2;
-
-            case Token.CATCH_SCOPE:
-                // scope flag
-                return 1 + 1;
-
-            case Icode_VAR_INC_DEC:
-            case Icode_NAME_INC_DEC:
-            case Icode_PROP_INC_DEC:
-            case Icode_ELEM_INC_DEC:
-            case Icode_REF_INC_DEC:
-                // type of ++/--
-                return 1 + 1;
-
-            case Icode_SHORTNUMBER:
-                // short number
-                return 1 + 2;
-
-            case Icode_INTNUMBER:
-                // int number
-                return 1 + 4;
-
-            case Icode_REG_IND1:
-                // ubyte index
-                return 1 + 1;
-
-            case Icode_REG_IND2:
-                // ushort index
-                return 1 + 2;
-
-            case Icode_REG_IND4:
-                // int index
-                return 1 + 4;
-
-            case Icode_REG_STR1:
-                // ubyte string index
-                return 1 + 1;
-
-            case Icode_REG_STR2:
-                // ushort string index
-                return 1 + 2;
-
-            case Icode_REG_STR4:
-                // int string index
-                return 1 + 4;
-
-            case Icode_GETVAR1:
-            case Icode_SETVAR1:
-            case Icode_SETCONSTVAR1:
-                // byte var index
-                return 1 + 1;
-
-            case Icode_LINE:
-                // line number
-                return 1 + 2;
-        }
-        if (!validBytecode(bytecode)) throw Kit.codeBug();
-        return 1;
-    }
-
     public static int[] getLineNumbers(InterpreterData data) {
         UintMap presentLines = new UintMap();
 
@@ -895,6 +1092,8 @@ public final class Interpreter extends Icode implements Evaluator {
             while (frame != null) {
                 --linePCIndex;
                 linePC[linePCIndex] = frame.pcSourceLineStart;
+                // the exception keeps the frame to report its function
+                frame.escaped = true;
                 frame = frame.parentFrame;
             }
         }
@@ -1061,6 +1260,13 @@ public final class Interpreter extends Icode implements Evaluator {
             }
         }
 
+        if (!cx.isContinuationsTopCall) {
+            CompiledCode code = compiledCode(cx, ifun);
+            if (code != null) {
+                return callCompiled(code, cx, ifun, scope, thisObj, args);
+            }
+        }
+
         CallFrame frame = initFrame(cx, scope, thisObj, args, null, 0, args.length, ifun, null);
         frame.isContinuationsTopFrame = cx.isContinuationsTopCall;
         cx.isContinuationsTopCall = false;
@@ -1068,6 +1274,141 @@ public final class Interpreter extends Icode implements Evaluator {
         return interpretLoop(cx, frame, null);
     }
 
+    /**
+     * The number of calls into compiled code that may be active at once in a context. Compiled
+     * bodies call each other on the Java stack, so deeper calls run in the interpreter, which keeps
+     * its frames in the heap and runs tail calls in the calling frame.
+     */
+    private static final int MAX_COMPILED_CODE_DEPTH = 128;
+
+    /**
+     * Get the JVM bytecode generated for the body of the function, or null if the body has to run
+     * in the interpreter. Compiled code does not report to a debugger or count instructions.
+     */
+    private static CompiledCode compiledCode(Context cx, InterpretedFunction ifun) {
+        Object code = ifun.idata.itsCompiledCode;
+        if (code == null
+                || cx.debugger != null
+                || cx.instructionThreshold != 0
+                || cx.compiledCodeDepth >= MAX_COMPILED_CODE_DEPTH) {
+            return null;
+        }
+        return (CompiledCode) code;
+    }
+
+    private static Object callCompiled(
+            CompiledCode code,
+            Context cx,
+            InterpretedFunction ifun,
+            Scriptable callerScope,
+            Scriptable thisObj,
+            Object[] args) {
+        Scriptable scope;
+        if (ifun.idata.itsFunctionType != 0) {
+            scope = ifun.getParentScope();
+        } else {
+            scope = callerScope;
+            ScriptRuntime.initScript(ifun, thisObj, cx, scope, ifun.idata.evalScriptFlag);
+        }
+        cx.compiledCodeDepth++;
+        try {
+            return code.execute(cx, ifun, scope, thisObj, args);
+        } catch (StackOverflowError e) {
+            // The thread has less stack than the depth limit assumes. The error is turned into
+            // one the script can catch once out of compiled code, where there is stack to spare.
+            if (cx.compiledCodeDepth > 1) {
+                throw e;
+            }
+            throw Context.reportRuntimeError("Exceeded maximum stack depth");
+        } finally {
+            cx.compiledCodeDepth--;
+        }
+    }
+
+    /*
+     * The counters are updated atomically since a body may run on several threads at once. They
+     * only count until the body is handed to the optimizer, which bounds the cost.
+     */
+    private static final AtomicIntegerFieldUpdater<InterpreterData> INVOCATION_COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(InterpreterData.class, "itsInvocationCount");
+    private static final AtomicIntegerFieldUpdater<InterpreterData> BACK_EDGE_COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(InterpreterData.class, "itsBackEdgeCount");
+    private static final AtomicReferenceFieldUpdater<InterpreterData, Object> TIER_UP_COMPILER =
+            AtomicReferenceFieldUpdater.newUpdater(
+                    InterpreterData.class, Object.class, "itsTierUpCompiler");
+
+    private static void countInvocation(Context cx, InterpreterData idata) {
+        int count = INVOCATION_COUNT.incrementAndGet(idata);
+        int threshold = cx.getFactory().getTierUpThreshold();
+        if (threshold >= 0 && count + idata.itsBackEdgeCount >= threshold) {
+            tierUp(cx, idata);
+        }
+    }
+
+    private static void countBackEdge(Context cx, InterpreterData idata) {
+        int count = BACK_EDGE_COUNT.incrementAndGet(idata);
+        int threshold = cx.getFactory().getTierUpThreshold();
+        if (threshold >= 0 && count + idata.itsInvocationCount >= threshold) {
+            tierUp(cx, idata);
+        }
+    }
+
+    /**
+     * Hand a hot body to the optimizer. The body keeps running in the interpreter until the
+     * compiled code is installed; a loop already running in the interpreter only benefits from it
+     * on the next invocation.
+     */
+    private static void tierUp(Context cx, InterpreterData idata) {
+        Object compiler = idata.itsTierUpCompiler;
+        if (compiler == null || cx.debugger != null) {
+            return;
+        }
+        // Hand over only once, even if the body stays interpreted or other threads find it hot
+        if (!TIER_UP_COMPILER.compareAndSet(idata, compiler, null)) {
+            return;
+        }
+        Runnable task = ((TierUpCompiler) compiler).createCompileTask(cx, idata);
+        if (task != null) {
+            cx.getFactory().compileInBackground(task);
+        }
+    }
+
+    /** Get the inline cache of the named property access instruction being executed. */
+    private static PropertyCache propertyCache(CallFrame frame, String name) {
+        Object[] caches = inlineCaches(frame);
+        // frame.pc already points past the opcode
+        int pc = frame.pc - 1;
+        PropertyCache cache = (PropertyCache) caches[pc];
+        if (cache == null) {
+            cache = new PropertyCache(name);
+            caches[pc] = cache;
+        }
+        return cache;
+    }
+
+    /** Get the inline cache of the name lookup instruction being executed. */
+    private static NameCache nameCache(CallFrame frame, String name) {
+        Object[] caches = inlineCaches(frame);
+        // frame.pc already points past the opcode
+        int pc = frame.pc - 1;
+        NameCache cache = (NameCache) caches[pc];
+        if (cache == null) {
+            cache = new NameCache(name);
+            caches[pc] = cache;
+        }
+        return cache;
+    }
+
+    private static Object[] inlineCaches(CallFrame frame) {
+        InterpreterData idata = frame.idata;
+        Object[] caches = idata.itsPropertyCaches;
+        if (caches == null) {
+            caches = new Object[idata.itsICode.length];
+            idata.itsPropertyCaches = caches;
+        }
+        return caches;
+    }
+
     static class GeneratorState {
         GeneratorState(int operation, Object value) {
             this.operation = operation;
@@ -1507,6 +1848,75 @@ public final class Interpreter extends Icode implements Evaluator {
                                     stackTop = doArithmetic(frame, op, stack, sDbl, stackTop);
                                     continue Loop;
                                 }
+                            case Icode_ADD_NUM:
+                            case Icode_SUB_NUM:
+                            case Icode_MUL_NUM:
+                            case Icode_DIV_NUM:
+                            case Icode_MOD_NUM:
+                            case Icode_LT_NUM:
+                            case Icode_LE_NUM:
+                            case Icode_GT_NUM:
+                            case Icode_GE_NUM:
+                            case Icode_BITAND_INT:
+                            case Icode_BITOR_INT:
+                            case Icode_BITXOR_INT:
+                            case Icode_LSH_INT:
+                            case Icode_RSH_INT:
+                                stackTop = doNumberOp(cx, frame, op, stack, sDbl, stackTop);
+                                continue Loop;
+                            case Icode_LT_NUM_IF:
+                            case Icode_LE_NUM_IF:
+                            case Icode_GT_NUM_IF:
+                            case Icode_GE_NUM_IF:
+                                if (stack[stackTop] != DBL_MRK || stack[stackTop - 1] != DBL_MRK) {
+                                    // Compare only and let IFEQ or IFNE run on its own
+                                    stackTop =
+                                            doCompare(
+                                                    frame,
+                                                    genericOp(unfusedOp(op)),
+                                                    stack,
+                                                    sDbl,
+                                                    stackTop);
+                                    continue Loop;
+                                }
+                                stackTop -= 2;
+                                if (!doNumberCompareJumps(frame, op, sDbl, stackTop)) {
+                                    frame.pc += 2;
+                                    continue Loop;
+                                }
+                                break jumplessRun;
+                            case Icode_GETVAR1_GETPROP:
+                            case Icode_THIS_GETPROP:
+                            case Icode_VAR_ADD_CONST:
+                            case Icode_VAR_INC_DEC_POP:
+                                stackTop =
+                                        doSuperinstruction(
+                                                cx, frame, op, stack, sDbl, stackTop, vars,
+                                                varDbls, varAttributes, indexReg);
+                                continue Loop;
+                            case Icode_GETPROP_VAR:
+                            case Icode_GETPROP_STR:
+                            case Icode_SETPROP_STR:
+                            case Icode_NAME_STR:
+                            case Icode_BINOP_VAR_VAR:
+                            case Icode_BINOP_VAR_CONST:
+                            case Icode_GETELEM_VAR_VAR:
+                            case Icode_MOVE_VAR:
+                            case Icode_SETVAR_POP:
+                                stackTop =
+                                        doRegisterOp(
+                                                cx, frame, op, stack, sDbl, stackTop, vars,
+                                                varDbls, varAttributes);
+                                continue Loop;
+                            case Icode_ARGUMENTS:
+                                if (frame.varsInActivation) {
+                                    // The debugger gave the function an activation
+                                    stack[++stackTop] =
+                                            ScriptRuntime.name(cx, frame.scope, "arguments");
+                                } else {
+                                    stack[++stackTop] = argumentsObject(frame);
+                                }
+                                continue Loop;
                             case Token.NOT:
                                 stack[stackTop] =
                                         ScriptRuntime.wrapBoolean(!stack_boolean(frame, stackTop));
@@ -1553,8 +1963,8 @@ public final class Interpreter extends Icode implements Evaluator {
                                     if (lhs == DBL_MRK)
                                         lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
                                     stack[stackTop] =
-                                            ScriptRuntime.getObjectPropNoWarn(
-                                                    lhs, stringReg, cx, frame.scope);
+                                            propertyCache(frame, stringReg)
+                                                    .getObjectPropNoWarn(lhs, cx, frame.scope);
                                     continue Loop;
                                 }
                             case Token.GETPROP:
@@ -1563,8 +1973,8 @@ public final class Interpreter extends Icode implements Evaluator {
                                     if (lhs == DBL_MRK)
                                         lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
                                     stack[stackTop] =
-                                            ScriptRuntime.getObjectProp(
-                                                    lhs, stringReg, cx, frame.scope);
+                                            propertyCache(frame, stringReg)
+                                                    .getObjectProp(lhs, cx, frame.scope);
                                     continue Loop;
                                 }
                             case Token.SETPROP:
@@ -1577,8 +1987,8 @@ public final class Interpreter extends Icode implements Evaluator {
                                     if (lhs == DBL_MRK)
                                         lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
                                     stack[stackTop] =
-                                            ScriptRuntime.setObjectProp(
-                                                    lhs, stringReg, rhs, cx, frame.scope);
+                                            propertyCache(frame, stringReg)
+                                                    .setObjectProp(lhs, rhs, cx, frame.scope);
                                     continue Loop;
                                 }
                             case Icode_PROP_INC_DEC:
@@ -1658,8 +2068,8 @@ public final class Interpreter extends Icode implements Evaluator {
                                 // stringReg: name
                                 ++stackTop;
                                 stack[stackTop] =
-                                        ScriptRuntime.getNameFunctionAndThis(
-                                                stringReg, cx, frame.scope);
+                                        nameCache(frame, stringReg)
+                                                .getNameFunctionAndThis(cx, frame.scope);
                                 ++stackTop;
                                 stack[stackTop] = ScriptRuntime.lastStoredScriptable(cx);
                                 continue Loop;
@@ -1670,8 +2080,8 @@ public final class Interpreter extends Icode implements Evaluator {
                                         obj = ScriptRuntime.wrapNumber(sDbl[stackTop]);
                                     // stringReg: property
                                     stack[stackTop] =
-                                            ScriptRuntime.getPropFunctionAndThis(
-                                                    obj, stringReg, cx, frame.scope);
+                                            propertyCache(frame, stringReg)
+                                                    .getPropFunctionAndThis(obj, cx, frame.scope);
                                     ++stackTop;
                                     stack[stackTop] = ScriptRuntime.lastStoredScriptable(cx);
                                     continue Loop;
@@ -1745,25 +2155,42 @@ public final class Interpreter extends Icode implements Evaluator {
                                         InterpretedFunction ifun = (InterpretedFunction) fun;
                                         if (frame.fnOrScript.securityDomain
                                                 == ifun.securityDomain) {
+                                            CompiledCode code = compiledCode(cx, ifun);
+                                            if (code != null) {
+                                                cx.lastInterpreterFrame = frame;
+                                                frame.savedCallOp = op;
+                                                frame.savedStackTop = stackTop;
+                                                stack[stackTop] =
+                                                        callCompiled(
+                                                                code,
+                                                                cx,
+                                                                ifun,
+                                                                calleeScope,
+                                                                funThisObj,
+                                                                getArgsArray(
+                                                                        stack,
+                                                                        sDbl,
+                                                                        stackTop + 2,
+                                                                        indexReg));
+                                                continue Loop;
+                                            }
                                             CallFrame callParentFrame = frame;
                                             if (op == Icode_TAIL_CALL) {
-                                                // In principle tail call can re-use the current
-                                                // frame and its stack arrays but it is hard to
-                                                // do properly. Any exceptions that can legally
-                                                // happen during frame re-initialization including
-                                                // StackOverflowException during innocent looking
-                                                // System.arraycopy may leave the current frame
-                                                // data corrupted leading to undefined behaviour
-                                                // in the catch code bellow that unwinds JS stack
-                                                // on exceptions. Then there is issue about frame
-                                                // release
-                                                // end exceptions there.
-                                                // To avoid frame allocation a released frame
-                                                // can be cached for re-use which would also benefit
-                                                // non-tail calls but it is not clear that this
-                                                // caching
-                                                // would gain in performance due to potentially
-                                                // bad interaction with GC.
+                                                if (canReuseForTailCall(cx, frame, ifun)) {
+                                                    // Nothing in reuseForTailCall throws, so the
+                                                    // frame is never left half initialized for
+                                                    // the exception handling below.
+                                                    if (ifun.idata.itsTierUpCompiler != null) {
+                                                        countInvocation(cx, ifun.idata);
+                                                    }
+                                                    frame.reuseForTailCall(
+                                                            cx,
+                                                            funThisObj,
+                                                            ifun,
+                                                            stackTop + 2,
+                                                            indexReg);
+                                                    continue StateLoop;
+                                                }
                                                 callParentFrame = frame.parentFrame;
                                                 // Release the current frame. See Bug #344501 to see
                                                 // why
@@ -1784,6 +2211,9 @@ public final class Interpreter extends Icode implements Evaluator {
                                             if (op != Icode_TAIL_CALL) {
                                                 frame.savedStackTop = stackTop;
                                                 frame.savedCallOp = op;
+                                            } else {
+                                                calleeFrame.detachArguments();
+                                                releaseFrame(cx, frame);
                                             }
                                             frame = calleeFrame;
                                             continue StateLoop;
@@ -1907,6 +2337,29 @@ public final class Interpreter extends Icode implements Evaluator {
                                         if (frame.fnOrScript.securityDomain == f.securityDomain) {
                                             Scriptable newInstance =
                                                     f.createObject(cx, frame.scope);
+                                            CompiledCode code = compiledCode(cx, f);
+                                            if (code != null) {
+                                                cx.lastInterpreterFrame = frame;
+                                                frame.savedCallOp = op;
+                                                frame.savedStackTop = stackTop;
+                                                Object result =
+                                                        callCompiled(
+                                                                code,
+                                                                cx,
+                                                                f,
+                                                                frame.scope,
+                                                                newInstance,
+                                                                getArgsArray(
+                                                                        stack,
+                                                                        sDbl,
+                                                                        stackTop + 1,
+                                                                        indexReg));
+                                                stack[stackTop] =
+                                                        result instanceof Scriptable
+                                                                ? result
+                                                                : newInstance;
+                                                continue Loop;
+                                            }
                                             CallFrame calleeFrame =
                                                     initFrame(
                                                             cx,
@@ -1984,7 +2437,8 @@ public final class Interpreter extends Icode implements Evaluator {
                                 stack[++stackTop] = bigIntReg;
                                 continue Loop;
                             case Token.NAME:
-                                stack[++stackTop] = ScriptRuntime.name(cx, frame.scope, stringReg);
+                                stack[++stackTop] =
+                                        nameCache(frame, stringReg).name(cx, frame.scope);
                                 continue Loop;
                             case Icode_NAME_INC_DEC:
                                 stack[++stackTop] =
@@ -2435,12 +2889,16 @@ public final class Interpreter extends Icode implements Evaluator {
                         addInstructionCount(cx, frame, 2);
                     }
                     int offset = getShort(iCode, frame.pc);
+                    int jumpPC = frame.pc;
                     if (offset != 0) {
                         // -1 accounts for pc pointing to jump opcode + 1
                         frame.pc += offset - 1;
                     } else {
                         frame.pc = frame.idata.longJumps.getExistingInt(frame.pc);
                     }
+                    if (frame.pc < jumpPC && frame.idata.itsTierUpCompiler != null) {
+                        countBackEdge(cx, frame.idata);
+                    }
                     if (instructionCounting) {
                         frame.pcPrevBranch = frame.pc;
                     }
@@ -2450,6 +2908,7 @@ public final class Interpreter extends Icode implements Evaluator {
                 exitFrame(cx, frame, null);
                 interpreterResult = frame.result;
                 interpreterResultDbl = frame.resultDbl;
+                releaseFrame(cx, frame);
                 if (frame.parentFrame != null) {
                     frame = frame.parentFrame;
                     if (frame.frozen) {
@@ -2561,6 +3020,7 @@ public final class Interpreter extends Icode implements Evaluator {
                 // to parent and try to look there
 
                 exitFrame(cx, frame, throwable);
+                releaseFrame(cx, frame);
 
                 frame = frame.parentFrame;
                 if (frame == null) {
@@ -2734,6 +3194,30 @@ public final class Interpreter extends Icode implements Evaluator {
             value = ScriptRuntime.getObjectElem(lhs, id, cx, frame.scope);
         } else {
             double d = sDbl[stackTop + 1];
+            if (lhs instanceof NativeArray) {
+                // Read numbers out of int and double arrays without boxing them
+                int index = (int) d;
+                if (index == d) {
+                    double element = ((NativeArray) lhs).getNumber(index);
+                    if (!NativeArray.isHole(element)) {
+                        stack[stackTop] = DOUBLE_MARK;
+                        sDbl[stackTop] = element;
+                        return stackTop;
+                    }
+                }
+            } else if (lhs instanceof NativeTypedArrayView) {
+                // Read numbers out of typed arrays without boxing them
+                NativeTypedArrayView view = (NativeTypedArrayView) lhs;
+                int index = (int) d;
+                if (index == d
+                        && index >= 0
+                        && index < view.getArrayLength()
+                        && view.isNumeric()) {
+                    stack[stackTop] = DOUBLE_MARK;
+                    sDbl[stackTop] = view.getDouble(index);
+                    return stackTop;
+                }
+            }
             value = ScriptRuntime.getObjectIndex(lhs, d, cx, frame.scope);
         }
         stack[stackTop] = value;
@@ -2745,7 +3229,33 @@ public final class Interpreter extends Icode implements Evaluator {
         stackTop -= 2;
         Object rhs = stack[stackTop + 2];
         if (rhs == DOUBLE_MARK) {
-            rhs = ScriptRuntime.wrapNumber(sDbl[stackTop + 2]);
+            double value = sDbl[stackTop + 2];
+            Object lhs = stack[stackTop];
+            if (lhs instanceof NativeArray && stack[stackTop + 1] == DOUBLE_MARK) {
+                double d = sDbl[stackTop + 1];
+                int index = (int) d;
+                if (index == d && ((NativeArray) lhs).setNumber(index, value)) {
+                    stack[stackTop] = DOUBLE_MARK;
+                    sDbl[stackTop] = value;
+                    return stackTop;
+                }
+            } else if (lhs instanceof NativeTypedArrayView && stack[stackTop + 1] == DOUBLE_MARK) {
+                // Store numbers into typed arrays without boxing them
+                NativeTypedArrayView view = (NativeTypedArrayView) lhs;
+                double d = sDbl[stackTop + 1];
+                int index = (int) d;
+                if (index == d
+                        && index >= 0
+                        && index < view.getArrayLength()
+                        && view.isNumeric()
+                        && !view.isReadOnly()) {
+                    view.setDouble(index, value);
+                    stack[stackTop] = DOUBLE_MARK;
+                    sDbl[stackTop] = value;
+                    return stackTop;
+                }
+            }
+            rhs = ScriptRuntime.wrapNumber(value);
         }
         Object lhs = stack[stackTop];
         if (lhs == DOUBLE_MARK) {
@@ -2836,7 +3346,7 @@ public final class Interpreter extends Icode implements Evaluator {
             double[] varDbls,
             int[] varAttributes,
             int indexReg) {
-        if (!frame.useActivation) {
+        if (!frame.varsInActivation) {
             if ((varAttributes[indexReg] & ScriptableObject.READONLY) == 0) {
                 throw Context.reportRuntimeErrorById(
                         "msg.var.redecl", frame.idata.argNames[indexReg]);
@@ -2867,7 +3377,7 @@ public final class Interpreter extends Icode implements Evaluator {
             double[] varDbls,
             int[] varAttributes,
             int indexReg) {
-        if (!frame.useActivation) {
+        if (!frame.varsInActivation) {
             if ((varAttributes[indexReg] & ScriptableObject.READONLY) == 0) {
                 vars[indexReg] = stack[stackTop];
                 varDbls[indexReg] = sDbl[stackTop];
@@ -2890,7 +3400,7 @@ public final class Interpreter extends Icode implements Evaluator {
             double[] varDbls,
             int indexReg) {
         ++stackTop;
-        if (!frame.useActivation) {
+        if (!frame.varsInActivation) {
             stack[stackTop] = vars[indexReg];
             sDbl[stackTop] = varDbls[indexReg];
         } else {
@@ -2913,7 +3423,7 @@ public final class Interpreter extends Icode implements Evaluator {
         // indexReg : varindex
         ++stackTop;
         int incrDecrMask = frame.idata.itsICode[frame.pc];
-        if (!frame.useActivation) {
+        if (!frame.varsInActivation) {
             Object varValue = vars[indexReg];
             double d = 0.0;
             BigInteger bi = null;
@@ -3055,6 +3565,8 @@ public final class Interpreter extends Icode implements Evaluator {
         if (op != Icode_TAIL_CALL) {
             frame.savedStackTop = stackTop;
             frame.savedCallOp = op;
+        } else {
+            releaseFrame(cx, frame);
         }
         return calleeFrame;
     }
@@ -3323,6 +3835,9 @@ public final class Interpreter extends Icode implements Evaluator {
             int argCount,
             InterpretedFunction fnOrScript,
             CallFrame parentFrame) {
+        if (fnOrScript.idata.itsTierUpCompiler != null) {
+            countInvocation(cx, fnOrScript.idata);
+        }
         CallFrame frame = new CallFrame(cx, thisObj, fnOrScript, parentFrame);
         frame.initializeArgs(cx, callerScope, args, argsDbl, argShift, argCount);
         enterFrame(cx, frame, args, false);
@@ -3637,6 +4152,491 @@ public final class Interpreter extends Icode implements Evaluator {
         return stackTop;
     }
 
+    /**
+     * Run the superinstruction op, which stands for the sequence of instructions it was fused
+     * from, or only the first instruction of the sequence when its guard fails. The cases live
+     * here rather than in interpretLoop to keep that method small enough for the JIT to compile.
+     *
+     * @return the new stack top
+     */
+    private static int doSuperinstruction(
+            Context cx,
+            CallFrame frame,
+            int op,
+            Object[] stack,
+            double[] sDbl,
+            int stackTop,
+            Object[] vars,
+            double[] varDbls,
+            int[] varAttributes,
+            int indexReg) {
+        byte[] iCode = frame.idata.itsICode;
+        switch (op) {
+            case Icode_GETVAR1_GETPROP:
+            case Icode_THIS_GETPROP:
+                {
+                    if (op == Icode_THIS_GETPROP) {
+                        stack[++stackTop] = frame.thisObj;
+                    } else {
+                        indexReg = iCode[frame.pc++];
+                        stackTop = doGetVar(frame, stack, sDbl, stackTop, vars, varDbls, indexReg);
+                    }
+                    String[] strings = frame.idata.itsStringTable;
+                    int strOp = iCode[frame.pc++];
+                    String stringReg;
+                    if (strOp == Icode_REG_STR1) {
+                        stringReg = strings[0xFF & iCode[frame.pc++]];
+                    } else {
+                        stringReg = strings[Icode_REG_STR_C0 - strOp];
+                    }
+                    // Step over GETPROP, whose pc keys the property cache
+                    ++frame.pc;
+                    Object lhs = stack[stackTop];
+                    if (lhs == DOUBLE_MARK) lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
+                    stack[stackTop] =
+                            propertyCache(frame, stringReg).getObjectProp(lhs, cx, frame.scope);
+                    return stackTop;
+                }
+            case Icode_VAR_ADD_CONST:
+                {
+                    indexReg = iCode[frame.pc++];
+                    if (frame.varsInActivation
+                            || vars[indexReg] != DOUBLE_MARK
+                            || (varAttributes[indexReg] & ScriptableObject.READONLY) != 0) {
+                        // Only run GETVAR1
+                        return doGetVar(frame, stack, sDbl, stackTop, vars, varDbls, indexReg);
+                    }
+                    double value;
+                    if (iCode[frame.pc] == Icode_ONE) {
+                        value = 1;
+                        frame.pc += 1;
+                    } else {
+                        value = getShort(iCode, frame.pc + 1);
+                        frame.pc += 3;
+                    }
+                    if (genericOp(iCode[frame.pc]) == Token.SUB) {
+                        value = -value;
+                    }
+                    varDbls[indexReg] += value;
+                    // Step over ADD or SUB, SETVAR1 and POP
+                    frame.pc += 1 + 2 + 1;
+                    return stackTop;
+                }
+            case Icode_VAR_INC_DEC_POP:
+                if (!frame.varsInActivation
+                        && vars[indexReg] == DOUBLE_MARK
+                        && (varAttributes[indexReg] & ScriptableObject.READONLY) == 0) {
+                    boolean decr = (iCode[frame.pc] & Node.DECR_FLAG) != 0;
+                    varDbls[indexReg] += decr ? -1.0 : 1.0;
+                    // Step over the type of ++/-- and POP
+                    frame.pc += 2;
+                    return stackTop;
+                }
+                return doVarIncDec(
+                        cx, frame, stack, sDbl, stackTop, vars, varDbls, varAttributes, indexReg);
+        }
+        throw Kit.codeBug();
+    }
+
+    /**
+     * Run the register icode op, which takes its local variable slots, constants and strings as
+     * inline operands and leaves its result, if any, on top of the stack.
+     *
+     * @return the new stack top
+     */
+    private static int doRegisterOp(
+            Context cx,
+            CallFrame frame,
+            int op,
+            Object[] stack,
+            double[] sDbl,
+            int stackTop,
+            Object[] vars,
+            double[] varDbls,
+            int[] varAttributes) {
+        byte[] iCode = frame.idata.itsICode;
+        String[] strings = frame.idata.itsStringTable;
+        switch (op) {
+            case Icode_GETPROP_VAR:
+                {
+                    int indexReg = 0xFF & iCode[frame.pc];
+                    String stringReg = strings[getIndex(iCode, frame.pc + 1)];
+                    stackTop = doGetVar(frame, stack, sDbl, stackTop, vars, varDbls, indexReg);
+                    Object lhs = stack[stackTop];
+                    if (lhs == DOUBLE_MARK) lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
+                    stack[stackTop] =
+                            propertyCache(frame, stringReg).getObjectProp(lhs, cx, frame.scope);
+                    frame.pc += 3;
+                    return stackTop;
+                }
+            case Icode_GETPROP_STR:
+                {
+                    String stringReg = strings[getIndex(iCode, frame.pc)];
+                    Object lhs = stack[stackTop];
+                    if (lhs == DOUBLE_MARK) lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
+                    stack[stackTop] =
+                            propertyCache(frame, stringReg).getObjectProp(lhs, cx, frame.scope);
+                    frame.pc += 2;
+                    return stackTop;
+                }
+            case Icode_SETPROP_STR:
+                {
+                    String stringReg = strings[getIndex(iCode, frame.pc)];
+                    Object rhs = stack[stackTop];
+                    if (rhs == DOUBLE_MARK) rhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
+                    --stackTop;
+                    Object lhs = stack[stackTop];
+                    if (lhs == DOUBLE_MARK) lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
+                    stack[stackTop] =
+                            propertyCache(frame, stringReg)
+                                    .setObjectProp(lhs, rhs, cx, frame.scope);
+                    frame.pc += 2;
+                    return stackTop;
+                }
+            case Icode_NAME_STR:
+                {
+                    String stringReg = strings[getIndex(iCode, frame.pc)];
+                    stack[++stackTop] = nameCache(frame, stringReg).name(cx, frame.scope);
+                    frame.pc += 2;
+                    return stackTop;
+                }
+            case Icode_BINOP_VAR_VAR:
+            case Icode_BINOP_VAR_CONST:
+                {
+                    int binOp = iCode[frame.pc];
+                    int lIndex = 0xFF & iCode[frame.pc + 1];
+                    int rIndex = -1;
+                    double rDbl = 0;
+                    if (op == Icode_BINOP_VAR_VAR) {
+                        rIndex = 0xFF & iCode[frame.pc + 2];
+                        frame.pc += 3;
+                    } else {
+                        rDbl = getShort(iCode, frame.pc + 2);
+                        frame.pc += 4;
+                    }
+                    if (!frame.varsInActivation
+                            && vars[lIndex] == DOUBLE_MARK
+                            && (rIndex < 0 || vars[rIndex] == DOUBLE_MARK)) {
+                        if (rIndex >= 0) {
+                            rDbl = varDbls[rIndex];
+                        }
+                        ++stackTop;
+                        doNumberBinaryOp(binOp, varDbls[lIndex], rDbl, stack, sDbl, stackTop);
+                        return stackTop;
+                    }
+                    stackTop = doGetVar(frame, stack, sDbl, stackTop, vars, varDbls, lIndex);
+                    if (rIndex >= 0) {
+                        stackTop = doGetVar(frame, stack, sDbl, stackTop, vars, varDbls, rIndex);
+                    } else {
+                        ++stackTop;
+                        stack[stackTop] = DOUBLE_MARK;
+                        sDbl[stackTop] = rDbl;
+                    }
+                    return doBinaryOp(cx, frame, binOp, stack, sDbl, stackTop);
+                }
+            case Icode_GETELEM_VAR_VAR:
+                {
+                    int lIndex = 0xFF & iCode[frame.pc];
+                    int rIndex = 0xFF & iCode[frame.pc + 1];
+                    frame.pc += 2;
+                    if (frame.varsInActivation) {
+                        stackTop = doGetVar(frame, stack, sDbl, stackTop, vars, varDbls, lIndex);
+                        stackTop = doGetVar(frame, stack, sDbl, stackTop, vars, varDbls, rIndex);
+                        return doGetElem(cx, frame, stack, sDbl, stackTop);
+                    }
+                    Object lhs = vars[lIndex];
+                    if (lhs == DOUBLE_MARK) lhs = ScriptRuntime.wrapNumber(varDbls[lIndex]);
+                    Object id = vars[rIndex];
+                    stack[++stackTop] =
+                            id != DOUBLE_MARK
+                                    ? ScriptRuntime.getObjectElem(lhs, id, cx, frame.scope)
+                                    : ScriptRuntime.getObjectIndex(
+                                            lhs, varDbls[rIndex], cx, frame.scope);
+                    return stackTop;
+                }
+            case Icode_MOVE_VAR:
+                {
+                    int indexReg = 0xFF & iCode[frame.pc];
+                    int srcIndex = 0xFF & iCode[frame.pc + 1];
+                    frame.pc += 2;
+                    if (!frame.varsInActivation) {
+                        if ((varAttributes[indexReg] & ScriptableObject.READONLY) == 0) {
+                            vars[indexReg] = vars[srcIndex];
+                            varDbls[indexReg] = varDbls[srcIndex];
+                        }
+                        return stackTop;
+                    }
+                    stackTop = doGetVar(frame, stack, sDbl, stackTop, vars, varDbls, srcIndex);
+                    doSetVar(frame, stack, sDbl, stackTop, vars, varDbls, varAttributes, indexReg);
+                    stack[stackTop] = null;
+                    return stackTop - 1;
+                }
+            case Icode_SETVAR_POP:
+                {
+                    int indexReg = 0xFF & iCode[frame.pc++];
+                    doSetVar(frame, stack, sDbl, stackTop, vars, varDbls, varAttributes, indexReg);
+                    stack[stackTop] = null;
+                    return stackTop - 1;
+                }
+        }
+        throw Kit.codeBug();
+    }
+
+    /**
+     * Run the binary operation op, given as its token, on the two values on top of the stack.
+     *
+     * @return the new stack top, where the result is
+     */
+    private static int doBinaryOp(
+            Context cx, CallFrame frame, int op, Object[] stack, double[] sDbl, int stackTop) {
+        switch (op) {
+            case Token.ADD:
+                --stackTop;
+                doAdd(stack, sDbl, stackTop, cx);
+                return stackTop;
+            case Token.SUB:
+            case Token.MUL:
+            case Token.DIV:
+            case Token.MOD:
+                return doArithmetic(frame, op, stack, sDbl, stackTop);
+            case Token.LT:
+            case Token.LE:
+            case Token.GT:
+            case Token.GE:
+                return doCompare(frame, op, stack, sDbl, stackTop);
+            case Token.EQ:
+            case Token.NE:
+                {
+                    --stackTop;
+                    boolean valBln = doEquals(stack, sDbl, stackTop);
+                    stack[stackTop] = ScriptRuntime.wrapBoolean(valBln ^ (op == Token.NE));
+                    return stackTop;
+                }
+            case Token.SHEQ:
+            case Token.SHNE:
+                {
+                    --stackTop;
+                    boolean valBln = doShallowEquals(stack, sDbl, stackTop);
+                    stack[stackTop] = ScriptRuntime.wrapBoolean(valBln ^ (op == Token.SHNE));
+                    return stackTop;
+                }
+            case Token.BITAND:
+            case Token.BITOR:
+            case Token.BITXOR:
+            case Token.LSH:
+            case Token.RSH:
+                return doBitOp(frame, op, stack, sDbl, stackTop);
+            case Token.URSH:
+                {
+                    double lDbl = stack_double(frame, stackTop - 1);
+                    int rIntValue = stack_int32(frame, stackTop) & 0x1F;
+                    stack[--stackTop] = DOUBLE_MARK;
+                    sDbl[stackTop] = ScriptRuntime.toUint32(lDbl) >>> rIntValue;
+                    return stackTop;
+                }
+        }
+        throw Kit.codeBug();
+    }
+
+    /** Store the result of the binary operation op, given as its token, on two numbers. */
+    private static void doNumberBinaryOp(
+            int op, double lDbl, double rDbl, Object[] stack, double[] sDbl, int stackTop) {
+        double result;
+        switch (op) {
+            case Token.ADD:
+                result = lDbl + rDbl;
+                break;
+            case Token.SUB:
+                result = lDbl - rDbl;
+                break;
+            case Token.MUL:
+                result = lDbl * rDbl;
+                break;
+            case Token.DIV:
+                result = lDbl / rDbl;
+                break;
+            case Token.MOD:
+                result = lDbl % rDbl;
+                break;
+            case Token.BITAND:
+                result = ScriptRuntime.toInt32(lDbl) & ScriptRuntime.toInt32(rDbl);
+                break;
+            case Token.BITOR:
+                result = ScriptRuntime.toInt32(lDbl) | ScriptRuntime.toInt32(rDbl);
+                break;
+            case Token.BITXOR:
+                result = ScriptRuntime.toInt32(lDbl) ^ ScriptRuntime.toInt32(rDbl);
+                break;
+            case Token.LSH:
+                result = ScriptRuntime.toInt32(lDbl) << ScriptRuntime.toInt32(rDbl);
+                break;
+            case Token.RSH:
+                result = ScriptRuntime.toInt32(lDbl) >> ScriptRuntime.toInt32(rDbl);
+                break;
+            case Token.URSH:
+                result = ScriptRuntime.toUint32(lDbl) >>> (ScriptRuntime.toInt32(rDbl) & 0x1F);
+                break;
+            case Token.LT:
+                stack[stackTop] = ScriptRuntime.wrapBoolean(lDbl < rDbl);
+                return;
+            case Token.LE:
+                stack[stackTop] = ScriptRuntime.wrapBoolean(lDbl <= rDbl);
+                return;
+            case Token.GT:
+                stack[stackTop] = ScriptRuntime.wrapBoolean(lDbl > rDbl);
+                return;
+            case Token.GE:
+                stack[stackTop] = ScriptRuntime.wrapBoolean(lDbl >= rDbl);
+                return;
+            case Token.EQ:
+            case Token.SHEQ:
+                stack[stackTop] = ScriptRuntime.wrapBoolean(lDbl == rDbl);
+                return;
+            case Token.NE:
+            case Token.SHNE:
+                stack[stackTop] = ScriptRuntime.wrapBoolean(lDbl != rDbl);
+                return;
+            default:
+                throw Kit.codeBug();
+        }
+        stack[stackTop] = DOUBLE_MARK;
+        sDbl[stackTop] = result;
+    }
+
+    /**
+     * Run the numeric icode op on the two values on top of the stack. It takes the generic path
+     * of the operation it stands for when they are not both numbers.
+     *
+     * @return the new stack top, where the result is
+     */
+    private static int doNumberOp(
+            Context cx, CallFrame frame, int op, Object[] stack, double[] sDbl, int stackTop) {
+        switch (op) {
+            case Icode_ADD_NUM:
+                --stackTop;
+                if (stack[stackTop] == DOUBLE_MARK && stack[stackTop + 1] == DOUBLE_MARK) {
+                    sDbl[stackTop] += sDbl[stackTop + 1];
+                } else {
+                    doAdd(stack, sDbl, stackTop, cx);
+                }
+                return stackTop;
+            case Icode_SUB_NUM:
+            case Icode_MUL_NUM:
+            case Icode_DIV_NUM:
+            case Icode_MOD_NUM:
+                if (stack[stackTop] == DOUBLE_MARK && stack[stackTop - 1] == DOUBLE_MARK) {
+                    --stackTop;
+                    sDbl[stackTop] = doNumberArithmetic(op, sDbl[stackTop], sDbl[stackTop + 1]);
+                    return stackTop;
+                }
+                return doArithmetic(frame, genericOp(op), stack, sDbl, stackTop);
+            case Icode_LT_NUM:
+            case Icode_LE_NUM:
+            case Icode_GT_NUM:
+            case Icode_GE_NUM:
+                if (stack[stackTop] == DOUBLE_MARK && stack[stackTop - 1] == DOUBLE_MARK) {
+                    --stackTop;
+                    stack[stackTop] =
+                            ScriptRuntime.wrapBoolean(
+                                    doNumberCompare(op, sDbl[stackTop], sDbl[stackTop + 1]));
+                    return stackTop;
+                }
+                return doCompare(frame, genericOp(op), stack, sDbl, stackTop);
+            case Icode_BITAND_INT:
+            case Icode_BITOR_INT:
+            case Icode_BITXOR_INT:
+            case Icode_LSH_INT:
+            case Icode_RSH_INT:
+                if (stack[stackTop] == DOUBLE_MARK && stack[stackTop - 1] == DOUBLE_MARK) {
+                    --stackTop;
+                    sDbl[stackTop] =
+                            doIntBitOp(
+                                    op,
+                                    ScriptRuntime.toInt32(sDbl[stackTop]),
+                                    ScriptRuntime.toInt32(sDbl[stackTop + 1]));
+                    return stackTop;
+                }
+                return doBitOp(frame, genericOp(op), stack, sDbl, stackTop);
+        }
+        throw Kit.codeBug();
+    }
+
+    /**
+     * Compare the two numbers above stackTop for the fused comparison op and step over the IFEQ or
+     * IFNE that follows it.
+     *
+     * @return whether that IFEQ or IFNE jumps
+     */
+    private static boolean doNumberCompareJumps(
+            CallFrame frame, int op, double[] sDbl, int stackTop) {
+        boolean valBln = doNumberCompare(unfusedOp(op), sDbl[stackTop + 1], sDbl[stackTop + 2]);
+        // IFEQ jumps when the comparison holds, IFNE when it does not
+        return valBln == (frame.idata.itsICode[frame.pc++] == Token.IFEQ);
+    }
+
+    private static double doNumberArithmetic(int op, double lDbl, double rDbl) {
+        switch (op) {
+            case Icode_SUB_NUM:
+                return lDbl - rDbl;
+            case Icode_MUL_NUM:
+                return lDbl * rDbl;
+            case Icode_DIV_NUM:
+                return lDbl / rDbl;
+            case Icode_MOD_NUM:
+                return lDbl % rDbl;
+        }
+        throw Kit.codeBug();
+    }
+
+    private static boolean doNumberCompare(int op, double lDbl, double rDbl) {
+        switch (op) {
+            case Icode_LT_NUM:
+                return lDbl < rDbl;
+            case Icode_LE_NUM:
+                return lDbl <= rDbl;
+            case Icode_GT_NUM:
+                return lDbl > rDbl;
+            case Icode_GE_NUM:
+                return lDbl >= rDbl;
+        }
+        throw Kit.codeBug();
+    }
+
+    private static int doIntBitOp(int op, int lInt, int rInt) {
+        switch (op) {
+            case Icode_BITAND_INT:
+                return lInt & rInt;
+            case Icode_BITOR_INT:
+                return lInt | rInt;
+            case Icode_BITXOR_INT:
+                return lInt ^ rInt;
+            case Icode_LSH_INT:
+                return lInt << rInt;
+            case Icode_RSH_INT:
+                return lInt >> rInt;
+        }
+        throw Kit.codeBug();
+    }
+
+    /** Get the arguments object of a frame without activation, creating it on first use. */
+    private static Scriptable argumentsObject(CallFrame frame) {
+        if (frame.argumentsObj == null) {
+            Object[] args = frame.argsSource;
+            if (frame.argsDblSource != null
+                    || frame.argsShift != 0
+                    || args.length != frame.argsCount) {
+                args = getArgsArray(args, frame.argsDblSource, frame.argsShift, frame.argsCount);
+            }
+            InterpretedFunction f = frame.fnOrScript;
+            Arguments arguments = new Arguments(f, f.getParentScope(), args);
+            arguments.defineAttributesForStrictMode();
+            frame.argumentsObj = arguments;
+            frame.argsSource = null;
+            frame.argsDblSource = null;
+        }
+        return frame.argumentsObj;
+    }
+
     private static Object[] getArgsArray(Object[] stack, double[] sDbl, int shift, int count) {
         if (count == 0) {
             return InterpreterConstants.emptyArgs;
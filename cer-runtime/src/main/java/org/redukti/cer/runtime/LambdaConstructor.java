@@ -120,6 +120,24 @@ public class LambdaConstructor extends LambdaFunction {
         proto.defineProperty(key, value, attributes);
     }
 
+    /**
+     * Define a non-enumerable accessor property on the prototype of this constructor. The getter
+     * is a LambdaFunction and there is no setter.
+     *
+     * @param key a String or Symbol to use to look up the property
+     * @param name the name of the property, used to name the getter function
+     * @param getter the target to call when the property is read
+     */
+    public void definePrototypeGetter(
+            Context cx, Scriptable scope, Object key, String name, Callable getter) {
+        ScriptableObject desc = (ScriptableObject) cx.newObject(scope);
+        ScriptableObject.putProperty(desc, "enumerable", Boolean.FALSE);
+        ScriptableObject.putProperty(desc, "configurable", Boolean.TRUE);
+        ScriptableObject.putProperty(
+                desc, "get", new LambdaFunction(scope, "get " + name, 0, getter));
+        getPrototypeScriptable().defineOwnProperty(cx, key, desc);
+    }
+
     /**
      * Define a function property directly on the constructor that is implemented under the covers
      * by a LambdaFunction.
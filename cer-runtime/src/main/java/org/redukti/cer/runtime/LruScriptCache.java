@@ -0,0 +1,91 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.redukti.cer.ir.InterpreterData;
+
+/**
+ * A {@link ScriptCache} that keeps up to a fixed number of compiled scripts and evicts the least
+ * recently used one when it is full. All operations synchronize on the cache.
+ */
+public class LruScriptCache implements ScriptCache {
+
+    private final int maxSize;
+    private final LinkedHashMap<Key, InterpreterData> map;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /** @param maxSize the maximum number of compiled scripts to keep */
+    public LruScriptCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException(String.valueOf(maxSize));
+        }
+        this.maxSize = maxSize;
+        this.map =
+                new LinkedHashMap<Key, InterpreterData>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Key, InterpreterData> eldest) {
+                        if (size() > LruScriptCache.this.maxSize) {
+                            evictionCount++;
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+    }
+
+    @Override
+    public synchronized InterpreterData get(Key key) {
+        InterpreterData idata = map.get(key);
+        if (idata != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return idata;
+    }
+
+    @Override
+    public synchronized void put(Key key, InterpreterData idata) {
+        map.put(key, idata);
+    }
+
+    /** Return the number of compiled scripts in the cache. */
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Remove all compiled scripts. The counters are kept. */
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    @Override
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    @Override
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+}
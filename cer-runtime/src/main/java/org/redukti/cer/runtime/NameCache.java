@@ -0,0 +1,139 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime;
+
+import java.lang.ref.WeakReference;
+import org.redukti.cer.Scriptable;
+
+/**
+ * Inline cache for a single reference to a name in a script, such as <code>Math</code> or a
+ * function declared at the top level, when it is looked up directly in the top level scope.
+ *
+ * <p>The cache remembers the scope together with the {@link Slot} that backs the name on it.
+ * Adding properties or changing their values does not affect the slot, so the entry stays valid
+ * until a named slot of the scope is removed or replaced, which the scope tracks in its removal
+ * version. A hit costs an identity and an integer comparison instead of a scope walk.
+ *
+ * <p>Names found on the direct prototype of the scope, as with the scopes returned by {@link
+ * Context#initSharedStandardObjects()}, are cached as well; such an entry additionally requires
+ * that no property was added to the scope and that its prototype is unchanged.
+ *
+ * <p>Lookups that start in a nested scope or use dynamic scope are not cached. Entries are
+ * immutable so the cache tolerates races.
+ */
+public final class NameCache {
+
+    private static final class Entry {
+        final WeakReference<ScriptableObject> scope;
+        final int removalVersion;
+        // Null if the name is an own property of the scope
+        final ScriptableObject holder;
+        final int scopeVersion;
+        final int holderVersion;
+        final Slot slot;
+
+        Entry(ScriptableObject scope, int removalVersion, ScriptableObject holder, Slot slot) {
+            this.scope = new WeakReference<ScriptableObject>(scope);
+            this.removalVersion = removalVersion;
+            this.holder = holder;
+            this.scopeVersion = holder == null ? 0 : scope.getStructureVersion();
+            this.holderVersion = holder == null ? 0 : holder.getStructureVersion();
+            this.slot = slot;
+        }
+
+        boolean isValid(Scriptable obj) {
+            if (scope.get() != obj
+                    || ((ScriptableObject) obj).getRemovalVersion() != removalVersion) {
+                return false;
+            }
+            if (holder == null) {
+                return true;
+            }
+            ScriptableObject sobj = (ScriptableObject) obj;
+            return sobj.getStructureVersion() == scopeVersion
+                    && sobj.getPrototype() == holder
+                    && holder.getStructureVersion() == holderVersion;
+        }
+    }
+
+    private final String name;
+    private Entry entry;
+
+    public NameCache(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Cached equivalent of {@link ScriptRuntime#name(Context, Scriptable, String)}. */
+    public Object name(Context cx, Scriptable scope) {
+        Slot slot = findSlot(cx, scope);
+        if (slot != null) {
+            return slot.getValue(scope);
+        }
+        return ScriptRuntime.name(cx, scope, name);
+    }
+
+    /**
+     * Cached equivalent of {@link ScriptRuntime#getNameFunctionAndThis(String, Context,
+     * Scriptable)}.
+     */
+    public Callable getNameFunctionAndThis(Context cx, Scriptable scope) {
+        Slot slot = findSlot(cx, scope);
+        if (slot != null) {
+            Object value = slot.getValue(scope);
+            if (value instanceof Callable) {
+                // Top scope is not NativeWith or NativeCall => thisObj == scope
+                ScriptRuntime.storeScriptable(cx, scope);
+                return (Callable) value;
+            }
+        }
+        return ScriptRuntime.getNameFunctionAndThis(name, cx, scope);
+    }
+
+    /**
+     * Find the slot backing the name in the scope, filling the cache on a miss.
+     *
+     * @return the slot or null if the lookup can not be cached
+     */
+    private Slot findSlot(Context cx, Scriptable scope) {
+        if (cx.useDynamicScope) {
+            return null;
+        }
+        Entry current = entry;
+        if (current != null && current.isValid(scope)) {
+            return current.slot;
+        }
+        if (scope.getParentScope() != null
+                || !(scope instanceof ScriptableObject)
+                || !PropertyCache.isSlotGet(scope.getClass())) {
+            return null;
+        }
+        ScriptableObject sobj = (ScriptableObject) scope;
+        // Read the version first so that a concurrent removal invalidates the new entry
+        int removalVersion = sobj.getRemovalVersion();
+        Slot slot = sobj.queryOwnSlot(name);
+        if (slot != null) {
+            entry = new Entry(sobj, removalVersion, null, slot);
+            return slot;
+        }
+        Scriptable proto = sobj.getPrototype();
+        if (PropertyCache.isPlainGet(sobj.getClass())
+                && proto instanceof ScriptableObject
+                && PropertyCache.isSlotGet(proto.getClass())) {
+            ScriptableObject holder = (ScriptableObject) proto;
+            slot = holder.queryOwnSlot(name);
+            if (slot != null) {
+                entry = new Entry(sobj, removalVersion, holder, slot);
+                return slot;
+            }
+        }
+        return null;
+    }
+}
@@ -12,6 +12,7 @@ import org.redukti.cer.runtime.regexp.NativeRegExp;
 import org.redukti.cer.utils.ObjToIntMap;
 
 import java.io.Serializable;
+import java.math.BigInteger;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -67,16 +68,48 @@ public class NativeArray extends IdScriptableObject implements List {
         if (denseOnly) {
             int intLength = (int) lengthArg;
             if (intLength < DEFAULT_INITIAL_CAPACITY) intLength = DEFAULT_INITIAL_CAPACITY;
-            dense = new Object[intLength];
-            Arrays.fill(dense, Scriptable.NOT_FOUND);
+            // All holes, which an array that is filled from the front keeps as ints
+            ints = new int[intLength];
         }
         length = lengthArg;
     }
 
+    /**
+     * Create an array with the given elements. The array is used for the elements, unless they
+     * are all numbers, in which case they are copied to primitive storage.
+     */
     public NativeArray(Object[] array) {
         denseOnly = true;
-        dense = array;
         length = array.length;
+        boolean allInts = true;
+        for (Object value : array) {
+            if (value instanceof Integer) {
+                continue;
+            }
+            if (value instanceof Double) {
+                if (allInts && !isInt(((Double) value).doubleValue())) {
+                    allInts = false;
+                }
+            } else if (value == NOT_FOUND) {
+                allInts = false;
+            } else {
+                dense = array;
+                return;
+            }
+        }
+        if (allInts) {
+            ints = new int[array.length];
+            for (int i = 0; i < array.length; i++) {
+                ints[i] = ((Number) array[i]).intValue();
+            }
+            intsLength = array.length;
+        } else {
+            doubles = new double[array.length];
+            for (int i = 0; i < array.length; i++) {
+                Object value = array[i];
+                doubles[i] = value == NOT_FOUND ? HOLE : canonical(((Number) value).doubleValue());
+            }
+        }
     }
 
     @Override
@@ -466,17 +499,261 @@ public class NativeArray extends IdScriptableObject implements List {
     @Override
     public Object get(int index, Scriptable start) {
         if (!denseOnly && isGetterOrSetter(null, index, false)) return super.get(index, start);
-        if (dense != null && 0 <= index && index < dense.length) return dense[index];
+        if (0 <= index && index < capacity()) return getDense(index);
         return super.get(index, start);
     }
 
     @Override
     public boolean has(int index, Scriptable start) {
         if (!denseOnly && isGetterOrSetter(null, index, false)) return super.has(index, start);
-        if (dense != null && 0 <= index && index < dense.length) return dense[index] != NOT_FOUND;
+        if (0 <= index && index < capacity()) return getDense(index) != NOT_FOUND;
         return super.has(index, start);
     }
 
+    /** @return the number of elements the fast storage can hold, or 0 if there is none */
+    private int capacity() {
+        if (dense != null) return dense.length;
+        if (ints != null) return ints.length;
+        if (doubles != null) return doubles.length;
+        return 0;
+    }
+
+    private boolean hasDense() {
+        return dense != null || ints != null || doubles != null;
+    }
+
+    /** @return the element at index, which must be below capacity(), or NOT_FOUND for a hole */
+    private Object getDense(int index) {
+        if (dense != null) {
+            return dense[index];
+        }
+        if (ints != null) {
+            return index < intsLength ? Integer.valueOf(ints[index]) : NOT_FOUND;
+        }
+        double d = doubles[index];
+        return isHole(d) ? NOT_FOUND : Double.valueOf(d);
+    }
+
+    /**
+     * Store value at index, which must be below capacity(), moving to more general storage if
+     * needed. NOT_FOUND makes a hole.
+     */
+    private void setDense(int index, Object value) {
+        if (dense != null) {
+            dense[index] = value;
+        } else if (value instanceof Integer || value instanceof Double) {
+            setDenseNumber(index, ((Number) value).doubleValue());
+        } else if (value == NOT_FOUND) {
+            clearDense(index, index + 1);
+        } else {
+            toObjects();
+            dense[index] = value;
+        }
+    }
+
+    private void setDenseNumber(int index, double value) {
+        if (ints != null) {
+            if (index <= intsLength && isInt(value)) {
+                ints[index] = (int) value;
+                if (index == intsLength) {
+                    intsLength++;
+                }
+                return;
+            }
+            toDoubles();
+        }
+        if (doubles != null) {
+            doubles[index] = canonical(value);
+        } else {
+            dense[index] = ScriptRuntime.wrapNumber(value);
+        }
+    }
+
+    /** Make holes of the elements from start to end, which must not be above capacity(). */
+    private void clearDense(int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        if (ints != null) {
+            if (end < intsLength) {
+                toDoubles();
+            } else {
+                intsLength = Math.min(intsLength, start);
+                return;
+            }
+        }
+        if (doubles != null) {
+            Arrays.fill(doubles, start, end, HOLE);
+        } else {
+            Arrays.fill(dense, start, end, NOT_FOUND);
+        }
+    }
+
+    /**
+     * Move count elements from one place in the fast storage to another, which must both be
+     * below capacity(). Overlapping ranges are copied as if through a temporary array.
+     */
+    private void moveDense(int from, int to, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (ints != null) {
+            if (from + count <= intsLength && to <= intsLength) {
+                System.arraycopy(ints, from, ints, to, count);
+                intsLength = Math.max(intsLength, to + count);
+                return;
+            }
+            toDoubles();
+        }
+        if (doubles != null) {
+            System.arraycopy(doubles, from, doubles, to, count);
+        } else {
+            System.arraycopy(dense, from, dense, to, count);
+        }
+    }
+
+    private void toDoubles() {
+        double[] values = new double[ints.length];
+        for (int i = 0; i < intsLength; i++) {
+            values[i] = ints[i];
+        }
+        Arrays.fill(values, intsLength, values.length, HOLE);
+        doubles = values;
+        ints = null;
+    }
+
+    private void toObjects() {
+        Object[] values = new Object[capacity()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getDense(i);
+        }
+        dense = values;
+        ints = null;
+        doubles = null;
+    }
+
+    /** Copy the first count elements of the fast storage of source to this array at offset. */
+    private void copyDense(NativeArray source, int offset, int count) {
+        if (ints != null && source.ints != null) {
+            if (intsLength == offset && source.intsLength >= count) {
+                System.arraycopy(source.ints, 0, ints, offset, count);
+                intsLength = offset + count;
+                return;
+            }
+        } else if (doubles != null && source.doubles != null) {
+            System.arraycopy(source.doubles, 0, doubles, offset, count);
+            return;
+        } else if (dense != null && source.dense != null) {
+            System.arraycopy(source.dense, 0, dense, offset, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            setDense(offset + i, source.getDense(i));
+        }
+    }
+
+    private static boolean isNumber(Object value) {
+        return value instanceof Number && !(value instanceof BigInteger);
+    }
+
+    /**
+     * Search for a number from start towards end, which is not searched, without boxing the
+     * elements held as primitives. Holes are looked up on the prototype, as the searches over
+     * Object storage do.
+     *
+     * @param sameValueZero true to compare as includes() does, false to compare as indexOf()
+     * @return the index of the first match, or -1
+     */
+    private int findNumber(double target, boolean sameValueZero, int start, int end, int step) {
+        Scriptable proto = getPrototype();
+        boolean findNaN = sameValueZero && target != target;
+        Object boxed = null;
+        for (int i = start; i != end; i += step) {
+            if (ints != null && i < intsLength) {
+                if (ints[i] == target) {
+                    return i;
+                }
+                continue;
+            }
+            if (doubles != null && !isHole(doubles[i])) {
+                double d = doubles[i];
+                if (d == target || (findNaN && d != d)) {
+                    return i;
+                }
+                continue;
+            }
+            // A hole, or an element of Object storage if a getter on the prototype changed
+            // the kind of this array while searching
+            Object val = getDense(i);
+            if (val == NOT_FOUND && proto != null) {
+                val = ScriptableObject.getProperty(proto, i);
+            }
+            if (boxed == null) {
+                boxed = ScriptRuntime.wrapNumber(target);
+            }
+            if (sameValueZero) {
+                if (ScriptRuntime.sameZero(val == NOT_FOUND ? Undefined.instance : val, boxed)) {
+                    return i;
+                }
+            } else if (val != NOT_FOUND && ScriptRuntime.shallowEq(val, boxed)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isInt(double d) {
+        return (int) d == d && Double.doubleToRawLongBits(d) != NEGATIVE_ZERO_BITS;
+    }
+
+    private static double canonical(double d) {
+        return d != d ? Double.NaN : d;
+    }
+
+    static boolean isHole(double d) {
+        return Double.doubleToRawLongBits(d) == HOLE_BITS;
+    }
+
+    /**
+     * Read an element without boxing it, for the interpreter.
+     *
+     * @return the element at index if it is held as a primitive number, or HOLE otherwise
+     */
+    double getNumber(int index) {
+        if (denseOnly && index >= 0) {
+            if (ints != null) {
+                if (index < intsLength) {
+                    return ints[index];
+                }
+            } else if (doubles != null && index < doubles.length) {
+                return doubles[index];
+            }
+        }
+        return HOLE;
+    }
+
+    /**
+     * Store a number without boxing it, for the interpreter. Only stores that fit in the fast
+     * storage as it is are done here.
+     *
+     * @return false if the store must go through put() instead
+     */
+    boolean setNumber(int index, double value) {
+        if (!denseOnly
+                || index < 0
+                || index >= capacity()
+                || isSealed()
+                || (index >= length && !isExtensible())) {
+            return false;
+        }
+        setDenseNumber(index, value);
+        if (length <= index) {
+            length = (long) index + 1;
+            modCount++;
+        }
+        return true;
+    }
+
     private static long toArrayIndex(Object id) {
         if (id instanceof String) {
             return toArrayIndex((String) id);
@@ -528,16 +805,22 @@ public class NativeArray extends IdScriptableObject implements List {
     }
 
     private boolean ensureCapacity(int capacity) {
-        if (capacity > dense.length) {
+        int oldCapacity = capacity();
+        if (capacity > oldCapacity) {
             if (capacity > MAX_PRE_GROW_SIZE) {
                 denseOnly = false;
                 return false;
             }
-            capacity = Math.max(capacity, (int) (dense.length * GROW_FACTOR));
-            Object[] newDense = new Object[capacity];
-            System.arraycopy(dense, 0, newDense, 0, dense.length);
-            Arrays.fill(newDense, dense.length, newDense.length, Scriptable.NOT_FOUND);
-            dense = newDense;
+            capacity = Math.max(capacity, (int) (oldCapacity * GROW_FACTOR));
+            if (ints != null) {
+                ints = Arrays.copyOf(ints, capacity);
+            } else if (doubles != null) {
+                doubles = Arrays.copyOf(doubles, capacity);
+                Arrays.fill(doubles, oldCapacity, capacity, HOLE);
+            } else {
+                dense = Arrays.copyOf(dense, capacity);
+                Arrays.fill(dense, oldCapacity, capacity, Scriptable.NOT_FOUND);
+            }
         }
         return true;
     }
@@ -546,22 +829,22 @@ public class NativeArray extends IdScriptableObject implements List {
     public void put(int index, Scriptable start, Object value) {
         if (start == this
                 && !isSealed()
-                && dense != null
+                && hasDense()
                 && 0 <= index
                 && (denseOnly || !isGetterOrSetter(null, index, true))) {
             if (!isExtensible() && this.length <= index) {
                 return;
-            } else if (index < dense.length) {
-                dense[index] = value;
+            } else if (index < capacity()) {
+                setDense(index, value);
                 if (this.length <= index) {
                     this.length = (long) index + 1;
                     this.modCount++;
                 }
                 return;
             } else if (denseOnly
-                    && index < dense.length * GROW_FACTOR
+                    && index < capacity() * GROW_FACTOR
                     && ensureCapacity(index + 1)) {
-                dense[index] = value;
+                setDense(index, value);
                 this.length = (long) index + 1;
                 this.modCount++;
                 return;
@@ -582,12 +865,11 @@ public class NativeArray extends IdScriptableObject implements List {
 
     @Override
     public void delete(int index) {
-        if (dense != null
-                && 0 <= index
-                && index < dense.length
+        if (0 <= index
+                && index < capacity()
                 && !isSealed()
                 && (denseOnly || !isGetterOrSetter(null, index, true))) {
-            dense[index] = NOT_FOUND;
+            clearDense(index, index + 1);
         } else {
             super.delete(index);
         }
@@ -596,10 +878,10 @@ public class NativeArray extends IdScriptableObject implements List {
     @Override
     public Object[] getIds(boolean nonEnumerable, boolean getSymbols) {
         Object[] superIds = super.getIds(nonEnumerable, getSymbols);
-        if (dense == null) {
+        if (!hasDense()) {
             return superIds;
         }
-        int N = dense.length;
+        int N = capacity();
         long currentLength = length;
         if (N > currentLength) {
             N = (int) currentLength;
@@ -613,7 +895,7 @@ public class NativeArray extends IdScriptableObject implements List {
         int presentCount = 0;
         for (int i = 0; i != N; ++i) {
             // Replace existing elements by their indexes
-            if (dense[i] != NOT_FOUND) {
+            if (getDense(i) != NOT_FOUND) {
                 ids[presentCount] = Integer.valueOf(i);
                 ++presentCount;
             }
@@ -664,7 +946,7 @@ public class NativeArray extends IdScriptableObject implements List {
 
     @Override
     public int getAttributes(int index) {
-        if (dense != null && index >= 0 && index < dense.length && dense[index] != NOT_FOUND) {
+        if (index >= 0 && index < capacity() && getDense(index) != NOT_FOUND) {
             return EMPTY;
         }
         return super.getAttributes(index);
@@ -672,11 +954,13 @@ public class NativeArray extends IdScriptableObject implements List {
 
     @Override
     protected ScriptableObject getOwnPropertyDescriptor(Context cx, Object id) {
-        if (dense != null) {
+        if (hasDense()) {
             int index = toDenseIndex(id);
-            if (0 <= index && index < dense.length && dense[index] != NOT_FOUND) {
-                Object value = dense[index];
-                return defaultIndexPropertyDescriptor(value);
+            if (0 <= index && index < capacity()) {
+                Object value = getDense(index);
+                if (value != NOT_FOUND) {
+                    return defaultIndexPropertyDescriptor(value);
+                }
             }
         }
         return super.getOwnPropertyDescriptor(cx, id);
@@ -691,7 +975,10 @@ public class NativeArray extends IdScriptableObject implements List {
             modCount++;
         }
 
-        if (index != -1 && dense != null) {
+        if (index != -1 && hasDense()) {
+            if (dense == null) {
+                toObjects();
+            }
             Object[] values = dense;
             dense = null;
             denseOnly = false;
@@ -883,7 +1170,7 @@ public class NativeArray extends IdScriptableObject implements List {
         if (denseOnly) {
             if (longVal < length) {
                 // downcast okay because denseOnly
-                Arrays.fill(dense, (int) longVal, dense.length, NOT_FOUND);
+                clearDense((int) longVal, capacity());
                 length = longVal;
                 modCount++;
                 return;
@@ -1138,7 +1425,15 @@ public class NativeArray extends IdScriptableObject implements List {
                     if (i != 0) {
                         sb.append(separator);
                     }
-                    if (i < na.dense.length) {
+                    if (na.ints != null) {
+                        if (i < na.intsLength) {
+                            sb.append(na.ints[i]);
+                        }
+                    } else if (na.doubles != null) {
+                        if (i < na.doubles.length && !isHole(na.doubles[i])) {
+                            sb.append(ScriptRuntime.numberToString(na.doubles[i], 10));
+                        }
+                    } else if (i < na.dense.length) {
                         Object temp = na.dense[i];
                         if (temp != null
                                 && temp != Undefined.instance
@@ -1186,10 +1481,24 @@ public class NativeArray extends IdScriptableObject implements List {
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
             if (na.denseOnly) {
-                for (int i = 0, j = ((int) na.length) - 1; i < j; i++, j--) {
-                    Object temp = na.dense[i];
-                    na.dense[i] = na.dense[j];
-                    na.dense[j] = temp;
+                int len = (int) na.length;
+                if (na.ints != null && na.intsLength < len) {
+                    na.toDoubles();
+                }
+                for (int i = 0, j = len - 1; i < j; i++, j--) {
+                    if (na.ints != null) {
+                        int temp = na.ints[i];
+                        na.ints[i] = na.ints[j];
+                        na.ints[j] = temp;
+                    } else if (na.doubles != null) {
+                        double temp = na.doubles[i];
+                        na.doubles[i] = na.doubles[j];
+                        na.doubles[j] = temp;
+                    } else {
+                        Object temp = na.dense[i];
+                        na.dense[i] = na.dense[j];
+                        na.dense[j] = temp;
+                    }
                 }
                 return o;
             }
@@ -1249,6 +1558,24 @@ public class NativeArray extends IdScriptableObject implements List {
             throw Context.reportRuntimeErrorById(
                     "msg.arraylength.too.big", String.valueOf(llength));
         }
+        if (comparator == DEFAULT_COMPARATOR && o instanceof NativeArray) {
+            NativeArray na = (NativeArray) o;
+            if (na.denseOnly && na.ints != null && na.intsLength == length) {
+                // Without a compare function the elements are ordered by their strings, and two
+                // ints with the same string are the same int, so the order of equal keys does
+                // not matter here
+                String[] keys = new String[length];
+                for (int i = 0; i < length; i++) {
+                    keys[i] = Integer.toString(na.ints[i]);
+                }
+                Arrays.sort(keys);
+                for (int i = 0; i < length; i++) {
+                    na.ints[i] = Integer.parseInt(keys[i]);
+                }
+                return o;
+            }
+        }
+
         // copy the JS array into a working array, so it can be
         // sorted cheaply.
         final Object[] working = new Object[length];
@@ -1273,7 +1600,7 @@ public class NativeArray extends IdScriptableObject implements List {
             NativeArray na = (NativeArray) o;
             if (na.denseOnly && na.ensureCapacity((int) na.length + args.length)) {
                 for (int i = 0; i < args.length; i++) {
-                    na.dense[(int) na.length++] = args[i];
+                    na.setDense((int) na.length++, args[i]);
                     na.modCount++;
                 }
                 return ScriptRuntime.wrapNumber(na.length);
@@ -1307,9 +1634,9 @@ public class NativeArray extends IdScriptableObject implements List {
             if (na.denseOnly && na.length > 0) {
                 na.length--;
                 na.modCount++;
-                result = na.dense[(int) na.length];
-                na.dense[(int) na.length] = NOT_FOUND;
-                return result;
+                result = na.getDense((int) na.length);
+                na.clearDense((int) na.length, (int) na.length + 1);
+                return result == NOT_FOUND ? Undefined.instance : result;
             }
         }
         long length = getLengthProperty(cx, o);
@@ -1341,9 +1668,9 @@ public class NativeArray extends IdScriptableObject implements List {
             if (na.denseOnly && na.length > 0) {
                 na.length--;
                 na.modCount++;
-                Object result = na.dense[0];
-                System.arraycopy(na.dense, 1, na.dense, 0, (int) na.length);
-                na.dense[(int) na.length] = NOT_FOUND;
+                Object result = na.getDense(0);
+                na.moveDense(1, 0, (int) na.length);
+                na.clearDense((int) na.length, (int) na.length + 1);
                 return result == NOT_FOUND ? Undefined.instance : result;
             }
         }
@@ -1383,9 +1710,14 @@ public class NativeArray extends IdScriptableObject implements List {
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
             if (na.denseOnly && na.ensureCapacity((int) na.length + args.length)) {
-                System.arraycopy(na.dense, 0, na.dense, args.length, (int) na.length);
+                if (na.ints != null && na.intsLength == na.length) {
+                    // Every element below the new length is stored here, so the ints stay
+                    // packed unless one of the arguments is not an int
+                    na.intsLength = (int) na.length + args.length;
+                }
+                na.moveDense(0, args.length, (int) na.length);
                 for (int i = 0; i < args.length; i++) {
-                    na.dense[i] = args[i];
+                    na.setDense(i, args[i]);
                 }
                 na.length += args.length;
                 na.modCount++;
@@ -1486,7 +1818,9 @@ public class NativeArray extends IdScriptableObject implements List {
                 if (denseMode) {
                     int intLen = (int) (end - begin);
                     Object[] copy = new Object[intLen];
-                    System.arraycopy(na.dense, (int) begin, copy, 0, intLen);
+                    for (int i = 0; i < intLen; i++) {
+                        copy[i] = na.getDense((int) begin + i);
+                    }
                     result = cx.newArray(scope, copy);
                 } else {
                     Scriptable resultArray = cx.newArray(scope, 0);
@@ -1514,13 +1848,16 @@ public class NativeArray extends IdScriptableObject implements List {
         if (denseMode
                 && length + delta < Integer.MAX_VALUE
                 && na.ensureCapacity((int) (length + delta))) {
-            System.arraycopy(
-                    na.dense, (int) end, na.dense, (int) (begin + argc), (int) (length - end));
-            if (argc > 0) {
-                System.arraycopy(args, 2, na.dense, (int) begin, argc);
+            if (delta > 0 && na.ints != null && na.intsLength == length) {
+                // As in unshift, the gap is filled with the arguments below
+                na.intsLength = (int) (length + delta);
+            }
+            na.moveDense((int) end, (int) (begin + argc), (int) (length - end));
+            for (int i = 0; i < argc; i++) {
+                na.setDense((int) begin + i, args[i + 2]);
             }
             if (delta < 0) {
-                Arrays.fill(na.dense, (int) (length + delta), (int) length, NOT_FOUND);
+                na.clearDense((int) (length + delta), (int) length);
             }
             na.length = length + delta;
             na.modCount++;
@@ -1599,8 +1936,7 @@ public class NativeArray extends IdScriptableObject implements List {
                 if (denseArg.denseOnly) {
                     // Now we can optimize
                     denseResult.ensureCapacity((int) newlen);
-                    System.arraycopy(
-                            denseArg.dense, 0, denseResult.dense, (int) offset, (int) srclen);
+                    denseResult.copyDense(denseArg, (int) offset, (int) srclen);
                     return newlen;
                 }
                 // We could also optimize here if we are copying to a dense target from a non-dense
@@ -1732,9 +2068,19 @@ public class NativeArray extends IdScriptableObject implements List {
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
             if (na.denseOnly) {
+                if (na.dense == null && isNumber(compareTo)) {
+                    int i =
+                            na.findNumber(
+                                    ((Number) compareTo).doubleValue(),
+                                    false,
+                                    (int) start,
+                                    (int) length,
+                                    1);
+                    return i < 0 ? NEGATIVE_ONE : Long.valueOf(i);
+                }
                 Scriptable proto = na.getPrototype();
                 for (int i = (int) start; i < length; i++) {
-                    Object val = na.dense[i];
+                    Object val = na.getDense(i);
                     if (val == NOT_FOUND && proto != null) {
                         val = ScriptableObject.getProperty(proto, i);
                     }
@@ -1784,9 +2130,15 @@ public class NativeArray extends IdScriptableObject implements List {
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
             if (na.denseOnly) {
+                if (na.dense == null && isNumber(compareTo)) {
+                    int i =
+                            na.findNumber(
+                                    ((Number) compareTo).doubleValue(), false, (int) start, -1, -1);
+                    return i < 0 ? NEGATIVE_ONE : Long.valueOf(i);
+                }
                 Scriptable proto = na.getPrototype();
                 for (int i = (int) start; i >= 0; i--) {
-                    Object val = na.dense[i];
+                    Object val = na.getDense(i);
                     if (val == NOT_FOUND && proto != null) {
                         val = ScriptableObject.getProperty(proto, i);
                     }
@@ -1831,9 +2183,19 @@ public class NativeArray extends IdScriptableObject implements List {
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
             if (na.denseOnly) {
+                if (na.dense == null && isNumber(compareTo)) {
+                    int i =
+                            na.findNumber(
+                                    ((Number) compareTo).doubleValue(),
+                                    true,
+                                    (int) k,
+                                    (int) len,
+                                    1);
+                    return Boolean.valueOf(i >= 0);
+                }
                 Scriptable proto = na.getPrototype();
                 for (int i = (int) k; i < len; i++) {
-                    Object elementK = na.dense[i];
+                    Object elementK = na.getDense(i);
                     if (elementK == NOT_FOUND && proto != null) {
                         elementK = ScriptableObject.getProperty(proto, i);
                     }
@@ -1940,10 +2302,13 @@ public class NativeArray extends IdScriptableObject implements List {
         if ((o instanceof NativeArray) && (count <= Integer.MAX_VALUE)) {
             NativeArray na = (NativeArray) o;
             if (na.denseOnly) {
-                for (; count > 0; count--) {
-                    na.dense[(int) to] = na.dense[(int) from];
-                    from += direction;
-                    to += direction;
+                if (count > 0) {
+                    if (direction < 0) {
+                        // arraycopy copies overlapping ranges correctly from their starts
+                        from = from - count + 1;
+                        to = to - count + 1;
+                    }
+                    na.moveDense((int) from, (int) to, (int) count);
                 }
 
                 return thisObj;
@@ -2020,10 +2385,11 @@ public class NativeArray extends IdScriptableObject implements List {
             int resultLength = id == Id_map ? (int) length : 0;
             array = cx.newArray(scope, resultLength);
         }
+        Callback callback = new Callback(cx, f, parent, thisArg, 3);
         long j = 0;
         for (long i = 0; i < length; i++) {
-            Object[] innerArgs = new Object[3];
-            Object elem = getRawElem(o, i);
+            Object[] innerArgs = callback.args();
+            Object elem = getIterationElem(o, i);
             if (elem == Scriptable.NOT_FOUND) {
                 if (id == Id_find || id == Id_findIndex) {
                     elem = Undefined.instance;
@@ -2034,13 +2400,13 @@ public class NativeArray extends IdScriptableObject implements List {
             innerArgs[0] = elem;
             innerArgs[1] = Long.valueOf(i);
             innerArgs[2] = o;
-            Object result = f.call(cx, parent, thisArg, innerArgs);
+            Object result = callback.call(innerArgs);
             switch (id) {
                 case Id_every:
                     if (!ScriptRuntime.toBoolean(result)) return Boolean.FALSE;
                     break;
                 case Id_filter:
-                    if (ScriptRuntime.toBoolean(result)) defineElem(cx, array, j++, innerArgs[0]);
+                    if (ScriptRuntime.toBoolean(result)) defineElem(cx, array, j++, elem);
                     break;
                 case Id_forEach:
                     break;
@@ -2089,9 +2455,10 @@ public class NativeArray extends IdScriptableObject implements List {
         // hack to serve both reduce and reduceRight with the same loop
         boolean movingLeft = id == Id_reduce;
         Object value = args.length > 1 ? args[1] : Scriptable.NOT_FOUND;
+        Callback callback = new Callback(cx, f, parent, parent, 4);
         for (long i = 0; i < length; i++) {
             long index = movingLeft ? i : (length - 1 - i);
-            Object elem = getRawElem(o, index);
+            Object elem = getIterationElem(o, index);
             if (elem == Scriptable.NOT_FOUND) {
                 continue;
             }
@@ -2099,8 +2466,12 @@ public class NativeArray extends IdScriptableObject implements List {
                 // no initial value passed, use first element found as inital value
                 value = elem;
             } else {
-                Object[] innerArgs = {value, elem, Long.valueOf(index), o};
-                value = f.call(cx, parent, parent, innerArgs);
+                Object[] innerArgs = callback.args();
+                innerArgs[0] = value;
+                innerArgs[1] = elem;
+                innerArgs[2] = Long.valueOf(index);
+                innerArgs[3] = o;
+                value = callback.call(innerArgs);
             }
         }
         if (value == Scriptable.NOT_FOUND) {
@@ -2110,6 +2481,67 @@ public class NativeArray extends IdScriptableObject implements List {
         return value;
     }
 
+    /**
+     * Get an element for an iteration method. The callback may change the array in any way, so
+     * the fast storage is checked again for every element.
+     */
+    private static Object getIterationElem(Scriptable o, long index) {
+        if (o instanceof NativeArray) {
+            NativeArray na = (NativeArray) o;
+            if (na.denseOnly && index < na.capacity()) {
+                Object elem = na.getDense((int) index);
+                if (elem != NOT_FOUND) {
+                    return elem;
+                }
+            }
+        }
+        return getRawElem(o, index);
+    }
+
+    /**
+     * Calls the callback function of an iteration method. An interpreted function that can not
+     * keep a reference to its arguments array, through an arguments object or an activation, gets
+     * the same array for every element, and is entered without going through Function.call().
+     */
+    private static final class Callback {
+        private final Context cx;
+        private final Function f;
+        private final Scriptable scope;
+        private final Scriptable thisObj;
+        private final int argCount;
+        private final InterpretedFunction interpreted;
+        private final Object[] sharedArgs;
+
+        Callback(Context cx, Function f, Scriptable scope, Scriptable thisObj, int argCount) {
+            this.cx = cx;
+            this.f = f;
+            this.scope = scope;
+            this.thisObj = thisObj;
+            this.argCount = argCount;
+            if (f instanceof InterpretedFunction
+                    && ScriptRuntime.hasTopCall(cx)
+                    && Interpreter.canShareArgs(cx, (InterpretedFunction) f)) {
+                interpreted = (InterpretedFunction) f;
+                sharedArgs = new Object[argCount];
+            } else {
+                interpreted = null;
+                sharedArgs = null;
+            }
+        }
+
+        /** @return the array to pass the arguments of the next call in */
+        Object[] args() {
+            return sharedArgs != null ? sharedArgs : new Object[argCount];
+        }
+
+        Object call(Object[] args) {
+            if (interpreted != null) {
+                return Interpreter.interpret(interpreted, cx, scope, thisObj, args);
+            }
+            return f.call(cx, scope, thisObj, args);
+        }
+    }
+
     private static boolean js_isArray(Object o) {
         if (!(o instanceof Scriptable)) {
             return false;
@@ -2618,15 +3050,37 @@ public class NativeArray extends IdScriptableObject implements List {
     /** modCount required for subList/iterators */
     private transient int modCount;
 
-    /**
+    /*
      * Fast storage for dense arrays. Sparse arrays will use the superclass's hashtable storage
-     * scheme.
+     * scheme. At most one of ints, doubles and dense is in use. An array starts out with ints and
+     * moves on to doubles when it gets a number that is not an int or a hole, and to dense when
+     * it gets any other value. It never moves back.
      */
+
+    /** Elements that are all ints: those below intsLength are present, the rest are holes. */
+    private int[] ints;
+
+    private int intsLength;
+
+    /** Elements that are all numbers, with HOLE marking the holes */
+    private double[] doubles;
+
+    /** Elements of any type, with NOT_FOUND marking the holes */
     private Object[] dense;
 
-    /** True if all numeric properties are stored in <code>dense</code>. */
+    /** True if all numeric properties are stored in the fast storage. */
     private boolean denseOnly;
 
+    /**
+     * The NaN that marks a hole in doubles. Stored NaNs are canonicalized to Double.NaN, which has
+     * a different bit pattern.
+     */
+    private static final long HOLE_BITS = 0x7ff8_0000_0000_deadL;
+
+    static final double HOLE = Double.longBitsToDouble(HOLE_BITS);
+
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+
     /** The maximum size of <code>dense</code> that will be allocated initially. */
     private static int maximumInitialCapacity = 10000;
 
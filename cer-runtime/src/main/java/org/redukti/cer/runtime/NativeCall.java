@@ -35,7 +35,24 @@ public final class NativeCall extends IdScriptableObject {
             Object[] args,
             boolean isArrow,
             boolean isStrict) {
+        this(function, scope, args, isArrow, isStrict, null);
+    }
+
+    /**
+     * Create the activation object of a call.
+     *
+     * @param captured if not null, only the parameters and variables it marks are defined in the
+     *     activation object, the others live in the call frame
+     */
+    NativeCall(
+            NativeFunction function,
+            Scriptable scope,
+            Object[] args,
+            boolean isArrow,
+            boolean isStrict,
+            boolean[] captured) {
         this.function = function;
+        this.captured = captured;
 
         setParentScope(scope);
         // leave prototype null
@@ -48,6 +65,9 @@ public final class NativeCall extends IdScriptableObject {
         int paramCount = function.getParamCount();
         if (paramAndVarCount != 0) {
             for (int i = 0; i < paramCount; ++i) {
+                if (captured != null && !captured[i]) {
+                    continue;
+                }
                 String name = function.getParamOrVarName(i);
                 Object val = i < args.length ? args[i] : Undefined.instance;
                 defineProperty(name, val, PERMANENT);
@@ -63,6 +83,9 @@ public final class NativeCall extends IdScriptableObject {
 
         if (paramAndVarCount != 0) {
             for (int i = paramCount; i < paramAndVarCount; ++i) {
+                if (captured != null && !captured[i]) {
+                    continue;
+                }
                 String name = function.getParamOrVarName(i);
                 if (!super.has(name, this)) {
                     if (function.getParamOrVarConst(i)) {
@@ -129,6 +152,8 @@ public final class NativeCall extends IdScriptableObject {
     NativeFunction function;
     Object[] originalArgs;
     boolean isStrict;
+    // null if all parameters and variables are defined here
+    boolean[] captured;
     private Arguments arguments;
 
     transient NativeCall parentActivationCall;
@@ -342,7 +342,7 @@ public final class NativeJSON extends IdScriptableObject {
         if (value.equals(Boolean.FALSE)) return "false";
 
         if (value instanceof CharSequence) {
-            return quote(value.toString());
+            return quote((CharSequence) value);
         }
 
         if (value instanceof Number) {
@@ -536,10 +536,21 @@ public final class NativeJSON extends IdScriptableObject {
         return finalValue;
     }
 
-    private static String quote(String string) {
+    private static String quote(CharSequence string) {
         StringBuilder product =
                 new StringBuilder(string.length() + 2); // two extra chars for " on either side
         product.append('"');
+        if (string instanceof ConsString) {
+            // Quote the parts of the rope one after another rather than flattening it first
+            ((ConsString) string).forEachPart(part -> quote(product, part));
+        } else {
+            quote(product, string);
+        }
+        product.append('"');
+        return product.toString();
+    }
+
+    private static void quote(StringBuilder product, CharSequence string) {
         int length = string.length();
         for (int i = 0; i < length; i++) {
             char c = string.charAt(i);
@@ -576,8 +587,6 @@ public final class NativeJSON extends IdScriptableObject {
                     break;
             }
         }
-        product.append('"');
-        return product.toString();
     }
 
     private static Object javaToJSON(Object value, StringifyState state) {
@@ -533,9 +533,10 @@ final class NativeString extends IdScriptableObject {
 
                 case Id_concat:
                     {
-                        String thisStr =
-                                ScriptRuntime.toString(requireObjectCoercible(cx, thisObj, f));
-                        return js_concat(thisStr, args);
+                        CharSequence target =
+                                ScriptRuntime.toCharSequence(
+                                        requireObjectCoercible(cx, thisObj, f));
+                        return js_concat(target, args);
                     }
 
                 case Id_slice:
@@ -981,31 +982,13 @@ final class NativeString extends IdScriptableObject {
     /*
      * Python-esque sequence operations.
      */
-    private static String js_concat(String target, Object[] args) {
-        int N = args.length;
-        if (N == 0) {
-            return target;
-        } else if (N == 1) {
-            String arg = ScriptRuntime.toString(args[0]);
-            return target.concat(arg);
+    private static CharSequence js_concat(CharSequence target, Object[] args) {
+        // The arguments are joined on as ConsStrings, the same as with the + operator
+        CharSequence result = target;
+        for (Object arg : args) {
+            result = new ConsString(result, ScriptRuntime.toCharSequence(arg));
         }
-
-        // Find total capacity for the final string to avoid unnecessary
-        // re-allocations in StringBuilder
-        int size = target.length();
-        String[] argsAsStrings = new String[N];
-        for (int i = 0; i != N; ++i) {
-            String s = ScriptRuntime.toString(args[i]);
-            argsAsStrings[i] = s;
-            size += s.length();
-        }
-
-        StringBuilder result = new StringBuilder(size);
-        result.append(target);
-        for (int i = 0; i != N; ++i) {
-            result.append(argsAsStrings[i]);
-        }
-        return result.toString();
+        return result;
     }
 
     private static CharSequence js_slice(CharSequence target, Object[] args) {
@@ -0,0 +1,309 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime;
+
+import java.lang.ref.WeakReference;
+import org.redukti.cer.Scriptable;
+
+/**
+ * Inline cache for a single named property access in a script: <code>obj.name</code>, <code>
+ * obj.name = value</code> or <code>obj.name(...)</code>.
+ *
+ * <p>The cache remembers up to {@link #MAX_ENTRIES} receivers together with the {@link Slot} that
+ * backs the property, either on the receiver itself or on its direct prototype. Receivers that
+ * store their properties by {@link Shape} are remembered by class and shape, so one entry covers
+ * all objects built the same way and an own property is read from a fixed position of the slot
+ * array. Other receivers are remembered by identity, and their entries stay valid for as long as
+ * no slot is added, removed or replaced on them. Prototype hits additionally require the
+ * prototype of the receiver and its structure to be unchanged. A hit costs a few identity and
+ * integer comparisons instead of a hash lookup along the prototype chain. A site that sees more
+ * receivers than that turns megamorphic and always takes the generic path.
+ *
+ * <p>Only objects whose named property lookup is the plain slot lookup of {@link ScriptableObject}
+ * are cached. Entries are immutable and the cache tolerates races: a thread may miss an entry
+ * added by another thread, but never sees a partially built one. The entries are replaced by a new
+ * array on every change, published through a volatile field.
+ */
+public final class PropertyCache {
+
+    private static final int MAX_ENTRIES = 4;
+
+    private static final class Entry {
+        // Objects that store their properties by shape are matched by class and shape
+        final Class<?> type;
+        final Shape shape;
+        // The position of an own property in the shape, or -1
+        final int index;
+        // Other objects are matched by identity and structure version
+        final WeakReference<ScriptableObject> receiver;
+        final int receiverVersion;
+        // Null if the property is an own property of the receiver
+        final ScriptableObject holder;
+        final int holderVersion;
+        // Null if the slot is looked up by position in the shape
+        final Slot slot;
+
+        Entry(ScriptableObject receiver, ScriptableObject holder, Slot slot, String name) {
+            Shape shape = receiver.getShape();
+            if (shape != null) {
+                this.type = receiver.getClass();
+                this.shape = shape;
+                this.index = holder == null ? shape.find(name, name.hashCode()) : -1;
+                this.receiver = null;
+                this.receiverVersion = 0;
+            } else {
+                this.type = null;
+                this.shape = null;
+                this.index = -1;
+                this.receiver = new WeakReference<ScriptableObject>(receiver);
+                this.receiverVersion = receiver.getStructureVersion();
+            }
+            this.holder = holder;
+            this.holderVersion = holder == null ? 0 : holder.getStructureVersion();
+            this.slot = index >= 0 ? null : slot;
+        }
+
+        boolean matches(ScriptableObject obj, Shape objShape) {
+            if (shape != null) {
+                return shape == objShape && type == obj.getClass();
+            }
+            return receiver.get() == obj;
+        }
+
+        boolean isCollected() {
+            return shape == null && receiver.get() == null;
+        }
+
+        boolean isValid(ScriptableObject obj) {
+            if (shape == null && obj.getStructureVersion() != receiverVersion) {
+                return false;
+            }
+            return holder == null
+                    || (obj.getPrototype() == holder
+                            && holder.getStructureVersion() == holderVersion);
+        }
+
+        Slot getSlot(ScriptableObject obj) {
+            return slot != null ? slot : obj.slotAt(index);
+        }
+    }
+
+    private static final ClassValue<Boolean> SLOT_GET =
+            new ClassValue<Boolean>() {
+                @Override
+                protected Boolean computeValue(Class<?> type) {
+                    Class<?> declaring =
+                            declaringClass(type, "get", String.class, Scriptable.class);
+                    return declaring == ScriptableObject.class
+                            || declaring == IdScriptableObject.class;
+                }
+            };
+
+    private static final ClassValue<Boolean> PLAIN_GET =
+            new ClassValue<Boolean>() {
+                @Override
+                protected Boolean computeValue(Class<?> type) {
+                    return declaringClass(type, "get", String.class, Scriptable.class)
+                            == ScriptableObject.class;
+                }
+            };
+
+    private static final ClassValue<Boolean> PLAIN_PUT =
+            new ClassValue<Boolean>() {
+                @Override
+                protected Boolean computeValue(Class<?> type) {
+                    return declaringClass(
+                                            type,
+                                            "put",
+                                            String.class,
+                                            Scriptable.class,
+                                            Object.class)
+                                    == ScriptableObject.class
+                            && declaringClass(type, "has", String.class, Scriptable.class)
+                                    == ScriptableObject.class;
+                }
+            };
+
+    private final String name;
+    // Filled arrays are published whole, so a reader never sees a missing element
+    private volatile Entry[] entries;
+    private volatile boolean megamorphic;
+
+    public PropertyCache(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Cached equivalent of {@link ScriptRuntime#getObjectProp(Object, String, Context,
+     * Scriptable)}.
+     */
+    public Object getObjectProp(Object obj, Context cx, Scriptable scope) {
+        if (obj instanceof ScriptableObject && !megamorphic) {
+            Slot slot = findGetSlot((ScriptableObject) obj);
+            if (slot != null) {
+                return slot.getValue((ScriptableObject) obj);
+            }
+        }
+        return ScriptRuntime.getObjectProp(obj, name, cx, scope);
+    }
+
+    /**
+     * Cached equivalent of {@link ScriptRuntime#getObjectPropNoWarn(Object, String, Context,
+     * Scriptable)}.
+     */
+    public Object getObjectPropNoWarn(Object obj, Context cx, Scriptable scope) {
+        if (obj instanceof ScriptableObject && !megamorphic) {
+            Slot slot = findGetSlot((ScriptableObject) obj);
+            if (slot != null) {
+                return slot.getValue((ScriptableObject) obj);
+            }
+        }
+        return ScriptRuntime.getObjectPropNoWarn(obj, name, cx, scope);
+    }
+
+    /**
+     * Cached equivalent of {@link ScriptRuntime#setObjectProp(Object, String, Object, Context,
+     * Scriptable)}.
+     */
+    public Object setObjectProp(Object obj, Object value, Context cx, Scriptable scope) {
+        if (obj instanceof ScriptableObject && !megamorphic) {
+            ScriptableObject sobj = (ScriptableObject) obj;
+            Entry entry = find(sobj);
+            if (entry != null && entry.holder == null && !sobj.isSealed()) {
+                entry.getSlot(sobj).setValue(value, sobj, sobj, cx.isStrictMode());
+                return value;
+            }
+            ScriptRuntime.setObjectProp(obj, name, value, cx, scope);
+            if (PLAIN_PUT.get(sobj.getClass()).booleanValue()) {
+                Slot slot = sobj.queryOwnSlot(name);
+                if (slot != null) {
+                    record(sobj, new Entry(sobj, null, slot, name));
+                }
+            }
+            return value;
+        }
+        return ScriptRuntime.setObjectProp(obj, name, value, cx, scope);
+    }
+
+    /**
+     * Cached equivalent of {@link ScriptRuntime#getPropFunctionAndThis(Object, String, Context,
+     * Scriptable)}.
+     */
+    public Callable getPropFunctionAndThis(Object obj, Context cx, Scriptable scope) {
+        if (obj instanceof ScriptableObject && !megamorphic) {
+            ScriptableObject sobj = (ScriptableObject) obj;
+            Slot slot = findGetSlot(sobj);
+            if (slot != null) {
+                Object value = slot.getValue(sobj);
+                if (value instanceof Callable) {
+                    ScriptRuntime.storeScriptable(cx, sobj);
+                    return (Callable) value;
+                }
+            }
+        }
+        return ScriptRuntime.getPropFunctionAndThis(obj, name, cx, scope);
+    }
+
+    /**
+     * Find the slot a named property lookup on the object ends up with, filling the cache on a
+     * miss.
+     *
+     * @return the slot or null if the lookup can not be cached
+     */
+    private Slot findGetSlot(ScriptableObject obj) {
+        Entry entry = find(obj);
+        if (entry != null) {
+            return entry.getSlot(obj);
+        }
+        Class<?> type = obj.getClass();
+        if (!SLOT_GET.get(type).booleanValue()) {
+            return null;
+        }
+        Slot slot = obj.queryOwnSlot(name);
+        if (slot != null) {
+            record(obj, new Entry(obj, null, slot, name));
+            return slot;
+        }
+        if (!PLAIN_GET.get(type).booleanValue()) {
+            return null;
+        }
+        Scriptable proto = obj.getPrototype();
+        if (proto instanceof ScriptableObject
+                && SLOT_GET.get(proto.getClass()).booleanValue()) {
+            ScriptableObject holder = (ScriptableObject) proto;
+            slot = holder.queryOwnSlot(name);
+            if (slot != null) {
+                record(obj, new Entry(obj, holder, slot, name));
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    private Entry find(ScriptableObject obj) {
+        Entry[] current = entries;
+        if (current != null) {
+            Shape shape = obj.getShape();
+            for (Entry entry : current) {
+                if (entry.matches(obj, shape)) {
+                    return entry.isValid(obj) ? entry : null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void record(ScriptableObject obj, Entry entry) {
+        Entry[] current = entries;
+        if (current == null) {
+            entries = new Entry[] {entry};
+            return;
+        }
+        int length = current.length;
+        Shape shape = obj.getShape();
+        for (int i = 0; i != length; i++) {
+            if (current[i].matches(obj, shape) || current[i].isCollected()) {
+                // Replace a stale or collected entry
+                Entry[] updated = current.clone();
+                updated[i] = entry;
+                entries = updated;
+                return;
+            }
+        }
+        if (length == MAX_ENTRIES) {
+            megamorphic = true;
+            entries = null;
+            return;
+        }
+        Entry[] updated = new Entry[length + 1];
+        System.arraycopy(current, 0, updated, 0, length);
+        updated[length] = entry;
+        entries = updated;
+    }
+
+    /** Whether named lookups on objects of the class go to the slot map first. */
+    static boolean isSlotGet(Class<?> type) {
+        return SLOT_GET.get(type).booleanValue();
+    }
+
+    /** Whether named lookups on objects of the class are the plain slot lookup. */
+    static boolean isPlainGet(Class<?> type) {
+        return PLAIN_GET.get(type).booleanValue();
+    }
+
+    private static Class<?> declaringClass(Class<?> type, String method, Class<?>... params) {
+        try {
+            return type.getMethod(method, params).getDeclaringClass();
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+import org.redukti.cer.CompilerEnvirons;
+import org.redukti.cer.ir.InterpreterData;
+
+/**
+ * Cache of compiled scripts and functions, consulted by {@link Context#compileString(String,
+ * String, int, Object)} and the other compile methods of {@link Context} when installed with
+ * {@link ContextFactory#setScriptCache(ScriptCache)}.
+ *
+ * <p>The cache maps a {@link Key}, which identifies the source text by its digest together with
+ * everything else that affects compilation, to the compiled {@link InterpreterData}. On a hit the
+ * Context only wraps the cached code into a new script or function object, skipping parsing and
+ * code generation.
+ *
+ * <p>The cached code is shared by every script and function created from it, on all threads. Its
+ * instructions, constants and other compiled data never change. The runtime does update the
+ * state it keeps about the code while scripts run, possibly on several threads at once: the
+ * tier-up counters, the bytecode the optimizer generates for hot bodies and the inline caches of
+ * property accesses, so code warms up once for all users of the cache. These fields are
+ * transient and written with atomic updates or safe publication, and are not part of what {@link
+ * DiskScriptCache} stores.
+ *
+ * <p>Compilations with a debugger attached or for a security domain are neither looked up nor
+ * stored.
+ *
+ * @see LruScriptCache
+ */
+public interface ScriptCache {
+
+    /**
+     * Look up compiled code.
+     *
+     * @return the code or null if the key is not in the cache
+     */
+    InterpreterData get(Key key);
+
+    /** Store compiled code, possibly evicting other entries. */
+    void put(Key key, InterpreterData idata);
+
+    /** Return the number of lookups that found compiled code. */
+    long getHitCount();
+
+    /** Return the number of lookups that did not find compiled code. */
+    long getMissCount();
+
+    /** Return the number of entries removed to make room for others. */
+    long getEvictionCount();
+
+    /**
+     * Identifies a compilation: the source text and all settings that affect its result. Besides
+     * the {@link CompilerEnvirons} these include {@link Context#FEATURE_LINEAR_REGEXP_ONLY}, which
+     * decides whether the regular expression literals of the source compile.
+     */
+    final class Key {
+        private static final int GENERATE_DEBUG_INFO = 1 << 0;
+        private static final int RESERVED_KEYWORD_AS_IDENTIFIER = 1 << 1;
+        private static final int ALLOW_MEMBER_EXPR_AS_FUNCTION_NAME = 1 << 2;
+        private static final int STRICT_MODE = 1 << 3;
+        private static final int WARNING_AS_ERROR = 1 << 4;
+        private static final int XML_AVAILABLE = 1 << 5;
+        private static final int GENERATING_SOURCE = 1 << 6;
+        private static final int GENERATE_OBSERVER_COUNT = 1 << 7;
+        private static final int DEFAULT_USE_STRICT = 1 << 8;
+        private static final int RETURN_FUNCTION = 1 << 9;
+        private static final int INTERPRETED = 1 << 10;
+        private static final int GENERATE_REGISTER_ICODE = 1 << 11;
+        private static final int LINEAR_REGEXP_ONLY = 1 << 12;
+
+        private final byte[] sourceDigest;
+        private final String sourceName;
+        private final int lineno;
+        private final int languageVersion;
+        private final int optimizationLevel;
+        private final int flags;
+        private final Set<String> activationNames;
+        private final int hashCode;
+
+        Key(
+                String source,
+                String sourceName,
+                int lineno,
+                CompilerEnvirons compilerEnv,
+                boolean defaultUseStrict,
+                boolean returnFunction,
+                boolean interpreted,
+                boolean linearRegExpOnly) {
+            this.sourceDigest = digest(source);
+            this.sourceName = sourceName;
+            this.lineno = lineno;
+            this.languageVersion = compilerEnv.getLanguageVersion();
+            this.optimizationLevel = compilerEnv.getOptimizationLevel();
+            int f = 0;
+            if (compilerEnv.isGenerateDebugInfo()) f |= GENERATE_DEBUG_INFO;
+            if (compilerEnv.isReservedKeywordAsIdentifier()) f |= RESERVED_KEYWORD_AS_IDENTIFIER;
+            if (compilerEnv.isAllowMemberExprAsFunctionName()) {
+                f |= ALLOW_MEMBER_EXPR_AS_FUNCTION_NAME;
+            }
+            if (compilerEnv.isStrictMode()) f |= STRICT_MODE;
+            if (compilerEnv.reportWarningAsError()) f |= WARNING_AS_ERROR;
+            if (compilerEnv.isXmlAvailable()) f |= XML_AVAILABLE;
+            if (compilerEnv.isGeneratingSource()) f |= GENERATING_SOURCE;
+            if (compilerEnv.isGenerateObserverCount()) f |= GENERATE_OBSERVER_COUNT;
+            if (compilerEnv.isGenerateRegisterIcode()) f |= GENERATE_REGISTER_ICODE;
+            if (defaultUseStrict) f |= DEFAULT_USE_STRICT;
+            if (returnFunction) f |= RETURN_FUNCTION;
+            if (interpreted) f |= INTERPRETED;
+            if (linearRegExpOnly) f |= LINEAR_REGEXP_ONLY;
+            this.flags = f;
+            this.activationNames = compilerEnv.getActivationNames();
+            int h = Arrays.hashCode(sourceDigest);
+            h = 31 * h + sourceName.hashCode();
+            h = 31 * h + lineno;
+            h = 31 * h + languageVersion;
+            h = 31 * h + optimizationLevel;
+            h = 31 * h + flags;
+            this.hashCode = h;
+        }
+
+        /** Return the SHA-256 digest of the UTF-8 encoded source text. */
+        public byte[] getSourceDigest() {
+            return sourceDigest.clone();
+        }
+
+        public String getSourceName() {
+            return sourceName;
+        }
+
+        public int getLineno() {
+            return lineno;
+        }
+
+        public int getLanguageVersion() {
+            return languageVersion;
+        }
+
+        public int getOptimizationLevel() {
+            return optimizationLevel;
+        }
+
+        /**
+         * Return the compiler settings, context features and kind of compilation as an opaque bit
+         * set.
+         */
+        public int getFlags() {
+            return flags;
+        }
+
+        public Set<String> getActivationNames() {
+            return activationNames;
+        }
+
+        /** Whether the code was compiled by the interpreter the caller asked for. */
+        boolean isInterpreted() {
+            return (flags & INTERPRETED) != 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && lineno == other.lineno
+                    && languageVersion == other.languageVersion
+                    && optimizationLevel == other.optimizationLevel
+                    && flags == other.flags
+                    && Arrays.equals(sourceDigest, other.sourceDigest)
+                    && sourceName.equals(other.sourceName)
+                    && Objects.equals(activationNames, other.activationNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        private static byte[] digest(String source) {
+            try {
+                return MessageDigest.getInstance("SHA-256")
+                        .digest(source.getBytes(StandardCharsets.UTF_8));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -275,6 +275,18 @@ public class ScriptRuntime {
                     "org.redukti.cer.runtime.typedarrays.NativeFloat64Array",
                     sealed,
                     true);
+            new LazilyLoadedCtor(
+                    scope,
+                    "BigInt64Array",
+                    "org.redukti.cer.runtime.typedarrays.NativeBigInt64Array",
+                    sealed,
+                    true);
+            new LazilyLoadedCtor(
+                    scope,
+                    "BigUint64Array",
+                    "org.redukti.cer.runtime.typedarrays.NativeBigUint64Array",
+                    sealed,
+                    true);
             new LazilyLoadedCtor(
                     scope,
                     "DataView",
@@ -2786,6 +2798,9 @@ public class ScriptRuntime {
     static Object[] getApplyArguments(Context cx, Object arg1) {
         if (arg1 == null || Undefined.isUndefined(arg1)) {
             return InterpreterConstants.emptyArgs;
+        } else if (arg1 instanceof Arguments) {
+            Object[] args = ((Arguments) arg1).getApplyArguments();
+            return args != null ? args : cx.getElements((Scriptable) arg1);
         } else if (arg1 instanceof Scriptable && isArrayLike((Scriptable) arg1)) {
             return cx.getElements((Scriptable) arg1);
         } else if (arg1 instanceof ScriptableObject) {
@@ -4829,7 +4844,7 @@ public class ScriptRuntime {
         return value;
     }
 
-    private static void storeScriptable(Context cx, Scriptable value) {
+    static void storeScriptable(Context cx, Scriptable value) {
         // The previously stored scratchScriptable should be consumed
         if (cx.scratchScriptable != null) throw new IllegalStateException();
         cx.scratchScriptable = value;
@@ -152,8 +152,13 @@ public abstract class ScriptableObject
 
     private static SlotMapContainer createSlotMap(int initialSize) {
         Context cx = Context.getCurrentContext();
-        if ((cx != null) && cx.hasFeature(Context.FEATURE_THREAD_SAFE_OBJECTS)) {
-            return new ThreadSafeSlotMapContainer(initialSize);
+        if (cx != null) {
+            if (cx.hasFeature(Context.FEATURE_CONCURRENT_OBJECTS)) {
+                return new ConcurrentSlotMapContainer();
+            }
+            if (cx.hasFeature(Context.FEATURE_THREAD_SAFE_OBJECTS)) {
+                return new ThreadSafeSlotMapContainer(initialSize);
+            }
         }
         return new SlotMapContainer(initialSize);
     }
@@ -201,6 +206,31 @@ public abstract class ScriptableObject
         return null != slotMap.query(name, 0);
     }
 
+    /** Return the own slot of the named property without going through any overridden lookup. */
+    final Slot queryOwnSlot(String name) {
+        return slotMap.query(name, 0);
+    }
+
+    /** Changes whenever a slot of this object is added, removed or replaced. */
+    final int getStructureVersion() {
+        return slotMap.structureVersion;
+    }
+
+    /** Changes whenever a named slot of this object is removed or replaced. */
+    final int getRemovalVersion() {
+        return slotMap.removalVersion;
+    }
+
+    /** Returns the shape of this object, or null if its properties are not stored by shape. */
+    final Shape getShape() {
+        return slotMap.getShape();
+    }
+
+    /** Returns the slot at a position of the shape returned by {@link #getShape()}. */
+    final Slot slotAt(int index) {
+        return slotMap.slotAt(index);
+    }
+
     /**
      * Returns true if the property index is defined.
      *
@@ -2564,7 +2594,7 @@ public abstract class ScriptableObject
         return slot;
     }
 
-    Object[] getIds(boolean getNonEnumerable, boolean getSymbols) {
+    protected Object[] getIds(boolean getNonEnumerable, boolean getSymbols) {
         Object[] a;
         int externalLen = (externalData == null ? 0 : externalData.getArrayLength());
 
@@ -0,0 +1,153 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The layout of the properties of a {@link ShapedSlotMap}: which keys an object has and at which
+ * position of its slot array each of them lives, in insertion order.
+ *
+ * <p>Shapes are immutable and form a transition tree rooted at {@link #EMPTY}: adding a property
+ * to an object moves it to the child shape for that key, so all objects that got the same
+ * properties in the same order share one Shape instance and one key table. This makes the shape a
+ * cheap key for inline caches. Transitions are held weakly so that shapes of objects that are no
+ * longer alive can be collected.
+ */
+final class Shape {
+
+    static final Shape EMPTY = new Shape();
+
+    // Shapes up to this size are searched linearly
+    private static final int LINEAR_SEARCH_LIMIT = 8;
+
+    private final Shape parent;
+    private final int size;
+    // Keys and hashes, in the same format as Slot.name and Slot.indexOrHash
+    private final Object[] keys;
+    private final int[] indexOrHashes;
+    // Open addressing table of position + 1, for shapes too large for a linear search
+    private final int[] table;
+
+    private final Map<Object, WeakReference<Shape>> transitions = new ConcurrentHashMap<>();
+
+    private Shape() {
+        parent = null;
+        size = 0;
+        keys = new Object[0];
+        indexOrHashes = new int[0];
+        table = null;
+    }
+
+    private Shape(Shape parent, Object key, int indexOrHash) {
+        this.parent = parent;
+        this.size = parent.size + 1;
+        this.keys = new Object[size];
+        this.indexOrHashes = new int[size];
+        System.arraycopy(parent.keys, 0, keys, 0, parent.size);
+        System.arraycopy(parent.indexOrHashes, 0, indexOrHashes, 0, parent.size);
+        keys[parent.size] = key;
+        indexOrHashes[parent.size] = indexOrHash;
+        table = size > LINEAR_SEARCH_LIMIT ? buildTable(indexOrHashes, size) : null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Shape getParent() {
+        return parent;
+    }
+
+    /**
+     * Find the position of a property.
+     *
+     * @param key the property name, or null for an indexed property
+     * @param indexOrHash the index, or the hash code of the name
+     * @return the position in the slot array or -1 if the shape has no such property
+     */
+    int find(Object key, int indexOrHash) {
+        if (table == null) {
+            for (int i = 0; i != size; i++) {
+                if (indexOrHashes[i] == indexOrHash && Objects.equals(keys[i], key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = table.length - 1;
+        for (int i = indexOrHash & mask; ; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (entry == 0) {
+                return -1;
+            }
+            int pos = entry - 1;
+            if (indexOrHashes[pos] == indexOrHash && Objects.equals(keys[pos], key)) {
+                return pos;
+            }
+        }
+    }
+
+    /** Return the shape of an object of this shape after the given property is added. */
+    Shape addProperty(Object key, int indexOrHash) {
+        Object transitionKey = key != null ? key : Integer.valueOf(indexOrHash);
+        WeakReference<Shape> ref = transitions.get(transitionKey);
+        Shape child = ref == null ? null : ref.get();
+        if (child != null) {
+            return child;
+        }
+        Shape created = new Shape(this, key, indexOrHash);
+        WeakReference<Shape> newRef = new WeakReference<>(created);
+        for (; ; ) {
+            // Keep a live transition that another thread installed first, so that all objects
+            // getting the same properties in the same order end up with the same shape
+            WeakReference<Shape> winner =
+                    transitions.merge(
+                            transitionKey,
+                            newRef,
+                            (old, fresh) -> old.get() != null ? old : fresh);
+            if (winner == newRef) {
+                purgeTransitions();
+                return created;
+            }
+            child = winner.get();
+            if (child != null) {
+                return child;
+            }
+            // The winner was collected since, so nothing uses it and it can be replaced
+        }
+    }
+
+    private void purgeTransitions() {
+        if ((transitions.size() & 0x3F) != 0) {
+            return;
+        }
+        for (Iterator<WeakReference<Shape>> it = transitions.values().iterator(); it.hasNext(); ) {
+            if (it.next().get() == null) {
+                it.remove();
+            }
+        }
+    }
+
+    private static int[] buildTable(int[] indexOrHashes, int size) {
+        int capacity = Integer.highestOneBit(size * 2 - 1) << 1;
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int pos = 0; pos != size; pos++) {
+            int i = indexOrHashes[pos] & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = pos + 1;
+        }
+        return table;
+    }
+}
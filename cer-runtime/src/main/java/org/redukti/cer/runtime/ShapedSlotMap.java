@@ -0,0 +1,145 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements the SlotMap interface using a {@link Shape} and a flat array of slots. The
+ * shape maps each key to a position in the array and is shared by all objects that got the same
+ * properties in the same order, so the per-object cost is only the array, and an inline cache can
+ * find a property by comparing shapes and reading the array at a remembered position.
+ *
+ * <p>Each property still has a Slot of its own, since the rest of the runtime works with slots:
+ * accessor and lambda properties are Slot subclasses and {@link #replace} swaps them in place. Only
+ * the key table is shared, not the storage of the values.
+ *
+ * <p>Shapes only ever grow. Deleting a property rebuilds the shape from scratch, which is why
+ * {@link SlotMapContainer} moves objects that delete properties to an {@link EmbeddedSlotMap}
+ * instead.
+ */
+class ShapedSlotMap implements SlotMap {
+
+    // initial slot array size
+    private static final int INITIAL_SLOT_SIZE = 4;
+
+    private Shape shape = Shape.EMPTY;
+    private Slot[] slots;
+
+    private final class Iter implements Iterator<Slot> {
+        private int next;
+
+        @Override
+        public boolean hasNext() {
+            return next < shape.size();
+        }
+
+        @Override
+        public Slot next() {
+            if (next >= shape.size()) {
+                throw new NoSuchElementException();
+            }
+            return slots[next++];
+        }
+    }
+
+    @Override
+    public int size() {
+        return shape.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return shape.size() == 0;
+    }
+
+    @Override
+    public Iterator<Slot> iterator() {
+        return new Iter();
+    }
+
+    Shape getShape() {
+        return shape;
+    }
+
+    /** Return the slot at a position of the current shape. */
+    Slot slotAt(int index) {
+        return slots[index];
+    }
+
+    @Override
+    public Slot query(Object key, int index) {
+        int pos = shape.find(key, key != null ? key.hashCode() : index);
+        return pos < 0 ? null : slots[pos];
+    }
+
+    @Override
+    public Slot modify(Object key, int index, int attributes) {
+        final int indexOrHash = (key != null ? key.hashCode() : index);
+        int pos = shape.find(key, indexOrHash);
+        if (pos >= 0) {
+            return slots[pos];
+        }
+        Slot newSlot = new Slot(key, indexOrHash, attributes);
+        append(newSlot);
+        return newSlot;
+    }
+
+    @Override
+    public void replace(Slot oldSlot, Slot newSlot) {
+        int pos = shape.find(oldSlot.name, oldSlot.indexOrHash);
+        // It's an error to call this when the slot isn't already there
+        assert (pos >= 0 && slots[pos] == oldSlot);
+        slots[pos] = newSlot;
+    }
+
+    @Override
+    public void add(Slot newSlot) {
+        append(newSlot);
+    }
+
+    private void append(Slot newSlot) {
+        int size = shape.size();
+        if (slots == null) {
+            slots = new Slot[INITIAL_SLOT_SIZE];
+        } else if (size == slots.length) {
+            Slot[] newSlots = new Slot[size * 2];
+            System.arraycopy(slots, 0, newSlots, 0, size);
+            slots = newSlots;
+        }
+        slots[size] = newSlot;
+        shape = shape.addProperty(newSlot.name, newSlot.indexOrHash);
+    }
+
+    @Override
+    public void remove(Object key, int index) {
+        int pos = shape.find(key, key != null ? key.hashCode() : index);
+        if (pos < 0) {
+            return;
+        }
+        Slot slot = slots[pos];
+        // non-configurable
+        if ((slot.getAttributes() & ScriptableObject.PERMANENT) != 0) {
+            Context cx = Context.getContext();
+            if (cx.isStrictMode()) {
+                throw ScriptRuntime.typeErrorById(
+                        "msg.delete.property.with.configurable.false", key);
+            }
+            return;
+        }
+        int size = shape.size();
+        Slot[] remaining = slots;
+        shape = Shape.EMPTY;
+        slots = null;
+        for (int i = 0; i != size; i++) {
+            if (i != pos) {
+                append(remaining[i]);
+            }
+        }
+    }
+}
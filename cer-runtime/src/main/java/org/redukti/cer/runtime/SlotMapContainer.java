@@ -21,17 +21,50 @@ class SlotMapContainer implements SlotMap {
      */
     private static final int LARGE_HASH_SIZE = 2000;
 
+    /**
+     * Objects start out with a ShapedSlotMap, which shares its key layout with other objects of the
+     * same shape. Once the object has more properties than this it is treated as a dictionary and
+     * moved to an EmbeddedSlotMap, as it is on the first delete.
+     */
+    private static final int MAX_SHAPED_SIZE = 64;
+
     private static final int DEFAULT_SIZE = 10;
 
     protected SlotMap map;
 
+    /**
+     * Incremented whenever a slot is added, removed or replaced, so that a {@link PropertyCache}
+     * can tell whether a Slot it found earlier is still the one backing the property.
+     */
+    int structureVersion;
+
+    /**
+     * Incremented whenever a named slot is removed or replaced, so that a {@link NameCache} can
+     * tell whether a Slot it found earlier may have stopped backing the name.
+     */
+    int removalVersion;
+
     SlotMapContainer() {
         this(DEFAULT_SIZE);
     }
 
     SlotMapContainer(int initialSize) {
+        this(initialSize, true);
+    }
+
+    SlotMapContainer(SlotMap map) {
+        this.map = map;
+    }
+
+    /**
+     * @param shaped whether small maps may use a ShapedSlotMap, which is only safe when the map is
+     *     not read concurrently with modifications
+     */
+    protected SlotMapContainer(int initialSize, boolean shaped) {
         if (initialSize > LARGE_HASH_SIZE) {
             map = new HashSlotMap();
+        } else if (shaped && initialSize <= MAX_SHAPED_SIZE) {
+            map = new ShapedSlotMap();
         } else {
             map = new EmbeddedSlotMap();
         }
@@ -54,11 +87,18 @@ class SlotMapContainer implements SlotMap {
     @Override
     public Slot modify(Object key, int index, int attributes) {
         checkMapSize();
-        return map.modify(key, index, attributes);
+        int size = map.size();
+        Slot slot = map.modify(key, index, attributes);
+        if (map.size() != size) {
+            structureVersion++;
+        }
+        return slot;
     }
 
     @Override
     public void replace(Slot oldSlot, Slot newSlot) {
+        structureVersion++;
+        slotRemoved(oldSlot.name);
         map.replace(oldSlot, newSlot);
     }
 
@@ -70,14 +110,40 @@ class SlotMapContainer implements SlotMap {
     @Override
     public void add(Slot newSlot) {
         checkMapSize();
+        structureVersion++;
         map.add(newSlot);
     }
 
     @Override
     public void remove(Object key, int index) {
+        structureVersion++;
+        slotRemoved(key);
+        if (map instanceof ShapedSlotMap) {
+            Slot slot = map.query(key, index);
+            if (slot != null && (slot.getAttributes() & ScriptableObject.PERMANENT) == 0) {
+                convertMap(new EmbeddedSlotMap());
+            }
+        }
         map.remove(key, index);
     }
 
+    protected void slotRemoved(Object key) {
+        if (key != null) {
+            removalVersion++;
+        }
+    }
+
+    /** Return the shape of the map, or null if it does not currently use a ShapedSlotMap. */
+    Shape getShape() {
+        SlotMap m = map;
+        return m instanceof ShapedSlotMap ? ((ShapedSlotMap) m).getShape() : null;
+    }
+
+    /** Return the slot at a position of the shape returned by {@link #getShape()}. */
+    Slot slotAt(int index) {
+        return ((ShapedSlotMap) map).slotAt(index);
+    }
+
     @Override
     public Iterator<Slot> iterator() {
         return map.iterator();
@@ -97,12 +163,17 @@ class SlotMapContainer implements SlotMap {
      * map to a HashMap that is more robust against large numbers of hash collisions.
      */
     protected void checkMapSize() {
-        if ((map instanceof EmbeddedSlotMap) && map.size() >= LARGE_HASH_SIZE) {
-            SlotMap newMap = new HashSlotMap();
-            for (Slot s : map) {
-                newMap.add(s);
-            }
-            map = newMap;
+        if ((map instanceof ShapedSlotMap) && map.size() >= MAX_SHAPED_SIZE) {
+            convertMap(new EmbeddedSlotMap());
+        } else if ((map instanceof EmbeddedSlotMap) && map.size() >= LARGE_HASH_SIZE) {
+            convertMap(new HashSlotMap());
+        }
+    }
+
+    private void convertMap(SlotMap newMap) {
+        for (Slot s : map) {
+            newMap.add(s);
         }
+        map = newMap;
     }
 }
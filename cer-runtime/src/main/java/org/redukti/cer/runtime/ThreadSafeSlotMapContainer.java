@@ -17,10 +17,13 @@ class ThreadSafeSlotMapContainer extends SlotMapContainer {
 
     private final StampedLock lock = new StampedLock();
 
-    ThreadSafeSlotMapContainer() {}
+    ThreadSafeSlotMapContainer() {
+        this(0);
+    }
 
     ThreadSafeSlotMapContainer(int initialSize) {
-        super(initialSize);
+        // Shaped maps can not be read optimistically while another thread adds to them
+        super(initialSize, false);
     }
 
     @Override
@@ -66,7 +69,12 @@ class ThreadSafeSlotMapContainer extends SlotMapContainer {
         final long stamp = lock.writeLock();
         try {
             checkMapSize();
-            return map.modify(key, index, attributes);
+            int size = map.size();
+            Slot slot = map.modify(key, index, attributes);
+            if (map.size() != size) {
+                structureVersion++;
+            }
+            return slot;
         } finally {
             lock.unlockWrite(stamp);
         }
@@ -76,6 +84,8 @@ class ThreadSafeSlotMapContainer extends SlotMapContainer {
     public void replace(Slot oldSlot, Slot newSlot) {
         final long stamp = lock.writeLock();
         try {
+            structureVersion++;
+            slotRemoved(oldSlot.name);
             map.replace(oldSlot, newSlot);
         } finally {
             lock.unlockWrite(stamp);
@@ -103,6 +113,7 @@ class ThreadSafeSlotMapContainer extends SlotMapContainer {
         final long stamp = lock.writeLock();
         try {
             checkMapSize();
+            structureVersion++;
             map.add(newSlot);
         } finally {
             lock.unlockWrite(stamp);
@@ -113,6 +124,8 @@ class ThreadSafeSlotMapContainer extends SlotMapContainer {
     public void remove(Object key, int index) {
         final long stamp = lock.writeLock();
         try {
+            structureVersion++;
+            slotRemoved(key);
             map.remove(key, index);
         } finally {
             lock.unlockWrite(stamp);
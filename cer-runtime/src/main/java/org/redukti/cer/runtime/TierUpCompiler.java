@@ -0,0 +1,30 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime;
+
+import org.redukti.cer.ir.InterpreterData;
+
+/**
+ * Compiles interpreted bodies that became hot.
+ *
+ * <p>The optimizer attaches an instance to every {@link InterpreterData} it is able to compile.
+ * Once the invocation and back-edge counters of the body cross {@link
+ * ContextFactory#getTierUpThreshold()} the interpreter asks for a compilation task once, passes it
+ * to {@link ContextFactory#compileInBackground(Runnable)} and keeps interpreting the body until
+ * {@link InterpreterData#itsCompiledCode} is set.
+ */
+public interface TierUpCompiler {
+    /**
+     * Create the task compiling the body. The method is called on the thread running the script
+     * while the task may run on any thread.
+     *
+     * @param cx the current Context for this thread
+     * @param idata the hot body
+     * @return the compilation task
+     */
+    public Runnable createCompileTask(Context cx, InterpreterData idata);
+}
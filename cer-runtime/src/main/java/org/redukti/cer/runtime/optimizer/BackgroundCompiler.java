@@ -0,0 +1,91 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.optimizer;
+
+import org.redukti.cer.classfile.ClassFileWriter;
+import org.redukti.cer.ir.InterpreterData;
+import org.redukti.cer.parser.ErrorReporter;
+import org.redukti.cer.runtime.CompiledCode;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.GeneratedClassLoader;
+import org.redukti.cer.runtime.SecurityController;
+import org.redukti.cer.runtime.TierUpCompiler;
+
+/**
+ * Compiles the hot bodies of a single script. All bodies share one class loader, created on the
+ * script thread the first time a body gets hot so it picks up the security restrictions of that
+ * thread.
+ *
+ * <p>A body that fails to compile stays in the interpreter. Unless it is only too large for a
+ * class file, the failure points at a bug in the optimizer and is reported as a warning to the
+ * error reporter of the Context the body got hot in.
+ */
+final class BackgroundCompiler implements TierUpCompiler {
+
+    private final Object staticSecurityDomain;
+    private GeneratedClassLoader loader;
+
+    BackgroundCompiler(Object staticSecurityDomain) {
+        this.staticSecurityDomain = staticSecurityDomain;
+    }
+
+    @Override
+    public Runnable createCompileTask(Context cx, InterpreterData idata) {
+        final GeneratedClassLoader loader = getLoader();
+        final ErrorReporter reporter = cx.getErrorReporter();
+        return () -> compile(loader, idata, reporter);
+    }
+
+    private synchronized GeneratedClassLoader getLoader() {
+        if (loader == null) {
+            loader =
+                    SecurityController.createLoader(
+                            Codegen.class.getClassLoader(), staticSecurityDomain);
+        }
+        return loader;
+    }
+
+    private static void compile(
+            GeneratedClassLoader loader, InterpreterData idata, ErrorReporter reporter) {
+        // The interpreter cleared itsTierUpCompiler when it handed the body over, so a body that
+        // fails to compile stays in the interpreter and is not handed over again
+        CompiledCode code;
+        try {
+            Codegen.GeneratedBody body = Codegen.generateBody(idata);
+            if (body == null) {
+                return;
+            }
+            synchronized (loader) {
+                code = Codegen.defineBody(loader, body);
+            }
+        } catch (ClassFileWriter.ClassFileFormatException e) {
+            // Too large for a class file
+            return;
+        } catch (RuntimeException | LinkageError e) {
+            // A bug in the optimizer or a class the loader rejects, not worth failing the script
+            reportFailure(reporter, idata, e);
+            return;
+        }
+        // Publishing the code switches all later invocations of the body to it
+        idata.itsCompiledCode = code;
+    }
+
+    private static void reportFailure(
+            ErrorReporter reporter, InterpreterData idata, Throwable failure) {
+        String name = idata.itsName == null || idata.itsName.isEmpty() ? "script" : idata.itsName;
+        try {
+            reporter.warning(
+                    "Could not compile " + name + ", it stays interpreted: " + failure,
+                    idata.itsSourceFile,
+                    0,
+                    null,
+                    0);
+        } catch (RuntimeException e) {
+            // A reporter that turns warnings into errors has no script to fail here
+        }
+    }
+}
@@ -0,0 +1,1431 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.optimizer;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.redukti.cer.classfile.ByteCode;
+import org.redukti.cer.classfile.ClassFileWriter;
+import org.redukti.cer.ir.Icode;
+import org.redukti.cer.ir.InterpreterData;
+import org.redukti.cer.parser.Node;
+import org.redukti.cer.parser.Token;
+import org.redukti.cer.runtime.NameCache;
+import org.redukti.cer.runtime.PropertyCache;
+import org.redukti.cer.runtime.ScriptRuntime;
+
+/**
+ * Translates the icode of a single script or function body into a JVM class implementing {@link
+ * org.redukti.cer.runtime.CompiledCode}.
+ *
+ * <p>Every slot of the interpreter frame array (arguments, variables, temporaries and the operand
+ * stack) becomes a JVM local holding a boxed value, so HotSpot sees straight-line code instead of
+ * the interpreter dispatch loop. Bodies that need an activation object, declare nested functions,
+ * contain exception handlers or use opcodes that depend on interpreter frames are left to the
+ * interpreter: {@link #generate()} returns null for them.
+ */
+class BodyCodegen extends Icode {
+
+    static final String CODE_INTERFACE = "org.redukti.cer.runtime.CompiledCode";
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String OPT_RUNTIME = "org/redukti/cer/runtime/optimizer/OptRuntime";
+    private static final String SCRIPT_RUNTIME = "org/redukti/cer/runtime/ScriptRuntime";
+    private static final String PROPERTY_CACHE = "org/redukti/cer/runtime/PropertyCache";
+    private static final String NAME_CACHE = "org/redukti/cer/runtime/NameCache";
+
+    private static final String OBJECT_SIG = "Ljava/lang/Object;";
+    private static final String OBJECT_ARRAY_SIG = "[Ljava/lang/Object;";
+    private static final String STRING_SIG = "Ljava/lang/String;";
+    private static final String CONTEXT_SIG = "Lorg/redukti/cer/runtime/Context;";
+    private static final String SCRIPTABLE_SIG = "Lorg/redukti/cer/Scriptable;";
+    private static final String FUNCTION_SIG = "Lorg/redukti/cer/runtime/NativeFunction;";
+    private static final String REF_SIG = "Lorg/redukti/cer/runtime/Ref;";
+    private static final String CALLABLE_SIG = "Lorg/redukti/cer/runtime/Callable;";
+
+    private static final String EXECUTE_SIG =
+            "("
+                    + CONTEXT_SIG
+                    + FUNCTION_SIG
+                    + SCRIPTABLE_SIG
+                    + SCRIPTABLE_SIG
+                    + OBJECT_ARRAY_SIG
+                    + ")"
+                    + OBJECT_SIG;
+
+    private static final String BODY_SIG =
+            "("
+                    + OBJECT_ARRAY_SIG
+                    + CONTEXT_SIG
+                    + FUNCTION_SIG
+                    + SCRIPTABLE_SIG
+                    + SCRIPTABLE_SIG
+                    + OBJECT_ARRAY_SIG
+                    + ")"
+                    + OBJECT_SIG;
+
+    // Locals of the body method
+    private static final int CONSTANTS_LOCAL = 0;
+    private static final int CONTEXT_LOCAL = 1;
+    private static final int FUNCTION_LOCAL = 2;
+    private static final int SCOPE_LOCAL = 3;
+    private static final int THIS_LOCAL = 4;
+    private static final int ARGS_LOCAL = 5;
+    private static final int FIRST_FRAME_LOCAL = 6;
+
+    /** Thrown while translating a body that has to stay in the interpreter. */
+    private static final class NotCompilable extends RuntimeException {
+        private static final long serialVersionUID = 5439872611034590712L;
+
+        NotCompilable() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final NotCompilable NOT_COMPILABLE = new NotCompilable();
+
+    private final InterpreterData idata;
+    private final String className;
+    private final String bodyMethodName;
+    private final byte[] iCode;
+    private final int emptyStackTop;
+    private final int resultLocal;
+    private final int tempLocal;
+
+    private ClassFileWriter cfw;
+    private int[] stackTopAt;
+    private boolean[] isJumpTarget;
+    private int[] labels;
+    private int[] literalCounters;
+    private List<Object> constants;
+
+    BodyCodegen(InterpreterData idata, String className, String bodyMethodName) {
+        this.idata = idata;
+        this.className = className;
+        this.bodyMethodName = bodyMethodName;
+        this.iCode = idata.itsICode;
+        this.emptyStackTop = idata.itsMaxVars + idata.itsMaxLocals - 1;
+        this.resultLocal = FIRST_FRAME_LOCAL + idata.itsMaxFrameArray;
+        this.tempLocal = resultLocal + 1;
+    }
+
+    /** Constants referenced from the generated code, to be passed to its constructor. */
+    Object[] getConstants() {
+        return constants.toArray();
+    }
+
+    static boolean isCandidate(InterpreterData idata) {
+        if (idata.itsNeedsActivation
+                || idata.itsNestedFunctions != null
+                || idata.itsExceptionTable != null
+                || idata.isES6Generator) {
+            return false;
+        }
+        if (idata.argIsConst != null) {
+            for (boolean isConst : idata.argIsConst) {
+                if (isConst) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generate the class file for the body.
+     *
+     * @return the class bytes or null if the body can only run in the interpreter
+     * @throws ClassFileWriter.ClassFileFormatException if the body exceeds class file limits
+     */
+    byte[] generate() {
+        if (!isCandidate(idata)) {
+            return null;
+        }
+        constants = new ArrayList<Object>();
+        try {
+            analyzeStack();
+            cfw = new ClassFileWriter(className, OBJECT, idata.itsSourceFile);
+            cfw.addInterface(CODE_INTERFACE);
+            cfw.addField(
+                    "k",
+                    OBJECT_ARRAY_SIG,
+                    (short) (ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL));
+            generateConstructor();
+            generateExecute();
+            generateBody();
+        } catch (NotCompilable e) {
+            return null;
+        }
+        return cfw.toByteArray();
+    }
+
+    private void generateConstructor() {
+        cfw.startMethod("<init>", "(" + OBJECT_ARRAY_SIG + ")V", ClassFileWriter.ACC_PUBLIC);
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.addInvoke(ByteCode.INVOKESPECIAL, OBJECT, "<init>", "()V");
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.ALOAD_1);
+        cfw.add(ByteCode.PUTFIELD, className, "k", OBJECT_ARRAY_SIG);
+        cfw.add(ByteCode.RETURN);
+        cfw.stopMethod((short) 2);
+    }
+
+    private void generateExecute() {
+        cfw.startMethod("execute", EXECUTE_SIG, ClassFileWriter.ACC_PUBLIC);
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.GETFIELD, className, "k", OBJECT_ARRAY_SIG);
+        for (int i = 1; i <= 5; i++) {
+            cfw.addALoad(i);
+        }
+        cfw.addInvoke(ByteCode.INVOKESTATIC, className, bodyMethodName, BODY_SIG);
+        cfw.add(ByteCode.ARETURN);
+        cfw.stopMethod((short) 6);
+    }
+
+    // Stack analysis
+
+    /**
+     * Compute the interpreter stackTop at the start of every reachable instruction. Jump targets
+     * only ever see the operand stack depth left by structured code, so one depth per pc is
+     * enough.
+     */
+    private void analyzeStack() {
+        int length = iCode.length;
+        stackTopAt = new int[length];
+        Arrays.fill(stackTopAt, Integer.MIN_VALUE);
+        isJumpTarget = new boolean[length];
+        int[] work = new int[16];
+        int workTop = 0;
+        stackTopAt[0] = emptyStackTop;
+        work[workTop++] = 0;
+        final int maxStackTop = idata.itsMaxFrameArray - 1;
+
+        while (workTop != 0) {
+            int pc = work[--workTop];
+            int stackTop = stackTopAt[pc];
+            int indexReg = -1;
+            for (; ; ) {
+                // A superinstruction is translated as the sequence it was written over
+                int op = unfusedOp(iCode[pc]);
+                int span = span(op);
+                int target = -1;
+                boolean terminal = false;
+                switch (op) {
+                    case Token.THROW:
+                        stackTop--;
+                        terminal = true;
+                        break;
+                    case Token.RETURN:
+                        stackTop--;
+                        terminal = true;
+                        break;
+                    case Token.RETURN_RESULT:
+                    case Icode_RETUNDEF:
+                        terminal = true;
+                        break;
+                    case Token.GOTO:
+                        target = jumpTarget(pc);
+                        terminal = true;
+                        break;
+                    case Token.IFEQ:
+                    case Token.IFNE:
+                        stackTop--;
+                        target = jumpTarget(pc);
+                        break;
+                    case Icode_IFEQ_POP:
+                        // Jumps with the tested value and the value below it popped
+                        stackTop -= 2;
+                        target = jumpTarget(pc);
+                        break;
+                    case Icode_REG_IND_C0:
+                    case Icode_REG_IND_C1:
+                    case Icode_REG_IND_C2:
+                    case Icode_REG_IND_C3:
+                    case Icode_REG_IND_C4:
+                    case Icode_REG_IND_C5:
+                    case Icode_REG_IND1:
+                    case Icode_REG_IND2:
+                    case Icode_REG_IND4:
+                        indexReg = readIndexReg(pc, op);
+                        break;
+                    default:
+                        stackTop += stackEffect(genericOp(op), indexReg);
+                        break;
+                }
+                if (stackTop < emptyStackTop || stackTop > maxStackTop) {
+                    throw NOT_COMPILABLE;
+                }
+                if (target >= 0) {
+                    isJumpTarget[target] = true;
+                    if (!visit(target, stackTop)) {
+                        if (workTop == work.length) {
+                            work = Arrays.copyOf(work, workTop * 2);
+                        }
+                        work[workTop++] = target;
+                    }
+                }
+                if (op == Icode_IFEQ_POP) {
+                    // Falls through with only the tested value popped
+                    stackTop++;
+                }
+                if (terminal) {
+                    break;
+                }
+                pc += span;
+                if (pc >= length) {
+                    throw NOT_COMPILABLE;
+                }
+                if (visit(pc, stackTop)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /** @return true if pc was already visited */
+    private boolean visit(int pc, int stackTop) {
+        int existing = stackTopAt[pc];
+        if (existing == Integer.MIN_VALUE) {
+            stackTopAt[pc] = stackTop;
+            return false;
+        }
+        if (existing != stackTop) {
+            throw NOT_COMPILABLE;
+        }
+        return true;
+    }
+
+    private int jumpTarget(int pc) {
+        int offset = getShort(iCode, pc + 1);
+        if (offset != 0) {
+            return pc + offset;
+        }
+        return idata.longJumps.getExistingInt(pc + 1);
+    }
+
+    private int readIndexReg(int pc, int op) {
+        switch (op) {
+            case Icode_REG_IND_C0:
+                return 0;
+            case Icode_REG_IND_C1:
+                return 1;
+            case Icode_REG_IND_C2:
+                return 2;
+            case Icode_REG_IND_C3:
+                return 3;
+            case Icode_REG_IND_C4:
+                return 4;
+            case Icode_REG_IND_C5:
+                return 5;
+            case Icode_REG_IND1:
+                return 0xFF & iCode[pc + 1];
+            case Icode_REG_IND2:
+                return getIndex(iCode, pc + 1);
+            case Icode_REG_IND4:
+                return getInt(iCode, pc + 1);
+        }
+        throw new IllegalArgumentException(String.valueOf(op));
+    }
+
+    private static int span(int op) {
+        switch (op) {
+            case Token.THROW:
+            case Token.GOTO:
+            case Token.IFEQ:
+            case Token.IFNE:
+            case Icode_IFEQ_POP:
+            case Icode_SHORTNUMBER:
+            case Icode_REG_IND2:
+            case Icode_REG_STR2:
+            case Icode_REG_BIGINT2:
+            case Icode_LINE:
+                return 1 + 2;
+            case Icode_VAR_INC_DEC:
+            case Icode_NAME_INC_DEC:
+            case Icode_PROP_INC_DEC:
+            case Icode_ELEM_INC_DEC:
+            case Icode_REF_INC_DEC:
+            case Icode_REG_IND1:
+            case Icode_REG_STR1:
+            case Icode_REG_BIGINT1:
+            case Icode_GETVAR1:
+            case Icode_SETVAR1:
+                return 1 + 1;
+            case Icode_INTNUMBER:
+            case Icode_REG_IND4:
+            case Icode_REG_STR4:
+            case Icode_REG_BIGINT4:
+                return 1 + 4;
+        }
+        return 1;
+    }
+
+    /** Net change of the interpreter stackTop, or NOT_COMPILABLE for unsupported opcodes. */
+    private static int stackEffect(int op, int indexReg) {
+        switch (op) {
+            case Icode_REG_STR_C0:
+            case Icode_REG_STR_C1:
+            case Icode_REG_STR_C2:
+            case Icode_REG_STR_C3:
+            case Icode_REG_STR1:
+            case Icode_REG_STR2:
+            case Icode_REG_STR4:
+            case Icode_REG_BIGINT_C0:
+            case Icode_REG_BIGINT_C1:
+            case Icode_REG_BIGINT_C2:
+            case Icode_REG_BIGINT_C3:
+            case Icode_REG_BIGINT1:
+            case Icode_REG_BIGINT2:
+            case Icode_REG_BIGINT4:
+            case Icode_LINE:
+            case Icode_DEBUGGER:
+            case Icode_SWAP:
+            case Icode_LOCAL_CLEAR:
+            case Icode_ELEM_AND_THIS:
+            case Icode_PROP_INC_DEC:
+            case Icode_REF_INC_DEC:
+            case Token.BITNOT:
+            case Token.POS:
+            case Token.NEG:
+            case Token.NOT:
+            case Token.TYPEOF:
+            case Token.GETPROP:
+            case Token.GETPROPNOWARN:
+            case Token.GET_REF:
+            case Token.DEL_REF:
+            case Token.REF_SPECIAL:
+            case Token.SETVAR:
+            case Icode_SETVAR1:
+                return 0;
+            case Icode_DUP:
+            case Icode_PROP_AND_THIS:
+            case Icode_VALUE_AND_THIS:
+            case Token.BINDNAME:
+            case Icode_TYPEOFNAME:
+            case Token.STRING:
+            case Icode_SHORTNUMBER:
+            case Icode_INTNUMBER:
+            case Token.NUMBER:
+            case Token.BIGINT:
+            case Token.NAME:
+            case Icode_NAME_INC_DEC:
+            case Token.GETVAR:
+            case Icode_GETVAR1:
+            case Icode_VAR_INC_DEC:
+            case Icode_ZERO:
+            case Icode_ONE:
+            case Token.NULL:
+            case Token.THIS:
+            case Token.THISFN:
+            case Token.FALSE:
+            case Token.TRUE:
+            case Icode_UNDEF:
+            case Token.LOCAL_LOAD:
+            case Token.ENUM_NEXT:
+            case Token.ENUM_ID:
+            case Token.REGEXP:
+            case Icode_TEMPLATE_LITERAL_CALLSITE:
+                return 1;
+            case Icode_DUP2:
+            case Icode_NAME_AND_THIS:
+            case Icode_LITERAL_NEW:
+                return 2;
+            case Icode_POP:
+            case Icode_POP_RESULT:
+            case Token.GE:
+            case Token.LE:
+            case Token.GT:
+            case Token.LT:
+            case Token.IN:
+            case Token.INSTANCEOF:
+            case Token.EQ:
+            case Token.NE:
+            case Token.SHEQ:
+            case Token.SHNE:
+            case Token.BITAND:
+            case Token.BITOR:
+            case Token.BITXOR:
+            case Token.LSH:
+            case Token.RSH:
+            case Token.URSH:
+            case Token.ADD:
+            case Token.SUB:
+            case Token.MUL:
+            case Token.DIV:
+            case Token.MOD:
+            case Token.EXP:
+            case Token.SETNAME:
+            case Token.STRICT_SETNAME:
+            case Icode_SETCONST:
+            case Token.DELPROP:
+            case Icode_DELNAME:
+            case Token.SETPROP:
+            case Token.GETELEM:
+            case Icode_ELEM_INC_DEC:
+            case Token.SET_REF:
+            case Token.ENUM_INIT_KEYS:
+            case Token.ENUM_INIT_VALUES:
+            case Token.ENUM_INIT_ARRAY:
+            case Token.ENUM_INIT_VALUES_IN_ORDER:
+            case Icode_LITERAL_SET:
+            case Icode_LITERAL_GETTER:
+            case Icode_LITERAL_SETTER:
+            case Token.ARRAYLIT:
+            case Icode_SPARE_ARRAYLIT:
+            case Token.OBJECTLIT:
+                return -1;
+            case Token.SETELEM:
+                return -2;
+            case Token.CALL:
+            case Icode_TAIL_CALL:
+                if (indexReg < 0) throw NOT_COMPILABLE;
+                return -(1 + indexReg);
+            case Token.NEW:
+                if (indexReg < 0) throw NOT_COMPILABLE;
+                return -indexReg;
+        }
+        throw NOT_COMPILABLE;
+    }
+
+    // Code generation
+
+    private void generateBody() {
+        cfw.startMethod(
+                bodyMethodName,
+                BODY_SIG,
+                (short) (ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC));
+
+        labels = new int[iCode.length];
+        for (int pc = 0; pc != iCode.length; pc++) {
+            if (isJumpTarget[pc]) {
+                labels[pc] = cfw.acquireLabel();
+            }
+        }
+        literalCounters = new int[idata.itsMaxFrameArray];
+
+        generatePrologue();
+
+        int indexReg = -1;
+        String stringReg = null;
+        BigInteger bigIntReg = null;
+        int lineNumber = -1;
+        for (int pc = 0; pc < iCode.length; ) {
+            // A superinstruction is translated as the sequence it was written over
+            int op = unfusedOp(iCode[pc]);
+            int span = span(op);
+            int stackTop = stackTopAt[pc];
+            if (stackTop == Integer.MIN_VALUE) {
+                // Unreachable code
+                pc += span;
+                continue;
+            }
+            if (isJumpTarget[pc]) {
+                cfw.markLabel(labels[pc]);
+                indexReg = -1;
+                stringReg = null;
+                bigIntReg = null;
+            }
+            switch (op) {
+                case Icode_REG_IND_C0:
+                case Icode_REG_IND_C1:
+                case Icode_REG_IND_C2:
+                case Icode_REG_IND_C3:
+                case Icode_REG_IND_C4:
+                case Icode_REG_IND_C5:
+                case Icode_REG_IND1:
+                case Icode_REG_IND2:
+                case Icode_REG_IND4:
+                    indexReg = readIndexReg(pc, op);
+                    break;
+                case Icode_REG_STR_C0:
+                    stringReg = idata.itsStringTable[0];
+                    break;
+                case Icode_REG_STR_C1:
+                    stringReg = idata.itsStringTable[1];
+                    break;
+                case Icode_REG_STR_C2:
+                    stringReg = idata.itsStringTable[2];
+                    break;
+                case Icode_REG_STR_C3:
+                    stringReg = idata.itsStringTable[3];
+                    break;
+                case Icode_REG_STR1:
+                    stringReg = idata.itsStringTable[0xFF & iCode[pc + 1]];
+                    break;
+                case Icode_REG_STR2:
+                    stringReg = idata.itsStringTable[getIndex(iCode, pc + 1)];
+                    break;
+                case Icode_REG_STR4:
+                    stringReg = idata.itsStringTable[getInt(iCode, pc + 1)];
+                    break;
+                case Icode_REG_BIGINT_C0:
+                    bigIntReg = idata.itsBigIntTable[0];
+                    break;
+                case Icode_REG_BIGINT_C1:
+                    bigIntReg = idata.itsBigIntTable[1];
+                    break;
+                case Icode_REG_BIGINT_C2:
+                    bigIntReg = idata.itsBigIntTable[2];
+                    break;
+                case Icode_REG_BIGINT_C3:
+                    bigIntReg = idata.itsBigIntTable[3];
+                    break;
+                case Icode_REG_BIGINT1:
+                    bigIntReg = idata.itsBigIntTable[0xFF & iCode[pc + 1]];
+                    break;
+                case Icode_REG_BIGINT2:
+                    bigIntReg = idata.itsBigIntTable[getIndex(iCode, pc + 1)];
+                    break;
+                case Icode_REG_BIGINT4:
+                    bigIntReg = idata.itsBigIntTable[getInt(iCode, pc + 1)];
+                    break;
+                case Icode_LINE:
+                    lineNumber = getIndex(iCode, pc + 1);
+                    cfw.addLineNumberEntry((short) lineNumber);
+                    break;
+                case Icode_DEBUGGER:
+                    // Compiled code never runs under a debugger
+                    break;
+                default:
+                    // Slots hold boxed values here, so numeric icodes compile like the
+                    // operations they specialize
+                    generateOp(genericOp(op), pc, stackTop, indexReg, stringReg, bigIntReg);
+                    break;
+            }
+            pc += span;
+        }
+
+        cfw.stopMethod((short) (tempLocal + 1));
+    }
+
+    private void generatePrologue() {
+        // Arguments and variables
+        int argCount = idata.argCount;
+        for (int i = 0; i != idata.itsMaxVars; i++) {
+            if (i < argCount) {
+                // var_i = i < args.length ? args[i] : undefined
+                int undefinedLabel = cfw.acquireLabel();
+                int doneLabel = cfw.acquireLabel();
+                cfw.addPush(i);
+                cfw.addALoad(ARGS_LOCAL);
+                cfw.add(ByteCode.ARRAYLENGTH);
+                cfw.add(ByteCode.IF_ICMPGE, undefinedLabel);
+                cfw.addALoad(ARGS_LOCAL);
+                cfw.addPush(i);
+                cfw.add(ByteCode.AALOAD);
+                cfw.add(ByteCode.GOTO, doneLabel);
+                cfw.markLabel(undefinedLabel, (short) 0);
+                pushUndefined();
+                cfw.markLabel(doneLabel, (short) 1);
+            } else {
+                pushUndefined();
+            }
+            cfw.addAStore(FIRST_FRAME_LOCAL + i);
+        }
+        // Temporaries and operand stack
+        for (int i = idata.itsMaxVars; i != idata.itsMaxFrameArray; i++) {
+            cfw.add(ByteCode.ACONST_NULL);
+            cfw.addAStore(FIRST_FRAME_LOCAL + i);
+        }
+        pushUndefined();
+        cfw.addAStore(resultLocal);
+        cfw.add(ByteCode.ACONST_NULL);
+        cfw.addAStore(tempLocal);
+    }
+
+    private void generateOp(
+            int op, int pc, int stackTop, int indexReg, String stringReg, BigInteger bigIntReg) {
+        switch (op) {
+            case Token.THROW:
+                load(stackTop);
+                addString(idata.itsSourceFile);
+                cfw.addPush(getIndex(iCode, pc + 1));
+                addOptRuntimeInvoke(
+                        "throwValue",
+                        "(" + OBJECT_SIG + STRING_SIG + "I)Ljava/lang/RuntimeException;");
+                cfw.add(ByteCode.ATHROW);
+                break;
+            case Token.GE:
+            case Token.LE:
+            case Token.GT:
+            case Token.LT:
+                load(stackTop - 1);
+                load(stackTop);
+                cfw.addPush(op);
+                addOptRuntimeInvoke("cmp", "(" + OBJECT_SIG + OBJECT_SIG + "I)" + OBJECT_SIG);
+                store(stackTop - 1);
+                break;
+            case Token.IN:
+            case Token.INSTANCEOF:
+                load(stackTop - 1);
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                addOptRuntimeInvoke(
+                        op == Token.IN ? "inOp" : "instanceOfOp",
+                        "(" + OBJECT_SIG + OBJECT_SIG + CONTEXT_SIG + ")" + OBJECT_SIG);
+                store(stackTop - 1);
+                break;
+            case Token.EQ:
+            case Token.NE:
+            case Token.SHEQ:
+            case Token.SHNE:
+                load(stackTop - 1);
+                load(stackTop);
+                cfw.addPush(op == Token.NE || op == Token.SHNE);
+                addOptRuntimeInvoke(
+                        (op == Token.EQ || op == Token.NE) ? "eqOp" : "shallowEqOp",
+                        "(" + OBJECT_SIG + OBJECT_SIG + "Z)" + OBJECT_SIG);
+                store(stackTop - 1);
+                break;
+            case Token.IFNE:
+            case Token.IFEQ:
+            case Icode_IFEQ_POP:
+                load(stackTop);
+                addScriptRuntimeInvoke("toBoolean", "(" + OBJECT_SIG + ")Z");
+                // IFNE jumps when the value is false, IFEQ and IFEQ_POP when it is true
+                cfw.add(
+                        op == Token.IFNE ? ByteCode.IFEQ : ByteCode.IFNE,
+                        labels[jumpTarget(pc)]);
+                break;
+            case Token.GOTO:
+                cfw.add(ByteCode.GOTO, labels[jumpTarget(pc)]);
+                break;
+            case Icode_POP:
+                break;
+            case Icode_POP_RESULT:
+                load(stackTop);
+                cfw.addAStore(resultLocal);
+                break;
+            case Icode_DUP:
+                load(stackTop);
+                store(stackTop + 1);
+                break;
+            case Icode_DUP2:
+                load(stackTop - 1);
+                store(stackTop + 1);
+                load(stackTop);
+                store(stackTop + 2);
+                break;
+            case Icode_SWAP:
+                load(stackTop);
+                load(stackTop - 1);
+                store(stackTop);
+                store(stackTop - 1);
+                break;
+            case Token.RETURN:
+                load(stackTop);
+                cfw.add(ByteCode.ARETURN);
+                break;
+            case Token.RETURN_RESULT:
+                cfw.addALoad(resultLocal);
+                cfw.add(ByteCode.ARETURN);
+                break;
+            case Icode_RETUNDEF:
+                pushUndefined();
+                cfw.add(ByteCode.ARETURN);
+                break;
+            case Token.BITNOT:
+                unary(stackTop, "bitNot");
+                break;
+            case Token.POS:
+                unary(stackTop, "pos");
+                break;
+            case Token.NEG:
+                unary(stackTop, "neg");
+                break;
+            case Token.NOT:
+                unary(stackTop, "not");
+                break;
+            case Token.BITAND:
+            case Token.BITOR:
+            case Token.BITXOR:
+            case Token.LSH:
+            case Token.RSH:
+                load(stackTop - 1);
+                load(stackTop);
+                cfw.addPush(op);
+                addOptRuntimeInvoke("bitOp", "(" + OBJECT_SIG + OBJECT_SIG + "I)" + OBJECT_SIG);
+                store(stackTop - 1);
+                break;
+            case Token.URSH:
+                binary(stackTop, "ursh");
+                break;
+            case Token.ADD:
+                load(stackTop - 1);
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                addOptRuntimeInvoke(
+                        "add", "(" + OBJECT_SIG + OBJECT_SIG + CONTEXT_SIG + ")" + OBJECT_SIG);
+                store(stackTop - 1);
+                break;
+            case Token.SUB:
+                binary(stackTop, "sub");
+                break;
+            case Token.MUL:
+                binary(stackTop, "mul");
+                break;
+            case Token.DIV:
+                binary(stackTop, "div");
+                break;
+            case Token.MOD:
+                binary(stackTop, "mod");
+                break;
+            case Token.EXP:
+                binary(stackTop, "exp");
+                break;
+            case Token.BINDNAME:
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addString(requireString(stringReg));
+                addScriptRuntimeInvoke(
+                        "bind",
+                        "(" + CONTEXT_SIG + SCRIPTABLE_SIG + STRING_SIG + ")" + SCRIPTABLE_SIG);
+                store(stackTop + 1);
+                break;
+            case Token.SETNAME:
+            case Token.STRICT_SETNAME:
+                load(stackTop - 1);
+                cfw.add(ByteCode.CHECKCAST, "org/redukti/cer/Scriptable");
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addString(requireString(stringReg));
+                addScriptRuntimeInvoke(
+                        op == Token.SETNAME ? "setName" : "strictSetName",
+                        "("
+                                + SCRIPTABLE_SIG
+                                + OBJECT_SIG
+                                + CONTEXT_SIG
+                                + SCRIPTABLE_SIG
+                                + STRING_SIG
+                                + ")"
+                                + OBJECT_SIG);
+                store(stackTop - 1);
+                break;
+            case Icode_SETCONST:
+                load(stackTop - 1);
+                cfw.add(ByteCode.CHECKCAST, "org/redukti/cer/Scriptable");
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                addString(requireString(stringReg));
+                addScriptRuntimeInvoke(
+                        "setConst",
+                        "(" + SCRIPTABLE_SIG + OBJECT_SIG + CONTEXT_SIG + STRING_SIG + ")"
+                                + OBJECT_SIG);
+                store(stackTop - 1);
+                break;
+            case Token.DELPROP:
+            case Icode_DELNAME:
+                load(stackTop - 1);
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                cfw.addPush(op == Icode_DELNAME);
+                addScriptRuntimeInvoke(
+                        "delete",
+                        "(" + OBJECT_SIG + OBJECT_SIG + CONTEXT_SIG + SCRIPTABLE_SIG + "Z)"
+                                + OBJECT_SIG);
+                store(stackTop - 1);
+                break;
+            case Token.GETPROP:
+            case Token.GETPROPNOWARN:
+                addPropertyCache(requireString(stringReg));
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addPropertyCacheInvoke(
+                        op == Token.GETPROP ? "getObjectProp" : "getObjectPropNoWarn",
+                        "(" + OBJECT_SIG + CONTEXT_SIG + SCRIPTABLE_SIG + ")" + OBJECT_SIG);
+                store(stackTop);
+                break;
+            case Token.SETPROP:
+                addPropertyCache(requireString(stringReg));
+                load(stackTop - 1);
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addPropertyCacheInvoke(
+                        "setObjectProp",
+                        "(" + OBJECT_SIG + OBJECT_SIG + CONTEXT_SIG + SCRIPTABLE_SIG + ")"
+                                + OBJECT_SIG);
+                store(stackTop - 1);
+                break;
+            case Icode_PROP_INC_DEC:
+                load(stackTop);
+                addString(requireString(stringReg));
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                cfw.addPush(iCode[pc + 1]);
+                addScriptRuntimeInvoke(
+                        "propIncrDecr",
+                        "(" + OBJECT_SIG + STRING_SIG + CONTEXT_SIG + SCRIPTABLE_SIG + "I)"
+                                + OBJECT_SIG);
+                store(stackTop);
+                break;
+            case Token.GETELEM:
+                load(stackTop - 1);
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addOptRuntimeInvoke(
+                        "getElem",
+                        "(" + OBJECT_SIG + OBJECT_SIG + CONTEXT_SIG + SCRIPTABLE_SIG + ")"
+                                + OBJECT_SIG);
+                store(stackTop - 1);
+                break;
+            case Token.SETELEM:
+                load(stackTop - 2);
+                load(stackTop - 1);
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addOptRuntimeInvoke(
+                        "setElem",
+                        "("
+                                + OBJECT_SIG
+                                + OBJECT_SIG
+                                + OBJECT_SIG
+                                + CONTEXT_SIG
+                                + SCRIPTABLE_SIG
+                                + ")"
+                                + OBJECT_SIG);
+                store(stackTop - 2);
+                break;
+            case Icode_ELEM_INC_DEC:
+                load(stackTop - 1);
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                cfw.addPush(iCode[pc + 1]);
+                addScriptRuntimeInvoke(
+                        "elemIncrDecr",
+                        "(" + OBJECT_SIG + OBJECT_SIG + CONTEXT_SIG + SCRIPTABLE_SIG + "I)"
+                                + OBJECT_SIG);
+                store(stackTop - 1);
+                break;
+            case Token.GET_REF:
+                loadRef(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                addScriptRuntimeInvoke("refGet", "(" + REF_SIG + CONTEXT_SIG + ")" + OBJECT_SIG);
+                store(stackTop);
+                break;
+            case Token.SET_REF:
+                loadRef(stackTop - 1);
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addScriptRuntimeInvoke(
+                        "refSet",
+                        "(" + REF_SIG + OBJECT_SIG + CONTEXT_SIG + SCRIPTABLE_SIG + ")"
+                                + OBJECT_SIG);
+                store(stackTop - 1);
+                break;
+            case Token.DEL_REF:
+                loadRef(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                addScriptRuntimeInvoke("refDel", "(" + REF_SIG + CONTEXT_SIG + ")" + OBJECT_SIG);
+                store(stackTop);
+                break;
+            case Icode_REF_INC_DEC:
+                loadRef(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                cfw.addPush(iCode[pc + 1]);
+                addScriptRuntimeInvoke(
+                        "refIncrDecr",
+                        "(" + REF_SIG + CONTEXT_SIG + SCRIPTABLE_SIG + "I)" + OBJECT_SIG);
+                store(stackTop);
+                break;
+            case Token.REF_SPECIAL:
+                load(stackTop);
+                addString(requireString(stringReg));
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addScriptRuntimeInvoke(
+                        "specialRef",
+                        "(" + OBJECT_SIG + STRING_SIG + CONTEXT_SIG + SCRIPTABLE_SIG + ")"
+                                + REF_SIG);
+                store(stackTop);
+                break;
+            case Token.LOCAL_LOAD:
+                load(localSlot(indexReg));
+                store(stackTop + 1);
+                break;
+            case Icode_LOCAL_CLEAR:
+                cfw.add(ByteCode.ACONST_NULL);
+                store(localSlot(indexReg));
+                break;
+            case Icode_NAME_AND_THIS:
+                addNameCache(requireString(stringReg));
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addNameCacheInvoke(
+                        "getNameFunctionAndThis",
+                        "(" + CONTEXT_SIG + SCRIPTABLE_SIG + ")" + CALLABLE_SIG);
+                store(stackTop + 1);
+                storeLastScriptable(stackTop + 2);
+                break;
+            case Icode_PROP_AND_THIS:
+                addPropertyCache(requireString(stringReg));
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addPropertyCacheInvoke(
+                        "getPropFunctionAndThis",
+                        "(" + OBJECT_SIG + CONTEXT_SIG + SCRIPTABLE_SIG + ")" + CALLABLE_SIG);
+                store(stackTop);
+                storeLastScriptable(stackTop + 1);
+                break;
+            case Icode_ELEM_AND_THIS:
+                load(stackTop - 1);
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addScriptRuntimeInvoke(
+                        "getElemFunctionAndThis",
+                        "(" + OBJECT_SIG + OBJECT_SIG + CONTEXT_SIG + SCRIPTABLE_SIG + ")"
+                                + CALLABLE_SIG);
+                store(stackTop - 1);
+                storeLastScriptable(stackTop);
+                break;
+            case Icode_VALUE_AND_THIS:
+                load(stackTop);
+                cfw.addALoad(CONTEXT_LOCAL);
+                addScriptRuntimeInvoke(
+                        "getValueFunctionAndThis",
+                        "(" + OBJECT_SIG + CONTEXT_SIG + ")" + CALLABLE_SIG);
+                store(stackTop);
+                storeLastScriptable(stackTop + 1);
+                break;
+            case Token.CALL:
+            case Icode_TAIL_CALL:
+                {
+                    // stack change: function thisObj arg0 .. argN -> result
+                    // A tail call is an ordinary call here. The interpreter limits how deep
+                    // compiled code nests and runs deeper tail calls in the calling frame.
+                    int base = stackTop - 1 - requireIndex(indexReg);
+                    load(base);
+                    cfw.add(ByteCode.CHECKCAST, "org/redukti/cer/runtime/Callable");
+                    load(base + 1);
+                    cfw.add(ByteCode.CHECKCAST, "org/redukti/cer/Scriptable");
+                    pushArgs(base + 2, indexReg);
+                    cfw.addALoad(CONTEXT_LOCAL);
+                    cfw.addALoad(SCOPE_LOCAL);
+                    addOptRuntimeInvoke(
+                            "call",
+                            "("
+                                    + CALLABLE_SIG
+                                    + SCRIPTABLE_SIG
+                                    + OBJECT_ARRAY_SIG
+                                    + CONTEXT_SIG
+                                    + SCRIPTABLE_SIG
+                                    + ")"
+                                    + OBJECT_SIG);
+                    store(base);
+                    break;
+                }
+            case Token.NEW:
+                {
+                    // stack change: function arg0 .. argN -> newResult
+                    int base = stackTop - requireIndex(indexReg);
+                    load(base);
+                    cfw.addALoad(CONTEXT_LOCAL);
+                    cfw.addALoad(SCOPE_LOCAL);
+                    pushArgs(base + 1, indexReg);
+                    addScriptRuntimeInvoke(
+                            "newObject",
+                            "(" + OBJECT_SIG + CONTEXT_SIG + SCRIPTABLE_SIG + OBJECT_ARRAY_SIG
+                                    + ")"
+                                    + SCRIPTABLE_SIG);
+                    store(base);
+                    break;
+                }
+            case Token.TYPEOF:
+                load(stackTop);
+                addScriptRuntimeInvoke("typeof", "(" + OBJECT_SIG + ")" + STRING_SIG);
+                store(stackTop);
+                break;
+            case Icode_TYPEOFNAME:
+                cfw.addALoad(SCOPE_LOCAL);
+                addString(requireString(stringReg));
+                addScriptRuntimeInvoke(
+                        "typeofName", "(" + SCRIPTABLE_SIG + STRING_SIG + ")" + STRING_SIG);
+                store(stackTop + 1);
+                break;
+            case Token.STRING:
+                addString(requireString(stringReg));
+                store(stackTop + 1);
+                break;
+            case Icode_SHORTNUMBER:
+                addConstant(Double.valueOf(getShort(iCode, pc + 1)));
+                store(stackTop + 1);
+                break;
+            case Icode_INTNUMBER:
+                addConstant(Double.valueOf(getInt(iCode, pc + 1)));
+                store(stackTop + 1);
+                break;
+            case Token.NUMBER:
+                addConstant(ScriptRuntime.wrapNumber(idata.itsDoubleTable[requireIndex(indexReg)]));
+                store(stackTop + 1);
+                break;
+            case Token.BIGINT:
+                if (bigIntReg == null) throw NOT_COMPILABLE;
+                addConstant(bigIntReg);
+                store(stackTop + 1);
+                break;
+            case Icode_ZERO:
+                addConstant(Double.valueOf(0));
+                store(stackTop + 1);
+                break;
+            case Icode_ONE:
+                addConstant(Double.valueOf(1));
+                store(stackTop + 1);
+                break;
+            case Token.NAME:
+                addNameCache(requireString(stringReg));
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addNameCacheInvoke("name", "(" + CONTEXT_SIG + SCRIPTABLE_SIG + ")" + OBJECT_SIG);
+                store(stackTop + 1);
+                break;
+            case Icode_NAME_INC_DEC:
+                cfw.addALoad(SCOPE_LOCAL);
+                addString(requireString(stringReg));
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addPush(iCode[pc + 1]);
+                addScriptRuntimeInvoke(
+                        "nameIncrDecr",
+                        "(" + SCRIPTABLE_SIG + STRING_SIG + CONTEXT_SIG + "I)" + OBJECT_SIG);
+                store(stackTop + 1);
+                break;
+            case Icode_SETVAR1:
+                load(stackTop);
+                store(iCode[pc + 1]);
+                break;
+            case Token.SETVAR:
+                load(stackTop);
+                store(requireIndex(indexReg));
+                break;
+            case Icode_GETVAR1:
+                load(iCode[pc + 1]);
+                store(stackTop + 1);
+                break;
+            case Token.GETVAR:
+                load(requireIndex(indexReg));
+                store(stackTop + 1);
+                break;
+            case Icode_VAR_INC_DEC:
+                {
+                    int var = requireIndex(indexReg);
+                    int incrDecrMask = iCode[pc + 1];
+                    load(var);
+                    addOptRuntimeInvoke(
+                            "toIncrDecrOperand", "(" + OBJECT_SIG + ")" + OBJECT_SIG);
+                    cfw.addAStore(tempLocal);
+                    cfw.addALoad(tempLocal);
+                    cfw.addPush(incrDecrMask);
+                    addOptRuntimeInvoke("incrDecr", "(" + OBJECT_SIG + "I)" + OBJECT_SIG);
+                    store(var);
+                    if ((incrDecrMask & Node.POST_FLAG) != 0) {
+                        cfw.addALoad(tempLocal);
+                    } else {
+                        load(var);
+                    }
+                    store(stackTop + 1);
+                    break;
+                }
+            case Token.NULL:
+                cfw.add(ByteCode.ACONST_NULL);
+                store(stackTop + 1);
+                break;
+            case Token.THIS:
+                cfw.addALoad(THIS_LOCAL);
+                store(stackTop + 1);
+                break;
+            case Token.THISFN:
+                cfw.addALoad(FUNCTION_LOCAL);
+                store(stackTop + 1);
+                break;
+            case Token.FALSE:
+            case Token.TRUE:
+                cfw.add(
+                        ByteCode.GETSTATIC,
+                        "java/lang/Boolean",
+                        op == Token.TRUE ? "TRUE" : "FALSE",
+                        "Ljava/lang/Boolean;");
+                store(stackTop + 1);
+                break;
+            case Icode_UNDEF:
+                pushUndefined();
+                store(stackTop + 1);
+                break;
+            case Token.ENUM_INIT_KEYS:
+            case Token.ENUM_INIT_VALUES:
+            case Token.ENUM_INIT_ARRAY:
+            case Token.ENUM_INIT_VALUES_IN_ORDER:
+                {
+                    int enumType =
+                            op == Token.ENUM_INIT_KEYS
+                                    ? ScriptRuntime.ENUMERATE_KEYS
+                                    : op == Token.ENUM_INIT_VALUES
+                                            ? ScriptRuntime.ENUMERATE_VALUES
+                                            : op == Token.ENUM_INIT_VALUES_IN_ORDER
+                                                    ? ScriptRuntime.ENUMERATE_VALUES_IN_ORDER
+                                                    : ScriptRuntime.ENUMERATE_ARRAY;
+                    load(stackTop);
+                    cfw.addALoad(CONTEXT_LOCAL);
+                    cfw.addALoad(SCOPE_LOCAL);
+                    cfw.addPush(enumType);
+                    addScriptRuntimeInvoke(
+                            "enumInit",
+                            "(" + OBJECT_SIG + CONTEXT_SIG + SCRIPTABLE_SIG + "I)" + OBJECT_SIG);
+                    store(localSlot(indexReg));
+                    break;
+                }
+            case Token.ENUM_NEXT:
+                load(localSlot(indexReg));
+                addScriptRuntimeInvoke("enumNext", "(" + OBJECT_SIG + ")Ljava/lang/Boolean;");
+                store(stackTop + 1);
+                break;
+            case Token.ENUM_ID:
+                load(localSlot(indexReg));
+                cfw.addALoad(CONTEXT_LOCAL);
+                addScriptRuntimeInvoke("enumId", "(" + OBJECT_SIG + CONTEXT_SIG + ")" + OBJECT_SIG);
+                store(stackTop + 1);
+                break;
+            case Token.REGEXP:
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addConstant(idata.itsRegExpLiterals[requireIndex(indexReg)]);
+                addScriptRuntimeInvoke(
+                        "wrapRegExp",
+                        "(" + CONTEXT_SIG + SCRIPTABLE_SIG + OBJECT_SIG + ")" + SCRIPTABLE_SIG);
+                store(stackTop + 1);
+                break;
+            case Icode_TEMPLATE_LITERAL_CALLSITE:
+                cfw.addALoad(CONTEXT_LOCAL);
+                cfw.addALoad(SCOPE_LOCAL);
+                addConstant(idata.itsTemplateLiterals);
+                cfw.add(ByteCode.CHECKCAST, OBJECT_ARRAY_SIG);
+                cfw.addPush(requireIndex(indexReg));
+                addScriptRuntimeInvoke(
+                        "getTemplateLiteralCallSite",
+                        "(" + CONTEXT_SIG + SCRIPTABLE_SIG + OBJECT_ARRAY_SIG + "I)"
+                                + SCRIPTABLE_SIG);
+                store(stackTop + 1);
+                break;
+            case Icode_LITERAL_NEW:
+                {
+                    int count = requireIndex(indexReg);
+                    cfw.addPush(count);
+                    cfw.add(ByteCode.NEWARRAY, ByteCode.T_INT);
+                    store(stackTop + 1);
+                    cfw.addPush(count);
+                    cfw.add(ByteCode.ANEWARRAY, OBJECT);
+                    store(stackTop + 2);
+                    literalCounters[stackTop + 2] = 0;
+                    break;
+                }
+            case Icode_LITERAL_SET:
+            case Icode_LITERAL_GETTER:
+            case Icode_LITERAL_SETTER:
+                {
+                    int i = literalCounters[stackTop - 1]++;
+                    load(stackTop - 1);
+                    cfw.add(ByteCode.CHECKCAST, OBJECT_ARRAY_SIG);
+                    cfw.addPush(i);
+                    load(stackTop);
+                    cfw.add(ByteCode.AASTORE);
+                    if (op != Icode_LITERAL_SET) {
+                        load(stackTop - 2);
+                        cfw.add(ByteCode.CHECKCAST, "[I");
+                        cfw.addPush(i);
+                        cfw.addPush(op == Icode_LITERAL_GETTER ? -1 : 1);
+                        cfw.add(ByteCode.IASTORE);
+                    }
+                    break;
+                }
+            case Token.ARRAYLIT:
+            case Icode_SPARE_ARRAYLIT:
+            case Token.OBJECTLIT:
+                if (op == Token.OBJECTLIT) {
+                    addConstant(idata.literalIds[requireIndex(indexReg)]);
+                    cfw.add(ByteCode.CHECKCAST, OBJECT_ARRAY_SIG);
+                    load(stackTop);
+                    cfw.add(ByteCode.CHECKCAST, OBJECT_ARRAY_SIG);
+                    load(stackTop - 1);
+                    cfw.add(ByteCode.CHECKCAST, "[I");
+                    cfw.addALoad(CONTEXT_LOCAL);
+                    cfw.addALoad(SCOPE_LOCAL);
+                    addScriptRuntimeInvoke(
+                            "newObjectLiteral",
+                            "("
+                                    + OBJECT_ARRAY_SIG
+                                    + OBJECT_ARRAY_SIG
+                                    + "[I"
+                                    + CONTEXT_SIG
+                                    + SCRIPTABLE_SIG
+                                    + ")"
+                                    + SCRIPTABLE_SIG);
+                } else {
+                    load(stackTop);
+                    cfw.add(ByteCode.CHECKCAST, OBJECT_ARRAY_SIG);
+                    if (op == Icode_SPARE_ARRAYLIT) {
+                        addConstant(idata.literalIds[requireIndex(indexReg)]);
+                        cfw.add(ByteCode.CHECKCAST, "[I");
+                    } else {
+                        cfw.add(ByteCode.ACONST_NULL);
+                    }
+                    cfw.addALoad(CONTEXT_LOCAL);
+                    cfw.addALoad(SCOPE_LOCAL);
+                    addScriptRuntimeInvoke(
+                            "newArrayLiteral",
+                            "(" + OBJECT_ARRAY_SIG + "[I" + CONTEXT_SIG + SCRIPTABLE_SIG + ")"
+                                    + SCRIPTABLE_SIG);
+                }
+                store(stackTop - 1);
+                break;
+            default:
+                throw NOT_COMPILABLE;
+        }
+    }
+
+    private void unary(int stackTop, String method) {
+        load(stackTop);
+        addOptRuntimeInvoke(method, "(" + OBJECT_SIG + ")" + OBJECT_SIG);
+        store(stackTop);
+    }
+
+    private void binary(int stackTop, String method) {
+        load(stackTop - 1);
+        load(stackTop);
+        addOptRuntimeInvoke(method, "(" + OBJECT_SIG + OBJECT_SIG + ")" + OBJECT_SIG);
+        store(stackTop - 1);
+    }
+
+    private void pushArgs(int first, int count) {
+        if (count == 0) {
+            cfw.add(
+                    ByteCode.GETSTATIC,
+                    "org/redukti/cer/ir/InterpreterConstants",
+                    "emptyArgs",
+                    OBJECT_ARRAY_SIG);
+            return;
+        }
+        cfw.addPush(count);
+        cfw.add(ByteCode.ANEWARRAY, OBJECT);
+        for (int i = 0; i != count; i++) {
+            cfw.add(ByteCode.DUP);
+            cfw.addPush(i);
+            load(first + i);
+            cfw.add(ByteCode.AASTORE);
+        }
+    }
+
+    private void storeLastScriptable(int slot) {
+        cfw.addALoad(CONTEXT_LOCAL);
+        addScriptRuntimeInvoke("lastStoredScriptable", "(" + CONTEXT_SIG + ")" + SCRIPTABLE_SIG);
+        store(slot);
+    }
+
+    private void loadRef(int slot) {
+        load(slot);
+        cfw.add(ByteCode.CHECKCAST, "org/redukti/cer/runtime/Ref");
+    }
+
+    private void pushUndefined() {
+        cfw.add(
+                ByteCode.GETSTATIC,
+                "org/redukti/cer/runtime/Undefined",
+                "instance",
+                OBJECT_SIG);
+    }
+
+    private void addString(String s) {
+        if (s == null) {
+            cfw.add(ByteCode.ACONST_NULL);
+        } else {
+            cfw.addPush(s);
+        }
+    }
+
+    /** Load a value that only exists at run time from the constants array. */
+    private void addConstant(Object value) {
+        int index = constants.size();
+        constants.add(value);
+        cfw.addALoad(CONSTANTS_LOCAL);
+        cfw.addPush(index);
+        cfw.add(ByteCode.AALOAD);
+    }
+
+    private int localSlot(int indexReg) {
+        return idata.itsMaxVars + requireIndex(indexReg);
+    }
+
+    /** Push a fresh inline cache for a named property access site. */
+    private void addPropertyCache(String name) {
+        addConstant(new PropertyCache(name));
+        cfw.add(ByteCode.CHECKCAST, PROPERTY_CACHE);
+    }
+
+    private void addPropertyCacheInvoke(String methodName, String methodSignature) {
+        cfw.addInvoke(ByteCode.INVOKEVIRTUAL, PROPERTY_CACHE, methodName, methodSignature);
+    }
+
+    /** Push a fresh inline cache for a name lookup site. */
+    private void addNameCache(String name) {
+        addConstant(new NameCache(name));
+        cfw.add(ByteCode.CHECKCAST, NAME_CACHE);
+    }
+
+    private void addNameCacheInvoke(String methodName, String methodSignature) {
+        cfw.addInvoke(ByteCode.INVOKEVIRTUAL, NAME_CACHE, methodName, methodSignature);
+    }
+
+    private void load(int slot) {
+        cfw.addALoad(FIRST_FRAME_LOCAL + slot);
+    }
+
+    private void store(int slot) {
+        cfw.addAStore(FIRST_FRAME_LOCAL + slot);
+    }
+
+    private void addOptRuntimeInvoke(String methodName, String methodSignature) {
+        cfw.addInvoke(ByteCode.INVOKESTATIC, OPT_RUNTIME, methodName, methodSignature);
+    }
+
+    private void addScriptRuntimeInvoke(String methodName, String methodSignature) {
+        cfw.addInvoke(ByteCode.INVOKESTATIC, SCRIPT_RUNTIME, methodName, methodSignature);
+    }
+
+    private static int requireIndex(int indexReg) {
+        if (indexReg < 0) throw NOT_COMPILABLE;
+        return indexReg;
+    }
+
+    private static String requireString(String stringReg) {
+        if (stringReg == null) throw NOT_COMPILABLE;
+        return stringReg;
+    }
+
+    private static int getShort(byte[] iCode, int pc) {
+        return (iCode[pc] << 8) | (iCode[pc + 1] & 0xFF);
+    }
+
+    private static int getIndex(byte[] iCode, int pc) {
+        return ((iCode[pc] & 0xFF) << 8) | (iCode[pc + 1] & 0xFF);
+    }
+
+    private static int getInt(byte[] iCode, int pc) {
+        return (iCode[pc] << 24)
+                | ((iCode[pc + 1] & 0xFF) << 16)
+                | ((iCode[pc + 2] & 0xFF) << 8)
+                | (iCode[pc + 3] & 0xFF);
+    }
+}
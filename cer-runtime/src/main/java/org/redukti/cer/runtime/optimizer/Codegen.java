@@ -0,0 +1,254 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.redukti.cer.CompilerEnvirons;
+import org.redukti.cer.Scriptable;
+import org.redukti.cer.classfile.ClassFileWriter;
+import org.redukti.cer.exception.RhinoException;
+import org.redukti.cer.ir.InterpreterData;
+import org.redukti.cer.parser.ast.ScriptNode;
+import org.redukti.cer.runtime.CompiledCode;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.Evaluator;
+import org.redukti.cer.runtime.Function;
+import org.redukti.cer.runtime.GeneratedClassLoader;
+import org.redukti.cer.runtime.Interpreter;
+import org.redukti.cer.runtime.Script;
+import org.redukti.cer.runtime.SecurityController;
+
+/**
+ * This class generates JVM bytecode for scripts and functions.
+ *
+ * <p>The tree is first compiled to icode by the {@link Interpreter}. Every script or function body
+ * that {@link BodyCodegen} can translate is then turned into a class implementing {@link
+ * CompiledCode} and attached to its {@link InterpreterData}, while the remaining bodies keep
+ * running in the interpreter. Frames, stack traces, continuations and debugging therefore all go
+ * through the interpreter as before.
+ *
+ * <p>With a positive {@link org.redukti.cer.runtime.ContextFactory#getTierUpThreshold()} bodies
+ * are not compiled up front: each eligible body gets a {@link BackgroundCompiler} and is compiled
+ * once the interpreter finds it hot.
+ *
+ * <p>If a body exceeds the limits of the class file format a {@link
+ * org.redukti.cer.classfile.ClassFileWriter.ClassFileFormatException} is thrown and {@link Context}
+ * falls back to the interpreter for the whole script.
+ */
+public class Codegen implements Evaluator {
+
+    private static final String CLASS_PREFIX = "org.redukti.cer.gen.";
+
+    private static final AtomicInteger serialClassNumber = new AtomicInteger();
+
+    private final Interpreter interpreter = new Interpreter();
+
+    private InterpreterData itsData;
+    private List<GeneratedBody> generatedBodies;
+    private List<InterpreterData> tieredBodies;
+
+    static final class GeneratedBody {
+        final InterpreterData idata;
+        final String className;
+        final byte[] classBytes;
+        final Object[] constants;
+
+        GeneratedBody(
+                InterpreterData idata, String className, byte[] classBytes, Object[] constants) {
+            this.idata = idata;
+            this.className = className;
+            this.classBytes = classBytes;
+            this.constants = constants;
+        }
+    }
+
+    @Override
+    public Object compile(
+            CompilerEnvirons compilerEnv,
+            ScriptNode tree,
+            String encodedSource,
+            boolean returnFunction) {
+        itsData =
+                (InterpreterData)
+                        interpreter.compile(compilerEnv, tree, encodedSource, returnFunction);
+        selectBodies();
+        return itsData;
+    }
+
+    /**
+     * Compile the bodies of loaded code or attach tier-up compilers to them, as compile and then
+     * createScriptObject without a security domain do.
+     */
+    @Override
+    public void prepareLoaded(Object bytecode) {
+        itsData = (InterpreterData) bytecode;
+        try {
+            selectBodies();
+        } catch (ClassFileWriter.ClassFileFormatException e) {
+            // Where compile falls back to the interpreter the loaded code already is interpreted
+            generatedBodies.clear();
+            tieredBodies.clear();
+        }
+        defineBodies(null);
+    }
+
+    private void selectBodies() {
+        generatedBodies = new ArrayList<GeneratedBody>();
+        tieredBodies = new ArrayList<InterpreterData>();
+        int tierUpThreshold = Context.getCurrentContext().getFactory().getTierUpThreshold();
+        if (tierUpThreshold == 0) {
+            generateBodies(itsData);
+        } else if (tierUpThreshold > 0) {
+            collectTieredBodies(itsData);
+        }
+    }
+
+    private void generateBodies(InterpreterData idata) {
+        GeneratedBody body = generateBody(idata);
+        if (body != null) {
+            generatedBodies.add(body);
+        }
+        if (idata.itsNestedFunctions != null) {
+            for (InterpreterData nested : idata.itsNestedFunctions) {
+                generateBodies(nested);
+            }
+        }
+    }
+
+    /** Collect the bodies to compile once the interpreter finds them hot. */
+    private void collectTieredBodies(InterpreterData idata) {
+        if (BodyCodegen.isCandidate(idata)) {
+            tieredBodies.add(idata);
+        }
+        if (idata.itsNestedFunctions != null) {
+            for (InterpreterData nested : idata.itsNestedFunctions) {
+                collectTieredBodies(nested);
+            }
+        }
+    }
+
+    /**
+     * Generate the class for a single body.
+     *
+     * @return the generated class or null if the body has to run in the interpreter
+     */
+    static GeneratedBody generateBody(InterpreterData idata) {
+        if (!BodyCodegen.isCandidate(idata)) {
+            return null;
+        }
+        int serial = serialClassNumber.incrementAndGet();
+        String className = CLASS_PREFIX + cleanName(idata.itsSourceFile, "script") + "_" + serial;
+        String methodName;
+        if (idata.itsFunctionType == 0) {
+            methodName = "_c_script_0";
+        } else {
+            methodName = "_c_" + cleanName(idata.itsName, "anonymous") + "_" + serial;
+        }
+        BodyCodegen bodyCodegen = new BodyCodegen(idata, className, methodName);
+        byte[] classBytes = bodyCodegen.generate();
+        if (classBytes == null) {
+            return null;
+        }
+        return new GeneratedBody(idata, className, classBytes, bodyCodegen.getConstants());
+    }
+
+    @Override
+    public Script createScriptObject(Object bytecode, Object staticSecurityDomain) {
+        if (bytecode != itsData) {
+            throw new IllegalArgumentException();
+        }
+        defineBodies(staticSecurityDomain);
+        return interpreter.createScriptObject(bytecode, staticSecurityDomain);
+    }
+
+    @Override
+    public Function createFunctionObject(
+            Context cx, Scriptable scope, Object bytecode, Object staticSecurityDomain) {
+        if (bytecode != itsData) {
+            throw new IllegalArgumentException();
+        }
+        defineBodies(staticSecurityDomain);
+        return interpreter.createFunctionObject(cx, scope, bytecode, staticSecurityDomain);
+    }
+
+    private void defineBodies(Object staticSecurityDomain) {
+        if (!tieredBodies.isEmpty()) {
+            BackgroundCompiler compiler = new BackgroundCompiler(staticSecurityDomain);
+            for (InterpreterData idata : tieredBodies) {
+                idata.itsTierUpCompiler = compiler;
+            }
+            tieredBodies.clear();
+        }
+        if (generatedBodies.isEmpty()) {
+            return;
+        }
+        GeneratedClassLoader loader =
+                SecurityController.createLoader(
+                        Codegen.class.getClassLoader(), staticSecurityDomain);
+        for (GeneratedBody body : generatedBodies) {
+            body.idata.itsCompiledCode = defineBody(loader, body);
+        }
+        generatedBodies.clear();
+    }
+
+    static CompiledCode defineBody(GeneratedClassLoader loader, GeneratedBody body) {
+        Class<?> cl = loader.defineClass(body.className, body.classBytes);
+        loader.linkClass(cl);
+        try {
+            return (CompiledCode)
+                    cl.getConstructor(Object[].class).newInstance((Object) body.constants);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Unable to instantiate compiled class:" + e.toString());
+        }
+    }
+
+    @Override
+    public void captureStackInfo(RhinoException ex) {
+        interpreter.captureStackInfo(ex);
+    }
+
+    @Override
+    public String getSourcePositionFromStack(Context cx, int[] linep) {
+        return interpreter.getSourcePositionFromStack(cx, linep);
+    }
+
+    @Override
+    public String getPatchedStack(RhinoException ex, String nativeStackTrace) {
+        return interpreter.getPatchedStack(ex, nativeStackTrace);
+    }
+
+    @Override
+    public List<String> getScriptStack(RhinoException ex) {
+        return interpreter.getScriptStack(ex);
+    }
+
+    @Override
+    public void setEvalScriptFlag(Script script) {
+        interpreter.setEvalScriptFlag(script);
+    }
+
+    static String cleanName(String name, String defaultName) {
+        if (name == null || name.length() == 0) {
+            return defaultName;
+        }
+        int slash = Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'));
+        if (slash >= 0) {
+            name = name.substring(slash + 1);
+        }
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i != name.length(); i++) {
+            char c = name.charAt(i);
+            sb.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        if (sb.length() == 0 || !Character.isJavaIdentifierStart(sb.charAt(0))) {
+            sb.insert(0, '_');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,225 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.optimizer;
+
+import java.math.BigInteger;
+import org.redukti.cer.Scriptable;
+import org.redukti.cer.parser.Node;
+import org.redukti.cer.parser.Token;
+import org.redukti.cer.runtime.Callable;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.JavaScriptException;
+import org.redukti.cer.runtime.ScriptRuntime;
+
+/**
+ * Runtime support for code generated by {@link Codegen}.
+ *
+ * <p>Generated code keeps every value boxed, so these helpers mirror the operand handling of the
+ * interpreter loop for values that are never tagged with <code>DOUBLE_MARK</code>. Numeric results
+ * are always either a {@link Double} or a {@link BigInteger}.
+ */
+public final class OptRuntime extends ScriptRuntime {
+
+    /** No instances should be created. */
+    private OptRuntime() {}
+
+    public static Object add(Object lhs, Object rhs, Context cx) {
+        if (lhs instanceof Double && rhs instanceof Double) {
+            return wrapDouble(((Double) lhs).doubleValue() + ((Double) rhs).doubleValue());
+        }
+        return ScriptRuntime.add(lhs, rhs, cx);
+    }
+
+    public static Object sub(Object lhs, Object rhs) {
+        if (lhs instanceof Double && rhs instanceof Double) {
+            return wrapDouble(((Double) lhs).doubleValue() - ((Double) rhs).doubleValue());
+        }
+        Number lNum = toNumeric(lhs);
+        return boxNumeric(subtract(lNum, toNumeric(rhs)));
+    }
+
+    public static Object mul(Object lhs, Object rhs) {
+        if (lhs instanceof Double && rhs instanceof Double) {
+            return wrapDouble(((Double) lhs).doubleValue() * ((Double) rhs).doubleValue());
+        }
+        Number lNum = toNumeric(lhs);
+        return boxNumeric(multiply(lNum, toNumeric(rhs)));
+    }
+
+    public static Object div(Object lhs, Object rhs) {
+        if (lhs instanceof Double && rhs instanceof Double) {
+            return wrapDouble(((Double) lhs).doubleValue() / ((Double) rhs).doubleValue());
+        }
+        Number lNum = toNumeric(lhs);
+        return boxNumeric(divide(lNum, toNumeric(rhs)));
+    }
+
+    public static Object mod(Object lhs, Object rhs) {
+        if (lhs instanceof Double && rhs instanceof Double) {
+            return wrapDouble(((Double) lhs).doubleValue() % ((Double) rhs).doubleValue());
+        }
+        Number lNum = toNumeric(lhs);
+        return boxNumeric(remainder(lNum, toNumeric(rhs)));
+    }
+
+    public static Object exp(Object lhs, Object rhs) {
+        Number lNum = toNumeric(lhs);
+        return boxNumeric(exponentiate(lNum, toNumeric(rhs)));
+    }
+
+    public static Object bitOp(Object lhs, Object rhs, int op) {
+        Number lNum = toNumeric(lhs);
+        Number rNum = toNumeric(rhs);
+        Number result;
+        switch (op) {
+            case Token.BITAND:
+                result = bitwiseAND(lNum, rNum);
+                break;
+            case Token.BITOR:
+                result = bitwiseOR(lNum, rNum);
+                break;
+            case Token.BITXOR:
+                result = bitwiseXOR(lNum, rNum);
+                break;
+            case Token.LSH:
+                result = leftShift(lNum, rNum);
+                break;
+            case Token.RSH:
+                result = signedRightShift(lNum, rNum);
+                break;
+            default:
+                throw new IllegalArgumentException(String.valueOf(op));
+        }
+        return boxNumeric(result);
+    }
+
+    public static Object ursh(Object lhs, Object rhs) {
+        double lDbl = toNumber(lhs);
+        int rIntValue = toInt32(rhs) & 0x1F;
+        return wrapDouble(toUint32(lDbl) >>> rIntValue);
+    }
+
+    public static Object bitNot(Object value) {
+        return boxNumeric(bitwiseNOT(toNumeric(value)));
+    }
+
+    public static Object pos(Object value) {
+        if (value instanceof Double) {
+            return value;
+        }
+        return wrapDouble(toNumber(value));
+    }
+
+    public static Object neg(Object value) {
+        return boxNumeric(negate(toNumeric(value)));
+    }
+
+    public static Object not(Object value) {
+        return toBoolean(value) ? Boolean.FALSE : Boolean.TRUE;
+    }
+
+    public static Object cmp(Object lhs, Object rhs, int op) {
+        if (lhs instanceof Double && rhs instanceof Double) {
+            double l = ((Double) lhs).doubleValue();
+            double r = ((Double) rhs).doubleValue();
+            boolean result;
+            switch (op) {
+                case Token.GE:
+                    result = l >= r;
+                    break;
+                case Token.LE:
+                    result = l <= r;
+                    break;
+                case Token.GT:
+                    result = l > r;
+                    break;
+                default:
+                    result = l < r;
+                    break;
+            }
+            return wrapBoolean(result);
+        }
+        return wrapBoolean(compare(lhs, rhs, op));
+    }
+
+    public static Object eqOp(Object lhs, Object rhs, boolean negate) {
+        return wrapBoolean(eq(lhs, rhs) ^ negate);
+    }
+
+    public static Object shallowEqOp(Object lhs, Object rhs, boolean negate) {
+        return wrapBoolean(shallowEq(lhs, rhs) ^ negate);
+    }
+
+    public static Object inOp(Object lhs, Object rhs, Context cx) {
+        return wrapBoolean(in(lhs, rhs, cx));
+    }
+
+    public static Object instanceOfOp(Object lhs, Object rhs, Context cx) {
+        return wrapBoolean(instanceOf(lhs, rhs, cx));
+    }
+
+    public static Object getElem(Object obj, Object id, Context cx, Scriptable scope) {
+        if (id instanceof Double) {
+            return getObjectIndex(obj, ((Double) id).doubleValue(), cx, scope);
+        }
+        return getObjectElem(obj, id, cx, scope);
+    }
+
+    public static Object setElem(
+            Object obj, Object id, Object value, Context cx, Scriptable scope) {
+        if (id instanceof Double) {
+            return setObjectIndex(obj, ((Double) id).doubleValue(), value, cx, scope);
+        }
+        return setObjectElem(obj, id, value, cx, scope);
+    }
+
+    public static Object call(
+            Callable fun, Scriptable thisObj, Object[] args, Context cx, Scriptable scope) {
+        return fun.call(cx, scope, thisObj, args);
+    }
+
+    /** Convert the value of a local variable to the number that ++/-- operates on. */
+    public static Object toIncrDecrOperand(Object value) {
+        if (value instanceof Double) {
+            return value;
+        }
+        Number num = toNumeric(value);
+        if (num instanceof BigInteger) {
+            return num;
+        }
+        return wrapDouble(num.doubleValue());
+    }
+
+    /** Apply ++/-- to a value produced by {@link #toIncrDecrOperand(Object)}. */
+    public static Object incrDecr(Object operand, int incrDecrMask) {
+        boolean decr = (incrDecrMask & Node.DECR_FLAG) != 0;
+        if (operand instanceof BigInteger) {
+            BigInteger bi = (BigInteger) operand;
+            return decr ? bi.subtract(BigInteger.ONE) : bi.add(BigInteger.ONE);
+        }
+        double d = ((Double) operand).doubleValue();
+        return wrapDouble(decr ? d - 1.0 : d + 1.0);
+    }
+
+    public static RuntimeException throwValue(Object value, String sourceName, int lineNumber) {
+        return new JavaScriptException(value, sourceName, lineNumber);
+    }
+
+    private static Object boxNumeric(Number num) {
+        if (num instanceof Double || num instanceof BigInteger) {
+            return num;
+        }
+        return wrapDouble(num.doubleValue());
+    }
+
+    private static Double wrapDouble(double d) {
+        if (d != d) {
+            return NaNobj;
+        }
+        return Double.valueOf(d);
+    }
+}
@@ -11,6 +11,7 @@ import org.redukti.cer.runtime.*;
 import org.redukti.cer.utils.Kit;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * This class implements the RegExp native object.
@@ -102,6 +103,29 @@ public class NativeRegExp extends IdScriptableObject {
 
     private static final int ANCHOR_BOL = -2;
 
+    /*
+     * Program of the linear matcher. Each instruction is an opcode and two operands, a and b, and
+     * is followed by the next one unless its opcode says otherwise.
+     */
+    private static final int LINEAR_MATCH = 0; /* the match is complete */
+    private static final int LINEAR_CHAR = 1; /* char a */
+    private static final int LINEAR_CHARi = 2; /* char a, or a char whose upcase is b */
+    private static final int LINEAR_CLASS = 3; /* a char in (or not in) class a */
+    private static final int LINEAR_TEST = 4; /* a char matched by the simple opcode a */
+    private static final int LINEAR_ASSERT = 5; /* the zero width simple opcode a matches */
+    private static final int LINEAR_SPLIT = 6; /* go to a, and to b with lower priority */
+    private static final int LINEAR_JUMP = 7; /* go to a */
+    private static final int LINEAR_OPEN = 8; /* start paren a */
+    private static final int LINEAR_CLOSE = 9; /* end paren a */
+    private static final int LINEAR_CLEAR = 10; /* unset parens a to a + b - 1 */
+    private static final int LINEAR_MARK = 11; /* save the position in thread slot a */
+    private static final int LINEAR_PROGRESS = 12; /* fail unless a char was matched since MARK a */
+    static final int LINEAR_SIZE = 3;
+    private static final int MAX_LINEAR_LENGTH = 1 << 14; /* instructions */
+
+    /* Backtracks per char and instruction before a match moves to the linear matcher */
+    private static final int BACKTRACK_BUDGET_FACTOR = 4;
+
     public static void init(Context cx, Scriptable scope, boolean sealed) {
 
         NativeRegExp proto = NativeRegExpInstantiator.withLanguageVersion(cx.getLanguageVersion());
@@ -186,10 +210,14 @@ public class NativeRegExp extends IdScriptableObject {
     }
 
     private void appendFlags(StringBuilder buf) {
-        if ((re.flags & JSREG_GLOB) != 0) buf.append('g');
-        if ((re.flags & JSREG_FOLD) != 0) buf.append('i');
-        if ((re.flags & JSREG_MULTILINE) != 0) buf.append('m');
-        if ((re.flags & JSREG_STICKY) != 0) buf.append('y');
+        appendFlags(re.flags, buf);
+    }
+
+    static void appendFlags(int flags, StringBuilder buf) {
+        if ((flags & JSREG_GLOB) != 0) buf.append('g');
+        if ((flags & JSREG_FOLD) != 0) buf.append('i');
+        if ((flags & JSREG_MULTILINE) != 0) buf.append('m');
+        if ((flags & JSREG_STICKY) != 0) buf.append('y');
     }
 
     NativeRegExp() {}
@@ -257,9 +285,35 @@ public class NativeRegExp extends IdScriptableObject {
         return rval;
     }
 
+    /**
+     * Compile a regular expression, or get it from the {@link RECompiledCache} if the same
+     * source was compiled with the same flags before. The cache is bypassed when the context
+     * reports warnings, since a cached expression would not report them again.
+     */
     static RECompiled compileRE(Context cx, String str, String global, boolean flat) {
-        RECompiled regexp = new RECompiled(str);
-        int length = str.length();
+        int flags = parseFlags(global);
+        boolean cacheable = !cx.hasFeature(Context.FEATURE_STRICT_MODE);
+        RECompiled regexp = cacheable ? RECompiledCache.get(str, flags, flat) : null;
+        if (regexp == null) {
+            regexp = compileNewRE(cx, str, flags, flat);
+            if (regexp != null && cacheable) {
+                RECompiledCache.put(str, flags, flat, regexp);
+            }
+        }
+        if (regexp != null
+                && regexp.linear == null
+                && cx.hasFeature(Context.FEATURE_LINEAR_REGEXP_ONLY)) {
+            throw needsBacktracking(str);
+        }
+        return regexp;
+    }
+
+    private static RuntimeException needsBacktracking(String source) {
+        return ScriptRuntime.constructError(
+                "SyntaxError", "Regular expression needs backtracking: /" + source + "/");
+    }
+
+    private static int parseFlags(String global) {
         int flags = 0;
         if (global != null) {
             for (int i = 0; i < global.length(); i++) {
@@ -282,6 +336,12 @@ public class NativeRegExp extends IdScriptableObject {
                 flags |= f;
             }
         }
+        return flags;
+    }
+
+    private static RECompiled compileNewRE(Context cx, String str, int flags, boolean flat) {
+        RECompiled regexp = new RECompiled(str);
+        int length = str.length();
         regexp.flags = flags;
 
         CompilerState state = new CompilerState(cx, regexp.source, length, flags);
@@ -355,6 +415,9 @@ public class NativeRegExp extends IdScriptableObject {
                 System.out.println("Anchor ch = '" + (char) regexp.anchorCh + "'");
             }
         }
+        findLiterals(regexp);
+        regexp.startChars = findStartChars(regexp);
+        regexp.linear = compileLinear(regexp);
         return regexp;
     }
 
@@ -1273,42 +1336,574 @@ public class NativeRegExp extends IdScriptableObject {
         return pc;
     }
 
-    private static void pushProgState(
-            REGlobalData gData,
+    /**
+     * Find the literal that every match of re starts with, and the longest literal that every
+     * match contains, from the chars matched case sensitively in the top level sequence of the
+     * bytecode. Only literals of two or more chars are kept, the first char is anchorCh.
+     */
+    private static void findLiterals(RECompiled re) {
+        if ((re.flags & JSREG_FOLD) != 0) {
+            return;
+        }
+        byte[] program = re.program;
+        StringBuilder run = new StringBuilder();
+        String longest = "";
+        boolean atStart = true;
+        int pc = 0;
+        for (; ; ) {
+            byte op = program[pc++];
+            switch (op) {
+                case REOP_FLAT:
+                    {
+                        int offset = getIndex(program, pc);
+                        run.append(re.source, offset, getIndex(program, pc + INDEX_LEN));
+                        pc += 2 * INDEX_LEN;
+                    }
+                    continue;
+                case REOP_FLAT1:
+                    run.append((char) (program[pc++] & 0xFF));
+                    continue;
+                case REOP_UCFLAT1:
+                    run.append((char) getIndex(program, pc));
+                    pc += INDEX_LEN;
+                    continue;
+                case REOP_LPAREN:
+                case REOP_RPAREN:
+                    pc += INDEX_LEN;
+                    continue;
+            }
+            // Anything else ends the literal, and may match different chars in each match
+            if (atStart && run.length() > 1) {
+                re.prefix = run.toString();
+            }
+            if (run.length() > longest.length()) {
+                longest = run.toString();
+            }
+            run.setLength(0);
+            atStart = false;
+            pc = skipREBytecode(program, op, pc);
+            if (pc < 0) {
+                break;
+            }
+        }
+        if (longest.length() > 1 && !longest.equals(re.prefix)) {
+            re.literal = longest;
+        }
+    }
+
+    /**
+     * Step over the operands of op, and its child if it has one.
+     *
+     * @return the pc after op, or -1 for REOP_END
+     */
+    private static int skipREBytecode(byte[] program, byte op, int pc) {
+        switch (op) {
+            case REOP_END:
+                return -1;
+            case REOP_FLAT1:
+            case REOP_FLAT1i:
+                return pc + 1;
+            case REOP_BACKREF:
+            case REOP_UCFLAT1:
+            case REOP_UCFLAT1i:
+            case REOP_CLASS:
+            case REOP_NCLASS:
+            case REOP_LPAREN:
+            case REOP_RPAREN:
+                return pc + INDEX_LEN;
+            case REOP_FLAT:
+            case REOP_FLATi:
+                return pc + 2 * INDEX_LEN;
+            case REOP_ALTPREREQ:
+            case REOP_ALTPREREQi:
+            case REOP_ALTPREREQ2:
+                pc += 2 * INDEX_LEN;
+                // fall through
+            case REOP_ALT:
+                {
+                    // ALT <next> kid JUMP <end> kid2 JUMP <end>
+                    int nextpc = pc + getOffset(program, pc);
+                    return nextpc - INDEX_LEN + getOffset(program, nextpc - INDEX_LEN);
+                }
+            case REOP_ASSERT:
+            case REOP_ASSERT_NOT:
+                return pc + getIndex(program, pc);
+            case REOP_QUANT:
+            case REOP_MINIMALQUANT:
+                pc += 2 * INDEX_LEN;
+                // fall through
+            case REOP_STAR:
+            case REOP_PLUS:
+            case REOP_OPT:
+            case REOP_MINIMALSTAR:
+            case REOP_MINIMALPLUS:
+            case REOP_MINIMALOPT:
+                pc += 2 * INDEX_LEN; // <parencount> & <parenindex>
+                return pc + getOffset(program, pc);
+            default:
+                // The simple opcodes without operands
+                return pc;
+        }
+    }
+
+    /**
+     * Find the chars that a match of re can start with, as a bitmap of the chars below 256 in which
+     * bit 256 stands for all the others. Return null if re can match the empty string or a match
+     * may start with any char.
+     */
+    private static long[] findStartChars(RECompiled re) {
+        REGlobalData gData = new REGlobalData();
+        gData.regexp = re;
+        long[] chars = new long[5];
+        if (addStartChars(gData, chars, 0, re.program.length)) {
+            return null;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (chars[i] != -1L) {
+                return chars;
+            }
+        }
+        return chars[4] == 0 ? chars : null;
+    }
+
+    /**
+     * Add the chars that the bytecode from pc to end, or to REOP_END, can start a match with to
+     * chars. Zero width assertions are taken to match, and ops that can start with any char add
+     * them all.
+     *
+     * @return whether the bytecode can match the empty string
+     */
+    private static boolean addStartChars(REGlobalData gData, long[] chars, int pc, int end) {
+        RECompiled re = gData.regexp;
+        byte[] program = re.program;
+        while (pc < end && program[pc] != REOP_END) {
+            byte op = program[pc++];
+            switch (op) {
+                case REOP_BOL:
+                case REOP_EOL:
+                case REOP_WBDRY:
+                case REOP_WNONBDRY:
+                case REOP_LPAREN:
+                case REOP_RPAREN:
+                case REOP_ASSERT:
+                case REOP_ASSERT_NOT:
+                    pc = skipREBytecode(program, op, pc);
+                    break;
+                case REOP_FLAT:
+                case REOP_FLAT1:
+                case REOP_UCFLAT1:
+                    {
+                        char c;
+                        if (op == REOP_FLAT) {
+                            c = re.source[getIndex(program, pc)];
+                        } else if (op == REOP_FLAT1) {
+                            c = (char) (program[pc] & 0xFF);
+                        } else {
+                            c = (char) getIndex(program, pc);
+                        }
+                        addStartChar(chars, c);
+                    }
+                    return false;
+                case REOP_FLATi:
+                case REOP_FLAT1i:
+                case REOP_UCFLAT1i:
+                    {
+                        char c;
+                        if (op == REOP_FLATi) {
+                            c = re.source[getIndex(program, pc)];
+                        } else if (op == REOP_FLAT1i) {
+                            c = (char) (program[pc] & 0xFF);
+                        } else {
+                            c = (char) getIndex(program, pc);
+                        }
+                        char u = upcase(c);
+                        for (char ch = 0; ch < 256; ch++) {
+                            if (ch == c || upcase(ch) == u) {
+                                addStartChar(chars, ch);
+                            }
+                        }
+                        addStartChar(chars, 256);
+                    }
+                    return false;
+                case REOP_CLASS:
+                case REOP_NCLASS:
+                    {
+                        RECharSet charSet = re.classList[getIndex(program, pc)];
+                        for (char ch = 0; ch < 256; ch++) {
+                            if (classMatcher(gData, charSet, ch)) {
+                                addStartChar(chars, ch);
+                            }
+                        }
+                        if (!charSet.sense || charSet.length > 256) {
+                            addStartChar(chars, 256);
+                        }
+                    }
+                    return false;
+                case REOP_DOT:
+                case REOP_DIGIT:
+                case REOP_NONDIGIT:
+                case REOP_ALNUM:
+                case REOP_NONALNUM:
+                case REOP_SPACE:
+                case REOP_NONSPACE:
+                    for (char ch = 0; ch < 256; ch++) {
+                        if (classOpMatch(op, ch)) {
+                            addStartChar(chars, ch);
+                        }
+                    }
+                    if (op != REOP_DIGIT && op != REOP_ALNUM) {
+                        addStartChar(chars, 256);
+                    }
+                    return false;
+                case REOP_ALTPREREQ:
+                case REOP_ALTPREREQi:
+                case REOP_ALTPREREQ2:
+                case REOP_ALT:
+                    {
+                        int altpc = op == REOP_ALT ? pc : pc + 2 * INDEX_LEN;
+                        int nextpc = altpc + getOffset(program, altpc);
+                        int endpc = skipREBytecode(program, op, pc);
+                        boolean nullable =
+                                addStartChars(
+                                        gData, chars, altpc + INDEX_LEN, nextpc - 1 - INDEX_LEN);
+                        nullable |= addStartChars(gData, chars, nextpc, endpc - 1 - INDEX_LEN);
+                        if (!nullable) {
+                            return false;
+                        }
+                        pc = endpc;
+                    }
+                    break;
+                case REOP_STAR:
+                case REOP_PLUS:
+                case REOP_OPT:
+                case REOP_QUANT:
+                case REOP_MINIMALSTAR:
+                case REOP_MINIMALPLUS:
+                case REOP_MINIMALOPT:
+                case REOP_MINIMALQUANT:
+                    {
+                        int min = 0;
+                        int kid = pc;
+                        if (op == REOP_PLUS || op == REOP_MINIMALPLUS) {
+                            min = 1;
+                        } else if (op == REOP_QUANT || op == REOP_MINIMALQUANT) {
+                            min = getOffset(program, pc);
+                            kid += 2 * INDEX_LEN;
+                        }
+                        kid += 3 * INDEX_LEN; // <parencount> <parenindex> <next>
+                        int endpc = skipREBytecode(program, op, pc);
+                        if (!addStartChars(gData, chars, kid, endpc - 1) && min > 0) {
+                            return false;
+                        }
+                        pc = endpc;
+                    }
+                    break;
+                default:
+                    // REOP_BACKREF
+                    Arrays.fill(chars, -1L);
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addStartChar(long[] chars, int c) {
+        int bit = Math.min(c, 256);
+        chars[bit >> 6] |= 1L << bit;
+    }
+
+    /**
+     * Translate the bytecode of re to a program for the linear matcher. Return null if re has a
+     * backreference or a lookahead, or if the program would be too long: the threads of the linear
+     * matcher do not keep the state those need.
+     *
+     * <p>Quantifiers are unrolled, so the program keeps no counts. Their children unset the parens
+     * inside at the start of the same iterations as in executeREBytecode. Optional iterations of a
+     * child that can match the empty string fail when they do, as in REOP_REPEAT: each thread
+     * keeps the position such an iteration started at in a slot after its parens, one slot per
+     * level of nesting. Sets re.linearStride to the number of slots of a thread.
+     */
+    private static int[] compileLinear(RECompiled re) {
+        LinearCompilerState state = new LinearCompilerState();
+        // The parens, then the start of the match, then the iteration starts
+        state.markBase = re.parenCount + 1;
+        if (!emitLinear(state, re, 0, re.program.length)) {
+            return null;
+        }
+        state.emit(LINEAR_MATCH, 0, 0);
+        re.linearStride = state.markBase + state.markCount;
+        return Arrays.copyOf(state.program, state.length * LINEAR_SIZE);
+    }
+
+    /**
+     * Emit the linear program for the bytecode from pc to end, or to REOP_END. Sets
+     * state.nullable to whether it can match the empty string.
+     *
+     * @return false if the bytecode cannot be run by the linear matcher
+     */
+    private static boolean emitLinear(LinearCompilerState state, RECompiled re, int pc, int end) {
+        byte[] program = re.program;
+        boolean nullable = true;
+        while (pc < end && program[pc] != REOP_END) {
+            if (state.length > MAX_LINEAR_LENGTH) {
+                return false;
+            }
+            byte op = program[pc++];
+            switch (op) {
+                case REOP_BOL:
+                case REOP_EOL:
+                case REOP_WBDRY:
+                case REOP_WNONBDRY:
+                    state.emit(LINEAR_ASSERT, op, 0);
+                    break;
+                case REOP_DOT:
+                case REOP_DIGIT:
+                case REOP_NONDIGIT:
+                case REOP_ALNUM:
+                case REOP_NONALNUM:
+                case REOP_SPACE:
+                case REOP_NONSPACE:
+                    state.emit(LINEAR_TEST, op, 0);
+                    nullable = false;
+                    break;
+                case REOP_FLAT:
+                case REOP_FLATi:
+                    {
+                        int offset = getIndex(program, pc);
+                        pc += INDEX_LEN;
+                        int length = getIndex(program, pc);
+                        pc += INDEX_LEN;
+                        for (int i = 0; i < length; i++) {
+                            emitLinearChar(state, re.source[offset + i], op == REOP_FLATi);
+                        }
+                        nullable = false;
+                    }
+                    break;
+                case REOP_FLAT1:
+                case REOP_FLAT1i:
+                    emitLinearChar(state, (char) (program[pc++] & 0xFF), op == REOP_FLAT1i);
+                    nullable = false;
+                    break;
+                case REOP_UCFLAT1:
+                case REOP_UCFLAT1i:
+                    emitLinearChar(state, (char) getIndex(program, pc), op == REOP_UCFLAT1i);
+                    pc += INDEX_LEN;
+                    nullable = false;
+                    break;
+                case REOP_CLASS:
+                case REOP_NCLASS:
+                    state.emit(LINEAR_CLASS, getIndex(program, pc), 0);
+                    pc += INDEX_LEN;
+                    nullable = false;
+                    break;
+                case REOP_LPAREN:
+                    state.emit(LINEAR_OPEN, getIndex(program, pc), 0);
+                    pc += INDEX_LEN;
+                    break;
+                case REOP_RPAREN:
+                    state.emit(LINEAR_CLOSE, getIndex(program, pc), 0);
+                    pc += INDEX_LEN;
+                    break;
+                case REOP_ALTPREREQ:
+                case REOP_ALTPREREQi:
+                case REOP_ALTPREREQ2:
+                    // The prerequisite only saves trying the alternatives
+                    pc += 2 * INDEX_LEN;
+                    // fall through
+                case REOP_ALT:
+                    {
+                        // ALT <next> kid JUMP <end> kid2 JUMP <end>
+                        int nextpc = pc + getOffset(program, pc);
+                        int endpc = nextpc - INDEX_LEN + getOffset(program, nextpc - INDEX_LEN);
+                        int split = state.emit(LINEAR_SPLIT, state.length + 1, 0);
+                        if (!emitLinear(state, re, pc + INDEX_LEN, nextpc - 1 - INDEX_LEN)) {
+                            return false;
+                        }
+                        boolean altNullable = state.nullable;
+                        int jump = state.emit(LINEAR_JUMP, 0, 0);
+                        state.setOperand(split, 2, state.length);
+                        if (!emitLinear(state, re, nextpc, endpc - 1 - INDEX_LEN)) {
+                            return false;
+                        }
+                        state.setOperand(jump, 1, state.length);
+                        nullable &= altNullable || state.nullable;
+                        pc = endpc;
+                    }
+                    break;
+                case REOP_STAR:
+                case REOP_PLUS:
+                case REOP_OPT:
+                case REOP_QUANT:
+                case REOP_MINIMALSTAR:
+                case REOP_MINIMALPLUS:
+                case REOP_MINIMALOPT:
+                case REOP_MINIMALQUANT:
+                    {
+                        int min, max;
+                        if (op == REOP_STAR || op == REOP_MINIMALSTAR) {
+                            min = 0;
+                            max = -1;
+                        } else if (op == REOP_PLUS || op == REOP_MINIMALPLUS) {
+                            min = 1;
+                            max = -1;
+                        } else if (op == REOP_OPT || op == REOP_MINIMALOPT) {
+                            min = 0;
+                            max = 1;
+                        } else {
+                            min = getOffset(program, pc);
+                            pc += INDEX_LEN;
+                            max = getOffset(program, pc) - 1;
+                            pc += INDEX_LEN;
+                        }
+                        boolean greedy =
+                                op == REOP_STAR
+                                        || op == REOP_PLUS
+                                        || op == REOP_OPT
+                                        || op == REOP_QUANT;
+                        // <parencount> <parenindex> <next> kid ENDCHILD
+                        int parenCount = getIndex(program, pc);
+                        int parenIndex = getIndex(program, pc + INDEX_LEN);
+                        int kid = pc + 3 * INDEX_LEN;
+                        pc += 2 * INDEX_LEN;
+                        pc += getOffset(program, pc);
+                        if (!emitLinearQuantifier(
+                                state, re, kid, pc - 1, min, max, greedy, parenIndex, parenCount)) {
+                            return false;
+                        }
+                        nullable &= state.nullable;
+                    }
+                    break;
+                default:
+                    // REOP_BACKREF, REOP_ASSERT and REOP_ASSERT_NOT
+                    return false;
+            }
+        }
+        state.nullable = nullable;
+        return true;
+    }
+
+    private static void emitLinearChar(LinearCompilerState state, char c, boolean ignoreCase) {
+        if (ignoreCase) {
+            state.emit(LINEAR_CHARi, c, upcase(c));
+        } else {
+            state.emit(LINEAR_CHAR, c, 0);
+        }
+    }
+
+    /**
+     * Emit the iterations of a quantifier with the child from kid to end. The parens of the child
+     * are unset before the iterations that REOP_REPEAT and REOP_MINIMALREPEAT unset them for: the
+     * optional ones other than the very first when greedy, and all but a first required one when
+     * not.
+     */
+    private static boolean emitLinearQuantifier(
+            LinearCompilerState state,
+            RECompiled re,
+            int kid,
+            int end,
             int min,
             int max,
-            int cp,
-            REBackTrackData backTrackLastToSave,
-            int continuationOp,
-            int continuationPc) {
-        gData.stateStackTop =
-                new REProgState(
-                        gData.stateStackTop,
-                        min,
-                        max,
-                        cp,
-                        backTrackLastToSave,
-                        continuationOp,
-                        continuationPc);
-    }
-
-    private static REProgState popProgState(REGlobalData gData) {
-        REProgState state = gData.stateStackTop;
-        gData.stateStackTop = state.previous;
-        return state;
+            boolean greedy,
+            int parenIndex,
+            int parenCount) {
+        if (max == 0) {
+            state.nullable = true;
+            return true;
+        }
+        boolean kidNullable = false;
+        for (int i = 0; i < min; i++) {
+            if (i > 0 && !greedy) {
+                emitLinearClear(state, parenIndex, parenCount);
+            }
+            if (!emitLinear(state, re, kid, end) || state.length > MAX_LINEAR_LENGTH) {
+                return false;
+            }
+            kidNullable = state.nullable;
+        }
+        if (max == min) {
+            state.nullable = kidNullable;
+            return true;
+        }
+        int optional = max == -1 ? 1 : max - min;
+        if (optional > MAX_LINEAR_LENGTH) {
+            return false;
+        }
+        // The splits that leave the quantifier
+        int[] exits = new int[optional + 1];
+        int exitCount = 0;
+        if (max == -1 && greedy && min == 0) {
+            exits[exitCount++] = emitLinearSplit(state, true);
+            if (!emitLinearIteration(state, re, kid, end)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < optional; i++) {
+            int split = emitLinearSplit(state, greedy);
+            exits[exitCount++] = split;
+            if (!greedy || min + i > 0 || max == -1) {
+                emitLinearClear(state, parenIndex, parenCount);
+            }
+            if (!emitLinearIteration(state, re, kid, end)) {
+                return false;
+            }
+            if (max == -1) {
+                state.emit(LINEAR_JUMP, split, 0);
+            }
+        }
+        for (int i = 0; i < exitCount; i++) {
+            state.setOperand(exits[i], greedy ? 2 : 1, state.length);
+        }
+        state.nullable = min == 0 || kidNullable;
+        return true;
     }
 
-    private static void pushBackTrackState(REGlobalData gData, byte op, int pc) {
-        REProgState state = gData.stateStackTop;
-        gData.backTrackStackTop =
-                new REBackTrackData(
-                        gData, op, pc, gData.cp, state.continuationOp, state.continuationPc);
+    /**
+     * Emit an iteration that may be left out. If the child can match the empty string, the
+     * iteration fails when it does.
+     */
+    private static boolean emitLinearIteration(
+            LinearCompilerState state, RECompiled re, int kid, int end) {
+        int slot = state.markBase + state.markDepth;
+        int mark = state.emit(LINEAR_MARK, slot, 0);
+        state.markDepth++;
+        state.markCount = Math.max(state.markCount, state.markDepth);
+        boolean emitted = emitLinear(state, re, kid, end);
+        state.markDepth--;
+        if (!emitted || state.length > MAX_LINEAR_LENGTH) {
+            return false;
+        }
+        if (state.nullable) {
+            state.emit(LINEAR_PROGRESS, slot, 0);
+        } else {
+            // Every iteration matches a char, so the mark is not needed
+            state.program[mark * LINEAR_SIZE] = LINEAR_JUMP;
+            state.setOperand(mark, 1, mark + 1);
+        }
+        return true;
+    }
+
+    /** Emit a split that goes on to the next instruction first when greedy, and last if not. */
+    private static int emitLinearSplit(LinearCompilerState state, boolean greedy) {
+        int split = state.emit(LINEAR_SPLIT, 0, 0);
+        state.setOperand(split, greedy ? 1 : 2, state.length);
+        return split;
+    }
+
+    private static void emitLinearClear(
+            LinearCompilerState state, int parenIndex, int parenCount) {
+        if (parenCount != 0) {
+            state.emit(LINEAR_CLEAR, parenIndex, parenCount);
+        }
     }
 
-    private static void pushBackTrackState(
-            REGlobalData gData, byte op, int pc, int cp, int continuationOp, int continuationPc) {
-        gData.backTrackStackTop =
-                new REBackTrackData(gData, op, pc, cp, continuationOp, continuationPc);
+    private static void pushBackTrackState(REGlobalData gData, byte op, int pc) {
+        int state = gData.stateStackTop;
+        gData.pushBackTrack(
+                op,
+                pc,
+                gData.cp,
+                gData.states[state + REGlobalData.STATE_CONTINUATION_OP],
+                gData.states[state + REGlobalData.STATE_CONTINUATION_PC]);
     }
 
     /*
@@ -1368,7 +1963,7 @@ public class NativeRegExp extends IdScriptableObject {
             REGlobalData gData, int parenIndex, String input, int end) {
         int len;
         int i;
-        if (gData.parens == null || parenIndex >= gData.parens.length) return false;
+        if (parenIndex >= gData.regexp.parenCount) return false;
         int parenContent = gData.parensIndex(parenIndex);
         if (parenContent == -1) return true;
 
@@ -1924,8 +2519,8 @@ public class NativeRegExp extends IdScriptableObject {
                                 op = program[pc++];
                             }
                             byte nextop = program[nextpc++];
-                            pushBackTrackState(
-                                    gData, nextop, nextpc, startcp, continuationOp, continuationPc);
+                            gData.pushBackTrack(
+                                    nextop, nextpc, startcp, continuationOp, continuationPc);
                         }
                         continue;
 
@@ -1966,8 +2561,7 @@ public class NativeRegExp extends IdScriptableObject {
                                 result = false;
                                 break;
                             }
-                            pushProgState(
-                                    gData,
+                            gData.pushState(
                                     0,
                                     0,
                                     gData.cp,
@@ -1990,8 +2584,7 @@ public class NativeRegExp extends IdScriptableObject {
                                     break;
                                 }
                             }
-                            pushProgState(
-                                    gData,
+                            gData.pushState(
                                     0,
                                     0,
                                     gData.cp,
@@ -2005,11 +2598,12 @@ public class NativeRegExp extends IdScriptableObject {
                     case REOP_ASSERTTEST:
                     case REOP_ASSERTNOTTEST:
                         {
-                            REProgState state = popProgState(gData);
-                            gData.cp = state.index;
-                            gData.backTrackStackTop = state.backTrack;
-                            continuationPc = state.continuationPc;
-                            continuationOp = state.continuationOp;
+                            int state = gData.popState();
+                            int[] states = gData.states;
+                            gData.cp = states[state + REGlobalData.STATE_INDEX];
+                            gData.backTrackStackTop = states[state + REGlobalData.STATE_BACKTRACK];
+                            continuationPc = states[state + REGlobalData.STATE_CONTINUATION_PC];
+                            continuationOp = states[state + REGlobalData.STATE_CONTINUATION_OP];
                             if (op == REOP_ASSERTNOTTEST) {
                                 result = !result;
                             }
@@ -2062,14 +2656,8 @@ public class NativeRegExp extends IdScriptableObject {
                                 default:
                                     throw Kit.codeBug();
                             }
-                            pushProgState(
-                                    gData,
-                                    min,
-                                    max,
-                                    gData.cp,
-                                    null,
-                                    continuationOp,
-                                    continuationPc);
+                            gData.pushState(
+                                    min, max, gData.cp, 0, continuationOp, continuationPc);
                             if (greedy) {
                                 pushBackTrackState(gData, REOP_REPEAT, pc);
                                 continuationOp = REOP_REPEAT;
@@ -2086,7 +2674,7 @@ public class NativeRegExp extends IdScriptableObject {
                                     op = program[pc++];
                                 } else {
                                     pushBackTrackState(gData, REOP_MINIMALREPEAT, pc);
-                                    popProgState(gData);
+                                    gData.popState();
                                     pc += 2 * INDEX_LEN; // <parencount> & <parenindex>
                                     pc = pc + getOffset(program, pc);
                                     op = program[pc++];
@@ -2108,33 +2696,41 @@ public class NativeRegExp extends IdScriptableObject {
                         {
                             int nextpc, nextop;
                             do {
-                                REProgState state = popProgState(gData);
+                                int state = gData.popState();
+                                int[] states = gData.states;
+                                int stateMin = states[state + REGlobalData.STATE_MIN];
+                                int stateMax = states[state + REGlobalData.STATE_MAX];
+                                int stateIndex = states[state + REGlobalData.STATE_INDEX];
+                                int stateContinuationOp =
+                                        states[state + REGlobalData.STATE_CONTINUATION_OP];
+                                int stateContinuationPc =
+                                        states[state + REGlobalData.STATE_CONTINUATION_PC];
                                 if (!result) {
                                     // Failed, see if we have enough children.
-                                    if (state.min == 0) result = true;
-                                    continuationPc = state.continuationPc;
-                                    continuationOp = state.continuationOp;
+                                    if (stateMin == 0) result = true;
+                                    continuationPc = stateContinuationPc;
+                                    continuationOp = stateContinuationOp;
                                     pc += 2 * INDEX_LEN; /* <parencount> & <parenindex> */
                                     pc += getOffset(program, pc);
                                     break switchStatement;
                                 }
-                                if (state.min == 0 && (gData.cp == state.index || state.max == 0)) {
+                                if (stateMin == 0 && (gData.cp == stateIndex || stateMax == 0)) {
                                     // matched an empty string or an {0} quantifier, that'll get us
                                     // nowhere
                                     result = false;
-                                    continuationPc = state.continuationPc;
-                                    continuationOp = state.continuationOp;
+                                    continuationPc = stateContinuationPc;
+                                    continuationOp = stateContinuationOp;
                                     pc += 2 * INDEX_LEN;
                                     pc += getOffset(program, pc);
                                     break switchStatement;
                                 }
-                                int new_min = state.min, new_max = state.max;
+                                int new_min = stateMin, new_max = stateMax;
                                 if (new_min != 0) new_min--;
                                 if (new_max != -1) new_max--;
                                 if (new_max == 0) {
                                     result = true;
-                                    continuationPc = state.continuationPc;
-                                    continuationOp = state.continuationOp;
+                                    continuationPc = stateContinuationPc;
+                                    continuationOp = stateContinuationOp;
                                     pc += 2 * INDEX_LEN;
                                     pc += getOffset(program, pc);
                                     break switchStatement;
@@ -2150,8 +2746,8 @@ public class NativeRegExp extends IdScriptableObject {
                                                     true);
                                     if (match < 0) {
                                         result = (new_min == 0);
-                                        continuationPc = state.continuationPc;
-                                        continuationOp = state.continuationOp;
+                                        continuationPc = stateContinuationPc;
+                                        continuationOp = stateContinuationOp;
                                         pc += 2 * INDEX_LEN; /* <parencount> & <parenindex> */
                                         pc += getOffset(program, pc);
                                         break switchStatement;
@@ -2161,22 +2757,20 @@ public class NativeRegExp extends IdScriptableObject {
                                 }
                                 continuationOp = REOP_REPEAT;
                                 continuationPc = pc;
-                                pushProgState(
-                                        gData,
+                                gData.pushState(
                                         new_min,
                                         new_max,
                                         startcp,
-                                        null,
-                                        state.continuationOp,
-                                        state.continuationPc);
+                                        0,
+                                        stateContinuationOp,
+                                        stateContinuationPc);
                                 if (new_min == 0) {
-                                    pushBackTrackState(
-                                            gData,
+                                    gData.pushBackTrack(
                                             REOP_REPEAT,
                                             pc,
                                             startcp,
-                                            state.continuationOp,
-                                            state.continuationPc);
+                                            stateContinuationOp,
+                                            stateContinuationPc);
                                     int parenCount = getIndex(program, pc);
                                     int parenIndex = getIndex(program, pc + INDEX_LEN);
                                     for (int k = 0; k < parenCount; k++) {
@@ -2192,20 +2786,27 @@ public class NativeRegExp extends IdScriptableObject {
 
                     case REOP_MINIMALREPEAT:
                         {
-                            REProgState state = popProgState(gData);
+                            int state = gData.popState();
+                            int[] states = gData.states;
+                            int stateMin = states[state + REGlobalData.STATE_MIN];
+                            int stateMax = states[state + REGlobalData.STATE_MAX];
+                            int stateIndex = states[state + REGlobalData.STATE_INDEX];
+                            int stateContinuationOp =
+                                    states[state + REGlobalData.STATE_CONTINUATION_OP];
+                            int stateContinuationPc =
+                                    states[state + REGlobalData.STATE_CONTINUATION_PC];
                             if (!result) {
                                 //
                                 // Non-greedy failure - try to consume another child.
                                 //
-                                if (state.max == -1 || state.max > 0) {
-                                    pushProgState(
-                                            gData,
-                                            state.min,
-                                            state.max,
+                                if (stateMax == -1 || stateMax > 0) {
+                                    gData.pushState(
+                                            stateMin,
+                                            stateMax,
                                             gData.cp,
-                                            null,
-                                            state.continuationOp,
-                                            state.continuationPc);
+                                            0,
+                                            stateContinuationOp,
+                                            stateContinuationPc);
                                     continuationOp = REOP_MINIMALREPEAT;
                                     continuationPc = pc;
                                     int parenCount = getIndex(program, pc);
@@ -2219,28 +2820,27 @@ public class NativeRegExp extends IdScriptableObject {
                                     continue;
                                 }
                                 // Don't need to adjust pc since we're going to pop.
-                                continuationPc = state.continuationPc;
-                                continuationOp = state.continuationOp;
+                                continuationPc = stateContinuationPc;
+                                continuationOp = stateContinuationOp;
                                 break;
                             }
-                            if (state.min == 0 && gData.cp == state.index) {
+                            if (stateMin == 0 && gData.cp == stateIndex) {
                                 // Matched an empty string, that'll get us nowhere.
                                 result = false;
-                                continuationPc = state.continuationPc;
-                                continuationOp = state.continuationOp;
+                                continuationPc = stateContinuationPc;
+                                continuationOp = stateContinuationOp;
                                 break;
                             }
-                            int new_min = state.min, new_max = state.max;
+                            int new_min = stateMin, new_max = stateMax;
                             if (new_min != 0) new_min--;
                             if (new_max != -1) new_max--;
-                            pushProgState(
-                                    gData,
+                            gData.pushState(
                                     new_min,
                                     new_max,
                                     gData.cp,
-                                    null,
-                                    state.continuationOp,
-                                    state.continuationPc);
+                                    0,
+                                    stateContinuationOp,
+                                    stateContinuationPc);
                             if (new_min != 0) {
                                 continuationOp = REOP_MINIMALREPEAT;
                                 continuationPc = pc;
@@ -2253,10 +2853,10 @@ public class NativeRegExp extends IdScriptableObject {
                                 }
                                 op = program[pc++];
                             } else {
-                                continuationPc = state.continuationPc;
-                                continuationOp = state.continuationOp;
+                                continuationPc = stateContinuationPc;
+                                continuationOp = stateContinuationOp;
                                 pushBackTrackState(gData, REOP_MINIMALREPEAT, pc);
-                                popProgState(gData);
+                                gData.popState();
                                 pc += 2 * INDEX_LEN;
                                 pc = pc + getOffset(program, pc);
                                 op = program[pc++];
@@ -2276,16 +2876,16 @@ public class NativeRegExp extends IdScriptableObject {
              *  Otherwise this is a complete and utter failure.
              */
             if (!result) {
-                REBackTrackData backTrackData = gData.backTrackStackTop;
-                if (backTrackData != null) {
-                    gData.backTrackStackTop = backTrackData.previous;
-                    gData.parens = backTrackData.parens;
-                    gData.cp = backTrackData.cp;
-                    gData.stateStackTop = backTrackData.stateStackTop;
-                    continuationOp = backTrackData.continuationOp;
-                    continuationPc = backTrackData.continuationPc;
-                    pc = backTrackData.pc;
-                    op = backTrackData.op;
+                if (gData.backTrackStackTop > 0) {
+                    if (--gData.backTrackBudget < 0) {
+                        return false;
+                    }
+                    int bt = gData.popBackTrack();
+                    int[] backTracks = gData.backTracks;
+                    continuationOp = backTracks[bt + REGlobalData.BACKTRACK_CONTINUATION_OP];
+                    continuationPc = backTracks[bt + REGlobalData.BACKTRACK_CONTINUATION_PC];
+                    pc = backTracks[bt + REGlobalData.BACKTRACK_PC];
+                    op = backTracks[bt + REGlobalData.BACKTRACK_OP];
                     continue;
                 }
                 return false;
@@ -2302,15 +2902,6 @@ public class NativeRegExp extends IdScriptableObject {
             int start,
             int end,
             boolean multiline) {
-        if (re.parenCount != 0) {
-            gData.parens = new long[re.parenCount];
-        } else {
-            gData.parens = null;
-        }
-
-        gData.backTrackStackTop = null;
-        gData.stateStackTop = null;
-
         gData.multiline = multiline || (re.flags & JSREG_MULTILINE) != 0;
         gData.regexp = re;
 
@@ -2321,41 +2912,30 @@ public class NativeRegExp extends IdScriptableObject {
         //
         for (int i = start; i <= end; ++i) {
             //
-            // If the first node is a literal match, step the index into
-            // the string until that match is made, or fail if it can't be
-            // found at all.
+            // If the match has to start with a literal or one of a set of chars, step the
+            // index into the string until it does, or fail if it can't be found at all. A
+            // sticky match is left to executeREBytecode, which decides where it may start.
             //
-            if (anchorCh >= 0) {
-                for (; ; ) {
-                    if (i == end) {
-                        return false;
-                    }
-                    char matchCh = input.charAt(i);
-                    if (matchCh == anchorCh
-                            || ((gData.regexp.flags & JSREG_FOLD) != 0
-                                    && upcase(matchCh) == upcase((char) anchorCh))) {
-                        break;
-                    }
-
-                    if ((gData.regexp.flags & JSREG_STICKY) != 0) {
-                        return false;
-                    }
-
-                    ++i;
+            if ((gData.regexp.flags & JSREG_STICKY) == 0 && !canStart(re, input, i, end)) {
+                if (anchorCh == ANCHOR_BOL && !gData.multiline) {
+                    return false;
+                }
+                i = nextStart(re, input, i, end);
+                if (i < 0) {
+                    return false;
                 }
             }
+            gData.reset(re);
             gData.cp = i;
             gData.skipped = i - start;
-            for (int j = 0; j < re.parenCount; j++) {
-                gData.parens[j] = -1L;
-            }
             boolean result = executeREBytecode(gData, input, end);
 
-            gData.backTrackStackTop = null;
-            gData.stateStackTop = null;
             if (result) {
                 return true;
             }
+            if (gData.backTrackBudget < 0) {
+                return false;
+            }
             if (anchorCh == ANCHOR_BOL && !gData.multiline) {
                 gData.skipped = end;
                 return false;
@@ -2370,21 +2950,344 @@ public class NativeRegExp extends IdScriptableObject {
         return false;
     }
 
+    /**
+     * Find the first match of re from start with the linear matcher. It runs the threads of
+     * re.linear for all the ways the backtracking matcher could go in step, one char at a time, in
+     * the order it would try them, so it finds the same match in time proportional to the length of
+     * the input times the length of the program.
+     */
+    private static boolean matchLinear(
+            REGlobalData gData,
+            RECompiled re,
+            String input,
+            int start,
+            int end,
+            boolean multiline) {
+        gData.multiline = multiline || (re.flags & JSREG_MULTILINE) != 0;
+        gData.reset(re);
+        int[] program = re.linear;
+        int parenCount = re.parenCount;
+        gData.resetLinear(program.length / LINEAR_SIZE);
+        boolean anchored =
+                (re.flags & JSREG_STICKY) != 0 || (re.anchorCh == ANCHOR_BOL && !gData.multiline);
+        boolean matched = false;
+        int cp = start;
+        if (canStart(re, input, cp, end)) {
+            startLinearThread(gData, input, end, program, cp);
+        }
+        for (; ; ) {
+            gData.nextStep();
+            int count = gData.threadCount;
+            if (count == 0) {
+                // Nothing is running, go on at the next place a match can start
+                if (matched || anchored) {
+                    break;
+                }
+                cp = nextStart(re, input, cp + 1, end);
+                if (cp < 0) {
+                    break;
+                }
+                startLinearThread(gData, input, end, program, cp);
+                continue;
+            }
+            int[] threads = gData.threads;
+            long[] threadParens = gData.threadParens;
+            int stride = gData.linearStride;
+            char c = cp < end ? input.charAt(cp) : 0;
+            for (int t = 0; t < count; t++) {
+                int pc = threads[t];
+                int i = pc * LINEAR_SIZE;
+                if (program[i] == LINEAR_MATCH) {
+                    // The threads after this one would only find matches the backtracking matcher
+                    // tries later
+                    matched = true;
+                    System.arraycopy(threadParens, t * stride, gData.parens, 0, parenCount);
+                    gData.cp = cp;
+                    gData.skipped = (int) threadParens[t * stride + parenCount] - start;
+                    break;
+                }
+                if (cp < end && linearCharMatch(gData, program, i, c)) {
+                    System.arraycopy(threadParens, t * stride, gData.linearParens, 0, stride);
+                    addLinearThread(gData, input, end, program, pc + 1, cp + 1);
+                }
+            }
+            cp++;
+            if (!matched && !anchored && canStart(re, input, cp, end)) {
+                startLinearThread(gData, input, end, program, cp);
+            }
+        }
+        return matched;
+    }
+
+    /** Whether a match of re can start at cp, judging by the chars it has to start with. */
+    private static boolean canStart(RECompiled re, String input, int cp, int end) {
+        if (re.prefix != null) {
+            return input.startsWith(re.prefix, cp);
+        }
+        int anchorCh = re.anchorCh;
+        if (anchorCh < 0 && re.startChars == null) {
+            return cp <= end;
+        }
+        if (cp >= end) {
+            return false;
+        }
+        char c = input.charAt(cp);
+        if (anchorCh >= 0) {
+            return c == anchorCh
+                    || ((re.flags & JSREG_FOLD) != 0 && upcase(c) == upcase((char) anchorCh));
+        }
+        int bit = Math.min(c, 256);
+        return (re.startChars[bit >> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Find the first position from cp at which a match of re can start, judging by the chars it
+     * has to start with, or return -1 if there is none.
+     */
+    private static int nextStart(RECompiled re, String input, int cp, int end) {
+        if (re.prefix != null) {
+            return input.indexOf(re.prefix, cp);
+        }
+        if (re.anchorCh >= 0 && (re.flags & JSREG_FOLD) == 0) {
+            return cp < end ? input.indexOf(re.anchorCh, cp) : -1;
+        }
+        for (; cp <= end; cp++) {
+            if (canStart(re, input, cp, end)) {
+                return cp;
+            }
+        }
+        return -1;
+    }
+
+    /** Add a thread for a match that starts at cp, after all the threads for earlier starts. */
+    private static void startLinearThread(
+            REGlobalData gData, String input, int end, int[] program, int cp) {
+        long[] parens = gData.linearParens;
+        int parenCount = gData.regexp.parenCount;
+        Arrays.fill(parens, 0, parenCount, -1L);
+        parens[parenCount] = cp;
+        Arrays.fill(parens, parenCount + 1, gData.linearStride, -1L);
+        addLinearThread(gData, input, end, program, 0, cp);
+    }
+
+    /**
+     * Add the thread at pc, with the parens in gData.linearParens, to the threads for the char at
+     * cp. Splits, jumps, parens and zero width assertions are followed here, so that only the
+     * instructions that wait for a char or complete the match are added. An instruction already
+     * added in this step is not added again: the thread that got there first has the higher
+     * priority, and without backreferences the same future.
+     *
+     * <p>The exception are threads in an optional iteration that started at cp, which have to match
+     * a char before the iteration ends and so have another future. They are tracked apart from the
+     * other threads at the same instruction.
+     */
+    private static void addLinearThread(
+            REGlobalData gData, String input, int end, int[] program, int pc, int cp) {
+        long[] parens = gData.linearParens;
+        int[] visits = gData.visits;
+        int step = gData.step;
+        int[] stack = gData.linearStack;
+        long[] values = gData.linearStackValues;
+        int markBase = gData.regexp.parenCount + 1;
+        int markEnd = gData.linearStride;
+        int instructions = program.length / LINEAR_SIZE;
+        int top = 0;
+        for (; ; ) {
+            follow:
+            for (; ; ) {
+                int visit = pc;
+                for (int slot = markBase; slot < markEnd; slot++) {
+                    if (parens[slot] == cp) {
+                        visit += instructions;
+                        break;
+                    }
+                }
+                if (visits[visit] == step) {
+                    break;
+                }
+                visits[visit] = step;
+                int i = pc * LINEAR_SIZE;
+                if (stack.length - top < gData.linearStride) {
+                    gData.growLinearStack(top + gData.linearStride);
+                    stack = gData.linearStack;
+                    values = gData.linearStackValues;
+                }
+                switch (program[i]) {
+                    case LINEAR_SPLIT:
+                        stack[top++] = program[i + 2];
+                        pc = program[i + 1];
+                        break;
+                    case LINEAR_JUMP:
+                        pc = program[i + 1];
+                        break;
+                    case LINEAR_OPEN:
+                        {
+                            int paren = program[i + 1];
+                            values[top] = parens[paren];
+                            stack[top++] = -1 - paren;
+                            parens[paren] = cp & 0xffffffffL;
+                            pc++;
+                        }
+                        break;
+                    case LINEAR_CLOSE:
+                        {
+                            int paren = program[i + 1];
+                            values[top] = parens[paren];
+                            stack[top++] = -1 - paren;
+                            int index = (int) parens[paren];
+                            parens[paren] = (index & 0xffffffffL) | ((long) (cp - index) << 32);
+                            pc++;
+                        }
+                        break;
+                    case LINEAR_CLEAR:
+                        for (int paren = program[i + 1], last = paren + program[i + 2];
+                                paren < last;
+                                paren++) {
+                            values[top] = parens[paren];
+                            stack[top++] = -1 - paren;
+                            parens[paren] = -1L;
+                        }
+                        pc++;
+                        break;
+                    case LINEAR_ASSERT:
+                        if (!linearAssert(gData, input, program[i + 1], cp, end)) {
+                            break follow;
+                        }
+                        pc++;
+                        break;
+                    case LINEAR_MARK:
+                        {
+                            int slot = program[i + 1];
+                            values[top] = parens[slot];
+                            stack[top++] = -1 - slot;
+                            parens[slot] = cp;
+                            pc++;
+                        }
+                        break;
+                    case LINEAR_PROGRESS:
+                        if (parens[program[i + 1]] == cp) {
+                            // An empty iteration
+                            break follow;
+                        }
+                        pc++;
+                        break;
+                    default:
+                        gData.addThread(pc);
+                        break follow;
+                }
+            }
+            // Undo the parens set since the last split, and take its other branch
+            for (; ; ) {
+                if (top == 0) {
+                    return;
+                }
+                int entry = stack[--top];
+                if (entry >= 0) {
+                    pc = entry;
+                    break;
+                }
+                parens[-1 - entry] = values[top];
+            }
+        }
+    }
+
+    private static boolean linearCharMatch(REGlobalData gData, int[] program, int i, char c) {
+        switch (program[i]) {
+            case LINEAR_CHAR:
+                return c == program[i + 1];
+            case LINEAR_CHARi:
+                return c == program[i + 1] || upcase(c) == program[i + 2];
+            case LINEAR_CLASS:
+                return classMatcher(gData, gData.regexp.classList[program[i + 1]], c);
+            case LINEAR_TEST:
+                return classOpMatch(program[i + 1], c);
+        }
+        throw Kit.codeBug();
+    }
+
+    /** Whether c is matched by op, one of the simple opcodes for a class of chars. */
+    private static boolean classOpMatch(int op, char c) {
+        switch (op) {
+            case REOP_DOT:
+                return !isLineTerm(c);
+            case REOP_DIGIT:
+                return isDigit(c);
+            case REOP_NONDIGIT:
+                return !isDigit(c);
+            case REOP_ALNUM:
+                return isWord(c);
+            case REOP_NONALNUM:
+                return !isWord(c);
+            case REOP_SPACE:
+                return isREWhiteSpace(c);
+            case REOP_NONSPACE:
+                return !isREWhiteSpace(c);
+        }
+        throw Kit.codeBug();
+    }
+
+    private static boolean linearAssert(
+            REGlobalData gData, String input, int op, int cp, int end) {
+        switch (op) {
+            case REOP_BOL:
+                return cp == 0 || (gData.multiline && isLineTerm(input.charAt(cp - 1)));
+            case REOP_EOL:
+                return cp == end || (gData.multiline && isLineTerm(input.charAt(cp)));
+            case REOP_WBDRY:
+                return (cp == 0 || !isWord(input.charAt(cp - 1)))
+                        ^ !(cp < end && isWord(input.charAt(cp)));
+            case REOP_WNONBDRY:
+                return (cp == 0 || !isWord(input.charAt(cp - 1)))
+                        ^ (cp < end && isWord(input.charAt(cp)));
+        }
+        throw Kit.codeBug();
+    }
+
     /*
      * indexp is assumed to be an array of length 1
      */
     Object executeRegExp(
             Context cx, Scriptable scope, RegExpImpl res, String str, int indexp[], int matchType) {
-        REGlobalData gData = new REGlobalData();
+        boolean linearOnly = cx.hasFeature(Context.FEATURE_LINEAR_REGEXP_ONLY);
+        if (linearOnly && re.linear == null) {
+            // Compiled before the feature was set, as in a cached script or an older RegExp
+            throw needsBacktracking(new String(re.source));
+        }
+        REGlobalData gData = res.globalData;
+        if (gData == null) {
+            gData = new REGlobalData();
+        } else {
+            res.globalData = null;
+        }
 
         int start = indexp[0];
         int end = str.length();
         if (start > end) start = end;
         //
-        // Call the recursive matcher to do the real work.
+        // Call the recursive matcher to do the real work. A match that takes more backtracks
+        // than the linear matcher takes steps is finished by the linear matcher.
         //
-        boolean matches = matchRegExp(gData, re, str, start, end, res.multiline);
+        boolean matches;
+        if (re.literal != null && str.indexOf(re.literal, start) < 0) {
+            // Every match contains the literal
+            matches = false;
+        } else if (linearOnly) {
+            matches = matchLinear(gData, re, str, start, end, res.multiline);
+        } else {
+            gData.backTrackBudget = Long.MAX_VALUE;
+            if (re.linear != null && cx.hasFeature(Context.FEATURE_LINEAR_REGEXP)) {
+                gData.backTrackBudget =
+                        BACKTRACK_BUDGET_FACTOR
+                                * (long) (end - start + 1)
+                                * (re.linear.length / LINEAR_SIZE);
+            }
+            matches = matchRegExp(gData, re, str, start, end, res.multiline);
+            if (!matches && gData.backTrackBudget < 0) {
+                matches = matchLinear(gData, re, str, start, end, res.multiline);
+            }
+        }
         if (!matches) {
+            gData.release(res);
             if (matchType != PREFIX) return null;
             return Undefined.instance;
         }
@@ -2486,6 +3389,7 @@ public class NativeRegExp extends IdScriptableObject {
         res.rightContext.index = ep;
         res.rightContext.length = end - ep;
 
+        gData.release(res);
         return result;
     }
 
@@ -2801,6 +3705,11 @@ class RECompiled implements Serializable {
     int classCount; /* count [...] bitmaps */
     RECharSet[] classList; /* list of [...] bitmaps */
     int anchorCh = -1; /* if >= 0, then re starts with this literal char */
+    String prefix; /* if not null, every match starts with this literal */
+    String literal; /* if not null, every match contains this literal */
+    long[] startChars; /* if not null, the chars a match can start with, see findStartChars */
+    int[] linear; /* program for the linear matcher, null if re needs backtracking */
+    int linearStride; /* slots of a thread of the linear matcher */
 
     RECompiled(String str) {
         this.source = str.toCharArray();
@@ -2868,87 +3777,282 @@ class CompilerState {
     RENode result;
 }
 
-class REProgState {
-    REProgState(
-            REProgState previous,
-            int min,
-            int max,
-            int index,
-            REBackTrackData backTrack,
-            int continuationOp,
-            int continuationPc) {
-        this.previous = previous;
-        this.min = min;
-        this.max = max;
-        this.index = index;
-        this.continuationOp = continuationOp;
-        this.continuationPc = continuationPc;
-        this.backTrack = backTrack;
-    }
-
-    final REProgState previous; // previous state in stack
-
-    final int min; /* current quantifier min */
-    final int max; /* current quantifier max */
-    final int index; /* progress in text */
-    final int continuationOp;
-    final int continuationPc;
-    final REBackTrackData backTrack; // used by ASSERT_  to recover state
-}
+class LinearCompilerState {
+    int[] program = new int[16 * NativeRegExp.LINEAR_SIZE];
+    int length; /* number of instructions */
+    boolean nullable; /* whether the code emitted last can match the empty string */
+    int markBase; /* the thread slot of the outermost iteration start */
+    int markDepth; /* optional iterations the code emitted next is nested in */
+    int markCount; /* thread slots needed for iteration starts */
 
-class REBackTrackData {
+    /** @return the index of the new instruction */
+    int emit(int op, int a, int b) {
+        int i = length * NativeRegExp.LINEAR_SIZE;
+        if (program.length < i + NativeRegExp.LINEAR_SIZE) {
+            program = Arrays.copyOf(program, program.length * 2);
+        }
+        program[i] = op;
+        program[i + 1] = a;
+        program[i + 2] = b;
+        return length++;
+    }
 
-    REBackTrackData(
-            REGlobalData gData, int op, int pc, int cp, int continuationOp, int continuationPc) {
-        previous = gData.backTrackStackTop;
-        this.op = op;
-        this.pc = pc;
-        this.cp = cp;
-        this.continuationOp = continuationOp;
-        this.continuationPc = continuationPc;
-        parens = gData.parens;
-        stateStackTop = gData.stateStackTop;
-    }
-
-    final REBackTrackData previous;
-
-    final int op; /* operator */
-    final int pc; /* bytecode pointer */
-    final int cp; /* char buffer index */
-    final int continuationOp; /* continuation op */
-    final int continuationPc; /* continuation pc */
-    final long[] parens; /* parenthesis captures */
-    final REProgState stateStackTop; /* state of op that backtracked */
+    void setOperand(int instruction, int operand, int value) {
+        program[instruction * NativeRegExp.LINEAR_SIZE + operand] = value;
+    }
 }
 
+/**
+ * The state of a match. The captures, the states of the ops being executed and the backtrack
+ * points are kept in primitive arrays that grow as needed, so that a match does not allocate, and
+ * one REGlobalData is reused for the next match by the same RegExpImpl.
+ *
+ * <p>The states form a stack of records of STATE_SIZE ints, each linked to the one below it. A
+ * backtrack point saves the top of that stack and the capture set it was taken with, so neither
+ * may be overwritten while it is on the backtrack stack: states and capture sets are only freed
+ * down to the marks saved by the top backtrack point, and a capture set that the top backtrack
+ * point shares is copied before it is changed.
+ */
 class REGlobalData {
     boolean multiline;
     RECompiled regexp; /* the RE in execution */
     int skipped; /* chars skipped anchoring this r.e. */
 
     int cp; /* char buffer index */
-    long[] parens; /* parens captures */
 
-    REProgState stateStackTop; /* stack of state of current ancestors */
+    /* Capture sets, of regexp.parenCount entries each */
+    long[] parens = new long[16];
+    int parensTop; /* end of the used part of parens */
+    int parensOffset; /* start of the current capture set */
+
+    static final int STATE_MIN = 0; /* current quantifier min */
+    static final int STATE_MAX = 1; /* current quantifier max */
+    static final int STATE_INDEX = 2; /* progress in text */
+    static final int STATE_CONTINUATION_OP = 3;
+    static final int STATE_CONTINUATION_PC = 4;
+    static final int STATE_BACKTRACK = 5; /* backtrack stack top to restore after ASSERT_ */
+    static final int STATE_PREVIOUS = 6; /* the state below, or -1 */
+    static final int STATE_SIZE = 7;
+
+    int[] states = new int[8 * STATE_SIZE];
+    int statesTop; /* end of the used part of states */
+    int stateStackTop = -1; /* state of the current op, or -1 */
+
+    static final int BACKTRACK_OP = 0; /* operator */
+    static final int BACKTRACK_PC = 1; /* bytecode pointer */
+    static final int BACKTRACK_CP = 2; /* char buffer index */
+    static final int BACKTRACK_CONTINUATION_OP = 3;
+    static final int BACKTRACK_CONTINUATION_PC = 4;
+    static final int BACKTRACK_PARENS = 5; /* offset of the capture set */
+    static final int BACKTRACK_PARENS_TOP = 6;
+    static final int BACKTRACK_STATE = 7; /* state of op that backtracked */
+    static final int BACKTRACK_STATES_TOP = 8;
+    static final int BACKTRACK_SIZE = 9;
+
+    int[] backTracks = new int[16 * BACKTRACK_SIZE];
+    int backTrackStackTop; /* end of the last matched-so-far position, 0 if there is none */
+
+    long backTrackBudget; /* backtracks left before the match moves to the linear matcher */
 
-    REBackTrackData backTrackStackTop; /* last matched-so-far position */
+    /*
+     * Threads of the linear matcher for the current char and the next one, in the order the
+     * backtracking matcher would try them: the instruction each waits at, and linearStride longs
+     * of its parens followed by the start of its match and the starts of its optional iterations.
+     */
+    int[] threads = new int[16];
+    long[] threadParens = new long[16];
+    int threadCount;
+    int[] nextThreads = new int[16];
+    long[] nextThreadParens = new long[16];
+    int nextThreadCount;
+    int linearStride;
+    long[] linearParens = new long[16]; /* parens of the thread being added */
+
+    int[] visits = new int[16]; /* the step in which each instruction was last added */
+    int step;
+
+    /* Splits still to follow and parens to restore while adding a thread */
+    int[] linearStack = new int[16];
+    long[] linearStackValues = new long[16];
+
+    /* The largest arrays that are kept for the next match */
+    private static final int MAX_KEPT_LENGTH = 1 << 14;
+
+    /** Hand this back to res for its next match, unless this match made it too big to keep. */
+    void release(RegExpImpl res) {
+        regexp = null;
+        if (parens.length <= MAX_KEPT_LENGTH
+                && states.length <= MAX_KEPT_LENGTH
+                && backTracks.length <= MAX_KEPT_LENGTH
+                && threadParens.length <= MAX_KEPT_LENGTH
+                && nextThreadParens.length <= MAX_KEPT_LENGTH
+                && visits.length <= MAX_KEPT_LENGTH
+                && linearStack.length <= MAX_KEPT_LENGTH) {
+            res.globalData = this;
+        }
+    }
+
+    /** Get ready to match re from a new position, with no captures, states or backtracking. */
+    void reset(RECompiled re) {
+        regexp = re;
+        int parenCount = re.parenCount;
+        if (parens.length < parenCount) {
+            parens = new long[parenCount];
+        }
+        Arrays.fill(parens, 0, parenCount, -1L);
+        parensOffset = 0;
+        parensTop = parenCount;
+        statesTop = 0;
+        stateStackTop = -1;
+        backTrackStackTop = 0;
+    }
 
     /** Get start of parenthesis capture contents, -1 for empty. */
     int parensIndex(int i) {
-        return (int) (parens[i]);
+        return (int) (parens[parensOffset + i]);
     }
 
     /** Get length of parenthesis capture contents. */
     int parensLength(int i) {
-        return (int) (parens[i] >>> 32);
+        return (int) (parens[parensOffset + i] >>> 32);
     }
 
     void setParens(int i, int index, int length) {
-        // clone parens array if it is shared with backtrack state
-        if (backTrackStackTop != null && backTrackStackTop.parens == parens) {
-            parens = parens.clone();
+        int bt = backTrackStackTop - BACKTRACK_SIZE;
+        if (bt >= 0 && backTracks[bt + BACKTRACK_PARENS] == parensOffset) {
+            // copy the capture set if it is shared with backtrack state, to the first place
+            // that the backtrack state does not use
+            int parenCount = regexp.parenCount;
+            int offset = backTracks[bt + BACKTRACK_PARENS_TOP];
+            if (parens.length < offset + parenCount) {
+                parens = Arrays.copyOf(parens, Math.max(parens.length * 2, offset + parenCount));
+            }
+            System.arraycopy(parens, parensOffset, parens, offset, parenCount);
+            parensOffset = offset;
+            parensTop = offset + parenCount;
+        }
+        parens[parensOffset + i] = (index & 0xffffffffL) | ((long) length << 32);
+    }
+
+    void pushState(
+            int min, int max, int index, int backTrack, int continuationOp, int continuationPc) {
+        // Free the states above the current one that no backtrack point refers to
+        int top = stateStackTop < 0 ? 0 : stateStackTop + STATE_SIZE;
+        if (backTrackStackTop > 0) {
+            int bt = backTrackStackTop - BACKTRACK_SIZE;
+            top = Math.max(top, backTracks[bt + BACKTRACK_STATES_TOP]);
+        }
+        if (states.length < top + STATE_SIZE) {
+            states = Arrays.copyOf(states, states.length * 2);
         }
-        parens[i] = (index & 0xffffffffL) | ((long) length << 32);
+        states[top + STATE_MIN] = min;
+        states[top + STATE_MAX] = max;
+        states[top + STATE_INDEX] = index;
+        states[top + STATE_CONTINUATION_OP] = continuationOp;
+        states[top + STATE_CONTINUATION_PC] = continuationPc;
+        states[top + STATE_BACKTRACK] = backTrack;
+        states[top + STATE_PREVIOUS] = stateStackTop;
+        stateStackTop = top;
+        statesTop = top + STATE_SIZE;
+    }
+
+    /**
+     * Pop the state of the current op. Its fields stay readable until the next push.
+     *
+     * @return the offset of the state in states
+     */
+    int popState() {
+        int state = stateStackTop;
+        stateStackTop = states[state + STATE_PREVIOUS];
+        return state;
+    }
+
+    void pushBackTrack(int op, int pc, int cp, int continuationOp, int continuationPc) {
+        int bt = backTrackStackTop;
+        if (backTracks.length < bt + BACKTRACK_SIZE) {
+            backTracks = Arrays.copyOf(backTracks, backTracks.length * 2);
+        }
+        backTracks[bt + BACKTRACK_OP] = op;
+        backTracks[bt + BACKTRACK_PC] = pc;
+        backTracks[bt + BACKTRACK_CP] = cp;
+        backTracks[bt + BACKTRACK_CONTINUATION_OP] = continuationOp;
+        backTracks[bt + BACKTRACK_CONTINUATION_PC] = continuationPc;
+        backTracks[bt + BACKTRACK_PARENS] = parensOffset;
+        backTracks[bt + BACKTRACK_PARENS_TOP] = parensTop;
+        backTracks[bt + BACKTRACK_STATE] = stateStackTop;
+        backTracks[bt + BACKTRACK_STATES_TOP] = statesTop;
+        backTrackStackTop = bt + BACKTRACK_SIZE;
+    }
+
+    /** Get ready for the linear matcher to run a program of the given length, after reset. */
+    void resetLinear(int instructions) {
+        linearStride = regexp.linearStride;
+        if (linearParens.length < linearStride) {
+            linearParens = new long[linearStride];
+        }
+        // Twice, for the threads in an iteration that started at the current char and the others
+        if (visits.length < 2 * instructions) {
+            visits = new int[2 * instructions];
+            step = 0;
+        }
+        threadCount = 0;
+        nextThreadCount = 0;
+        nextStep();
+    }
+
+    /** Make the threads added for the next char the current ones, and start adding new ones. */
+    void nextStep() {
+        int[] t = threads;
+        threads = nextThreads;
+        nextThreads = t;
+        long[] p = threadParens;
+        threadParens = nextThreadParens;
+        nextThreadParens = p;
+        threadCount = nextThreadCount;
+        nextThreadCount = 0;
+        if (++step == Integer.MAX_VALUE) {
+            Arrays.fill(visits, 0);
+            step = 1;
+        }
+    }
+
+    /** Add a thread at pc with linearParens for the next char. */
+    void addThread(int pc) {
+        int n = nextThreadCount;
+        if (nextThreads.length == n) {
+            nextThreads = Arrays.copyOf(nextThreads, n * 2);
+        }
+        int offset = n * linearStride;
+        if (nextThreadParens.length < offset + linearStride) {
+            nextThreadParens =
+                    Arrays.copyOf(
+                            nextThreadParens,
+                            Math.max(nextThreadParens.length * 2, offset + linearStride));
+        }
+        nextThreads[n] = pc;
+        System.arraycopy(linearParens, 0, nextThreadParens, offset, linearStride);
+        nextThreadCount = n + 1;
+    }
+
+    void growLinearStack(int minLength) {
+        int length = Math.max(linearStack.length * 2, minLength);
+        linearStack = Arrays.copyOf(linearStack, length);
+        linearStackValues = Arrays.copyOf(linearStackValues, length);
+    }
+
+    /**
+     * Pop the last backtrack point and restore the captures and states it saved.
+     *
+     * @return the offset of the backtrack point in backTracks
+     */
+    int popBackTrack() {
+        int bt = backTrackStackTop -= BACKTRACK_SIZE;
+        parensOffset = backTracks[bt + BACKTRACK_PARENS];
+        parensTop = backTracks[bt + BACKTRACK_PARENS_TOP];
+        cp = backTracks[bt + BACKTRACK_CP];
+        stateStackTop = backTracks[bt + BACKTRACK_STATE];
+        statesTop = backTracks[bt + BACKTRACK_STATES_TOP];
+        return bt;
     }
 }
 
@@ -0,0 +1,70 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.regexp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recently compiled regular expressions, so that constructing the same RegExp
+ * again, or passing the same string pattern to the String methods, does not parse and emit the
+ * program again. A RECompiled is not changed once it is compiled, apart from the character class
+ * bitmaps that are built on first use under their own lock, so it can be shared by any number of
+ * RegExp objects and threads. The state of a match is kept in REGlobalData. All operations
+ * synchronize on the cache.
+ */
+final class RECompiledCache {
+
+    private static final int MAX_SIZE = 256;
+
+    private static final LinkedHashMap<Key, RECompiled> map =
+            new LinkedHashMap<Key, RECompiled>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, RECompiled> eldest) {
+                    return size() > MAX_SIZE;
+                }
+            };
+
+    private RECompiledCache() {}
+
+    static synchronized RECompiled get(String source, int flags, boolean flat) {
+        return map.get(new Key(source, flags, flat));
+    }
+
+    static synchronized void put(String source, int flags, boolean flat, RECompiled re) {
+        map.put(new Key(source, flags, flat), re);
+    }
+
+    private static final class Key {
+        private final String source;
+        // The JSREG_ bits, so that flags given in a different order share an entry
+        private final int flags;
+        private final boolean flat;
+
+        Key(String source, int flags, boolean flat) {
+            this.source = source;
+            this.flags = flags;
+            this.flat = flat;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return flat == other.flat && flags == other.flags && source.equals(other.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return (source.hashCode() * 31 + flags) * 31 + (flat ? 1 : 0);
+        }
+    }
+}
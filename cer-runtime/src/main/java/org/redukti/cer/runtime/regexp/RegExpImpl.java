@@ -26,6 +26,14 @@ public class RegExpImpl implements RegExpProxy {
         return NativeRegExp.compileRE(cx, source, flags, false);
     }
 
+    @Override
+    public String[] getRegExpSourceAndFlags(Object compiled) {
+        RECompiled re = (RECompiled) compiled;
+        StringBuilder flags = new StringBuilder();
+        NativeRegExp.appendFlags(re.flags, flags);
+        return new String[] {new String(re.source), flags.toString()};
+    }
+
     @Override
     public Scriptable wrapRegExp(RuntimeContext rcx, Scriptable scope, Object compiled) {
         Context cx = (Context) rcx;
@@ -731,6 +739,9 @@ public class RegExpImpl implements RegExpProxy {
     protected SubString lastParen; /* last paren matched (perl $+) */
     protected SubString leftContext; /* input to left of last match (perl $`) */
     protected SubString rightContext; /* input to right of last match (perl $') */
+
+    /* match state kept for the next match, null while a match is using it */
+    REGlobalData globalData;
 }
 
 final class GlobData {
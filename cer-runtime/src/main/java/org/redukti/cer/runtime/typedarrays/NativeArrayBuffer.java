@@ -0,0 +1,173 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.typedarrays;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import org.redukti.cer.Scriptable;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.LambdaConstructor;
+import org.redukti.cer.runtime.ScriptRuntime;
+import org.redukti.cer.runtime.ScriptableObject;
+import org.redukti.cer.runtime.SymbolKey;
+import org.redukti.cer.runtime.Undefined;
+
+/**
+ * This class implements the ArrayBuffer built-in. The bytes are held in a ByteBuffer, so that an
+ * embedding can hand a direct or memory mapped buffer to scripts without copying it, using {@link
+ * #wrap(Scriptable, ByteBuffer)}.
+ */
+public class NativeArrayBuffer extends ScriptableObject {
+    private static final long serialVersionUID = 3110411773054879549L;
+
+    public static final String CLASS_NAME = "ArrayBuffer";
+
+    // All views index this buffer absolutely, so its position and limit never change
+    final ByteBuffer buffer;
+
+    /** Create a buffer of the given length, filled with zeroes. */
+    public NativeArrayBuffer(int length) {
+        this.buffer = ByteBuffer.allocate(length);
+    }
+
+    /**
+     * Create a buffer over the remaining bytes of the given ByteBuffer. The bytes are shared, not
+     * copied. If the ByteBuffer is read-only, scripts may read the buffer but writing to it
+     * through a view throws a TypeError.
+     */
+    public NativeArrayBuffer(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    /**
+     * Create a buffer over the remaining bytes of the given ByteBuffer with the ArrayBuffer
+     * prototype of the given scope, ready to be passed to a script.
+     */
+    public static NativeArrayBuffer wrap(Scriptable scope, ByteBuffer buffer) {
+        NativeArrayBuffer result = new NativeArrayBuffer(buffer);
+        initObject(result, scope, CLASS_NAME);
+        return result;
+    }
+
+    public static void init(Context cx, Scriptable scope, boolean sealed) {
+        LambdaConstructor constructor =
+                new LambdaConstructor(
+                        scope,
+                        CLASS_NAME,
+                        1,
+                        LambdaConstructor.CONSTRUCTOR_NEW,
+                        (Context lcx, Scriptable lscope, Object[] args) ->
+                                new NativeArrayBuffer(toIndex(arg(args, 0))));
+        constructor.setStandardPropertyAttributes(DONTENUM | READONLY);
+        constructor.setPrototypePropertyAttributes(DONTENUM | READONLY | PERMANENT);
+
+        constructor.defineConstructorMethod(
+                scope,
+                "isView",
+                1,
+                (Context lcx, Scriptable lscope, Scriptable thisObj, Object[] args) ->
+                        Boolean.valueOf(arg(args, 0) instanceof NativeArrayBufferView),
+                DONTENUM,
+                DONTENUM | READONLY);
+
+        constructor.definePrototypeMethod(
+                scope, "slice", 2, NativeArrayBuffer::js_slice, DONTENUM, DONTENUM | READONLY);
+        constructor.definePrototypeGetter(
+                cx,
+                scope,
+                "byteLength",
+                "byteLength",
+                (Context lcx, Scriptable lscope, Scriptable thisObj, Object[] args) ->
+                        Integer.valueOf(realThis(thisObj).getLength()));
+        constructor.definePrototypeProperty(
+                SymbolKey.TO_STRING_TAG, CLASS_NAME, DONTENUM | READONLY);
+
+        ScriptableObject.defineProperty(scope, CLASS_NAME, constructor, DONTENUM);
+        if (sealed) {
+            constructor.sealObject();
+        }
+    }
+
+    @Override
+    public String getClassName() {
+        return CLASS_NAME;
+    }
+
+    /** @return a ByteBuffer over the bytes of this buffer, which the caller may reposition */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate();
+    }
+
+    /** @return the length of this buffer in bytes */
+    public int getLength() {
+        return buffer.capacity();
+    }
+
+    public boolean isReadOnly() {
+        return buffer.isReadOnly();
+    }
+
+    private static NativeArrayBuffer realThis(Scriptable thisObj) {
+        return LambdaConstructor.convertThisObject(thisObj, NativeArrayBuffer.class);
+    }
+
+    private static Object js_slice(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeArrayBuffer self = realThis(thisObj);
+        int length = self.getLength();
+        int start = relativeIndex(args, 0, length, 0);
+        int end = relativeIndex(args, 1, length, length);
+        int count = Math.max(end - start, 0);
+
+        NativeArrayBuffer result = new NativeArrayBuffer(count);
+        if (count > 0) {
+            ByteBuffer source = self.buffer.duplicate();
+            ((Buffer) source).limit(start + count);
+            ((Buffer) source).position(start);
+            result.buffer.duplicate().put(source);
+        }
+        initObject(result, scope, CLASS_NAME);
+        return result;
+    }
+
+    /** Give an object created by a built-in method the parent and prototype of its class. */
+    static void initObject(ScriptableObject obj, Scriptable scope, String className) {
+        obj.setParentScope(ScriptableObject.getTopLevelScope(scope));
+        obj.setPrototype(ScriptableObject.getClassPrototype(scope, className));
+    }
+
+    static Object arg(Object[] args, int index) {
+        return index < args.length ? args[index] : Undefined.instance;
+    }
+
+    /**
+     * Convert a length or offset argument, which unlike ScriptRuntime.toIndex() must also fit in
+     * the int sized indexes of a ByteBuffer.
+     */
+    static int toIndex(Object value) {
+        double index = ScriptRuntime.toInteger(value);
+        if (index < 0 || index > Integer.MAX_VALUE) {
+            throw ScriptRuntime.rangeErrorById("msg.typed.array.bad.index", value);
+        }
+        return (int) index;
+    }
+
+    /**
+     * Convert an optional start or end argument that counts from the end when negative, and clamp
+     * it to the range from zero to length.
+     */
+    static int relativeIndex(Object[] args, int index, int length, int defaultValue) {
+        if (index >= args.length || Undefined.isUndefined(args[index])) {
+            return defaultValue;
+        }
+        double relative = ScriptRuntime.toInteger(args[index]);
+        if (relative < 0) {
+            return (int) Math.max(length + relative, 0);
+        }
+        return (int) Math.min(relative, length);
+    }
+}
@@ -0,0 +1,92 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.typedarrays;
+
+import org.redukti.cer.Scriptable;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.LambdaConstructor;
+import org.redukti.cer.runtime.ScriptRuntime;
+import org.redukti.cer.runtime.ScriptableObject;
+
+/** The common base of DataView and the typed arrays: a range of bytes of an ArrayBuffer. */
+public abstract class NativeArrayBufferView extends ScriptableObject {
+    private static final long serialVersionUID = -5391834462497012766L;
+
+    final NativeArrayBuffer arrayBuffer;
+    final int offset;
+    final int byteLength;
+
+    NativeArrayBufferView(NativeArrayBuffer arrayBuffer, int offset, int byteLength) {
+        this.arrayBuffer = arrayBuffer;
+        this.offset = offset;
+        this.byteLength = byteLength;
+    }
+
+    /** @return the ArrayBuffer that holds the bytes of this view */
+    public NativeArrayBuffer getBuffer() {
+        return arrayBuffer;
+    }
+
+    /** @return the offset of this view in its buffer, in bytes */
+    public int getByteOffset() {
+        return offset;
+    }
+
+    /** @return the length of this view in bytes */
+    public int getByteLength() {
+        return byteLength;
+    }
+
+    public boolean isReadOnly() {
+        return arrayBuffer.isReadOnly();
+    }
+
+    void checkWritable() {
+        if (arrayBuffer.isReadOnly()) {
+            throw ScriptRuntime.typeErrorById("msg.typed.array.read.only", getClassName());
+        }
+    }
+
+    /** Define the buffer, byteOffset and byteLength getters on the prototype of a view class. */
+    static void defineViewGetters(
+            Context cx,
+            Scriptable scope,
+            LambdaConstructor constructor,
+            Class<? extends NativeArrayBufferView> type) {
+        constructor.definePrototypeGetter(
+                cx,
+                scope,
+                "buffer",
+                "buffer",
+                (Context lcx, Scriptable lscope, Scriptable thisObj, Object[] args) -> {
+                    NativeArrayBuffer buffer =
+                            LambdaConstructor.convertThisObject(thisObj, type).arrayBuffer;
+                    // Buffers made for views that were created from a length or an array get
+                    // their prototype the first time a script asks for them
+                    if (buffer.getPrototype() == null) {
+                        NativeArrayBuffer.initObject(
+                                buffer, lscope, NativeArrayBuffer.CLASS_NAME);
+                    }
+                    return buffer;
+                });
+        constructor.definePrototypeGetter(
+                cx,
+                scope,
+                "byteOffset",
+                "byteOffset",
+                (Context lcx, Scriptable lscope, Scriptable thisObj, Object[] args) ->
+                        Integer.valueOf(LambdaConstructor.convertThisObject(thisObj, type).offset));
+        constructor.definePrototypeGetter(
+                cx,
+                scope,
+                "byteLength",
+                "byteLength",
+                (Context lcx, Scriptable lscope, Scriptable thisObj, Object[] args) ->
+                        Integer.valueOf(
+                                LambdaConstructor.convertThisObject(thisObj, type).byteLength));
+    }
+}
@@ -0,0 +1,61 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.typedarrays;
+
+import java.math.BigInteger;
+import org.redukti.cer.Scriptable;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ScriptRuntime;
+
+/** The BigUint64Array built-in, an array of 64-bit unsigned integers, read as BigInts. */
+public class NativeBigUint64Array extends NativeTypedArrayView {
+    private static final long serialVersionUID = 2735795530884496684L;
+
+    public static final String CLASS_NAME = "BigUint64Array";
+    public static final int BYTES_PER_ELEMENT = 8;
+
+    private static final BigInteger TWO_TO_THE_64 = BigInteger.ONE.shiftLeft(64);
+
+    public NativeBigUint64Array(NativeArrayBuffer buffer, int offset, int length) {
+        super(buffer, offset, length, BYTES_PER_ELEMENT, false);
+    }
+
+    public static void init(Context cx, Scriptable scope, boolean sealed) {
+        init(cx, scope, sealed, CLASS_NAME, BYTES_PER_ELEMENT, NativeBigUint64Array::new);
+    }
+
+    @Override
+    public String getClassName() {
+        return CLASS_NAME;
+    }
+
+    @Override
+    public int getBytesPerElement() {
+        return BYTES_PER_ELEMENT;
+    }
+
+    @Override
+    protected NativeTypedArrayView construct(NativeArrayBuffer buffer, int offset, int length) {
+        return new NativeBigUint64Array(buffer, offset, length);
+    }
+
+    @Override
+    protected Object getElement(int index) {
+        return toUnsigned(data.getLong(offset + (index << 3)));
+    }
+
+    @Override
+    protected void setElement(int index, Object value) {
+        data.putLong(offset + (index << 3), ScriptRuntime.toBigInt(value).longValue());
+    }
+
+    /** @return the BigInt value of the unsigned 64-bit integer in bits */
+    static BigInteger toUnsigned(long bits) {
+        BigInteger value = BigInteger.valueOf(bits);
+        return bits >= 0 ? value : value.add(TWO_TO_THE_64);
+    }
+}
@@ -0,0 +1,199 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.typedarrays;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.redukti.cer.Scriptable;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.LambdaConstructor;
+import org.redukti.cer.runtime.ScriptRuntime;
+import org.redukti.cer.runtime.ScriptableObject;
+import org.redukti.cer.runtime.SymbolKey;
+import org.redukti.cer.runtime.Undefined;
+
+/**
+ * This class implements the DataView built-in. Reads and writes go straight to the ByteBuffer of
+ * the ArrayBuffer, through one duplicate of it in each byte order.
+ */
+public class NativeDataView extends NativeArrayBufferView {
+    private static final long serialVersionUID = 1427967607557438968L;
+
+    public static final String CLASS_NAME = "DataView";
+
+    private static final int INT8 = 0;
+    private static final int UINT8 = 1;
+    private static final int INT16 = 2;
+    private static final int UINT16 = 3;
+    private static final int INT32 = 4;
+    private static final int UINT32 = 5;
+    private static final int FLOAT32 = 6;
+    private static final int FLOAT64 = 7;
+    private static final int BIGINT64 = 8;
+    private static final int BIGUINT64 = 9;
+
+    private static final String[] TYPE_NAMES = {
+        "Int8", "Uint8", "Int16", "Uint16", "Int32", "Uint32", "Float32", "Float64", "BigInt64",
+        "BigUint64"
+    };
+    private static final int[] TYPE_SIZES = {1, 1, 2, 2, 4, 4, 4, 8, 8, 8};
+
+    private final ByteBuffer bigEndian;
+    private final ByteBuffer littleEndian;
+
+    public NativeDataView(NativeArrayBuffer arrayBuffer, int offset, int byteLength) {
+        super(arrayBuffer, offset, byteLength);
+        bigEndian = arrayBuffer.buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        littleEndian = arrayBuffer.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static void init(Context cx, Scriptable scope, boolean sealed) {
+        LambdaConstructor constructor =
+                new LambdaConstructor(
+                        scope,
+                        CLASS_NAME,
+                        1,
+                        LambdaConstructor.CONSTRUCTOR_NEW,
+                        NativeDataView::constructor);
+        constructor.setStandardPropertyAttributes(DONTENUM | READONLY);
+        constructor.setPrototypePropertyAttributes(DONTENUM | READONLY | PERMANENT);
+
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            int type = i;
+            constructor.definePrototypeMethod(
+                    scope,
+                    "get" + TYPE_NAMES[type],
+                    1,
+                    (Context lcx, Scriptable lscope, Scriptable thisObj, Object[] args) ->
+                            realThis(thisObj).js_get(type, args),
+                    DONTENUM,
+                    DONTENUM | READONLY);
+            constructor.definePrototypeMethod(
+                    scope,
+                    "set" + TYPE_NAMES[type],
+                    2,
+                    (Context lcx, Scriptable lscope, Scriptable thisObj, Object[] args) ->
+                            realThis(thisObj).js_set(type, args),
+                    DONTENUM,
+                    DONTENUM | READONLY);
+        }
+        defineViewGetters(cx, scope, constructor, NativeDataView.class);
+        constructor.definePrototypeProperty(
+                SymbolKey.TO_STRING_TAG, CLASS_NAME, DONTENUM | READONLY);
+
+        ScriptableObject.defineProperty(scope, CLASS_NAME, constructor, DONTENUM);
+        if (sealed) {
+            constructor.sealObject();
+        }
+    }
+
+    private static Scriptable constructor(Context cx, Scriptable scope, Object[] args) {
+        Object arg0 = NativeArrayBuffer.arg(args, 0);
+        if (!(arg0 instanceof NativeArrayBuffer)) {
+            throw ScriptRuntime.typeErrorById(
+                    "msg.dataview.no.buffer", ScriptRuntime.toString(arg0));
+        }
+        NativeArrayBuffer buffer = (NativeArrayBuffer) arg0;
+        int offset = NativeArrayBuffer.toIndex(NativeArrayBuffer.arg(args, 1));
+        if (offset > buffer.getLength()) {
+            throw ScriptRuntime.rangeErrorById("msg.dataview.bad.offset", Integer.valueOf(offset));
+        }
+        int byteLength;
+        Object arg2 = NativeArrayBuffer.arg(args, 2);
+        if (Undefined.isUndefined(arg2)) {
+            byteLength = buffer.getLength() - offset;
+        } else {
+            byteLength = NativeArrayBuffer.toIndex(arg2);
+            if ((long) offset + byteLength > buffer.getLength()) {
+                throw ScriptRuntime.rangeErrorById(
+                        "msg.dataview.bad.length", Integer.valueOf(byteLength));
+            }
+        }
+        return new NativeDataView(buffer, offset, byteLength);
+    }
+
+    @Override
+    public String getClassName() {
+        return CLASS_NAME;
+    }
+
+    private static NativeDataView realThis(Scriptable thisObj) {
+        return LambdaConstructor.convertThisObject(thisObj, NativeDataView.class);
+    }
+
+    /** @return the position in the ByteBuffer of a value of the given type at the given offset */
+    private int position(int type, Object requestIndex) {
+        int index = NativeArrayBuffer.toIndex(requestIndex);
+        if ((long) index + TYPE_SIZES[type] > byteLength) {
+            throw ScriptRuntime.rangeErrorById("msg.dataview.bad.offset", Integer.valueOf(index));
+        }
+        return offset + index;
+    }
+
+    private ByteBuffer order(Object littleEndianArg) {
+        return ScriptRuntime.toBoolean(littleEndianArg) ? littleEndian : bigEndian;
+    }
+
+    private Object js_get(int type, Object[] args) {
+        int pos = position(type, NativeArrayBuffer.arg(args, 0));
+        ByteBuffer b = order(NativeArrayBuffer.arg(args, 1));
+        switch (type) {
+            case INT8:
+                return Integer.valueOf(b.get(pos));
+            case UINT8:
+                return Integer.valueOf(b.get(pos) & 0xff);
+            case INT16:
+                return Integer.valueOf(b.getShort(pos));
+            case UINT16:
+                return Integer.valueOf(b.getShort(pos) & 0xffff);
+            case INT32:
+                return Integer.valueOf(b.getInt(pos));
+            case UINT32:
+                return ScriptRuntime.wrapNumber(b.getInt(pos) & 0xffffffffL);
+            case FLOAT32:
+                return ScriptRuntime.wrapNumber(b.getFloat(pos));
+            case FLOAT64:
+                return ScriptRuntime.wrapNumber(b.getDouble(pos));
+            case BIGINT64:
+                return BigInteger.valueOf(b.getLong(pos));
+            default:
+                return NativeBigUint64Array.toUnsigned(b.getLong(pos));
+        }
+    }
+
+    private Object js_set(int type, Object[] args) {
+        int pos = position(type, NativeArrayBuffer.arg(args, 0));
+        Object value = NativeArrayBuffer.arg(args, 1);
+        ByteBuffer b = order(NativeArrayBuffer.arg(args, 2));
+        checkWritable();
+        switch (type) {
+            case INT8:
+            case UINT8:
+                b.put(pos, (byte) ScriptRuntime.toInt32(value));
+                break;
+            case INT16:
+            case UINT16:
+                b.putShort(pos, (short) ScriptRuntime.toInt32(value));
+                break;
+            case INT32:
+            case UINT32:
+                b.putInt(pos, ScriptRuntime.toInt32(value));
+                break;
+            case FLOAT32:
+                b.putFloat(pos, (float) ScriptRuntime.toNumber(value));
+                break;
+            case FLOAT64:
+                b.putDouble(pos, ScriptRuntime.toNumber(value));
+                break;
+            default:
+                b.putLong(pos, ScriptRuntime.toBigInt(value).longValue());
+                break;
+        }
+        return Undefined.instance;
+    }
+}
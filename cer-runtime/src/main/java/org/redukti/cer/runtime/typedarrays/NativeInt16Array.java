@@ -0,0 +1,62 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.typedarrays;
+
+import org.redukti.cer.Scriptable;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ScriptRuntime;
+
+/** The Int16Array built-in, an array of 16-bit signed integers. */
+public class NativeInt16Array extends NativeTypedArrayView {
+    private static final long serialVersionUID = -4870243674996520919L;
+
+    public static final String CLASS_NAME = "Int16Array";
+    public static final int BYTES_PER_ELEMENT = 2;
+
+    public NativeInt16Array(NativeArrayBuffer buffer, int offset, int length) {
+        super(buffer, offset, length, BYTES_PER_ELEMENT, true);
+    }
+
+    public static void init(Context cx, Scriptable scope, boolean sealed) {
+        init(cx, scope, sealed, CLASS_NAME, BYTES_PER_ELEMENT, NativeInt16Array::new);
+    }
+
+    @Override
+    public String getClassName() {
+        return CLASS_NAME;
+    }
+
+    @Override
+    public int getBytesPerElement() {
+        return BYTES_PER_ELEMENT;
+    }
+
+    @Override
+    protected NativeTypedArrayView construct(NativeArrayBuffer buffer, int offset, int length) {
+        return new NativeInt16Array(buffer, offset, length);
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return data.getShort(offset + (index << 1));
+    }
+
+    @Override
+    public void setDouble(int index, double value) {
+        data.putShort(offset + (index << 1), (short) ScriptRuntime.toInt32(value));
+    }
+
+    @Override
+    protected Object getElement(int index) {
+        return Integer.valueOf(data.getShort(offset + (index << 1)));
+    }
+
+    @Override
+    protected void setElement(int index, Object value) {
+        setDouble(index, ScriptRuntime.toNumber(value));
+    }
+}
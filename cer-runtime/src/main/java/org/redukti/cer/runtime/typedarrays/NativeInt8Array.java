@@ -0,0 +1,62 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.typedarrays;
+
+import org.redukti.cer.Scriptable;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ScriptRuntime;
+
+/** The Int8Array built-in, an array of 8-bit signed integers. */
+public class NativeInt8Array extends NativeTypedArrayView {
+    private static final long serialVersionUID = 6707106503146816743L;
+
+    public static final String CLASS_NAME = "Int8Array";
+    public static final int BYTES_PER_ELEMENT = 1;
+
+    public NativeInt8Array(NativeArrayBuffer buffer, int offset, int length) {
+        super(buffer, offset, length, BYTES_PER_ELEMENT, true);
+    }
+
+    public static void init(Context cx, Scriptable scope, boolean sealed) {
+        init(cx, scope, sealed, CLASS_NAME, BYTES_PER_ELEMENT, NativeInt8Array::new);
+    }
+
+    @Override
+    public String getClassName() {
+        return CLASS_NAME;
+    }
+
+    @Override
+    public int getBytesPerElement() {
+        return BYTES_PER_ELEMENT;
+    }
+
+    @Override
+    protected NativeTypedArrayView construct(NativeArrayBuffer buffer, int offset, int length) {
+        return new NativeInt8Array(buffer, offset, length);
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return data.get(offset + index);
+    }
+
+    @Override
+    public void setDouble(int index, double value) {
+        data.put(offset + index, (byte) ScriptRuntime.toInt32(value));
+    }
+
+    @Override
+    protected Object getElement(int index) {
+        return Integer.valueOf(data.get(offset + index));
+    }
+
+    @Override
+    protected void setElement(int index, Object value) {
+        setDouble(index, ScriptRuntime.toNumber(value));
+    }
+}
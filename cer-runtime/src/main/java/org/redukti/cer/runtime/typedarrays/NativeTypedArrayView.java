@@ -0,0 +1,1038 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.typedarrays;
+
+import java.math.BigInteger;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.redukti.cer.Scriptable;
+import org.redukti.cer.ir.InterpreterConstants;
+import org.redukti.cer.runtime.Callable;
+import org.redukti.cer.runtime.Constructable;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.IteratorLikeIterable;
+import org.redukti.cer.runtime.LambdaConstructor;
+import org.redukti.cer.runtime.NativeArrayIterator;
+import org.redukti.cer.runtime.NativeObject;
+import org.redukti.cer.runtime.ScriptRuntime;
+import org.redukti.cer.runtime.ScriptableObject;
+import org.redukti.cer.runtime.Sorting;
+import org.redukti.cer.runtime.SymbolKey;
+import org.redukti.cer.runtime.TopLevel;
+import org.redukti.cer.runtime.Undefined;
+
+/**
+ * The common base of the typed arrays, which also implements the %TypedArray% constructor and
+ * prototype that they share.
+ *
+ * <p>Elements are read and written with absolute gets and puts on a ByteBuffer over the bytes of
+ * the ArrayBuffer in the byte order of the platform. Indexed properties never reach the slot map:
+ * they are answered by the overrides of get, put, has and delete below. The interpreter goes one
+ * step further for the arrays of numbers and uses {@link #getDouble(int)} and {@link
+ * #setDouble(int, double)} when both the index and the value are unboxed.
+ */
+public abstract class NativeTypedArrayView extends NativeArrayBufferView {
+    private static final long serialVersionUID = -4963053773152251274L;
+
+    private static final Object TYPED_ARRAY_TAG = "%TypedArray%";
+
+    /** Creates a typed array of one element type over a range of an ArrayBuffer. */
+    interface Factory {
+        NativeTypedArrayView create(NativeArrayBuffer buffer, int offset, int length);
+    }
+
+    /** The bytes of the ArrayBuffer in platform byte order */
+    final ByteBuffer data;
+
+    /** The number of elements */
+    final int length;
+
+    private final boolean numeric;
+
+    NativeTypedArrayView(
+            NativeArrayBuffer arrayBuffer,
+            int offset,
+            int length,
+            int bytesPerElement,
+            boolean numeric) {
+        super(arrayBuffer, offset, length * bytesPerElement);
+        this.data = arrayBuffer.buffer.duplicate().order(ByteOrder.nativeOrder());
+        this.length = length;
+        this.numeric = numeric;
+    }
+
+    /** @return the number of elements of this array */
+    public final int getArrayLength() {
+        return length;
+    }
+
+    /**
+     * @return true if the elements are Numbers, so that {@link #getDouble(int)} and {@link
+     *     #setDouble(int, double)} may be used in place of {@link #getElement(int)} and {@link
+     *     #setElement(int, Object)}, or false if they are BigInts
+     */
+    public final boolean isNumeric() {
+        return numeric;
+    }
+
+    public abstract int getBytesPerElement();
+
+    /** @return the element at index, which must be in range */
+    protected abstract Object getElement(int index);
+
+    /** Convert value to the element type and store it at index, which must be in range. */
+    protected abstract void setElement(int index, Object value);
+
+    /**
+     * @return the element at index, which must be in range, as a double. Arrays of numbers
+     *     override this to avoid boxing.
+     */
+    public double getDouble(int index) {
+        return ScriptRuntime.toNumber(getElement(index));
+    }
+
+    /**
+     * Convert value to the element type and store it at index, which must be in range. Arrays of
+     * numbers override this to avoid boxing.
+     */
+    public void setDouble(int index, double value) {
+        setElement(index, ScriptRuntime.wrapNumber(value));
+    }
+
+    /** @return a new array of the same element type over a range of the given buffer */
+    protected abstract NativeTypedArrayView construct(
+            NativeArrayBuffer buffer, int offset, int length);
+
+    @Override
+    public Object get(int index, Scriptable start) {
+        if (index >= 0 && index < length) {
+            return getElement(index);
+        }
+        // An integer index never reaches the prototype of a typed array
+        return Undefined.instance;
+    }
+
+    @Override
+    public boolean has(int index, Scriptable start) {
+        return index >= 0 && index < length;
+    }
+
+    @Override
+    public void put(int index, Scriptable start, Object value) {
+        if (index >= 0 && index < length) {
+            checkWritable();
+            setElement(index, value);
+        }
+    }
+
+    @Override
+    public void delete(int index) {}
+
+    /*
+     * A canonical numeric string such as "1.5" or "-0" is never an ordinary property of a typed
+     * array: it names an element, or nothing at all if it is not a valid index.
+     */
+
+    @Override
+    public Object get(String name, Scriptable start) {
+        if (isCanonicalNumeric(name)) {
+            return get(toElementIndex(name), start);
+        }
+        return super.get(name, start);
+    }
+
+    @Override
+    public boolean has(String name, Scriptable start) {
+        if (isCanonicalNumeric(name)) {
+            return has(toElementIndex(name), start);
+        }
+        return super.has(name, start);
+    }
+
+    @Override
+    public void put(String name, Scriptable start, Object value) {
+        if (isCanonicalNumeric(name)) {
+            put(toElementIndex(name), start, value);
+            return;
+        }
+        super.put(name, start, value);
+    }
+
+    @Override
+    public void delete(String name) {
+        if (!isCanonicalNumeric(name)) {
+            super.delete(name);
+        }
+    }
+
+    @Override
+    protected Object[] getIds(boolean getNonEnumerable, boolean getSymbols) {
+        Object[] ids = super.getIds(getNonEnumerable, getSymbols);
+        Object[] result = new Object[length + ids.length];
+        for (int i = 0; i < length; i++) {
+            result[i] = Integer.valueOf(i);
+        }
+        System.arraycopy(ids, 0, result, length, ids.length);
+        return result;
+    }
+
+    @Override
+    protected ScriptableObject getOwnPropertyDescriptor(Context cx, Object id) {
+        int index = toElementIndex(id);
+        if (index >= 0 && index < length) {
+            Scriptable scope = getParentScope();
+            if (scope == null) scope = this;
+            ScriptableObject desc = new NativeObject();
+            ScriptRuntime.setBuiltinProtoAndParent(desc, scope, TopLevel.Builtins.Object);
+            desc.defineProperty("value", getElement(index), EMPTY);
+            desc.defineProperty("writable", Boolean.valueOf(!isReadOnly()), EMPTY);
+            desc.defineProperty("enumerable", Boolean.TRUE, EMPTY);
+            desc.defineProperty("configurable", Boolean.TRUE, EMPTY);
+            return desc;
+        }
+        if (id instanceof String && isCanonicalNumeric((String) id)) {
+            return null;
+        }
+        return super.getOwnPropertyDescriptor(cx, id);
+    }
+
+    private static int toElementIndex(Object id) {
+        if (id instanceof Integer) {
+            return ((Integer) id).intValue();
+        }
+        if (id instanceof String) {
+            String s = (String) id;
+            double d = ScriptRuntime.toNumber(s);
+            int index = (int) d;
+            if (index == d && Integer.toString(index).equals(s)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /** Whether s is the string of a number, which ToString(ToNumber(s)) gives back, or "-0". */
+    private static boolean isCanonicalNumeric(String s) {
+        if (s.isEmpty()) {
+            return false;
+        }
+        char c = s.charAt(0);
+        if ((c < '0' || c > '9') && c != '-' && c != 'I' && c != 'N') {
+            // Not a digit, a sign, Infinity or NaN: the common case of a named property
+            return false;
+        }
+        return s.equals("-0") || ScriptRuntime.toString(ScriptRuntime.toNumber(s)).equals(s);
+    }
+
+    /** Define the constructor of one element type, creating %TypedArray% on first use. */
+    static void init(
+            Context cx,
+            Scriptable scope,
+            boolean sealed,
+            String className,
+            int bytesPerElement,
+            Factory factory) {
+        LambdaConstructor typedArray = getTypedArrayConstructor(cx, scope, sealed);
+        LambdaConstructor constructor =
+                new LambdaConstructor(
+                        scope,
+                        className,
+                        3,
+                        LambdaConstructor.CONSTRUCTOR_NEW,
+                        (Context lcx, Scriptable lscope, Object[] args) ->
+                                constructor(lcx, lscope, args, bytesPerElement, factory));
+        constructor.setPrototype(typedArray);
+        constructor.setStandardPropertyAttributes(DONTENUM | READONLY);
+        constructor.setPrototypePropertyAttributes(DONTENUM | READONLY | PERMANENT);
+
+        Integer size = Integer.valueOf(bytesPerElement);
+        constructor.defineProperty("BYTES_PER_ELEMENT", size, DONTENUM | READONLY | PERMANENT);
+        constructor.definePrototypeProperty(
+                "BYTES_PER_ELEMENT", size, DONTENUM | READONLY | PERMANENT);
+        Scriptable proto = (Scriptable) constructor.get("prototype", constructor);
+        proto.setPrototype((Scriptable) typedArray.get("prototype", typedArray));
+
+        ScriptableObject.defineProperty(scope, className, constructor, DONTENUM);
+        if (sealed) {
+            constructor.sealObject();
+        }
+    }
+
+    private static LambdaConstructor getTypedArrayConstructor(
+            Context cx, Scriptable scope, boolean sealed) {
+        Object value = ScriptableObject.getTopScopeValue(scope, TYPED_ARRAY_TAG);
+        if (value instanceof LambdaConstructor) {
+            return (LambdaConstructor) value;
+        }
+
+        LambdaConstructor constructor =
+                new LambdaConstructor(
+                        scope,
+                        "TypedArray",
+                        0,
+                        LambdaConstructor.CONSTRUCTOR_NEW,
+                        (Context lcx, Scriptable lscope, Object[] args) -> {
+                            throw ScriptRuntime.typeErrorById("msg.typed.array.abstract");
+                        });
+        constructor.setStandardPropertyAttributes(DONTENUM | READONLY);
+        constructor.setPrototypePropertyAttributes(DONTENUM | READONLY | PERMANENT);
+
+        constructor.definePrototypeMethod(
+                scope, "set", 1, NativeTypedArrayView::js_set, DONTENUM, DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope,
+                "subarray",
+                2,
+                NativeTypedArrayView::js_subarray,
+                DONTENUM,
+                DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope, "slice", 2, NativeTypedArrayView::js_slice, DONTENUM, DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope, "fill", 1, NativeTypedArrayView::js_fill, DONTENUM, DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope,
+                "indexOf",
+                1,
+                NativeTypedArrayView::js_indexOf,
+                DONTENUM,
+                DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope,
+                "lastIndexOf",
+                1,
+                NativeTypedArrayView::js_lastIndexOf,
+                DONTENUM,
+                DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope,
+                "includes",
+                1,
+                NativeTypedArrayView::js_includes,
+                DONTENUM,
+                DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope, "join", 1, NativeTypedArrayView::js_join, DONTENUM, DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope,
+                "reverse",
+                0,
+                NativeTypedArrayView::js_reverse,
+                DONTENUM,
+                DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope,
+                "toString",
+                0,
+                (Context lcx, Scriptable lscope, Scriptable thisObj, Object[] args) ->
+                        js_join(lcx, lscope, thisObj, InterpreterConstants.emptyArgs),
+                DONTENUM,
+                DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope,
+                "forEach",
+                1,
+                NativeTypedArrayView::js_forEach,
+                DONTENUM,
+                DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope, "map", 1, NativeTypedArrayView::js_map, DONTENUM, DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope, "filter", 1, NativeTypedArrayView::js_filter, DONTENUM, DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope, "reduce", 1, NativeTypedArrayView::js_reduce, DONTENUM, DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope,
+                "reduceRight",
+                1,
+                NativeTypedArrayView::js_reduceRight,
+                DONTENUM,
+                DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope, "every", 1, NativeTypedArrayView::js_every, DONTENUM, DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope, "some", 1, NativeTypedArrayView::js_some, DONTENUM, DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope, "find", 1, NativeTypedArrayView::js_find, DONTENUM, DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope,
+                "findIndex",
+                1,
+                NativeTypedArrayView::js_findIndex,
+                DONTENUM,
+                DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope, "sort", 1, NativeTypedArrayView::js_sort, DONTENUM, DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope,
+                "copyWithin",
+                2,
+                NativeTypedArrayView::js_copyWithin,
+                DONTENUM,
+                DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope,
+                "keys",
+                0,
+                (Context lcx, Scriptable lscope, Scriptable thisObj, Object[] args) ->
+                        new NativeArrayIterator(
+                                lscope,
+                                realThis(thisObj),
+                                NativeArrayIterator.ARRAY_ITERATOR_TYPE.KEYS),
+                DONTENUM,
+                DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope,
+                "entries",
+                0,
+                (Context lcx, Scriptable lscope, Scriptable thisObj, Object[] args) ->
+                        new NativeArrayIterator(
+                                lscope,
+                                realThis(thisObj),
+                                NativeArrayIterator.ARRAY_ITERATOR_TYPE.ENTRIES),
+                DONTENUM,
+                DONTENUM | READONLY);
+        constructor.definePrototypeMethod(
+                scope,
+                "values",
+                0,
+                (Context lcx, Scriptable lscope, Scriptable thisObj, Object[] args) ->
+                        new NativeArrayIterator(
+                                lscope,
+                                realThis(thisObj),
+                                NativeArrayIterator.ARRAY_ITERATOR_TYPE.VALUES),
+                DONTENUM,
+                DONTENUM | READONLY);
+        Scriptable proto = (Scriptable) constructor.get("prototype", constructor);
+        constructor.definePrototypeProperty(
+                SymbolKey.ITERATOR, proto.get("values", proto), DONTENUM);
+
+        defineViewGetters(cx, scope, constructor, NativeTypedArrayView.class);
+        constructor.definePrototypeGetter(
+                cx,
+                scope,
+                "length",
+                "length",
+                (Context lcx, Scriptable lscope, Scriptable thisObj, Object[] args) ->
+                        Integer.valueOf(realThis(thisObj).length));
+        constructor.definePrototypeGetter(
+                cx,
+                scope,
+                SymbolKey.TO_STRING_TAG,
+                "[Symbol.toStringTag]",
+                (Context lcx, Scriptable lscope, Scriptable thisObj, Object[] args) ->
+                        thisObj instanceof NativeTypedArrayView
+                                ? ((NativeTypedArrayView) thisObj).getClassName()
+                                : Undefined.instance);
+
+        constructor.defineConstructorMethod(
+                scope, "from", 1, NativeTypedArrayView::js_from, DONTENUM, DONTENUM | READONLY);
+        constructor.defineConstructorMethod(
+                scope, "of", 0, NativeTypedArrayView::js_of, DONTENUM, DONTENUM | READONLY);
+
+        if (sealed) {
+            constructor.sealObject();
+        }
+        ScriptableObject top = (ScriptableObject) ScriptableObject.getTopLevelScope(scope);
+        top.associateValue(TYPED_ARRAY_TAG, constructor);
+        return constructor;
+    }
+
+    private static Scriptable constructor(
+            Context cx, Scriptable scope, Object[] args, int bytesPerElement, Factory factory) {
+        Object arg0 = NativeArrayBuffer.arg(args, 0);
+        if (arg0 instanceof NativeArrayBuffer) {
+            NativeArrayBuffer buffer = (NativeArrayBuffer) arg0;
+            int offset = NativeArrayBuffer.toIndex(NativeArrayBuffer.arg(args, 1));
+            if (offset % bytesPerElement != 0) {
+                throw ScriptRuntime.rangeErrorById(
+                        "msg.typed.array.bad.offset", Integer.valueOf(offset));
+            }
+            int length;
+            Object arg2 = NativeArrayBuffer.arg(args, 2);
+            if (Undefined.isUndefined(arg2)) {
+                int byteLength = buffer.getLength() - offset;
+                if (byteLength < 0 || byteLength % bytesPerElement != 0) {
+                    throw ScriptRuntime.rangeErrorById(
+                            "msg.typed.array.bad.buffer.length",
+                            Integer.valueOf(buffer.getLength()));
+                }
+                length = byteLength / bytesPerElement;
+            } else {
+                length = NativeArrayBuffer.toIndex(arg2);
+                if ((long) offset + (long) length * bytesPerElement > buffer.getLength()) {
+                    throw ScriptRuntime.rangeErrorById(
+                            "msg.typed.array.bad.length", Integer.valueOf(length));
+                }
+            }
+            return factory.create(buffer, offset, length);
+        }
+
+        if (arg0 instanceof NativeTypedArrayView) {
+            NativeTypedArrayView source = (NativeTypedArrayView) arg0;
+            NativeTypedArrayView result =
+                    factory.create(allocate(source.length, bytesPerElement), 0, source.length);
+            copy(source, 0, result, 0, source.length);
+            return result;
+        }
+
+        if (arg0 instanceof Scriptable) {
+            Scriptable source = (Scriptable) arg0;
+            int length = lengthOf(source);
+            NativeTypedArrayView result =
+                    factory.create(allocate(length, bytesPerElement), 0, length);
+            for (int i = 0; i < length; i++) {
+                result.setElement(i, getSourceElement(source, i));
+            }
+            return result;
+        }
+
+        int length = NativeArrayBuffer.toIndex(arg0);
+        return factory.create(allocate(length, bytesPerElement), 0, length);
+    }
+
+    private static NativeArrayBuffer allocate(int length, int bytesPerElement) {
+        long byteLength = (long) length * bytesPerElement;
+        if (byteLength > Integer.MAX_VALUE) {
+            throw ScriptRuntime.rangeErrorById(
+                    "msg.typed.array.bad.length", Integer.valueOf(length));
+        }
+        return new NativeArrayBuffer((int) byteLength);
+    }
+
+    private static int lengthOf(Scriptable arrayLike) {
+        Object length = ScriptableObject.getProperty(arrayLike, "length");
+        if (length == NOT_FOUND) {
+            return 0;
+        }
+        double d = ScriptRuntime.toInteger(length);
+        if (d <= 0) {
+            return 0;
+        }
+        if (d > Integer.MAX_VALUE) {
+            throw ScriptRuntime.rangeErrorById("msg.typed.array.bad.length", length);
+        }
+        return (int) d;
+    }
+
+    private static Object getSourceElement(Scriptable source, int index) {
+        Object value = ScriptableObject.getProperty(source, index);
+        return value == NOT_FOUND ? Undefined.instance : value;
+    }
+
+    /**
+     * Copy count elements. Arrays of the same type are copied as bytes, which is only safe when
+     * the source and target do not share a buffer.
+     */
+    private static void copy(
+            NativeTypedArrayView source,
+            int from,
+            NativeTypedArrayView target,
+            int to,
+            int count) {
+        if (source.getClass() == target.getClass()) {
+            int size = source.getBytesPerElement();
+            ByteBuffer in = source.data.duplicate();
+            ((Buffer) in).limit(source.offset + (from + count) * size);
+            ((Buffer) in).position(source.offset + from * size);
+            ByteBuffer out = target.data.duplicate();
+            ((Buffer) out).position(target.offset + to * size);
+            out.put(in);
+        } else if (source.numeric && target.numeric) {
+            for (int i = 0; i < count; i++) {
+                target.setDouble(to + i, source.getDouble(from + i));
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                target.setElement(to + i, source.getElement(from + i));
+            }
+        }
+    }
+
+    private static NativeTypedArrayView realThis(Scriptable thisObj) {
+        return LambdaConstructor.convertThisObject(thisObj, NativeTypedArrayView.class);
+    }
+
+    private static Object js_set(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        Object arg0 = NativeArrayBuffer.arg(args, 0);
+        int offset = NativeArrayBuffer.toIndex(NativeArrayBuffer.arg(args, 1));
+        self.checkWritable();
+
+        if (arg0 instanceof NativeTypedArrayView) {
+            NativeTypedArrayView source = (NativeTypedArrayView) arg0;
+            if ((long) offset + source.length > self.length) {
+                throw ScriptRuntime.rangeErrorById(
+                        "msg.typed.array.bad.offset", Integer.valueOf(offset));
+            }
+            if (source.arrayBuffer == self.arrayBuffer) {
+                NativeTypedArrayView copy =
+                        source.construct(
+                                new NativeArrayBuffer(source.byteLength), 0, source.length);
+                copy(source, 0, copy, 0, source.length);
+                source = copy;
+            }
+            copy(source, 0, self, offset, source.length);
+        } else {
+            Scriptable source = ScriptRuntime.toObject(cx, scope, arg0);
+            int length = lengthOf(source);
+            if ((long) offset + length > self.length) {
+                throw ScriptRuntime.rangeErrorById(
+                        "msg.typed.array.bad.offset", Integer.valueOf(offset));
+            }
+            for (int i = 0; i < length; i++) {
+                self.setElement(offset + i, getSourceElement(source, i));
+            }
+        }
+        return Undefined.instance;
+    }
+
+    private static Object js_subarray(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        int begin = NativeArrayBuffer.relativeIndex(args, 0, self.length, 0);
+        int end = NativeArrayBuffer.relativeIndex(args, 1, self.length, self.length);
+        int length = Math.max(end - begin, 0);
+        NativeTypedArrayView result =
+                self.construct(
+                        self.arrayBuffer, self.offset + begin * self.getBytesPerElement(), length);
+        NativeArrayBuffer.initObject(result, scope, self.getClassName());
+        return result;
+    }
+
+    private static Object js_slice(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        int begin = NativeArrayBuffer.relativeIndex(args, 0, self.length, 0);
+        int end = NativeArrayBuffer.relativeIndex(args, 1, self.length, self.length);
+        int length = Math.max(end - begin, 0);
+        NativeTypedArrayView result = self.create(scope, length);
+        copy(self, begin, result, 0, length);
+        return result;
+    }
+
+    private static Object js_fill(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        Object value = NativeArrayBuffer.arg(args, 0);
+        int start = NativeArrayBuffer.relativeIndex(args, 1, self.length, 0);
+        int end = NativeArrayBuffer.relativeIndex(args, 2, self.length, self.length);
+        self.checkWritable();
+        if (self.numeric) {
+            double d = ScriptRuntime.toNumber(value);
+            for (int i = start; i < end; i++) {
+                self.setDouble(i, d);
+            }
+        } else {
+            BigInteger b = ScriptRuntime.toBigInt(value);
+            for (int i = start; i < end; i++) {
+                self.setElement(i, b);
+            }
+        }
+        return self;
+    }
+
+    private static Object js_indexOf(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        Object search = NativeArrayBuffer.arg(args, 0);
+        int k = NativeArrayBuffer.relativeIndex(args, 1, self.length, 0);
+        if (self.numeric && search instanceof Number) {
+            double d = ((Number) search).doubleValue();
+            for (; k < self.length; k++) {
+                if (self.getDouble(k) == d) {
+                    return Integer.valueOf(k);
+                }
+            }
+        } else if (!self.numeric) {
+            for (; k < self.length; k++) {
+                if (ScriptRuntime.shallowEq(self.getElement(k), search)) {
+                    return Integer.valueOf(k);
+                }
+            }
+        }
+        return Integer.valueOf(-1);
+    }
+
+    private static Object js_lastIndexOf(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        Object search = NativeArrayBuffer.arg(args, 0);
+        int k = self.length - 1;
+        if (args.length > 1) {
+            double from = ScriptRuntime.toInteger(args[1]);
+            k = (int) (from < 0 ? self.length + from : Math.min(from, self.length - 1));
+        }
+        if (self.numeric && search instanceof Number) {
+            double d = ((Number) search).doubleValue();
+            for (; k >= 0; k--) {
+                if (self.getDouble(k) == d) {
+                    return Integer.valueOf(k);
+                }
+            }
+        } else if (!self.numeric) {
+            for (; k >= 0; k--) {
+                if (ScriptRuntime.shallowEq(self.getElement(k), search)) {
+                    return Integer.valueOf(k);
+                }
+            }
+        }
+        return Integer.valueOf(-1);
+    }
+
+    private static Object js_includes(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        Object search = NativeArrayBuffer.arg(args, 0);
+        int k = NativeArrayBuffer.relativeIndex(args, 1, self.length, 0);
+        if (self.numeric && search instanceof Number) {
+            double d = ((Number) search).doubleValue();
+            boolean nan = Double.isNaN(d);
+            for (; k < self.length; k++) {
+                double element = self.getDouble(k);
+                if (element == d || (nan && Double.isNaN(element))) {
+                    return Boolean.TRUE;
+                }
+            }
+        } else if (!self.numeric) {
+            for (; k < self.length; k++) {
+                if (ScriptRuntime.sameZero(self.getElement(k), search)) {
+                    return Boolean.TRUE;
+                }
+            }
+        }
+        return Boolean.FALSE;
+    }
+
+    private static Object js_join(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        Object separator = NativeArrayBuffer.arg(args, 0);
+        String sep = Undefined.isUndefined(separator) ? "," : ScriptRuntime.toString(separator);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < self.length; i++) {
+            if (i > 0) {
+                sb.append(sep);
+            }
+            sb.append(ScriptRuntime.toString(self.getElement(i)));
+        }
+        return sb.toString();
+    }
+
+    private static Object js_reverse(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        self.checkWritable();
+        for (int lo = 0, hi = self.length - 1; lo < hi; lo++, hi--) {
+            Object tmp = self.getElement(lo);
+            self.setElement(lo, self.getElement(hi));
+            self.setElement(hi, tmp);
+        }
+        return self;
+    }
+
+    private static Object js_forEach(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        Callable f = callbackArg(args);
+        Scriptable thisArg = thisArg(cx, scope, args, 1);
+        for (int i = 0; i < self.length; i++) {
+            f.call(cx, scope, thisArg, new Object[] {self.getElement(i), Integer.valueOf(i), self});
+        }
+        return Undefined.instance;
+    }
+
+    private static Object js_map(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        Callable f = callbackArg(args);
+        Scriptable thisArg = thisArg(cx, scope, args, 1);
+        NativeTypedArrayView result = self.create(scope, self.length);
+        for (int i = 0; i < self.length; i++) {
+            result.setElement(
+                    i,
+                    f.call(
+                            cx,
+                            scope,
+                            thisArg,
+                            new Object[] {self.getElement(i), Integer.valueOf(i), self}));
+        }
+        return result;
+    }
+
+    private static Object js_filter(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        Callable f = callbackArg(args);
+        Scriptable thisArg = thisArg(cx, scope, args, 1);
+        List<Object> kept = new ArrayList<>();
+        for (int i = 0; i < self.length; i++) {
+            Object element = self.getElement(i);
+            Object keep =
+                    f.call(cx, scope, thisArg, new Object[] {element, Integer.valueOf(i), self});
+            if (ScriptRuntime.toBoolean(keep)) {
+                kept.add(element);
+            }
+        }
+        NativeTypedArrayView result = self.create(scope, kept.size());
+        for (int i = 0; i < kept.size(); i++) {
+            result.setElement(i, kept.get(i));
+        }
+        return result;
+    }
+
+    private static Object js_reduce(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        return reduce(cx, scope, thisObj, args, false);
+    }
+
+    private static Object js_reduceRight(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        return reduce(cx, scope, thisObj, args, true);
+    }
+
+    private static Object reduce(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args, boolean fromRight) {
+        NativeTypedArrayView self = realThis(thisObj);
+        Callable f = callbackArg(args);
+        Scriptable thisArg = ScriptableObject.getTopLevelScope(scope);
+        int step = fromRight ? -1 : 1;
+        int i = fromRight ? self.length - 1 : 0;
+        Object value;
+        if (args.length > 1) {
+            value = args[1];
+        } else if (self.length == 0) {
+            throw ScriptRuntime.typeErrorById("msg.empty.array.reduce");
+        } else {
+            value = self.getElement(i);
+            i += step;
+        }
+        for (; i >= 0 && i < self.length; i += step) {
+            value =
+                    f.call(
+                            cx,
+                            scope,
+                            thisArg,
+                            new Object[] {value, self.getElement(i), Integer.valueOf(i), self});
+        }
+        return value;
+    }
+
+    private static Object js_every(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        return Boolean.valueOf(findIndex(cx, scope, thisObj, args, false) < 0);
+    }
+
+    private static Object js_some(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        return Boolean.valueOf(findIndex(cx, scope, thisObj, args, true) >= 0);
+    }
+
+    private static Object js_find(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        Callable f = callbackArg(args);
+        Scriptable thisArg = thisArg(cx, scope, args, 1);
+        for (int i = 0; i < self.length; i++) {
+            Object element = self.getElement(i);
+            Object found =
+                    f.call(cx, scope, thisArg, new Object[] {element, Integer.valueOf(i), self});
+            if (ScriptRuntime.toBoolean(found)) {
+                return element;
+            }
+        }
+        return Undefined.instance;
+    }
+
+    private static Object js_findIndex(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        return Integer.valueOf(findIndex(cx, scope, thisObj, args, true));
+    }
+
+    /**
+     * Call the callback with the elements in order until its result converts to the boolean
+     * stopAt.
+     *
+     * @return the index of the element where it stopped, or -1
+     */
+    private static int findIndex(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args, boolean stopAt) {
+        NativeTypedArrayView self = realThis(thisObj);
+        Callable f = callbackArg(args);
+        Scriptable thisArg = thisArg(cx, scope, args, 1);
+        for (int i = 0; i < self.length; i++) {
+            Object result =
+                    f.call(
+                            cx,
+                            scope,
+                            thisArg,
+                            new Object[] {self.getElement(i), Integer.valueOf(i), self});
+            if (ScriptRuntime.toBoolean(result) == stopAt) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Object js_sort(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        Object compareArg = NativeArrayBuffer.arg(args, 0);
+        if (!Undefined.isUndefined(compareArg) && !(compareArg instanceof Callable)) {
+            throw ScriptRuntime.notFunctionError(compareArg);
+        }
+        self.checkWritable();
+        if (Undefined.isUndefined(compareArg) && self.numeric) {
+            // Numeric order with -0 before +0 and NaN last, which is the order of Double.compare
+            double[] values = new double[self.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = self.getDouble(i);
+            }
+            Arrays.sort(values);
+            for (int i = 0; i < values.length; i++) {
+                self.setDouble(i, values[i]);
+            }
+            return self;
+        }
+        Object[] values = new Object[self.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = self.getElement(i);
+        }
+        if (Undefined.isUndefined(compareArg)) {
+            Arrays.sort(values);
+        } else {
+            Callable f = (Callable) compareArg;
+            Scriptable thisArg = ScriptableObject.getTopLevelScope(scope);
+            Sorting.get()
+                    .hybridSort(
+                            values,
+                            (x, y) -> {
+                                double d =
+                                        ScriptRuntime.toNumber(
+                                                f.call(cx, scope, thisArg, new Object[] {x, y}));
+                                return d < 0 ? -1 : d > 0 ? 1 : 0;
+                            });
+        }
+        for (int i = 0; i < values.length; i++) {
+            self.setElement(i, values[i]);
+        }
+        return self;
+    }
+
+    private static Object js_copyWithin(
+            Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView self = realThis(thisObj);
+        int to = NativeArrayBuffer.relativeIndex(args, 0, self.length, 0);
+        int from = NativeArrayBuffer.relativeIndex(args, 1, self.length, 0);
+        int end = NativeArrayBuffer.relativeIndex(args, 2, self.length, self.length);
+        int count = Math.min(end - from, self.length - to);
+        if (count > 0) {
+            self.checkWritable();
+            // Through a copy, since the ranges may overlap
+            int size = self.getBytesPerElement();
+            byte[] bytes = new byte[count * size];
+            ByteBuffer in = self.data.duplicate();
+            ((Buffer) in).position(self.offset + from * size);
+            in.get(bytes);
+            ByteBuffer out = self.data.duplicate();
+            ((Buffer) out).position(self.offset + to * size);
+            out.put(bytes);
+        }
+        return self;
+    }
+
+    private static Object js_from(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        Object mapArg = NativeArrayBuffer.arg(args, 1);
+        Callable mapFn = null;
+        Scriptable thisArg = null;
+        if (!Undefined.isUndefined(mapArg)) {
+            if (!(mapArg instanceof Callable)) {
+                throw ScriptRuntime.typeErrorById("msg.map.function.not");
+            }
+            mapFn = (Callable) mapArg;
+            thisArg = thisArg(cx, scope, args, 2);
+        }
+        Scriptable items = ScriptRuntime.toObject(cx, scope, NativeArrayBuffer.arg(args, 0));
+        List<Object> values;
+        Object iteratorProp = ScriptableObject.getProperty(items, SymbolKey.ITERATOR);
+        if (!(items instanceof NativeTypedArrayView)
+                && iteratorProp != NOT_FOUND
+                && !Undefined.isUndefined(iteratorProp)) {
+            values = new ArrayList<>();
+            Object iterator = ScriptRuntime.callIterator(items, cx, scope);
+            try (IteratorLikeIterable it = new IteratorLikeIterable(cx, scope, iterator)) {
+                for (Object value : it) {
+                    values.add(value);
+                }
+            }
+        } else {
+            int length = lengthOf(items);
+            values = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                values.add(getSourceElement(items, i));
+            }
+        }
+        NativeTypedArrayView result = constructWith(cx, scope, thisObj, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            if (mapFn != null) {
+                value = mapFn.call(cx, scope, thisArg, new Object[] {value, Integer.valueOf(i)});
+            }
+            result.setElement(i, value);
+        }
+        return result;
+    }
+
+    private static Object js_of(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeTypedArrayView result = constructWith(cx, scope, thisObj, args.length);
+        for (int i = 0; i < args.length; i++) {
+            result.setElement(i, args[i]);
+        }
+        return result;
+    }
+
+    /** A typed array of length elements made by the constructor that from or of was called on. */
+    private static NativeTypedArrayView constructWith(
+            Context cx, Scriptable scope, Scriptable constructor, int length) {
+        if (!(constructor instanceof Constructable)) {
+            throw ScriptRuntime.typeErrorById("msg.not.ctor", ScriptRuntime.toString(constructor));
+        }
+        Scriptable result =
+                ((Constructable) constructor)
+                        .construct(cx, scope, new Object[] {Integer.valueOf(length)});
+        if (!(result instanceof NativeTypedArrayView)
+                || ((NativeTypedArrayView) result).length < length) {
+            throw ScriptRuntime.typeErrorById(
+                    "msg.typed.array.bad.length", Integer.valueOf(length));
+        }
+        return (NativeTypedArrayView) result;
+    }
+
+    /** A new array of this element type and the given length over a new buffer. */
+    private NativeTypedArrayView create(Scriptable scope, int length) {
+        NativeTypedArrayView result =
+                construct(new NativeArrayBuffer(length * getBytesPerElement()), 0, length);
+        NativeArrayBuffer.initObject(result, scope, getClassName());
+        return result;
+    }
+
+    private static Callable callbackArg(Object[] args) {
+        Object callbackArg = NativeArrayBuffer.arg(args, 0);
+        if (!(callbackArg instanceof Callable)) {
+            throw ScriptRuntime.notFunctionError(callbackArg);
+        }
+        return (Callable) callbackArg;
+    }
+
+    /** The this of a callback, args[index] or the top level scope if that is missing. */
+    private static Scriptable thisArg(Context cx, Scriptable scope, Object[] args, int index) {
+        if (args.length <= index || args[index] == null || args[index] == Undefined.instance) {
+            return ScriptableObject.getTopLevelScope(scope);
+        }
+        return ScriptRuntime.toObject(cx, scope, args[index]);
+    }
+}
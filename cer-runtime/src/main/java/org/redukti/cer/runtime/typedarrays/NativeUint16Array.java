@@ -0,0 +1,62 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.typedarrays;
+
+import org.redukti.cer.Scriptable;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ScriptRuntime;
+
+/** The Uint16Array built-in, an array of 16-bit unsigned integers. */
+public class NativeUint16Array extends NativeTypedArrayView {
+    private static final long serialVersionUID = -8012288519446725602L;
+
+    public static final String CLASS_NAME = "Uint16Array";
+    public static final int BYTES_PER_ELEMENT = 2;
+
+    public NativeUint16Array(NativeArrayBuffer buffer, int offset, int length) {
+        super(buffer, offset, length, BYTES_PER_ELEMENT, true);
+    }
+
+    public static void init(Context cx, Scriptable scope, boolean sealed) {
+        init(cx, scope, sealed, CLASS_NAME, BYTES_PER_ELEMENT, NativeUint16Array::new);
+    }
+
+    @Override
+    public String getClassName() {
+        return CLASS_NAME;
+    }
+
+    @Override
+    public int getBytesPerElement() {
+        return BYTES_PER_ELEMENT;
+    }
+
+    @Override
+    protected NativeTypedArrayView construct(NativeArrayBuffer buffer, int offset, int length) {
+        return new NativeUint16Array(buffer, offset, length);
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return data.getShort(offset + (index << 1)) & 0xffff;
+    }
+
+    @Override
+    public void setDouble(int index, double value) {
+        data.putShort(offset + (index << 1), (short) ScriptRuntime.toInt32(value));
+    }
+
+    @Override
+    protected Object getElement(int index) {
+        return Integer.valueOf(data.getShort(offset + (index << 1)) & 0xffff);
+    }
+
+    @Override
+    protected void setElement(int index, Object value) {
+        setDouble(index, ScriptRuntime.toNumber(value));
+    }
+}
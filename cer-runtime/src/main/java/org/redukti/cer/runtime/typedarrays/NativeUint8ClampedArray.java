@@ -0,0 +1,74 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.redukti.cer.runtime.typedarrays;
+
+import org.redukti.cer.Scriptable;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ScriptRuntime;
+
+/**
+ * The Uint8ClampedArray built-in, an array of 8-bit unsigned integers where values out of range
+ * are clamped rather than wrapped.
+ */
+public class NativeUint8ClampedArray extends NativeTypedArrayView {
+    private static final long serialVersionUID = -4933003971624496439L;
+
+    public static final String CLASS_NAME = "Uint8ClampedArray";
+    public static final int BYTES_PER_ELEMENT = 1;
+
+    public NativeUint8ClampedArray(NativeArrayBuffer buffer, int offset, int length) {
+        super(buffer, offset, length, BYTES_PER_ELEMENT, true);
+    }
+
+    public static void init(Context cx, Scriptable scope, boolean sealed) {
+        init(cx, scope, sealed, CLASS_NAME, BYTES_PER_ELEMENT, NativeUint8ClampedArray::new);
+    }
+
+    @Override
+    public String getClassName() {
+        return CLASS_NAME;
+    }
+
+    @Override
+    public int getBytesPerElement() {
+        return BYTES_PER_ELEMENT;
+    }
+
+    @Override
+    protected NativeTypedArrayView construct(NativeArrayBuffer buffer, int offset, int length) {
+        return new NativeUint8ClampedArray(buffer, offset, length);
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return data.get(offset + index) & 0xff;
+    }
+
+    @Override
+    public void setDouble(int index, double value) {
+        int clamped;
+        if (!(value > 0)) {
+            clamped = 0;
+        } else if (value >= 255) {
+            clamped = 255;
+        } else {
+            // ToUint8Clamp rounds half to even
+            clamped = (int) Math.rint(value);
+        }
+        data.put(offset + index, (byte) clamped);
+    }
+
+    @Override
+    protected Object getElement(int index) {
+        return Integer.valueOf(data.get(offset + index) & 0xff);
+    }
+
+    @Override
+    protected void setElement(int index, Object value) {
+        setDouble(index, ScriptRuntime.toNumber(value));
+    }
+}
@@ -0,0 +1,55 @@
+package org.redukti.cer;
+
+import static org.redukti.cer.Utils.check;
+
+import org.junit.Test;
+
+public class ArrayIterationTest {
+
+    @Test
+    public void callbacks() {
+        check(
+                "0 2 6 12,1 3,36,4321,1:0 2:1 3:2 4:3,1 3 5 7,1,true,false,2,4,2,3,4,12",
+                "var out = [];\n"
+                        + "var a = [1, 2, 3, 4];\n"
+                        + "out.push(a.map(function(v, i) { return v * i; }).join(' '));\n"
+                        + "out.push(a.filter(function(v) { return v % 2; }).join(' '));\n"
+                        + "out.push(a.reduce(function(acc, v, i, arr) {"
+                        + " return acc + v * i + arr.length; }, 0));\n"
+                        + "out.push(a.reduceRight(function(acc, v) { return acc + '' + v; }));\n"
+                        // Callbacks that keep their arguments must each get their own
+                        + "var kept = []; a.forEach(function(v) { kept.push(arguments); });\n"
+                        + "out.push(kept.map(function(x) { return x[0] + ':' + x[1]; })"
+                        + ".join(' '));\n"
+                        + "var fns = []; a.forEach(function(v, i) {"
+                        + " fns.push(function() { return v + i; }); });\n"
+                        + "out.push(fns.map(function(g) { return g(); }).join(' '));\n"
+                        + "out.push([5, 6, 7].findIndex(function(v) { return v > 5; }),"
+                        + " [5, 6].some(function(v) { return v > 5; }),"
+                        + " [5, 6].every(function(v) { return v > 5; }));\n"
+                        + "var self = {k: 2}; out.push([1, 2].map(function(v) {"
+                        + " return v * this.k; }, self).join());\n"
+                        + "out.push([1, 2, 3].map(v => v + 1).join(),"
+                        + " [3, 4].reduce((x, y) => x * y));\n"
+                        + "out.join()");
+    }
+
+    @Test
+    public void changesDuringIteration() {
+        check(
+                "1 2.5 x,4,2,1,p,3,p",
+                "var out = [];\n"
+                        + "var grow = [1, 2, 3]; var seen = [];\n"
+                        + "grow.forEach(function(v, i, arr) { seen.push(v);"
+                        + " if (i == 0) { arr.push(9); arr[2] = 'x'; arr[1] = 2.5; } });\n"
+                        + "out.push(seen.join(' '), grow.length);\n"
+                        + "var shrink = [1, 2, 3, 4]; var n = 0;\n"
+                        + "shrink.forEach(function(v, i, arr) { n++; arr.length = 2; });\n"
+                        + "out.push(n);\n"
+                        + "var holes = [1, , 3]; Array.prototype[1] = 'p';\n"
+                        + "out.push(holes.map(function(v) { return v; }).join(),"
+                        + " holes.find(function(v) { return v === 'p'; }));\n"
+                        + "delete Array.prototype[1];\n"
+                        + "out.join()");
+    }
+}
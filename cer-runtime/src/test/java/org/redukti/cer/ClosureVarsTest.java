@@ -0,0 +1,106 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+import static org.redukti.cer.Utils.check;
+
+import org.junit.Test;
+import org.redukti.cer.debug.DebugFrame;
+import org.redukti.cer.debug.DebuggableScript;
+import org.redukti.cer.debug.Debugger;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+
+public class ClosureVarsTest {
+
+    private static final String SOURCE =
+            "function counter() { var count = 0, step = 2, unused = 5;"
+                    + " for (var i = 0; i < 3; i++) unused += i;"
+                    + " return function() { count += step; return count + unused * 0; }; }\n"
+                    + "function statement(a) { function inner() { return a * 2; }"
+                    + " var b = a + 1; return inner() + b; }\n"
+                    + "function mapped(a, b) { arguments[0] = 10;"
+                    + " var g = function() { return a; }; return g() + b; }\n"
+                    + "function arrow(a) { var g = () => arguments[0]; a = 5; return g(); }\n"
+                    + "function evaluated() { var x = 1;"
+                    + " return function() { return eval('x'); }; }\n"
+                    + "function kinds() { var n = 1, s = 'a';"
+                    + " var f = function() { return typeof s; };"
+                    + " return typeof n + typeof s + f() + typeof missing; }\n"
+                    + "function deep() { var x = 1, y = 2;"
+                    + " function g() { return function() { return x; }; } return g()() + y; }\n"
+                    + "function shadow() { var x = 1; var g = function(x) { return x; };"
+                    + " x = 3; return g(2) + x; }\n"
+                    + "function lexical() { const k = 3; let m = 4; var t = 0;"
+                    + " for (var i = 0; i < 4; i++) t += i;"
+                    + " return [k, (() => m)(), t].join('/'); }\n"
+                    + "function loop() { var total = 0; var add = function(v) { total += v; };"
+                    + " for (var i = 0; i < 100; i++) { var sq = i * i; add(sq); }"
+                    + " return total; }\n"
+                    + "var c = counter(); c();\n"
+                    + "[c(), statement(3), mapped(1, 2), arrow(1), evaluated()(), kinds(),"
+                    + " deep(), shadow(), lexical(), loop()].join()";
+
+    private static final String EXPECTED =
+            "4,10,12,5,1,numberstringstringundefined,3,5,3/4/6,328350";
+
+    private static String eval(Debugger debugger, String source) {
+        return Utils.eval(
+                new ContextFactory(),
+                -1,
+                scope -> Context.getCurrentContext().setDebugger(debugger, null),
+                source);
+    }
+
+    @Test
+    public void onlyCapturedVariablesLiveInTheActivation() {
+        check(EXPECTED, SOURCE);
+    }
+
+    @Test
+    public void debuggerSeesAllVariables() {
+        ActivationDebugger debugger = new ActivationDebugger();
+        assertEquals(EXPECTED, eval(debugger, SOURCE));
+
+        eval(
+                debugger,
+                "function f(a) { var hidden = a * 2; var g = function() { return a; };"
+                        + " debugger; return g(); }\n"
+                        + "f(21)");
+        assertEquals(42, ((Number) debugger.seen).intValue());
+    }
+
+    /** Records the value of the variable hidden at a debugger statement. */
+    private static class ActivationDebugger implements Debugger, DebugFrame {
+        private Scriptable activation;
+        Object seen;
+
+        @Override
+        public void handleCompilationDone(
+                RuntimeContext cx, DebuggableScript fnOrScript, String source) {}
+
+        @Override
+        public DebugFrame getFrame(RuntimeContext cx, DebuggableScript fnOrScript) {
+            return this;
+        }
+
+        @Override
+        public void onEnter(
+                RuntimeContext cx, Scriptable activation, Scriptable thisObj, Object[] args) {
+            this.activation = activation;
+        }
+
+        @Override
+        public void onLineChange(RuntimeContext cx, int lineNumber) {}
+
+        @Override
+        public void onExceptionThrown(RuntimeContext cx, Throwable ex) {}
+
+        @Override
+        public void onExit(RuntimeContext cx, boolean byThrow, Object resultOrException) {}
+
+        @Override
+        public void onDebuggerStatement(RuntimeContext cx) {
+            seen = activation.get("hidden", activation);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.redukti.cer.exception.EvaluatorException;
+import org.redukti.cer.exception.RhinoException;
+import org.redukti.cer.parser.DefaultErrorReporter;
+import org.redukti.cer.parser.ErrorReporter;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+import org.redukti.cer.runtime.GeneratedClassLoader;
+import org.redukti.cer.runtime.Script;
+import org.redukti.cer.runtime.ScriptableObject;
+
+public class CodegenTest {
+
+    private static final String[] SCRIPTS = {
+        "function fib(n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); } fib(20)",
+        "function sum(n) { var s = 0; for (var i = 0; i < n; i++) { s += i; } return s; }"
+                + " sum(1000)",
+        "function f(a, b) { return typeof b; } f(1)",
+        "function f(o) { o.x = o.x * 2; o['y'] = o.x + 1; return o.y; } f({x: 21})",
+        "function f(a) { var r = []; for (var k in a) r.push(k + '=' + a[k]); return r.join(); }"
+                + " f({a: 1, b: 'two', c: [3]})",
+        "function P(x) { this.x = x; } P.prototype.get = function() { return this.x; };"
+                + " new P(7).get()",
+        "function f(s) { return /b+/.exec(s)[0] + `${s.length}`; } f('abbbc')",
+        "function f(x) { x |= 0; x <<= 3; x ^= 5; return (x >>> 1) + (~x) + (-x % 7); } f(12.5)",
+        "function f(n) { var i = 0; do { i++; if (i == 3) continue; if (i > n) break; } while"
+                + " (true); return i; } f(5)",
+        "function f(a) { switch (a) { case 1: return 'one'; case 'x': return 'ex'; default:"
+                + " return 'other'; } } [f(1), f('x'), f(null)].join()",
+        "function f(n) { return n ** 2 + Number(10n ** 20n % 7n); } f(3)",
+        "function f(o) { delete o.a; return ('a' in o) + ':' + ('b' in o) + ':' + (o instanceof"
+                + " Object); } f({a: 1, b: 2})",
+        "var g = 5; function f() { g++; return g--; } f() + g",
+    };
+
+    @Test
+    public void compiledResultsMatchInterpreter() {
+        for (String script : SCRIPTS) {
+            assertEquals(script, evaluate(script, -1), evaluate(script, 0));
+        }
+    }
+
+    @Test
+    public void compiledFunctionReportsLineNumber() {
+        String script = "function f(x) {\n  if (x) {\n    throw new Error('boom');\n  }\n}\nf(1);";
+        ContextFactory contextFactory = new ContextFactory();
+        contextFactory.setTierUpThreshold(0);
+        try (Context cx = contextFactory.enterContext()) {
+            cx.setOptimizationLevel(0);
+            ScriptableObject scope = cx.initStandardObjects();
+            try {
+                cx.evaluateString(scope, script, "test.js", 1, null);
+            } catch (RhinoException e) {
+                assertEquals(3, e.lineNumber());
+                assertEquals("test.js", e.sourceName());
+                return;
+            }
+        }
+        throw new AssertionError("exception expected");
+    }
+
+    @Test
+    public void deepRecursionFallsBackToTheInterpreter() {
+        String script =
+                "function r(n) { if (n == 0) return 0; var x = r(n - 1); return x + 1; }\n"
+                        + "r(60000)";
+        for (int threshold : new int[] {0, 1, 1000}) {
+            ContextFactory contextFactory = new ContextFactory();
+            contextFactory.setTierUpThreshold(threshold);
+            assertEquals("60000", Utils.eval(contextFactory, 0, script));
+        }
+    }
+
+    @Test
+    public void stackOverflowInCompiledCodeCanBeCaught() throws Exception {
+        String script =
+                "function r(n) { if (n == 0) return 0; var x = r(n - 1); return x + 1; }\n"
+                        + "try { r(60000); } catch (e) { 'caught' }";
+        ContextFactory contextFactory = new ContextFactory();
+        contextFactory.setTierUpThreshold(0);
+        String[] result = new String[1];
+        // Too little stack for the compiled calls the interpreter allows before it takes over
+        Thread thread =
+                new Thread(
+                        null,
+                        () -> {
+                            // Load the classes involved while there is stack to spare
+                            Utils.eval(contextFactory, 0, script.replace("60000", "10"));
+                            result[0] = Utils.eval(contextFactory, 0, script);
+                        },
+                        "small stack",
+                        160 * 1024);
+        thread.start();
+        thread.join();
+        assertEquals("caught", result[0]);
+    }
+
+    @Test
+    public void hotFunctionIsCompiled() {
+        String script =
+                "function f(x) { if (x < 0) throw new Error('negative'); return x * 2; }\n"
+                        + "var s = 0; for (var i = 0; i < 100; i++) s += f(i);\n"
+                        + "f(-1);";
+        ContextFactory contextFactory =
+                new ContextFactory() {
+                    @Override
+                    protected void compileInBackground(Runnable task) {
+                        task.run();
+                    }
+                };
+        contextFactory.setTierUpThreshold(10);
+        try (Context cx = contextFactory.enterContext()) {
+            cx.setOptimizationLevel(0);
+            ScriptableObject scope = cx.initStandardObjects();
+            try {
+                cx.evaluateString(scope, script, "test.js", 1, null);
+            } catch (RhinoException e) {
+                assertEquals(9900.0, scope.get("s", scope));
+                for (StackTraceElement element : e.getStackTrace()) {
+                    if (element.getMethodName().startsWith("_c_f_")) {
+                        return;
+                    }
+                }
+                throw new AssertionError("f was not compiled");
+            }
+        }
+        throw new AssertionError("exception expected");
+    }
+
+    @Test
+    public void compileFailuresAreReported() {
+        ContextFactory contextFactory =
+                new ContextFactory() {
+                    @Override
+                    protected void compileInBackground(Runnable task) {
+                        task.run();
+                    }
+
+                    @Override
+                    protected GeneratedClassLoader createClassLoader(ClassLoader parent) {
+                        return new GeneratedClassLoader() {
+                            @Override
+                            public Class<?> defineClass(String name, byte[] data) {
+                                throw new ClassFormatError("rejected " + name);
+                            }
+
+                            @Override
+                            public void linkClass(Class<?> cl) {}
+                        };
+                    }
+                };
+        contextFactory.setTierUpThreshold(10);
+        List<String> warnings = new ArrayList<>();
+        try (Context cx = contextFactory.enterContext()) {
+            cx.setOptimizationLevel(0);
+            cx.setErrorReporter(
+                    new ErrorReporter() {
+                        @Override
+                        public void warning(
+                                String message,
+                                String sourceName,
+                                int line,
+                                String lineSource,
+                                int lineOffset) {
+                            warnings.add(sourceName + ": " + message);
+                        }
+
+                        @Override
+                        public void error(
+                                String message,
+                                String sourceName,
+                                int line,
+                                String lineSource,
+                                int lineOffset) {
+                            DefaultErrorReporter.instance.error(
+                                    message, sourceName, line, lineSource, lineOffset);
+                        }
+
+                        @Override
+                        public EvaluatorException runtimeError(
+                                String message,
+                                String sourceName,
+                                int line,
+                                String lineSource,
+                                int lineOffset) {
+                            return DefaultErrorReporter.instance.runtimeError(
+                                    message, sourceName, line, lineSource, lineOffset);
+                        }
+                    });
+            Object result =
+                    cx.evaluateString(
+                            cx.initStandardObjects(),
+                            "function f(x) { return x + 2; }\n"
+                                    + "var s = 0; for (var i = 0; i < 100; i++) s = f(s); s",
+                            "test.js",
+                            1,
+                            null);
+            assertEquals("200", Context.toString(result));
+        }
+        String expected =
+                "test.js: Could not compile f, it stays interpreted:"
+                        + " java.lang.ClassFormatError: rejected ";
+        assertTrue(warnings.toString(), warnings.stream().anyMatch(w -> w.startsWith(expected)));
+    }
+
+    @Test
+    public void hotBodyIsHandedOverOnce() throws Exception {
+        AtomicInteger tasks = new AtomicInteger();
+        ContextFactory contextFactory =
+                new ContextFactory() {
+                    @Override
+                    protected void compileInBackground(Runnable task) {
+                        tasks.incrementAndGet();
+                        task.run();
+                    }
+                };
+        contextFactory.setTierUpThreshold(50);
+        Script script;
+        try (Context cx = contextFactory.enterContext()) {
+            cx.setOptimizationLevel(0);
+            script =
+                    cx.compileString(
+                            "function f(x) { return x + 1; }\n"
+                                    + "function g(n) { var s = 0; for (var i = 0; i < n; i++)"
+                                    + " s = f(s); return s; }\n"
+                                    + "g(2000)",
+                            "test.js",
+                            1,
+                            null);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(
+                        executor.submit(
+                                () -> {
+                                    try (Context cx = contextFactory.enterContext()) {
+                                        return script.exec(cx, cx.initStandardObjects());
+                                    }
+                                }));
+            }
+            for (Future<Object> result : results) {
+                assertEquals(2000, ((Number) result.get()).intValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // f and g
+        assertEquals(2, tasks.get());
+    }
+
+    private static String evaluate(String script, int optimizationLevel) {
+        ContextFactory contextFactory = new ContextFactory();
+        contextFactory.setTierUpThreshold(0);
+        return Utils.eval(contextFactory, optimizationLevel, script);
+    }
+}
@@ -0,0 +1,95 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+import org.redukti.cer.runtime.Script;
+import org.redukti.cer.runtime.ScriptableObject;
+
+public class ConcurrentObjectsTest {
+
+    private static final ContextFactory FACTORY =
+            new ContextFactory() {
+                @Override
+                protected boolean hasFeature(Context cx, int featureIndex) {
+                    if (featureIndex == Context.FEATURE_CONCURRENT_OBJECTS) {
+                        return true;
+                    }
+                    return super.hasFeature(cx, featureIndex);
+                }
+            };
+
+    @Test
+    public void propertiesKeepDefinitionOrder() {
+        try (Context cx = FACTORY.enterContext()) {
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            ScriptableObject scope = cx.initStandardObjects();
+            Object result =
+                    cx.evaluateString(
+                            scope,
+                            "var o = {a: 1, b: 2, c: 3}; delete o.b; o.d = 4; o.b = 5;"
+                                    + " Object.keys(o).join() + ':' + o.a + o.b + o.c + o.d",
+                            "test.js",
+                            1,
+                            null);
+            assertEquals("a,c,d,b:1534", Context.toString(result));
+        }
+    }
+
+    @Test
+    public void sharedScopeReadWhileWritten() throws Exception {
+        final ScriptableObject shared;
+        try (Context cx = FACTORY.enterContext()) {
+            shared = cx.initStandardObjects();
+            cx.evaluateString(shared, "var base = 21; var added = {};", "setup.js", 1, null);
+        }
+        final int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(
+                        executor.submit(
+                                run(
+                                        shared,
+                                        "var s = 0; for (var i = 0; i < 20000; i++) s += base * 2;"
+                                                + " s")));
+            }
+            Future<Object> writer =
+                    executor.submit(
+                            run(
+                                    shared,
+                                    "for (var i = 0; i < 2000; i++) added['p' + i] = i;"
+                                            + " Object.keys(added).length"));
+            for (Future<Object> result : results) {
+                assertEquals("840000", Context.toString(result.get()));
+            }
+            assertEquals("2000", Context.toString(writer.get()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Callable<Object> run(final ScriptableObject shared, final String source) {
+        return new Callable<Object>() {
+            @Override
+            public Object call() {
+                try (Context cx = FACTORY.enterContext()) {
+                    ScriptableObject scope = (ScriptableObject) cx.newObject(shared);
+                    scope.setPrototype(shared);
+                    scope.setParentScope(null);
+                    Script script = cx.compileString(source, "test.js", 1, null);
+                    return script.exec(cx, scope);
+                }
+            }
+        };
+    }
+}
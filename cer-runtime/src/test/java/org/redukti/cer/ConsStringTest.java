@@ -0,0 +1,140 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+import static org.redukti.cer.Utils.check;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.redukti.cer.runtime.ConsString;
+
+public class ConsStringTest {
+
+    /** A rope of the pieces in an order that appends to both ends, and the same string flat. */
+    private static CharSequence[] build(int n) {
+        CharSequence rope = "";
+        StringBuilder tail = new StringBuilder();
+        StringBuilder head = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            String piece = i % 7 == 0 ? "piece " + i + " of a longer run of text; " : "" + i;
+            if (i % 5 == 0) {
+                rope = new ConsString(piece, rope);
+                head.insert(0, piece);
+            } else {
+                rope = new ConsString(rope, piece);
+                tail.append(piece);
+            }
+        }
+        return new CharSequence[] {rope, head.append(tail).toString()};
+    }
+
+    /** A rope of n pieces that is no deeper than needed, and the same string flat. */
+    private static CharSequence[] buildBalanced(int from, int to) {
+        if (to - from == 1) {
+            String piece = "piece " + from + " of a longer run of text; ";
+            return new CharSequence[] {piece, piece};
+        }
+        CharSequence[] l = buildBalanced(from, (from + to) / 2);
+        CharSequence[] r = buildBalanced((from + to) / 2, to);
+        return new CharSequence[] {new ConsString(l[0], r[0]), l[1] + (String) r[1]};
+    }
+
+    @Test
+    public void readsDeepRopes() {
+        checkReads(build(20000));
+    }
+
+    @Test
+    public void readsBalancedRopes() {
+        checkReads(buildBalanced(0, 5000));
+    }
+
+    private static void checkReads(CharSequence[] built) {
+        CharSequence rope = built[0];
+        String flat = (String) built[1];
+        assertEquals(flat.length(), rope.length());
+        for (int i = 0; i < flat.length(); i += 13) {
+            assertEquals(flat.charAt(i), rope.charAt(i));
+        }
+        for (int i = 0; i < 200; i++) {
+            int start = (i * 7919) % flat.length();
+            int end = Math.min(flat.length(), start + (i * 104729) % 5000);
+            CharSequence sub = rope.subSequence(start, end);
+            assertEquals(flat.substring(start, end), sub.toString());
+            CharSequence joined = new ConsString(sub, rope.subSequence(0, start));
+            assertEquals(flat.substring(start, end) + flat.substring(0, start), joined.toString());
+        }
+        assertEquals(flat, rope.toString());
+        assertEquals(flat.charAt(flat.length() / 2), rope.charAt(flat.length() / 2));
+        assertEquals(flat.substring(10, 5000), rope.subSequence(10, 5000).toString());
+    }
+
+    @Test
+    public void concurrentFlatten() throws Exception {
+        CharSequence[] built = build(20000);
+        CharSequence rope = built[0];
+        String flat = (String) built[1];
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                int offset = i;
+                results.add(
+                        executor.submit(
+                                (Callable<String>)
+                                        () -> {
+                                            StringBuilder sb = new StringBuilder();
+                                            for (int j = offset; j < rope.length(); j += 997) {
+                                                sb.append(rope.charAt(j));
+                                            }
+                                            return rope.subSequence(offset, offset + 3000)
+                                                    + rope.toString()
+                                                    + sb;
+                                        }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                StringBuilder sb = new StringBuilder();
+                for (int j = i; j < flat.length(); j += 997) {
+                    sb.append(flat.charAt(j));
+                }
+                assertEquals(flat.substring(i, i + 3000) + flat + sb, results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void longAppendChains() {
+        CharSequence s = "";
+        for (int i = 0; i < 1000000; i++) {
+            s = new ConsString(s, i % 1000 == 0 ? "\n" : "x");
+        }
+        CharSequence p = "";
+        for (int i = 0; i < 1000000; i++) {
+            p = new ConsString("y", p);
+        }
+        assertEquals('\n', s.charAt(1000));
+        assertEquals("yyy", p.subSequence(500000, 500003).toString());
+        assertEquals(2000000, new ConsString(s, p).toString().length());
+    }
+
+    @Test
+    public void stringMethodsOnRopes() {
+        check(
+                "63890,li>4999</li>,>1239</li><li>1240</,true,10,true,true",
+                "var s = '';\n"
+                        + "for (var i = 0; i < 5000; i++) { s += '<li>' + i + '</li>'; }\n"
+                        + "var big = s.concat('\"', '\\n', 1);\n"
+                        + "var json = JSON.stringify(big);\n"
+                        + "[s.length, s.slice(-12), s.substr(15000, 20),"
+                        + " JSON.parse(json) == s + '\"\\n1',"
+                        + " s.charAt(s.length - 1) == '>' ? 10 : 0,"
+                        + " s.substring(100, 20000) == String(s).substring(100, 20000),"
+                        + " json.length == s.length + 7].join()");
+    }
+}
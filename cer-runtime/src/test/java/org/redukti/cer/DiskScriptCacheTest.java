@@ -0,0 +1,122 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.redukti.cer.exception.RhinoException;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+import org.redukti.cer.runtime.DiskScriptCache;
+import org.redukti.cer.runtime.Script;
+
+public class DiskScriptCacheTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String SOURCE =
+            "function Point(x, y) { this.x = x; this.y = y; }\n"
+                    + "function tag(s, v) { return s.raw[0] + v + s[1]; }\n"
+                    + "var p = new Point(1, 2), o = { a: p.x, 'b c': p.y, 3: 'three' };\n"
+                    + "var m = /(\\d+)-\\u00e9/i.exec('x42-\\u00c9');\n"
+                    + "[o.a, o['b c'], o[3], m[1], tag`a\\n${'\\u4e2d'}b`,\n"
+                    + " (12345678901234567890n * 2n).toString(), [1.5, 2.25].join('|'),\n"
+                    + " (function() { var n = 0; return function() { return ++n; }; })()()]"
+                    + ".join()";
+
+    private static final String EXPECTED =
+            "1,2,three,42,a\\n\u4e2db,24691357802469135780,1.5|2.25,1";
+
+    @Test
+    public void compiledScriptsSurviveRestart() throws IOException {
+        File dir = folder.newFolder("cache");
+        DiskScriptCache first = new DiskScriptCache(dir.toPath());
+        assertEquals(EXPECTED, run(first));
+        assertEquals(0, first.getHitCount());
+        assertEquals(1, first.getMissCount());
+        assertEquals(1, dir.list().length);
+
+        DiskScriptCache second = new DiskScriptCache(dir.toPath());
+        assertEquals(EXPECTED, run(second));
+        assertEquals(EXPECTED, run(second));
+        assertEquals(2, second.getHitCount());
+        assertEquals(0, second.getMissCount());
+
+        File file = dir.listFiles()[0];
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 7));
+        // Still loaded in memory
+        assertEquals(EXPECTED, run(second));
+        assertEquals(3, second.getHitCount());
+
+        DiskScriptCache third = new DiskScriptCache(dir.toPath());
+        assertEquals(EXPECTED, run(third));
+        assertEquals(1, third.getMissCount());
+        assertEquals(1, third.getEvictionCount());
+        assertEquals(1, dir.list().length);
+
+        for (int i = 0; i < bytes.length; i += 97) {
+            byte[] damaged = bytes.clone();
+            damaged[i] ^= 0x5a;
+            Files.write(file.toPath(), damaged);
+            assertEquals(EXPECTED, run(new DiskScriptCache(dir.toPath())));
+        }
+    }
+
+    @Test
+    public void loadedScriptsAreCompiled() throws IOException {
+        File dir = folder.newFolder("cache");
+        String source =
+                "function f(x) { if (x < 0) throw new Error('negative'); return x * 2; }\n"
+                        + "for (var i = 0; i < 100; i++) f(i);\n"
+                        + "f(-1);";
+        assertFalse(runsCompiled(new DiskScriptCache(dir.toPath()), source, -1));
+        assertTrue(runsCompiled(new DiskScriptCache(dir.toPath()), source, 0));
+        DiskScriptCache cache = new DiskScriptCache(dir.toPath());
+        assertTrue(runsCompiled(cache, source, 0));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    /** Whether f shows in the stack trace as the code generated for it. */
+    private static boolean runsCompiled(DiskScriptCache cache, String source, int level) {
+        ContextFactory contextFactory =
+                new ContextFactory() {
+                    @Override
+                    protected void compileInBackground(Runnable task) {
+                        task.run();
+                    }
+                };
+        contextFactory.setTierUpThreshold(10);
+        contextFactory.setScriptCache(cache);
+        try (Context cx = contextFactory.enterContext()) {
+            cx.setOptimizationLevel(level);
+            Script script = cx.compileString(source, "test.js", 1, null);
+            script.exec(cx, cx.initStandardObjects());
+        } catch (RhinoException e) {
+            for (StackTraceElement element : e.getStackTrace()) {
+                if (element.getMethodName().startsWith("_c_f_")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        throw new AssertionError("exception expected");
+    }
+
+    private static String run(DiskScriptCache cache) {
+        ContextFactory contextFactory = new ContextFactory();
+        contextFactory.setScriptCache(cache);
+        try (Context cx = contextFactory.enterContext()) {
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            Script script = cx.compileString(SOURCE, "test.js", 1, null);
+            return Context.toString(script.exec(cx, cx.initStandardObjects()));
+        }
+    }
+}
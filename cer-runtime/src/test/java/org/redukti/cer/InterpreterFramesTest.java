@@ -0,0 +1,92 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+import static org.redukti.cer.Utils.eval;
+
+import org.junit.Test;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+import org.redukti.cer.runtime.ScriptableObject;
+
+public class InterpreterFramesTest {
+
+    @Test
+    public void reusedFramesStartClean() {
+        assertEquals(
+                "6765,undefined,undefined,caught 7,9",
+                eval(
+                        -1,
+                        "function fib(n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }\n"
+                                + "function locals(set) { var a, b; if (set) { a = 1; b = 2; }"
+                                + " return a; }\n"
+                                + "function thrower(n) { var x = n; if (n == 0) throw 'caught';"
+                                + " return thrower(n - 1) + x; }\n"
+                                + "function catcher() { try { thrower(7); } catch (e) {"
+                                + " return e + ' 7'; } }\n"
+                                + "locals(true);\n"
+                                + "[fib(20), String(locals(false)),"
+                                + " String((function(a) { return a; })()),"
+                                + " catcher(), [1, 2, 3].map(function(v) { return v * v; })"
+                                + ".reduce(function(a, b) { return a + b; }, 0) - 5].join()"));
+    }
+
+    @Test
+    public void escapingFramesKeepTheirState() {
+        assertEquals(
+                "0,1,2|3,4|5,6",
+                eval(
+                        -1,
+                        "function* count(n) { var i = 0; while (i < n) {"
+                                + " var r = [1, 2, 3].map(function(v) { return v; });"
+                                + " yield i++; } }\n"
+                                + "function make(x) { var y = x + 1; return function() {"
+                                + " return [x, y].join(); }; }\n"
+                                + "var out = [];\n"
+                                + "for (var v of count(3)) { out.push(v); }\n"
+                                + "var f = make(3), g = make(5);\n"
+                                + "out.join() + '|' + f() + '|' + g()"));
+    }
+
+    @Test
+    public void tailCallsRunInConstantSpace() {
+        tailCalls(-1, -1);
+    }
+
+    @Test
+    public void compiledTailCallsRunInConstantSpace() {
+        // Compiled bodies call on the Java stack, up to a bound past which the interpreter runs
+        // the tail calls in the calling frame
+        tailCalls(0, 0);
+        tailCalls(0, 1);
+        tailCalls(0, 1000);
+    }
+
+    private static void tailCalls(int optimizationLevel, int tierUpThreshold) {
+        ContextFactory contextFactory = new ContextFactory();
+        contextFactory.setTierUpThreshold(tierUpThreshold);
+        try (Context cx = contextFactory.enterContext()) {
+            cx.setOptimizationLevel(-1);
+            cx.setGeneratingDebug(false);
+            cx.setMaximumInterpreterStackDepth(50);
+            cx.setOptimizationLevel(optimizationLevel);
+            ScriptableObject scope = cx.initStandardObjects();
+            Object result =
+                    cx.evaluateString(
+                            scope,
+                            "function sum(n, acc) { if (n == 0) return acc;"
+                                    + " return sum(n - 1, acc + n); }\n"
+                                    + "function even(n) { var big = [n, n, n]; if (n == 0) return"
+                                    + " 'even'; return odd(n - 1, big); }\n"
+                                    + "function odd(n) { if (n == 0) return 'odd';"
+                                    + " return even(n - 1); }\n"
+                                    + "function last() { return arguments.length; }\n"
+                                    + "function toLast(n) { var x = n * 2;"
+                                    + " return last(x, x, x); }\n"
+                                    + "[sum(100000, 0), even(10001), toLast(3)].join()",
+                            "test.js",
+                            1,
+                            null);
+            assertEquals("5000050000,odd,3", Context.toString(result));
+        }
+    }
+}
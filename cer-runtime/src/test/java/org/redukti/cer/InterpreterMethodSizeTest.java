@@ -0,0 +1,109 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+import org.redukti.cer.runtime.Interpreter;
+
+public class InterpreterMethodSizeTest {
+
+    /**
+     * HotSpot does not compile methods with more bytecode than this (-XX:HugeMethodLimit), so an
+     * interpretLoop that grows past it runs interpreted by the JVM as well.
+     */
+    private static final int HUGE_METHOD_LIMIT = 8000;
+
+    /** Room left for new cases before the limit is reached. */
+    private static final int MARGIN = 500;
+
+    @Test
+    public void interpretLoopIsCompilable() throws IOException {
+        int size = codeLength(Interpreter.class, "interpretLoop");
+        assertTrue(
+                "interpretLoop has " + size + " bytes of bytecode, move cases into helpers",
+                size > 0 && size <= HUGE_METHOD_LIMIT - MARGIN);
+    }
+
+    /** The length of the bytecode of the method called name in the class file of c. */
+    private static int codeLength(Class<?> c, String name) throws IOException {
+        String resource = "/" + c.getName().replace('.', '/') + ".class";
+        try (InputStream stream = c.getResourceAsStream(resource)) {
+            DataInputStream in = new DataInputStream(stream);
+            in.readInt(); // magic
+            in.readUnsignedShort(); // minor_version
+            in.readUnsignedShort(); // major_version
+            int count = in.readUnsignedShort();
+            String[] utf8 = new String[count];
+            for (int i = 1; i < count; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1: // Utf8
+                        utf8[i] = in.readUTF();
+                        break;
+                    case 7: // Class
+                    case 8: // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        in.skipBytes(2);
+                        break;
+                    case 15: // MethodHandle
+                        in.skipBytes(3);
+                        break;
+                    case 3: // Integer
+                    case 4: // Float
+                    case 9: // Fieldref
+                    case 10: // Methodref
+                    case 11: // InterfaceMethodref
+                    case 12: // NameAndType
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        in.skipBytes(4);
+                        break;
+                    case 5: // Long
+                    case 6: // Double
+                        in.skipBytes(8);
+                        i++;
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+            in.skipBytes(6); // access_flags, this_class, super_class
+            in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+            int fields = in.readUnsignedShort();
+            for (int i = 0; i < fields; i++) {
+                in.skipBytes(6);
+                skipAttributes(in);
+            }
+            int methods = in.readUnsignedShort();
+            for (int i = 0; i < methods; i++) {
+                in.skipBytes(2);
+                String methodName = utf8[in.readUnsignedShort()];
+                in.skipBytes(2);
+                int attributes = in.readUnsignedShort();
+                for (int j = 0; j < attributes; j++) {
+                    String attributeName = utf8[in.readUnsignedShort()];
+                    int length = in.readInt();
+                    if (methodName.equals(name) && attributeName.equals("Code")) {
+                        in.skipBytes(4); // max_stack, max_locals
+                        return in.readInt();
+                    }
+                    in.skipBytes(length);
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int attributes = in.readUnsignedShort();
+        for (int i = 0; i < attributes; i++) {
+            in.skipBytes(2);
+            in.skipBytes(in.readInt());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.redukti.cer.Utils.eval;
+
+import org.junit.Test;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+import org.redukti.cer.runtime.Function;
+import org.redukti.cer.runtime.ScriptableObject;
+
+public class LazyArgumentsTest {
+
+    @Test
+    public void argumentsWithoutActivation() {
+        String source =
+                "function sum() { var s = 0;"
+                        + " for (var i = 0; i < arguments.length; i++) s += arguments[i];"
+                        + " return s; }\n"
+                        + "function pass() { return sum.apply(this, arguments); }\n"
+                        + "function callee() { return arguments.callee === callee; }\n"
+                        + "function change() { arguments[0] = 5;"
+                        + " return arguments[0] + arguments.length; }\n"
+                        + "function slice() {"
+                        + " return Array.prototype.slice.call(arguments, 1).join('-'); }\n"
+                        + "function iter() { var out = [];"
+                        + " for (var v of arguments) out.push(v); return out.join(''); }\n"
+                        + "function outer(a, b, c) { return sum(a, b, c, 4); }\n"
+                        + "function mapped(a) { arguments[0] = 9; return a; }\n"
+                        + "function kind() { return typeof arguments; }\n"
+                        + "function twice() { return arguments === arguments; }\n"
+                        + "[sum(1, 2, 3), pass(4, 5, 6), callee(), change(1, 2),"
+                        + " slice('a', 'b', 'c'), iter('x', 'y'), outer(1, 2, 3), mapped(1),"
+                        + " kind(), twice()].join()";
+        String expected = "6,15,true,7,b-c,xy,10,9,object,true";
+        assertEquals(expected, eval(-1, source));
+        assertEquals(expected, eval(0, source));
+    }
+
+    @Test
+    public void strictArgumentsAreNotMapped() {
+        String source =
+                "'use strict';\n"
+                        + "function s(a) { arguments[0] = 9; return a + arguments[0]; }\n"
+                        + "s(1)";
+        assertEquals("10", eval(-1, source));
+    }
+
+    @Test
+    public void callerArrayIsNotChanged() {
+        ContextFactory contextFactory = new ContextFactory();
+        try (Context cx = contextFactory.enterContext()) {
+            cx.setOptimizationLevel(-1);
+            ScriptableObject scope = cx.initStandardObjects();
+            Function f =
+                    cx.compileFunction(
+                            scope,
+                            "function f() { arguments[0] = 'changed'; return arguments[0]; }",
+                            "test.js",
+                            1,
+                            null);
+            Object[] args = {"original"};
+            assertEquals("changed", f.call(cx, scope, scope, args));
+            assertArrayEquals(new Object[] {"original"}, args);
+        }
+    }
+}
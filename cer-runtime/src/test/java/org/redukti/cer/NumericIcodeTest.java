@@ -0,0 +1,36 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+import static org.redukti.cer.Utils.eval;
+
+import org.junit.Test;
+
+public class NumericIcodeTest {
+
+    private static final String SCRIPT =
+            "function loop(n) { var s = 0, p = 1; for (var i = 0; i < n; i++) {"
+                    + " s = s + i * 2 - i % 3; p = (p * 31) & 0xffff; }"
+                    + " return [s, p, i].join(); }\n"
+                    + "function mixed(a, b) { var x = 10, y = 2.5; return [x - a, x * b, x / a,"
+                    + " x % b, x < a, x <= b, x > a, x >= b, x | a, x << b, x >> b, x ^ a, x + a]"
+                    + ".join(); }\n"
+                    + "function ints(a) { var m = -1; return [m >>> 0, (m << 31) | 0, (a | 0),"
+                    + " a & 0xff, a >> 33, 1 / (-0 * m * -1)].join(); }\n"
+                    + "function objs(o) { var k = 3; return [k - o, k < o, k & o].join(); }\n"
+                    + "[loop(100), mixed('4', '2'), ints(Math.pow(2, 32) + 5.7),"
+                    + " objs({valueOf: function() { return 7; }})].join('|')";
+
+    private static final String EXPECTED =
+            "9801,19329,100|6,20,2.5,0,false,false,true,true,14,40,2,14,104"
+                    + "|4294967295,-2147483648,5,5,2,-Infinity|-4,true,3";
+
+    @Test
+    public void numericIcodesFallBackForOtherValues() {
+        assertEquals(EXPECTED, eval(-1, SCRIPT));
+    }
+
+    @Test
+    public void compiledNumericIcodesMatchInterpreter() {
+        assertEquals(EXPECTED, eval(0, SCRIPT));
+    }
+}
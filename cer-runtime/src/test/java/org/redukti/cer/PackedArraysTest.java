@@ -0,0 +1,73 @@
+package org.redukti.cer;
+
+import static org.redukti.cer.Utils.check;
+
+import org.junit.Test;
+
+public class PackedArraysTest {
+
+    @Test
+    public void elementKinds() {
+        check(
+                "570,9,1,true,-1,036912151821242730333639424548515457,0.5,-Infinity,0,true,21,"
+                        + "object,4,5,6",
+                "var out = [];\n"
+                        + "var a = []; for (var i = 0; i < 20; i++) a[i] = i * 3;\n"
+                        + "var s = 0; for (var i = 0; i < a.length; i++) s += a[i];\n"
+                        + "out.push(s, a.indexOf(27), a.lastIndexOf(3), a.includes(57),"
+                        + " a.indexOf('3'), a.join(''));\n"
+                        + "a[3] = 0.5; a.push(-0);"
+                        + " out.push(a[3], 1 / a[20], a.indexOf(0), a.includes(0.5), a.length);\n"
+                        + "var o = [1, 2]; o[1] = {}; o[0] = 3; out.push(typeof o[1], o[0] + 1);\n"
+                        + "var e = []; Object.defineProperty(e, 0,"
+                        + " {value: 5, writable: true, enumerable: true, configurable: true});"
+                        + " e[1] = 6; out.push(e.join());\n"
+                        + "out.join()");
+    }
+
+    @Test
+    public void holes() {
+        check(
+                "1--NaN--,-1,true,true,false,true,1--NaN--x,4,024,1,true,1,,4,-1,"
+                        + "1,2,3,3,1,5,3,3",
+                "var out = [];\n"
+                        + "var h = new Array(5); h[0] = 1; h[2] = NaN;\n"
+                        + "out.push(h.join('-'), h.indexOf(NaN), h.includes(NaN),"
+                        + " h.includes(undefined), 1 in h, 2 in h);\n"
+                        + "h[4] = 'x'; out.push(h.join('-'), h.indexOf('x'),"
+                        + " Object.keys(h).join(''));\n"
+                        + "var g = [1, , 3]; Array.prototype[1] = 2;"
+                        + " out.push(g.indexOf(2), g.includes(2)); delete Array.prototype[1];\n"
+                        + "var t = [1, 2, 3]; t.length = 1; t[2] = 4;"
+                        + " out.push(t.join(), t.indexOf(undefined));\n"
+                        + "var f = [1, 2, 3]; Object.freeze(f); f[0] = 9; f[3] = 4;"
+                        + " out.push(f.join(), f.length);\n"
+                        + "var x = [1, 2, 3]; Object.preventExtensions(x); x[1] = 5; x[3] = 4;"
+                        + " out.push(x.join(), x.length);\n"
+                        + "out.join()");
+    }
+
+    @Test
+    public void arrayMethods() {
+        check(
+                "-3 1 10 100 25 9,-3 1 9 10 25 100,1.5 10 2.5 NaN,3,2,1,1,0,,0,34512,6,"
+                        + "3 4 5 1 2 6.5,178945,23,945,3,1 2 3 4 0.5 a 5,11235,3.5 2 1",
+                "var out = [];\n"
+                        + "var n = [10, 9, 1, 100, 25, -3]; n.sort(); out.push(n.join(' '));\n"
+                        + "n.sort(function(x, y) { return x - y; }); out.push(n.join(' '));\n"
+                        + "var d = [2.5, 1.5, NaN, 10]; d.sort(); out.push(d.join(' '));\n"
+                        + "var p = [1, 2, 3]; out.push(p.pop(), p.pop(), p.length, p.shift(),"
+                        + " p.length, p.pop(), p.length);\n"
+                        + "var u = [1, 2]; u.unshift(3, 4, 5);"
+                        + " out.push(u.join(''), u.push(6.5), u.join(' '));\n"
+                        + "var sp = [1, 2, 3, 4, 5]; var r = sp.splice(1, 2, 7, 8, 9);"
+                        + " out.push(sp.join(''), r.join(''));\n"
+                        + "sp.splice(0, 3); out.push(sp.join(''), sp.length);\n"
+                        + "var c = [1, 2].concat([3, 4], [0.5], ['a'], [5]);"
+                        + " out.push(c.join(' '));\n"
+                        + "var cw = [1, 2, 3, 4, 5]; cw.copyWithin(1, 0, 3);"
+                        + " out.push(cw.join(''));\n"
+                        + "var rv = [1, 2, 3.5]; rv.reverse(); out.push(rv.join(' '));\n"
+                        + "out.join()");
+    }
+}
@@ -0,0 +1,84 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+import static org.redukti.cer.Utils.eval;
+
+import org.junit.Test;
+
+public class PropertyCacheTest {
+
+    @Test
+    public void cachedLookupsSeeShapeChanges() {
+        String script =
+                "function get(o) { return o.x; }\n"
+                        + "function P() {} P.prototype.x = 'proto';\n"
+                        + "var o = new P(); var r = [];\n"
+                        + "for (var i = 0; i < 3; i++) r.push(get(o));\n"
+                        + "o.x = 'own'; r.push(get(o));\n"
+                        + "delete o.x; r.push(get(o));\n"
+                        + "P.prototype.x = 'changed'; r.push(get(o));\n"
+                        + "Object.setPrototypeOf(o, {x: 'other'}); r.push(get(o));\n"
+                        + "r.join()";
+        assertEquals("proto,proto,proto,own,proto,changed,other", eval(-1, script));
+    }
+
+    @Test
+    public void cachedStoresRespectAttributes() {
+        String script =
+                "function set(o, v) { o.y = v; return o.y; }\n"
+                        + "var o = {y: 0}; var r = [set(o, 1), set(o, 2)];\n"
+                        + "Object.defineProperty(o, 'y', {writable: false}); r.push(set(o, 3));\n"
+                        + "var log = 0;"
+                        + " var a = { set y(v) { log = v; }, get y() { return -1; } };\n"
+                        + "r.push(set(a, 4)); r.push(log);\n"
+                        + "r.join()";
+        assertEquals("1,2,2,-1,4", eval(-1, script));
+    }
+
+    @Test
+    public void cachedMethodCalls() {
+        String script =
+                "var o = { f: function() { return this.v; }, v: 1 };\n"
+                        + "var s = 0; for (var i = 0; i < 10; i++) s += o.f();\n"
+                        + "o.f = function() { return 100; }; s += o.f();\n"
+                        + "s";
+        assertEquals("110", eval(-1, script));
+    }
+
+    @Test
+    public void objectsSharingShape() {
+        String script =
+                "function get(o) { return o.b; }\n"
+                        + "function make(a, b) { var o = {}; o.a = a; o.b = b; return o; }\n"
+                        + "var r = [];\n"
+                        + "for (var i = 0; i < 3; i++) r.push(get(make(i, i * 10)));\n"
+                        + "var p = {}; p.b = 'b'; p.a = 'a'; r.push(get(p));\n"
+                        + "var q = make(1, 2);\n"
+                        + "Object.defineProperty(q, 'b',"
+                        + " { get: function() { return 'getter'; } });\n"
+                        + "r.push(get(q)); r.push(get(make(5, 6)));\n"
+                        + "delete q.a; r.push(get(q)); r.push(Object.keys(q).join('|'));\n"
+                        + "var big = make(0, 'big');\n"
+                        + "for (var k = 0; k < 100; k++) big['p' + k] = k;\n"
+                        + "r.push(get(big)); r.push(Object.keys(big).length);\n"
+                        + "r.push(Object.keys(big)[2]); r.push(big.p99);\n"
+                        + "r.join()";
+        assertEquals("0,10,20,b,getter,6,getter,b,big,102,p0,99", eval(-1, script));
+    }
+
+    @Test
+    public void cachedNameLookups() {
+        String script =
+                "this.h = 1; function get() { return h; }\n"
+                        + "function k() { return 'k1'; } function callK() { return k(); }\n"
+                        + "var r = [get(), get()]; h = 2; r.push(get());\n"
+                        + "var other = {h: 0}; delete other.h; r.push(get());\n"
+                        + "delete this.h; this.h = 'again'; r.push(get());\n"
+                        + "Object.defineProperty(this, 'h',"
+                        + " { get: function() { return 'getter'; } });\n"
+                        + "r.push(get()); r.push(callK());\n"
+                        + "k = function() { return 'k2'; }; r.push(callK());\n"
+                        + "r.join()";
+        assertEquals("1,1,2,2,again,getter,k1,k2", eval(-1, script));
+    }
+}
@@ -0,0 +1,46 @@
+package org.redukti.cer;
+
+import static org.redukti.cer.Utils.check;
+
+import org.junit.Test;
+
+public class RegExpBacktrackingTest {
+
+    @Test
+    public void capturesAfterBacktracking() {
+        check(
+                "0:abcd,a,bcd, 0:zaacbbbcac,z,ac,a,-,c 0:, 0:baaabaac,ba,-,abaac 3:aba,a"
+                        + " 0:the the,the 0:aaaa,aaa,a 0:abcde,e,- 3:ac,a 0:abba,a,a,- 1:bcdb,b"
+                        + " 0:aab,a",
+                "var pats = [\n"
+                        + "  [/(a|ab)(c|bcd)(d*)/, 'abcd'],"
+                        + " [/(z)((a+)?(b+)?(c))*/, 'zaacbbbcac'],\n"
+                        + "  [/(a*)+/, 'b'], [/(.*?)a(?!(a+)b\\2c)\\2(.*)/, 'baaabaac'],\n"
+                        + "  [/(?=(a+))a*b\\1/, 'baaabac'],"
+                        + " [/\\b(\\w+)\\s+\\1\\b/, 'the the cat'],\n"
+                        + "  [/(a{2,})?(a)/, 'aaaa'], [/(?:(\\w)(\\w)?)+/, 'abcde'],\n"
+                        + "  [/(a(?=b)|a)+c/, 'aabac'], [/((a)|(b))*/, 'abba'],\n"
+                        + "  [/(.)(?:(?!\\1).)*\\1/, 'abcdbx'], [/(a?)*?b/, 'aab'],\n"
+                        + "];\n"
+                        + "var out = [];\n"
+                        + "for (var i = 0; i < pats.length; i++) {\n"
+                        + "  var m = pats[i][0].exec(pats[i][1]);\n"
+                        + "  out.push(m.index + ':'"
+                        + " + m.map(function(x) { return x === undefined ? '-' : x; })"
+                        + ".join(','));\n"
+                        + "}\n"
+                        + "out.join(' ')");
+    }
+
+    @Test
+    public void longInputs() {
+        // The backtrack stack of the second match grows with the input, and the state of each
+        // match is reused by the next one
+        check(
+                "6890,true,461,true",
+                "var big = ''; for (var k = 0; k < 2000; k++) big += 'word' + k + ' ';\n"
+                        + "[big.replace(/(\\w+?)(\\d+) /g, '$2').length,"
+                        + " /^(\\w+\\s?)*$/.test(big), big.match(/(\\d)\\1/g).length,"
+                        + " /(b)(c)?/.test('abc')].join()");
+    }
+}
@@ -0,0 +1,62 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+import static org.redukti.cer.Utils.eval;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class RegExpCacheTest {
+
+    private static final String SCRIPT =
+            "var out = [];\n"
+                    + "var a = new RegExp('a+', 'g'), b = new RegExp('a+', 'g');\n"
+                    + "a.exec('xaay'); out.push(a.lastIndex, b.lastIndex, a === b,"
+                    + " a.source == b.source);\n"
+                    + "out.push(new RegExp('a+').global, new RegExp('a+', 'i').test('AA'),"
+                    + " new RegExp('a+').test('AA'));\n"
+                    + "var line = 'k1=v1;k2=v2'; var n = 0;\n"
+                    + "for (var i = 0; i < 50; i++)"
+                    + " n += line.replace(/(\\w+)=(\\w+)/g, '$2:$1').length"
+                    + " + line.split(';').length;\n"
+                    + "out.push(n, 'a.b.c'.split('.').join('|'), 'x.y'.replace('.', '-'),"
+                    + " 'x+y'.match('\\\\+').index);\n"
+                    + "var r1 = /[a-c]+/g, r2 = /[a-c]+/g; r1.test('zzabc');"
+                    + " out.push(r1.lastIndex, r2.lastIndex);\n"
+                    + "out.push(String(new RegExp('[x-z]', 'gi')),"
+                    + " new RegExp('[x-z]', 'ig').flags);\n"
+                    + "out.join()";
+
+    private static final String EXPECTED =
+            "3,0,false,true,false,true,false,650,a|b|c,x-y,1,5,0,/[x-z]/gi,gi";
+
+    @Test
+    public void sharedProgramsKeepSeparateState() {
+        assertEquals(EXPECTED, eval(-1, SCRIPT));
+        assertEquals(EXPECTED, eval(0, SCRIPT));
+    }
+
+    @Test
+    public void concurrentUse() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                int optimizationLevel = i % 2 == 0 ? -1 : 0;
+                results.add(
+                        executor.submit(
+                                (Callable<String>) () -> eval(optimizationLevel, SCRIPT)));
+            }
+            for (Future<String> result : results) {
+                assertEquals(EXPECTED, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+import static org.redukti.cer.Utils.check;
+
+import org.junit.Test;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+import org.redukti.cer.runtime.Script;
+
+public class RegExpLinearTest {
+
+    private static ContextFactory factory(final boolean linear, final boolean linearOnly) {
+        return new ContextFactory() {
+            @Override
+            protected boolean hasFeature(Context cx, int featureIndex) {
+                if (featureIndex == Context.FEATURE_LINEAR_REGEXP) {
+                    return linear;
+                }
+                if (featureIndex == Context.FEATURE_LINEAR_REGEXP_ONLY) {
+                    return linearOnly;
+                }
+                return super.hasFeature(cx, featureIndex);
+            }
+        };
+    }
+
+    private static final String MATCHES =
+            "var pats = [\n"
+                    + "  [/(a|ab)(c|bcd)(d*)/, 'abcd'],"
+                    + " [/(z)((a+)?(b+)?(c))*/, 'zaacbbbcac'],\n"
+                    + "  [/(a{2,})?(a)/, 'aaaa'], [/(?:(\\w)(\\w)?)+/, 'abcde'],"
+                    + " [/((a)|(b))*/, 'abba'],\n"
+                    + "  [/(a|aa)*?b/, 'xaab'], [/^\\w+$/m, 'a b\\ncd\\n'],"
+                    + " [/\\bB.R\\b/i, 'foo bar'],\n"
+                    + "  [/[^ab]+$/, 'abcabd'], [/x*y{2}/, 'xxy yy'], [/(ab|a)(bc|c)?/, 'abc'],\n"
+                    + "  [/(a*)*b/, 'xaab'], [/(a*)+b/, 'b'], [/(a*)?x/, 'x'],"
+                    + " [/(a*?)*?b/, 'aab'],\n"
+                    + "  [/(|a)+b/, 'aab'], [/(a|b*)*c/, 'abbac'], [/((a*)(b?)){2,4}c/, 'aabc'],\n"
+                    + "  [/(a*){1,3}?$/, 'aa'], [/(?:(\\b)|a)*x/, 'aax'], [/(a?)*?y/, 'aay'],"
+                    + " [/((a?)+)*b/, 'b'],\n"
+                    + "];\n"
+                    + "var out = [];\n"
+                    + "for (var i = 0; i < pats.length; i++) {\n"
+                    + "  var m = pats[i][0].exec(pats[i][1]);\n"
+                    + "  out.push(m.index + ':'"
+                    + " + m.map(function(x) { return x === undefined ? '-' : x; })"
+                    + ".join(','));\n"
+                    + "}\n"
+                    + "var y = /a+/y; y.lastIndex = 1;\n"
+                    + "out.push(y.exec('baab')[0], y.lastIndex, y.exec('baab'),"
+                    + " 'a1b22c333'.replace(/\\d+/g, '#'));\n"
+                    + "out.join(' ')";
+
+    private static final String EXPECTED =
+            "0:abcd,a,bcd, 0:zaacbbbcac,z,ac,a,-,c 0:aaaa,aaa,a 0:abcde,e,- 0:abba,a,a,-"
+                    + " 1:aab,a 4:cd 4:bar 5:d 4:yy 0:abc,ab,c 1:aab,aa 0:b, 0:x,- 0:aab,a"
+                    + " 0:aab,a 0:abbac,a 0:aabc,,, 0:aa,aa 0:aax,- 0:aay,a 0:b,-,- aa 3  a#b#c#";
+
+    @Test
+    public void sameMatchesAsBacktracking() {
+        check(factory(false, false), EXPECTED, MATCHES);
+        check(factory(true, false), EXPECTED, MATCHES);
+        check(factory(true, true), EXPECTED, MATCHES);
+    }
+
+    @Test
+    public void exponentialPatterns() {
+        // Each of these takes longer than the test would run for when only backtracking
+        check(
+                factory(true, false),
+                "false,,false,true",
+                "var a = ''; for (var i = 0; i < 60; i++) a += 'a';\n"
+                        + "var x = a.replace(/a/g, 'x');\n"
+                        + "[/(a|aa)*b/.test(a), /(x+x+)+y/.exec(x), /^(\\w+\\s?)*$/.test(a + '!'),"
+                        + " /(a|aa)*/.exec(a)[0] == a].join()");
+    }
+
+    @Test(timeout = 10000)
+    public void emptyIterationsStayLinear() {
+        // Without the linear matcher each of these backtracks for longer than the timeout
+        check(
+                factory(false, true),
+                "false,false,false,true",
+                "var a = ''; for (var i = 0; i < 5000; i++) a += 'a';\n"
+                        + "[/(a*)*b/.test(a), /(a?|a)+b/.test(a), /^(a*)*$/.test(a + '!'),"
+                        + " /(?:a*)*$/.exec(a)[0] == a].join()");
+    }
+
+    @Test
+    public void onlyLinearRejectsBacktracking() {
+        check(
+                factory(false, true),
+                "SyntaxError,SyntaxError,SyntaxError,ok,true",
+                "var out = [];\n"
+                        + "['(a)\\\\1', 'a(?=b)', 'a(?!b)', '(a*)*b'].forEach(function(p) {\n"
+                        + "  try { new RegExp(p); out.push('ok'); }"
+                        + " catch (e) { out.push(e.name); }\n"
+                        + "});\n"
+                        + "out.push(/(a*){2}b/.test('aab'));\n"
+                        + "out.join()");
+    }
+
+    @Test
+    public void onlyLinearChecksPatternsCompiledWithoutIt() {
+        Script script;
+        try (Context cx = factory(true, false).enterContext()) {
+            script =
+                    cx.compileString(
+                            "var r = /^(a|a)*\\1b$/;\n"
+                                    + "try { r.test('aaaaaaaaaaaaaaaaaaaaaaaaaa'); }"
+                                    + " catch (e) { e.name }",
+                            "test.js",
+                            1,
+                            null);
+        }
+        try (Context cx = factory(false, true).enterContext()) {
+            Object result = script.exec(cx, cx.initStandardObjects());
+            assertEquals("SyntaxError", Context.toString(result));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.redukti.cer;
+
+import static org.redukti.cer.Utils.check;
+
+import org.junit.Test;
+
+public class RegExpPrefilterTest {
+
+    @Test
+    public void literalsAndStartChars() {
+        check(
+                "6:foobar 4:xbarz -1 2:ab 1:B1 3:\u0101q 0: 3:c -1 4:ab 2:FOO 2:b",
+                "var pats = [\n"
+                        + "  [/foo(bar|baz)/, 'fo foofoobar'], [/\\w+barz/, 'foo xbarz'],\n"
+                        + "  [/a+needle/, 'aaaneedl'], [/[ab]+c?/, 'xyab'],"
+                        + " [/(?:[A-Z]|\\d)\\d/, 'aB1'],\n"
+                        + "  [/[^a-z]q/, 'aqq\\u0101q'], [/x*/, 'abc'], [/\\bc/, 'ab c'],\n"
+                        + "  [/(?=b)a/, 'ab'], [/(?:x|y)?ab/, 'zzzzab'], [/foo/i, 'xxFOO'],"
+                        + " [/(a)?\\1b/, 'xab'],\n"
+                        + "];\n"
+                        + "var out = [];\n"
+                        + "for (var i = 0; i < pats.length; i++) {\n"
+                        + "  var m = pats[i][0].exec(pats[i][1]);\n"
+                        + "  out.push(m ? m.index + ':' + m[0] : -1);\n"
+                        + "}\n"
+                        + "out.join(' ')");
+    }
+
+    @Test
+    public void globalStickyAndMultiline() {
+        check(
+                "a1|b22|c333,0,2,4,2:x,",
+                "var s = 'a1 b22 c333';\n"
+                        + "var y = /\\d+/y; y.lastIndex = 1; y.exec(s);\n"
+                        + "var m = /^ab?$/m;\n"
+                        + "[s.match(/[a-c]\\d+/g).join('|'), 'a, b'.search(/a/g), y.lastIndex,"
+                        + " 'xx\\nab'.replace(m, '-').length, 'yyx'.match(/x/).index + ':x',"
+                        + " /bar/.exec('foo ba r')].join()");
+    }
+}
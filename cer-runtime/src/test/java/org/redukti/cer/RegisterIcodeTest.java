@@ -0,0 +1,60 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+
+public class RegisterIcodeTest {
+
+    private static final String SOURCE =
+            "function arith(a, b) { var s = a + b, d = a - b, m = a * 3, q = a / b, r = a % 7;\n"
+                    + "  return [s, d, m, q, r, a & b, a | 5, a ^ b, a << 2, a >> 1, -a >>> 28,"
+                    + " a < b, a <= 3, a > b, a >= -2, a == b, a != 4, a === b, a !== 5]"
+                    + ".join(); }\n"
+                    + "function strs(a, b) { var x = a + b, y = a + 1;"
+                    + " return [x, y, a < b, a == 1, a === '1'].join(); }\n"
+                    + "function moves(o, k) { var t = o; var u; u = t; var n = u.name;"
+                    + " u.name = n + '!'; var e = o[k]; var z = -0; var w = z;"
+                    + " return [n, o.name, e, 1 / w, t === o].join(); }\n"
+                    + "function loop(n) { var s = 0, arr = [3, 4, 5];"
+                    + " for (var i = 0; i < n; i++) { s = s + arr[i % 3]; s = s % 1000; }"
+                    + " return s; }\n"
+                    + "function nan(x) { var y = x;"
+                    + " return [x == y, x != y, x < 1, x >= 1].join(); }\n"
+                    + "var g = 10;\n"
+                    + "function globals(a) { var b = g + a; g = b;"
+                    + " return [b, g, Math.max(a, b)].join(); }\n"
+                    + "function closure(a) { var b = a * 2; var f = function() { return b; };"
+                    + " var c = a + b; b = c; return [c, f()].join(); }\n"
+                    + "[arith(9, 2), arith(-3, 0.5), strs('1', '2'), strs(1, 2),"
+                    + " moves({name: 'x', k: 7}, 'k'), loop(100), nan(NaN), globals(5),"
+                    + " closure(4)].join('|')";
+
+    private static final String EXPECTED =
+            "11,7,27,4.5,2,0,13,11,36,4,15,false,false,true,true,false,true,false,true"
+                    + "|-2.5,-3.5,-9,-6,-3,0,-3,-3,-12,-2,0,true,true,false,false,false,true,false,"
+                    + "true|12,11,true,true,true|3,2,true,true,false|x,x!,7,-Infinity,true|399"
+                    + "|false,true,false,false|15,15,15|12,12";
+
+    private static String eval(boolean registerIcode) {
+        ContextFactory contextFactory =
+                new ContextFactory() {
+                    @Override
+                    protected boolean hasFeature(Context cx, int featureIndex) {
+                        if (featureIndex == Context.FEATURE_REGISTER_ICODE) {
+                            return registerIcode;
+                        }
+                        return super.hasFeature(cx, featureIndex);
+                    }
+                };
+        return Utils.eval(contextFactory, -1, SOURCE);
+    }
+
+    @Test
+    public void registerIcodeMatchesStackIcode() {
+        assertEquals(EXPECTED, eval(false));
+        assertEquals(EXPECTED, eval(true));
+    }
+}
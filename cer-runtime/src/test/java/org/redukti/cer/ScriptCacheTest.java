@@ -0,0 +1,136 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.redukti.cer.Scriptable;
+import org.redukti.cer.runtime.Callable;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+import org.redukti.cer.runtime.EcmaError;
+import org.redukti.cer.runtime.Function;
+import org.redukti.cer.runtime.GeneratedClassLoader;
+import org.redukti.cer.runtime.LruScriptCache;
+import org.redukti.cer.runtime.Script;
+import org.redukti.cer.runtime.ScriptableObject;
+import org.redukti.cer.runtime.SecurityController;
+
+public class ScriptCacheTest {
+
+    @Test
+    public void recompilingReusesCode() {
+        LruScriptCache cache = new LruScriptCache(2);
+        ContextFactory contextFactory = new ContextFactory();
+        contextFactory.setTierUpThreshold(0);
+        contextFactory.setScriptCache(cache);
+        String source =
+                "function sq(x) { return x * x; } var n = (typeof n == 'number') ? n : 3; sq(n)";
+        try (Context cx = contextFactory.enterContext()) {
+            for (int level : new int[] {-1, 0}) {
+                cx.setOptimizationLevel(level);
+                Script first = cx.compileString(source, "test.js", 1, null);
+                Script second = cx.compileString(source, "test.js", 1, null);
+                assertNotSame(first, second);
+                ScriptableObject scope = cx.initStandardObjects();
+                assertEquals("9", Context.toString(first.exec(cx, scope)));
+                scope.put("n", scope, 5);
+                assertEquals("25", Context.toString(second.exec(cx, scope)));
+            }
+            assertEquals(2, cache.getHitCount());
+            assertEquals(2, cache.getMissCount());
+
+            cx.compileString(source, "other.js", 1, null);
+            assertEquals(3, cache.getMissCount());
+            assertEquals(1, cache.getEvictionCount());
+            assertEquals(2, cache.size());
+
+            ScriptableObject scope = cx.initStandardObjects();
+            String function = "function f(a) { return a + 1; }";
+            Function f = cx.compileFunction(scope, function, "f.js", 1, null);
+            Function g = cx.compileFunction(scope, function, "f.js", 1, null);
+            assertNotSame(f, g);
+            assertEquals(3, cache.getHitCount());
+            assertEquals("2", Context.toString(g.call(cx, scope, scope, new Object[] {1})));
+        }
+    }
+
+    @Test
+    public void securityDomainsDoNotShareCode() {
+        LruScriptCache cache = new LruScriptCache(2);
+        ContextFactory contextFactory = new ContextFactory();
+        contextFactory.setScriptCache(cache);
+        String source = "6 * 7";
+        try (Context cx = contextFactory.enterContext()) {
+            cx.setSecurityController(new DomainController());
+            ScriptableObject scope = cx.initStandardObjects();
+            for (String domain : new String[] {"a", "b", "a"}) {
+                Script script = cx.compileString(source, "test.js", 1, domain);
+                assertEquals("42", Context.toString(script.exec(cx, scope)));
+            }
+            assertEquals(0, cache.getHitCount());
+            assertEquals(0, cache.getMissCount());
+            assertEquals(0, cache.size());
+
+            cx.compileString(source, "test.js", 1, null);
+            cx.compileString(source, "test.js", 1, null);
+            assertEquals(1, cache.getHitCount());
+        }
+    }
+
+    @Test
+    public void linearRegExpOnlyIsPartOfTheKey() {
+        LruScriptCache cache = new LruScriptCache(2);
+        ContextFactory contextFactory =
+                new ContextFactory() {
+                    @Override
+                    protected boolean hasFeature(Context cx, int featureIndex) {
+                        if (featureIndex == Context.FEATURE_LINEAR_REGEXP_ONLY) {
+                            return "only".equals(cx.getThreadLocal("regexp"));
+                        }
+                        return super.hasFeature(cx, featureIndex);
+                    }
+                };
+        contextFactory.setScriptCache(cache);
+        String source = "/(a)\\1/.test('aa')";
+        try (Context cx = contextFactory.enterContext()) {
+            Script script = cx.compileString(source, "test.js", 1, null);
+            assertEquals("true", Context.toString(script.exec(cx, cx.initStandardObjects())));
+
+            cx.putThreadLocal("regexp", "only");
+            try {
+                cx.compileString(source, "test.js", 1, null);
+                fail("the backreference needs backtracking");
+            } catch (EcmaError e) {
+                assertEquals("SyntaxError", e.getName());
+            }
+            assertEquals(0, cache.getHitCount());
+            assertEquals(2, cache.getMissCount());
+        }
+    }
+
+    /** Uses the domains as they are, the way a controller that only tells them apart would. */
+    private static class DomainController extends SecurityController {
+        @Override
+        public GeneratedClassLoader createClassLoader(ClassLoader parent, Object domain) {
+            return Context.getCurrentContext().createClassLoader(parent);
+        }
+
+        @Override
+        public Object getDynamicSecurityDomain(Object securityDomain) {
+            return securityDomain;
+        }
+
+        @Override
+        public Object callWithDomain(
+                Object securityDomain,
+                Context cx,
+                Callable callable,
+                Scriptable scope,
+                Scriptable thisObj,
+                Object[] args) {
+            return callable.call(cx, scope, thisObj, args);
+        }
+    }
+}
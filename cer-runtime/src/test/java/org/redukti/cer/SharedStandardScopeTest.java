@@ -0,0 +1,70 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+import org.redukti.cer.runtime.Script;
+import org.redukti.cer.runtime.ScriptableObject;
+
+public class SharedStandardScopeTest {
+
+    @Test
+    public void requestScopesShareStandardObjects() {
+        ContextFactory contextFactory = new ContextFactory();
+        try (Context cx = contextFactory.enterContext()) {
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            ScriptableObject first = cx.initSharedStandardObjects();
+            ScriptableObject second = cx.initSharedStandardObjects();
+            assertNotSame(first, second);
+            assertSame(first.getPrototype(), second.getPrototype());
+            assertSame(
+                    contextFactory.getSharedStandardScope(Context.VERSION_ES6),
+                    first.getPrototype());
+
+            Script script =
+                    cx.compileString(
+                            "var r = [typeof x, Math.max(1, 2), [1, 2].map(function(v) { return"
+                                    + " v * 2; }).join('|'), new Map().size];\n"
+                                    + "var x = 'defined'; JSON = 'shadowed';\n"
+                                    + "function f() { return JSON; } r.push(f(), typeof Symbol);\n"
+                                    + "r.join()",
+                            "test.js",
+                            1,
+                            null);
+            assertEquals(
+                    "undefined,2,2|4,0,shadowed,function",
+                    Context.toString(script.exec(cx, first)));
+            assertEquals(
+                    "object",
+                    Context.toString(cx.evaluateString(second, "typeof JSON", "t", 1, null)));
+            assertEquals(
+                    "undefined,2,2|4,0,shadowed,function",
+                    Context.toString(script.exec(cx, second)));
+            assertEquals("defined", first.get("x", first));
+        }
+    }
+
+    @Test
+    public void eachLanguageVersionHasItsOwnStandardObjects() {
+        ContextFactory contextFactory = new ContextFactory();
+        String source = "[typeof Symbol, typeof Map, typeof Promise].join()";
+        try (Context cx = contextFactory.enterContext()) {
+            ScriptableObject older = cx.initSharedStandardObjects();
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            ScriptableObject es6 = cx.initSharedStandardObjects();
+            assertNotSame(older.getPrototype(), es6.getPrototype());
+            assertEquals(
+                    "function,function,function",
+                    Context.toString(cx.evaluateString(es6, source, "t", 1, null)));
+
+            ScriptableObject built =
+                    contextFactory.getSharedStandardScope(Context.VERSION_1_8);
+            assertEquals(Context.VERSION_ES6, cx.getLanguageVersion());
+            assertSame(built, contextFactory.getSharedStandardScope(Context.VERSION_1_8));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+import static org.redukti.cer.Utils.eval;
+
+import org.junit.Test;
+
+public class SuperinstructionTest {
+
+    private static final String SCRIPT =
+            "function loops(n) { var s = 0, c = 0; for (var i = 0; i < n; i++) { "
+                    + "s += 2; c -= 300; if (i >= 5) { s -= 1; } } var j = '0'; while (j < "
+                    + "3) { j++; } return [s, c, i, j].join(); }\n"
+                    + "function strs() { var x = 'a'; x += 1; var y = '7'; y -= 2; var z = "
+                    + "'4'; z++; z--; return [x, y, z].join(); }\n"
+                    + "function P(v) { this.v = v; this.a = 1; this.b = 2; this.c = 3; "
+                    + "this.d = 4; this.e = 5; }\n"
+                    + "P.prototype.sum = function() { var p = this; return this.v + p.a + "
+                    + "p.b + p.c + p.d + this.e; };\n"
+                    + "function props(n) { var num = n; return [num.toFixed(2), new "
+                    + "P(10).sum()].join(); }\n"
+                    + "function fin(n) { var k = 0; for (var i = 0; i < n; i++) { try { if "
+                    + "(i > 2) continue; k += 1; } finally { k += 10; } } return k; }\n"
+                    + "function* gen(n) { var t = 0; for (var i = 0; i < n; i++) { t += 1; "
+                    + "yield t; } }\n"
+                    + "function gens() { var r = []; for (var v of gen(4)) r.push(v); "
+                    + "return r.join(); }\n"
+                    + "function folds() { return [(1 << 15) - 1, -7 % 3, (-1) >>> 28, 0xff "
+                    + "& 0x0f | 0x30, 5 ^ 3, -16 >> 2].join(); }\n"
+                    + "function hook(c, o) { var a = o; return (c ? o : a).length; }\n"
+                    + "[loops(10), strs(), props(3.14159), fin(5), gens(), folds(), "
+                    + "hook(false, [1, 2])].join('|')";
+
+    private static final String EXPECTED =
+            "15,-3000,10,3|a1,5,4|3.14,25|53|1,2,3,4|32767,-1,15,63,6,-4|2";
+
+    @Test
+    public void fusedSequencesBehaveLikeTheOriginals() {
+        assertEquals(EXPECTED, eval(-1, SCRIPT));
+    }
+
+    @Test
+    public void compiledFusedSequencesMatchInterpreter() {
+        assertEquals(EXPECTED, eval(0, SCRIPT));
+    }
+}
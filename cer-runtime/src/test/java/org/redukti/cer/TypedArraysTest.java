@@ -0,0 +1,180 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+import static org.redukti.cer.Utils.check;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+import org.redukti.cer.runtime.ContextFactory;
+import org.redukti.cer.runtime.ScriptableObject;
+import org.redukti.cer.runtime.typedarrays.NativeArrayBuffer;
+
+public class TypedArraysTest {
+
+    private static String eval(int optimizationLevel, ByteBuffer shared, String source) {
+        return Utils.eval(
+                new ContextFactory(),
+                optimizationLevel,
+                scope ->
+                        ScriptableObject.putProperty(
+                                scope, "shared", NativeArrayBuffer.wrap(scope, shared)),
+                source);
+    }
+
+    @Test
+    public void elementTypes() {
+        check(
+                "0 1.5 3 4.5,1 2 44 255,2 2 255 0 0,1 2 44 255,4,8,4294967295,"
+                        + "0.10000000149011612,-5 7,18446744073709551611,bigint,2475,-1294967296",
+                "var out = [];\n"
+                        + "var f = new Float64Array(4);"
+                        + " for (var i = 0; i < f.length; i++) f[i] = i * 1.5;\n"
+                        + "var u8 = new Uint8Array([1, 2, 300, -1]);\n"
+                        + "var c = new Uint8ClampedArray([1.5, 2.5, 300, -5, NaN]);\n"
+                        + "var i16 = new Int16Array(u8);\n"
+                        + "out.push(f.join(' '), u8.join(' '), c.join(' '), i16.join(' '),"
+                        + " i16.length, i16.byteLength);\n"
+                        + "out.push(new Uint32Array([-1])[0], new Float32Array([0.1])[0]);\n"
+                        + "var big = new BigInt64Array([-5n, 7n]);"
+                        + " var ubig = new BigUint64Array(big.buffer);\n"
+                        + "out.push(big.join(' '), ubig[0].toString(), typeof big[0]);\n"
+                        + "var grid = new Float64Array(100);"
+                        + " for (var k = 0; k < 100; k++) grid[k] = k / 2;\n"
+                        + "var s = 0; for (var k = 0; k < 100; k++) s += grid[k]; out.push(s);\n"
+                        + "var ints = new Int32Array(10);"
+                        + " for (var k = 0; k < 10; k++) ints[k] = k * 1e9; out.push(ints[3]);\n"
+                        + "out.join()");
+    }
+
+    @Test
+    public void buffersAndViews() {
+        check(
+                "1 2 3 4 254 255 0 0,65534,1020304,9,2,1,true,7 0,0,-1,1123,4,255 255,true,false",
+                "var out = [];\n"
+                        + "var buf = new ArrayBuffer(8); var dv = new DataView(buf);\n"
+                        + "dv.setInt32(0, 0x01020304); dv.setInt16(4, -2, true);\n"
+                        + "var b = new Uint8Array(buf);\n"
+                        + "out.push(b.join(' '), dv.getUint16(4, true),"
+                        + " dv.getInt32(0).toString(16));\n"
+                        + "var sub = b.subarray(1, 3); sub[0] = 9;\n"
+                        + "out.push(b[1], sub.length, sub.byteOffset, sub.buffer === buf);\n"
+                        + "var sl = b.slice(-2); sl[0] = 7; out.push(sl.join(' '), b[6]);\n"
+                        + "dv.setBigUint64(0, 2n ** 64n - 1n); out.push(dv.getBigInt64(0));\n"
+                        + "var shared = new Int8Array([1, 2, 3, 4]);"
+                        + " shared.set(shared.subarray(0, 3), 1); out.push(shared.join(''));\n"
+                        + "out.push(buf.slice(4).byteLength,"
+                        + " new Uint8Array(buf.slice(0, 2)).join(' '),"
+                        + " ArrayBuffer.isView(dv), ArrayBuffer.isView(buf));\n"
+                        + "out.join()");
+    }
+
+    @Test
+    public void prototypeMethods() {
+        check(
+                "0 3 3 8 9,1,2,true,true,-1,012,true,,,4,,6,2,1,3,13,"
+                        + "[object Uint8Array],4,5,8,2,true",
+                "var out = [];\n"
+                        + "var t = new Int32Array(5); t.fill(3, 1, 4); t.set([8, 9], 3);\n"
+                        + "out.push(t.join(' '), t.indexOf(3), t.lastIndexOf(3), t.includes(9));\n"
+                        + "var nan = new Float64Array([NaN]);"
+                        + " out.push(nan.includes(NaN), nan.indexOf(NaN));\n"
+                        + "var u8 = new Uint8Array(4);\n"
+                        + "out.push(Object.keys(new Int8Array(3)).join(''),"
+                        + " 'length' in Int8Array.prototype, u8[10], u8[-1]);\n"
+                        + "u8[10] = 5; out.push(u8.length, u8[10]);\n"
+                        + "var sum = 0; for (var v of new Int8Array([1, 2, 3])) sum += v;"
+                        + " out.push(sum);\n"
+                        + "var arr = new Int8Array([3, 1, 2]); arr.reverse();"
+                        + " arr.forEach(function(v, i) { sum += v * i; });"
+                        + " out.push(arr.join(), sum);\n"
+                        + "out.push(Object.prototype.toString.call(u8),"
+                        + " String(new Int16Array([4, 5])));\n"
+                        + "out.push(Float64Array.BYTES_PER_ELEMENT,"
+                        + " new Int16Array(2).BYTES_PER_ELEMENT,"
+                        + " Object.getPrototypeOf(Int8Array)"
+                        + " === Object.getPrototypeOf(Uint8Array));\n"
+                        + "out.join()");
+    }
+
+    @Test
+    public void iterationMethods() {
+        check(
+                "10 -6 20 0 14,true,5 10 7,19,s,7,0,10,-3,5,true,true,-3,3,-1,"
+                        + "-1 0 0 2 3 NaN,-Infinity,10 2 1,-1 2 3,4 5 3 4 5,1 1 2 3 5,1 2 1 2",
+                "var out = [];\n"
+                        + "var t = new Int16Array([5, -3, 10, 0, 7]);\n"
+                        + "var doubled = t.map(function(v) { return v * 2; });\n"
+                        + "out.push(doubled.join(' '), doubled instanceof Int16Array,"
+                        + " t.filter(function(v) { return v > 0; }).join(' '));\n"
+                        + "out.push(t.reduce(function(a, v) { return a + v; }),"
+                        + " t.reduceRight(function(a, v) { return a + ',' + v; }, 's'));\n"
+                        + "out.push(t.every(function(v) { return v > -5; }),"
+                        + " t.some(function(v) { return v > 9; }));\n"
+                        + "out.push(t.find(function(v) { return v < 0; }),"
+                        + " t.findIndex(function(v) { return v === 0; }),"
+                        + " t.findIndex(function(v) { return v > 100; }));\n"
+                        + "var f = new Float64Array([3, NaN, -0, 0, -1, 2]); f.sort();"
+                        + " out.push(f.join(' '), 1 / f[1]);\n"
+                        + "var desc = function(a, b) { return b - a; };\n"
+                        + "out.push(new Int32Array([1, 10, 2]).sort(desc).join(' '),"
+                        + " new BigInt64Array([3n, -1n, 2n]).sort().join(' '));\n"
+                        + "out.push(new Uint8Array([1, 2, 3, 4, 5]).copyWithin(0, 3).join(' '),"
+                        + " new Uint8Array([1, 2, 3, 4, 5]).copyWithin(1, 0, 3).join(' '),"
+                        + " new Int32Array([1, 2, 3, 4]).copyWithin(2, 0).join(' '));\n"
+                        + "out.join()");
+    }
+
+    @Test
+    public void fromAndOf() {
+        check(
+                "1 2 44,10 21 32,5 6,7 8,65535,0,1,0",
+                "var out = [];\n"
+                        + "out.push(Int8Array.of(1, 2, 300).join(' '),"
+                        + " Float32Array.from([1, 2, 3], function(v, i) { return v * 10 + i; })"
+                        + ".join(' '));\n"
+                        + "out.push(Uint8Array.from(new Set([5, 6, 5])).join(' '),"
+                        + " Int16Array.from({length: 2, 0: 7, 1: 8}).join(' '),"
+                        + " Uint16Array.from(new Int8Array([-1])).join(' '),"
+                        + " Int8Array.of().length);\n"
+                        + "out.push(Int8Array.from.length, Int8Array.of.length);\n"
+                        + "out.join()");
+    }
+
+    @Test
+    public void numericKeysAreNotProperties() {
+        check(
+                "undefined,undefined,false,false,false,2,3,0 1 x 1.0,true,true",
+                "var out = [];\n"
+                        + "var u = new Uint8Array(2);\n"
+                        + "u[1.5] = 1; u['-0'] = 1; u.Infinity = 1; u.x = 2; u['1.0'] = 3;\n"
+                        + "out.push(typeof u[1.5], typeof u['-0'], 1.5 in u, '-0' in u,"
+                        + " 'Infinity' in u, u.x, u['1.0'], Object.keys(u).join(' '));\n"
+                        + "out.push(delete u[1.5], '1' in u);\n"
+                        + "out.join()");
+    }
+
+    @Test
+    public void wrappedBuffersAreShared() {
+        ByteBuffer direct = ByteBuffer.allocateDirect(16).order(ByteOrder.LITTLE_ENDIAN);
+        direct.putInt(0, 42);
+        assertEquals(
+                "16,42",
+                eval(
+                        0,
+                        direct,
+                        "var dv = new DataView(shared); dv.setInt32(4, 7, true);"
+                                + " [shared.byteLength, dv.getInt32(0, true)].join()"));
+        assertEquals(7, direct.getInt(4));
+
+        ByteBuffer readOnly = ByteBuffer.wrap(new byte[] {5, 6, 7}).asReadOnlyBuffer();
+        assertEquals(
+                "5 6 7,18",
+                eval(
+                        -1,
+                        readOnly,
+                        "var b = new Uint8Array(shared); var s = 0;"
+                                + " for (var i = 0; i < b.length; i++) s += b[i];"
+                                + " [b.join(' '), s].join()"));
+    }
+}
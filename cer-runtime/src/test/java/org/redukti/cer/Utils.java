@@ -0,0 +1,50 @@
+package org.redukti.cer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.function.Consumer;
+import org.redukti.cer.runtime.Context;
+import org.redukti.cer.runtime.ContextFactory;
+import org.redukti.cer.runtime.ScriptableObject;
+
+/** Runs the scripts of the tests in new standard objects, with the ES6 language version. */
+public final class Utils {
+
+    private Utils() {}
+
+    /** Evaluate source at the optimization level and return the result as a string. */
+    public static String eval(int optimizationLevel, String source) {
+        return eval(new ContextFactory(), optimizationLevel, source);
+    }
+
+    /** Evaluate source in a context of factory at the optimization level. */
+    public static String eval(ContextFactory factory, int optimizationLevel, String source) {
+        return eval(factory, optimizationLevel, scope -> {}, source);
+    }
+
+    /** Evaluate source in a context of factory after setup has been given the new scope. */
+    public static String eval(
+            ContextFactory factory,
+            int optimizationLevel,
+            Consumer<ScriptableObject> setup,
+            String source) {
+        try (Context cx = factory.enterContext()) {
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            cx.setOptimizationLevel(optimizationLevel);
+            ScriptableObject scope = cx.initStandardObjects();
+            setup.accept(scope);
+            return Context.toString(cx.evaluateString(scope, source, "test.js", 1, null));
+        }
+    }
+
+    /** Assert that source evaluates to expected both interpreted and compiled. */
+    public static void check(String expected, String source) {
+        check(new ContextFactory(), expected, source);
+    }
+
+    /** Like {@link #check(String, String)}, in contexts of factory. */
+    public static void check(ContextFactory factory, String expected, String source) {
+        assertEquals(expected, eval(factory, -1, source));
+        assertEquals(expected, eval(factory, 0, source));
+    }
+}